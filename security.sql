@@ -150,6 +150,7 @@ CREATE TABLE IF NOT EXISTS api_endpoints (
                                              description VARCHAR(500) COMMENT '接口描述',
                                              auth VARCHAR(1000) COMMENT '权限表达式(如@PreAuthorize/@Secured等)',
                                              threat_monitor_enabled TINYINT DEFAULT 1 COMMENT '异常识别监控开关(0-白名单直通,1-启用监控)',
+                                             response_leak_scan_enabled TINYINT DEFAULT 0 COMMENT '响应体泄露扫描开关(0-关闭,1-开启)',
                                              require_auth TINYINT DEFAULT 1 COMMENT '是否需要认证(0-不需要,1-需要)',
                                              module_group VARCHAR(100) COMMENT '接口分组/模块',
                                              status TINYINT DEFAULT 1 COMMENT '是否启用(0-禁用,1-启用)',
@@ -199,6 +200,24 @@ PREPARE stmt_add_api_endpoints_threat_monitor FROM @ddl_add_api_endpoints_threat
 EXECUTE stmt_add_api_endpoints_threat_monitor;
 DEALLOCATE PREPARE stmt_add_api_endpoints_threat_monitor;
 
+-- 兼容旧版本表结构：补充 response_leak_scan_enabled 字段（若历史库缺失该列）
+SET @ddl_add_api_endpoints_leak_scan = (
+    SELECT IF(
+        EXISTS (
+            SELECT 1
+            FROM INFORMATION_SCHEMA.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE()
+              AND TABLE_NAME = 'api_endpoints'
+              AND COLUMN_NAME = 'response_leak_scan_enabled'
+        ),
+        'SELECT ''api_endpoints.response_leak_scan_enabled exists''',
+        'ALTER TABLE api_endpoints ADD COLUMN response_leak_scan_enabled TINYINT DEFAULT 0 COMMENT ''响应体泄露扫描开关(0-关闭,1-开启)'' AFTER threat_monitor_enabled'
+    )
+);
+PREPARE stmt_add_api_endpoints_leak_scan FROM @ddl_add_api_endpoints_leak_scan;
+EXECUTE stmt_add_api_endpoints_leak_scan;
+DEALLOCATE PREPARE stmt_add_api_endpoints_leak_scan;
+
 -- =================================================================
 -- 4. 安全异常识别与IP黑白名单表
 -- =================================================================
@@ -258,6 +277,7 @@ CREATE TABLE IF NOT EXISTS security_attack_event (
     request_body_sample TEXT NULL COMMENT '请求体样本(截断)',
     request_body_hash VARCHAR(64) NULL COMMENT '请求体Hash',
     risk_score INT DEFAULT 0 COMMENT '风险分值',
+    hit_count INT NOT NULL DEFAULT 1 COMMENT '命中次数(聚合事件>1)',
     block_action VARCHAR(32) NOT NULL COMMENT '处理动作(ALLOW/BLOCK/BLACKLIST)',
     block_reason VARCHAR(1000) NOT NULL COMMENT '拦截/记录原因',
     suggested_action VARCHAR(500) NULL COMMENT '建议处理方式',
@@ -276,6 +296,7 @@ ALTER TABLE security_attack_event ADD COLUMN IF NOT EXISTS location_label VARCHA
 ALTER TABLE security_attack_event ADD COLUMN IF NOT EXISTS client_tool VARCHAR(64) NULL COMMENT '可疑客户端工具' AFTER app_id;
 ALTER TABLE security_attack_event ADD COLUMN IF NOT EXISTS browser_fingerprint VARCHAR(128) NULL COMMENT '浏览器指纹' AFTER client_tool;
 ALTER TABLE security_attack_event ADD COLUMN IF NOT EXISTS browser_trusted TINYINT DEFAULT 0 COMMENT '浏览器指纹可信(0否,1是)' AFTER browser_fingerprint;
+ALTER TABLE security_attack_event ADD COLUMN IF NOT EXISTS hit_count INT NOT NULL DEFAULT 1 COMMENT '命中次数(聚合事件>1)' AFTER risk_score;
 
 CREATE TABLE IF NOT EXISTS security_threat_config (
     id BIGINT NOT NULL COMMENT '主键ID',
@@ -322,6 +343,37 @@ ALTER TABLE security_threat_config ADD COLUMN IF NOT EXISTS device_risk_failure_
 ALTER TABLE security_threat_config ADD COLUMN IF NOT EXISTS device_risk_account_switch_window_ms BIGINT DEFAULT 900000 COMMENT '设备切换账号窗口毫秒数' AFTER device_risk_failure_penalty;
 ALTER TABLE security_threat_config ADD COLUMN IF NOT EXISTS device_risk_account_switch_threshold INT DEFAULT 2 COMMENT '设备切换账号阈值' AFTER device_risk_account_switch_window_ms;
 
+CREATE TABLE IF NOT EXISTS security_threat_rule (
+    id BIGINT AUTO_INCREMENT COMMENT '主键ID',
+    rule_code VARCHAR(64) NOT NULL COMMENT '规则编码(即攻击类型)',
+    rule_name VARCHAR(128) COMMENT '规则名称',
+    target VARCHAR(64) NOT NULL DEFAULT 'PATH,QUERY,BODY' COMMENT '检测面(PATH,QUERY,BODY,USER_AGENT)',
+    matcher_type VARCHAR(16) NOT NULL DEFAULT 'LITERAL' COMMENT '匹配方式(LITERAL-字面量,REGEX-正则)',
+    expression VARCHAR(2000) NOT NULL COMMENT '字面量(逗号或换行分隔)或正则表达式',
+    anchors VARCHAR(1000) COMMENT '正则的必要字面量锚点(逗号分隔)',
+    risk_score INT NOT NULL DEFAULT 80 COMMENT '风险分',
+    action VARCHAR(16) NOT NULL DEFAULT 'BLOCK' COMMENT '处置动作(BLOCK-拦截,BLACKLIST-拦截并临时拉黑)',
+    http_status INT NOT NULL DEFAULT 403 COMMENT '拦截响应码',
+    reason VARCHAR(255) COMMENT '命中原因',
+    suggested_action VARCHAR(255) COMMENT '处置建议',
+    mode VARCHAR(16) NOT NULL DEFAULT 'ENFORCE' COMMENT '运行模式(ENFORCE,SHADOW,OFF)',
+    status TINYINT DEFAULT 1 COMMENT '状态(0-失效,1-生效)',
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_threat_rule_code (rule_code),
+    INDEX idx_threat_rule_status (status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='威胁检测自定义特征规则';
+
+CREATE TABLE IF NOT EXISTS security_endpoint_baseline (
+    endpoint_id BIGINT NOT NULL COMMENT '接口ID(api_endpoints.id)',
+    mean_rate DOUBLE NOT NULL DEFAULT 0 COMMENT '每限流窗口请求数的指数加权均值',
+    rate_variance DOUBLE NOT NULL DEFAULT 0 COMMENT '每限流窗口请求数的指数加权方差',
+    sample_count BIGINT NOT NULL DEFAULT 0 COMMENT '已学习的统计周期数',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (endpoint_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='接口流量基线';
+
 CREATE TABLE IF NOT EXISTS security_audit_config (
     id BIGINT NOT NULL COMMENT '主键ID',
     enabled TINYINT DEFAULT 1 COMMENT '是否启用审计',
@@ -0,0 +1,170 @@
+package com.ssy.tools;
+
+import com.ssy.service.impl.GcraRateLimiter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IP 限流器多线程对比压测小工具（放在 src/bench 目录，不参与单元测试；mvn -Pbench test-compile 后在 IDE 中直接运行）。
+ *
+ * 对比两种实现在高并发下的吞吐：
+ * - 旧方式：每次请求拼接 "g:"/"e:" 字符串键，ConcurrentHashMap.computeIfAbsent + synchronized 固定窗口计数
+ * - 新方式：IP/接口复合 long 键，GCRA 单 long CAS 推进
+ * 另外演示固定窗口在边界处允许 2 倍突发，而 GCRA 不会。
+ *
+ * 用法：直接运行 main，可传参 [线程数] [每线程请求次数] [IP数量]，默认 32 / 1000000 / 4096
+ */
+public class RateLimiterBenchmark {
+
+    private static final long WINDOW_MS = 10_000L;
+    private static final int GLOBAL_LIMIT = 300;
+    private static final int ENDPOINT_LIMIT = 120;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args != null && args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int perThread = args != null && args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int ipCount = args != null && args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+
+        String[] ips = new String[ipCount];
+        for (int i = 0; i < ipCount; i++) {
+            ips[i] = "10." + ((i >> 16) & 0xFF) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF);
+        }
+        String[] endpoints = {"GET:/api/user/list", "POST:/api/order/create", "GET:/api/product/detail", "PUT:/api/user/update"};
+        long[] endpointKeys = {101L, 102L, 103L, 104L};
+
+        // 预热
+        runLegacy(threads, perThread / 10, ips, endpoints);
+        runGcra(threads, perThread / 10, ips, endpointKeys);
+
+        long legacyNs = runLegacy(threads, perThread, ips, endpoints);
+        long gcraNs = runGcra(threads, perThread, ips, endpointKeys);
+        long total = (long) threads * perThread;
+        System.out.println("threads       = " + threads + ", requests = " + total + ", ips = " + ipCount);
+        System.out.printf("legacy        = %.1f ns/request, %.2f Mops/s%n", legacyNs / (double) total, total * 1000.0 / legacyNs);
+        System.out.printf("gcra          = %.1f ns/request, %.2f Mops/s%n", gcraNs / (double) total, total * 1000.0 / gcraNs);
+
+        edgeBurst();
+    }
+
+    private static long runLegacy(int threads, int perThread, String[] ips, String[] endpoints) throws InterruptedException {
+        ConcurrentHashMap<String, FixedWindowCounter> globalCounters = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, FixedWindowCounter> endpointCounters = new ConcurrentHashMap<>();
+        AtomicLong sink = new AtomicLong();
+        return runConcurrently(threads, seed -> {
+            long local = 0;
+            for (int i = 0; i < perThread; i++) {
+                int n = seed * 31 + i * 7;
+                String ip = ips[(n & Integer.MAX_VALUE) % ips.length];
+                String endpoint = endpoints[i & 3];
+                long now = System.currentTimeMillis();
+                int global = globalCounters.computeIfAbsent("g:" + ip, k -> new FixedWindowCounter()).increment(now, WINDOW_MS);
+                if (global <= GLOBAL_LIMIT) {
+                    local += endpointCounters.computeIfAbsent("e:" + ip + ":" + endpoint, k -> new FixedWindowCounter())
+                            .increment(now, WINDOW_MS);
+                }
+            }
+            sink.addAndGet(local);
+        });
+    }
+
+    private static long runGcra(int threads, int perThread, String[] ips, long[] endpointKeys) throws InterruptedException {
+        GcraRateLimiter globalLimiter = new GcraRateLimiter(65_536);
+        GcraRateLimiter endpointLimiter = new GcraRateLimiter(65_536);
+        AtomicLong sink = new AtomicLong();
+        return runConcurrently(threads, seed -> {
+            long local = 0;
+            for (int i = 0; i < perThread; i++) {
+                int n = seed * 31 + i * 7;
+                long ipKey = GcraRateLimiter.ipKey(ips[(n & Integer.MAX_VALUE) % ips.length]);
+                int global = globalLimiter.acquire(ipKey, WINDOW_MS, GLOBAL_LIMIT, GLOBAL_LIMIT * 3 + 1);
+                if (global <= GLOBAL_LIMIT) {
+                    local += endpointLimiter.acquire(GcraRateLimiter.compose(ipKey, endpointKeys[i & 3]),
+                            WINDOW_MS, ENDPOINT_LIMIT, ENDPOINT_LIMIT * 3 + 1);
+                }
+            }
+            sink.addAndGet(local);
+        });
+    }
+
+    private static long runConcurrently(int threads, Worker worker) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    worker.run(seed);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "RateBench-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 窗口末尾打满 limit 次，紧接着下一个窗口开头再打 limit 次：固定窗口全部放行（2 倍），GCRA 只放行 limit 次左右。
+     */
+    private static void edgeBurst() throws InterruptedException {
+        long windowMs = 200L;
+        int limit = 50;
+        FixedWindowCounter fixed = new FixedWindowCounter();
+        GcraRateLimiter gcra = new GcraRateLimiter(1024);
+        long key = GcraRateLimiter.ipKey("192.168.1.10");
+
+        long windowStart = System.currentTimeMillis();
+        fixed.increment(windowStart, windowMs);
+        gcra.acquire(key, windowMs, limit, limit * 3 + 1);
+        Thread.sleep(windowMs - 20);
+
+        int fixedAllowed = 0;
+        int gcraAllowed = 0;
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < limit; i++) {
+                if (fixed.increment(System.currentTimeMillis(), windowMs) <= limit) {
+                    fixedAllowed++;
+                }
+                if (gcra.acquire(key, windowMs, limit, limit * 3 + 1) <= limit) {
+                    gcraAllowed++;
+                }
+            }
+            Thread.sleep(40);
+        }
+        System.out.println("edge burst    = limit " + limit + " per " + windowMs + "ms, fixed allowed " + fixedAllowed
+                + ", gcra allowed " + gcraAllowed);
+    }
+
+    private interface Worker {
+        void run(int seed) throws InterruptedException;
+    }
+
+    /**
+     * 旧实现的固定窗口计数器（与改造前 IpAccessControlService 内部类一致）
+     */
+    private static class FixedWindowCounter {
+        private long windowStart;
+        private int count;
+
+        synchronized int increment(long now, long windowMs) {
+            if (windowStart == 0 || now - windowStart >= windowMs) {
+                windowStart = now;
+                count = 0;
+            }
+            count++;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.ssy.tools;
+
+import com.ssy.context.RequestSecurityEnvelope;
+import com.ssy.entity.ApiEndpointEntity;
+import com.ssy.mapper.ApiEndpointMapper;
+import com.ssy.mapper.RbacPermissionEndpointRelMapper;
+import com.ssy.properties.SecurityProperties;
+import com.ssy.properties.ThreatDetectionProperties;
+import com.ssy.service.impl.AuthorizationPolicyService;
+import com.ssy.service.impl.EndpointRbacCacheService;
+import com.ssy.service.impl.EndpointRegistryService;
+import com.ssy.service.impl.EndpointThreatCacheService;
+import com.ssy.service.impl.EndpointTrafficBaselineService;
+import com.ssy.service.impl.PermissionDictionaryService;
+import com.ssy.service.impl.RequestSecurityEnvelopeService;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求安全信封的本地对比压测小工具（放在 src/bench 目录，不参与单元测试；mvn -Pbench test-compile 后在 IDE 中直接运行）。
+ *
+ * 对比两种方式处理同一批请求的耗时：
+ * - 旧方式：四个过滤器各自解析客户端IP、正则规范化路径，三次接口缓存匹配
+ * - 新方式：首个过滤器计算一次信封，后续过滤器从 request attribute 读取
+ *
+ * 用法：直接运行 main，可传参 [接口数量] [请求次数]，默认 500 / 2000000
+ */
+public class RequestSecurityEnvelopeBenchmark {
+
+    public static void main(String[] args) {
+        int endpointCount = args != null && args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int iterations = args != null && args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        List<ApiEndpointEntity> endpoints = buildEndpoints(endpointCount);
+        AuthorizationPolicyService policyService = new AuthorizationPolicyService(new SecurityProperties());
+        EndpointRegistryService registryService = new EndpointRegistryService(mapperOf(endpoints), emptyRelMapper(),
+                new EndpointTrafficBaselineService(new ThreatDetectionProperties(), null), policyService,
+                new PermissionDictionaryService());
+        EndpointThreatCacheService threatCache = new EndpointThreatCacheService(registryService);
+        EndpointRbacCacheService rbacCache = new EndpointRbacCacheService(registryService);
+        registryService.refresh();
+        RequestSecurityEnvelopeService envelopeService =
+                new RequestSecurityEnvelopeService(new ThreatDetectionProperties(), registryService, policyService);
+
+        String[] uris = new String[1024];
+        for (int i = 0; i < uris.length; i++) {
+            int id = i % endpointCount;
+            uris[i] = (id % 4 == 0) ? "/api/module" + id + "/items/" + i : "/api/module" + id + "//list/";
+        }
+
+        // 预热
+        runLegacy(uris, threatCache, rbacCache, iterations / 10);
+        runEnvelope(uris, envelopeService, iterations / 10);
+
+        long legacyNs = runLegacy(uris, threatCache, rbacCache, iterations);
+        long envelopeNs = runEnvelope(uris, envelopeService, iterations);
+        System.out.println("endpoints     = " + endpointCount + ", requests = " + iterations);
+        System.out.printf("legacy        = %.1f ns/request%n", legacyNs / (double) iterations);
+        System.out.printf("envelope      = %.1f ns/request%n", envelopeNs / (double) iterations);
+        System.out.printf("saving        = %.1f ns/request%n", (legacyNs - envelopeNs) / (double) iterations);
+    }
+
+    private static long runLegacy(String[] uris, EndpointThreatCacheService threatCache,
+                                  EndpointRbacCacheService rbacCache, int iterations) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            HttpServletRequest request = mockRequest("GET", uris[i & (uris.length - 1)]);
+            // ThreatDetectionFilter
+            sink += legacyClientIp(request).length();
+            String path = legacyNormalizePath(request.getRequestURI());
+            sink += threatCache.match(request.getMethod(), path) == null ? 0 : 1;
+            // AuditTrailFilter：buildTraceContext + recordAudit
+            sink += legacyClientIp(request).length();
+            sink += rbacCache.match(request.getMethod(), request.getRequestURI()) == null ? 0 : 1;
+            sink += legacyClientIp(request).length();
+            // RequestUserContextFilter
+            sink += legacyClientIp(request).length();
+            // EndpointRbacAuthorizationFilter
+            sink += rbacCache.match(request.getMethod(), request.getRequestURI()) == null ? 0 : 1;
+        }
+        long cost = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.println();
+        }
+        return cost;
+    }
+
+    private static long runEnvelope(String[] uris, RequestSecurityEnvelopeService envelopeService, int iterations) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            HttpServletRequest request = mockRequest("GET", uris[i & (uris.length - 1)]);
+            RequestSecurityEnvelope envelope = envelopeService.resolve(request);
+            sink += envelope.getClientIp().length();
+            sink += envelope.getThreatRule() == null ? 0 : 1;
+            sink += envelopeService.resolve(request).getClientIp().length();
+            sink += envelopeService.resolve(request).getAccessRule() == null ? 0 : 1;
+            sink += envelopeService.resolveClientIp(request).length();
+            sink += envelopeService.resolveClientIp(request).length();
+            sink += envelopeService.resolve(request).getAccessRule() == null ? 0 : 1;
+        }
+        long cost = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.println();
+        }
+        return cost;
+    }
+
+    private static String legacyClientIp(HttpServletRequest request) {
+        String xff = request.getHeader("X-Forwarded-For");
+        if (xff != null && !xff.trim().isEmpty()) {
+            int comma = xff.indexOf(',');
+            return (comma >= 0 ? xff.substring(0, comma) : xff).trim();
+        }
+        String xri = request.getHeader("X-Real-IP");
+        if (xri != null && !xri.trim().isEmpty()) {
+            return xri.trim();
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static String legacyNormalizePath(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        String normalized = path.startsWith("/") ? path : "/" + path;
+        normalized = normalized.replaceAll("/+", "/");
+        if (normalized.length() > 1 && normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private static List<ApiEndpointEntity> buildEndpoints(int count) {
+        List<ApiEndpointEntity> endpoints = new ArrayList<>(count * 2);
+        long id = 1;
+        for (int i = 0; i < count; i++) {
+            ApiEndpointEntity list = new ApiEndpointEntity();
+            list.setId(id++);
+            list.setMethod("GET");
+            list.setPath("/api/module" + i + "/list");
+            list.setModuleGroup("Module" + i);
+            list.setThreatMonitorEnabled(1);
+            list.setRequireAuth(1);
+            list.setStatus(1);
+            endpoints.add(list);
+
+            ApiEndpointEntity detail = new ApiEndpointEntity();
+            detail.setId(id++);
+            detail.setMethod("GET");
+            detail.setPath("/api/module" + i + "/items/{id}");
+            detail.setModuleGroup("Module" + i);
+            detail.setThreatMonitorEnabled(1);
+            detail.setRequireAuth(1);
+            detail.setStatus(1);
+            endpoints.add(detail);
+        }
+        return endpoints;
+    }
+
+    private static ApiEndpointMapper mapperOf(List<ApiEndpointEntity> endpoints) {
+        return (ApiEndpointMapper) Proxy.newProxyInstance(
+                ApiEndpointMapper.class.getClassLoader(),
+                new Class<?>[]{ApiEndpointMapper.class},
+                (proxy, method, methodArgs) -> "selectAll".equals(method.getName()) ? endpoints : null);
+    }
+
+    private static RbacPermissionEndpointRelMapper emptyRelMapper() {
+        return (RbacPermissionEndpointRelMapper) Proxy.newProxyInstance(
+                RbacPermissionEndpointRelMapper.class.getClassLoader(),
+                new Class<?>[]{RbacPermissionEndpointRelMapper.class},
+                (proxy, method, methodArgs) -> List.class.isAssignableFrom(method.getReturnType()) ? Collections.emptyList() : null);
+    }
+
+    private static HttpServletRequest mockRequest(String method, String uri) {
+        Map<String, Object> attributes = new HashMap<>(4);
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class},
+                (proxy, m, methodArgs) -> {
+                    switch (m.getName()) {
+                        case "getMethod":
+                            return method;
+                        case "getRequestURI":
+                            return uri;
+                        case "getHeader":
+                            return "X-Forwarded-For".equals(methodArgs[0]) ? "203.0.113.7, 10.0.0.1" : null;
+                        case "getRemoteAddr":
+                            return "10.0.0.1";
+                        case "getAttribute":
+                            return attributes.get((String) methodArgs[0]);
+                        case "setAttribute":
+                            attributes.put((String) methodArgs[0], methodArgs[1]);
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
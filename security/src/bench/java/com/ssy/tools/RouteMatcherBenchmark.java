@@ -0,0 +1,165 @@
+package com.ssy.tools;
+
+import com.ssy.utils.PathPatternTrie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 接口路由模式匹配的本地对比压测小工具（放在 src/bench 目录，不参与单元测试；mvn -Pbench test-compile 后在 IDE 中直接运行）。
+ *
+ * 对比两种方式匹配同一批请求路径的耗时：
+ * - 旧方式：按注册顺序逐条 Pattern.matcher(path).matches()
+ * - 新方式：路径段前缀树 {@link PathPatternTrie}
+ *
+ * 请求一半命中已注册接口，一半为扫描器噪声（未知路径），后者在旧方式下需要扫完全部规则。
+ *
+ * 用法：直接运行 main，可传参 [模式接口数量] [请求次数]，默认 10000 / 200000
+ */
+public class RouteMatcherBenchmark {
+
+    public static void main(String[] args) {
+        int endpointCount = args != null && args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int iterations = args != null && args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+        List<String> patterns = buildPatterns(endpointCount);
+        List<Pattern> regexRules = new ArrayList<>(patterns.size());
+        PathPatternTrie.Builder<String> builder = PathPatternTrie.builder();
+        long buildStart = System.nanoTime();
+        for (String pattern : patterns) {
+            builder.add(pattern, pattern);
+        }
+        PathPatternTrie<String> trie = builder.build();
+        long trieBuildNs = System.nanoTime() - buildStart;
+        buildStart = System.nanoTime();
+        for (String pattern : patterns) {
+            regexRules.add(legacyCompile(pattern));
+        }
+        long regexBuildNs = System.nanoTime() - buildStart;
+
+        String[] paths = new String[1024];
+        for (int i = 0; i < paths.length; i++) {
+            int id = (i * 7919) % endpointCount;
+            int module = id / 100;
+            int resource = id % 100;
+            switch (i % 4) {
+                case 0:
+                    paths[i] = "/api/module" + module + "/resource" + resource + "/" + (100000 + i);
+                    break;
+                case 1:
+                    paths[i] = "/api/module" + module + "/files/2024/" + i + "/report.pdf";
+                    break;
+                case 2:
+                    paths[i] = "/wp-admin/setup-config" + i + ".php";
+                    break;
+                default:
+                    paths[i] = "/api/module" + module + "/unknown" + i + "/x";
+                    break;
+            }
+        }
+
+        int mismatches = 0;
+        for (String path : paths) {
+            String expected = legacyMatch(regexRules, patterns, path);
+            String actual = trie.match(path);
+            if (expected == null ? actual != null : !expected.equals(actual)) {
+                mismatches++;
+            }
+        }
+
+        int legacyIterations = Math.max(1, iterations / 100);
+        // 预热
+        runLegacy(paths, regexRules, patterns, legacyIterations / 10 + 1);
+        runTrie(paths, trie, iterations / 10 + 1);
+
+        long legacyNs = runLegacy(paths, regexRules, patterns, legacyIterations);
+        long trieNs = runTrie(paths, trie, iterations);
+        System.out.println("patterns      = " + trie.size() + ", requests = " + iterations
+                + " (legacy " + legacyIterations + ")");
+        System.out.printf("build         = regex %.1f ms, trie %.1f ms%n", regexBuildNs / 1e6, trieBuildNs / 1e6);
+        System.out.println("mismatches    = " + mismatches + " / " + paths.length);
+        System.out.printf("legacy regex  = %.1f ns/request%n", legacyNs / (double) legacyIterations);
+        System.out.printf("segment trie  = %.1f ns/request%n", trieNs / (double) iterations);
+    }
+
+    private static List<String> buildPatterns(int count) {
+        List<String> patterns = new ArrayList<>(count);
+        for (int i = 0; patterns.size() < count; i++) {
+            int module = i / 100;
+            int resource = i % 100;
+            patterns.add("/api/module" + module + "/resource" + resource + "/{id}");
+            if (resource == 0 && patterns.size() < count) {
+                patterns.add("/api/module" + module + "/files/**");
+            }
+        }
+        return patterns;
+    }
+
+    private static long runLegacy(String[] paths, List<Pattern> regexRules, List<String> patterns, int iterations) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += legacyMatch(regexRules, patterns, paths[i & (paths.length - 1)]) == null ? 0 : 1;
+        }
+        long cost = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.println();
+        }
+        return cost;
+    }
+
+    private static long runTrie(String[] paths, PathPatternTrie<String> trie, int iterations) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += trie.match(paths[i & (paths.length - 1)]) == null ? 0 : 1;
+        }
+        long cost = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.println();
+        }
+        return cost;
+    }
+
+    private static String legacyMatch(List<Pattern> regexRules, List<String> patterns, String path) {
+        for (int i = 0; i < regexRules.size(); i++) {
+            if (regexRules.get(i).matcher(path).matches()) {
+                return patterns.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 旧版 compilePathPattern 的等价实现
+     */
+    private static Pattern legacyCompile(String path) {
+        StringBuilder regex = new StringBuilder("^");
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '{') {
+                int end = path.indexOf('}', i);
+                if (end > i) {
+                    regex.append("[^/]+");
+                    i = end;
+                    continue;
+                }
+            }
+            if (c == '*') {
+                boolean isDoubleStar = (i + 1 < path.length() && path.charAt(i + 1) == '*');
+                regex.append(isDoubleStar ? ".*" : "[^/]*");
+                if (isDoubleStar) {
+                    i++;
+                }
+                continue;
+            }
+            if ("\\.[]{}()+-^$|".indexOf(c) >= 0) {
+                regex.append('\\');
+            }
+            regex.append(c);
+        }
+        regex.append('$');
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -36,6 +36,8 @@ public class DatabaseSchemaAutoInitializer implements InitializingBean {
             "security_ip_whitelist",
             "security_attack_event",
             "security_threat_config",
+            "security_threat_rule",
+            "security_endpoint_baseline",
             "security_audit_config",
             "security_audit_table_meta",
             "security_audit_global_0001",
@@ -72,6 +74,7 @@ public class DatabaseSchemaAutoInitializer implements InitializingBean {
                 ensureUserTimeColumns();
                 ensureApiEndpointsAuthColumn();
                 ensureApiEndpointsThreatMonitorColumn();
+                ensureApiEndpointsResponseLeakScanColumn();
                 ensureSecurityAttackEventColumns();
                 ensureSecurityThreatConfigColumns();
                 ensureAuditTableApiDescriptionColumn();
@@ -82,6 +85,7 @@ public class DatabaseSchemaAutoInitializer implements InitializingBean {
             ensureUserTimeColumns();
             ensureApiEndpointsAuthColumn();
             ensureApiEndpointsThreatMonitorColumn();
+            ensureApiEndpointsResponseLeakScanColumn();
             ensureSecurityAttackEventColumns();
             ensureSecurityThreatConfigColumns();
             ensureAuditTableApiDescriptionColumn();
@@ -149,6 +153,14 @@ public class DatabaseSchemaAutoInitializer implements InitializingBean {
         log.info("已补齐 api_endpoints.threat_monitor_enabled 列");
     }
 
+    private void ensureApiEndpointsResponseLeakScanColumn() {
+        if (!tableExists("api_endpoints")) {
+            return;
+        }
+        ensureColumn("api_endpoints", "response_leak_scan_enabled",
+                "ALTER TABLE api_endpoints ADD COLUMN response_leak_scan_enabled TINYINT(1) NOT NULL DEFAULT 0 COMMENT '响应体泄露扫描开关(0关闭,1开启)' AFTER threat_monitor_enabled");
+    }
+
     private void validateRequiredTables() {
         List<String> stillMissing = REQUIRED_TABLES.stream()
                 .filter(table -> !tableExists(table))
@@ -178,6 +190,8 @@ public class DatabaseSchemaAutoInitializer implements InitializingBean {
                 "ALTER TABLE security_attack_event ADD COLUMN browser_fingerprint VARCHAR(128) NULL COMMENT '浏览器指纹' AFTER client_tool");
         ensureColumn("security_attack_event", "browser_trusted",
                 "ALTER TABLE security_attack_event ADD COLUMN browser_trusted TINYINT(1) NOT NULL DEFAULT 0 COMMENT '浏览器指纹可信(0否,1是)' AFTER browser_fingerprint");
+        ensureColumn("security_attack_event", "hit_count",
+                "ALTER TABLE security_attack_event ADD COLUMN hit_count INT NOT NULL DEFAULT 1 COMMENT '命中次数(聚合事件>1)' AFTER risk_score");
     }
 
     private void ensureSecurityThreatConfigColumns() {
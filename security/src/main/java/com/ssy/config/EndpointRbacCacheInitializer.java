@@ -1,6 +1,7 @@
 package com.ssy.config;
 
 import com.ssy.service.impl.EndpointRbacCacheService;
+import com.ssy.service.impl.EndpointRegistryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
@@ -15,16 +16,20 @@ public class EndpointRbacCacheInitializer implements ApplicationListener<Applica
     private static final Logger log = LoggerFactory.getLogger(EndpointRbacCacheInitializer.class);
 
     private final EndpointRbacCacheService endpointRbacCacheService;
+    private final EndpointRegistryService endpointRegistryService;
 
-    public EndpointRbacCacheInitializer(EndpointRbacCacheService endpointRbacCacheService) {
+    public EndpointRbacCacheInitializer(EndpointRbacCacheService endpointRbacCacheService,
+                                        EndpointRegistryService endpointRegistryService) {
         this.endpointRbacCacheService = endpointRbacCacheService;
+        this.endpointRegistryService = endpointRegistryService;
     }
 
     @Override
     public void onApplicationEvent(ApplicationReadyEvent event) {
         long start = System.currentTimeMillis();
         try {
-            endpointRbacCacheService.refresh();
+            // 异常识别初始化器（先执行）已装载过接口注册表时不再重复查库
+            endpointRegistryService.ensureLoaded();
             log.info("接口RBAC缓存初始化完成: size={}, cost={}ms",
                     endpointRbacCacheService.size(),
                     (System.currentTimeMillis() - start));
@@ -1,6 +1,7 @@
 package com.ssy.config;
 
 import com.ssy.filter.AuditTrailFilter;
+import com.ssy.filter.ConcurrencyLimitFilter;
 import com.ssy.filter.CustomAuthenticationFilter;
 import com.ssy.filter.EndpointRbacAuthorizationFilter;
 import com.ssy.filter.JwtAuthorizationFilter;
@@ -9,23 +10,24 @@ import com.ssy.filter.RequestUserContextFilter;
 import com.ssy.filter.ServicePermissionFilter;
 import com.ssy.filter.ThreatDetectionFilter;
 import com.ssy.handler.CustomAccessDeniedHandler;
-import com.ssy.properties.SecurityProperties;
+import com.ssy.security.CompiledAuthorizationVoter;
 import com.ssy.security.ServiceCallVoter;
 import com.ssy.service.CustomUserDetailsService;
 import com.ssy.service.impl.AuditLogAsyncRecorderService;
 import com.ssy.service.impl.AttackEventAsyncRecorderService;
-import com.ssy.service.impl.EndpointRbacCacheService;
 import com.ssy.properties.JwtProperties;
 import com.ssy.service.impl.LoginSecurityService;
 import com.ssy.service.impl.PacketFingerprintService;
+import com.ssy.service.impl.RequestBodyCaptureService;
+import com.ssy.service.impl.RequestSecurityEnvelopeService;
+import com.ssy.service.impl.UserAgentClassifierService;
+import com.ssy.service.impl.UserPermissionCacheService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.security.access.AccessDecisionManager;
 import org.springframework.security.access.vote.AffirmativeBased;
-import org.springframework.security.access.vote.AuthenticatedVoter;
-import org.springframework.security.access.vote.RoleVoter;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -34,7 +36,6 @@ import org.springframework.security.config.annotation.web.configurers.Expression
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.web.access.expression.WebExpressionVoter;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import java.util.Arrays;
@@ -48,13 +49,15 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         return PasswordEncoderFactories.createDelegatingPasswordEncoder();
     }
 
-    private final SecurityProperties securityProperties;
     private final AuditLogAsyncRecorderService auditLogAsyncRecorderService;
-    private final EndpointRbacCacheService endpointRbacCacheService;
+    private final RequestSecurityEnvelopeService requestSecurityEnvelopeService;
     private final JwtProperties jwtProperties;
     private final LoginSecurityService loginSecurityService;
     private final AttackEventAsyncRecorderService attackEventAsyncRecorderService;
     private final PacketFingerprintService packetFingerprintService;
+    private final UserAgentClassifierService userAgentClassifierService;
+    private final RequestBodyCaptureService requestBodyCaptureService;
+    private final UserPermissionCacheService userPermissionCacheService;
 
     @Bean
     public JwtAuthorizationFilter jwtAuthorizationFilter() {
@@ -71,14 +74,20 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         return new ThreatDetectionFilter();
     }
 
+    @Bean
+    public ConcurrencyLimitFilter concurrencyLimitFilter() {
+        return new ConcurrencyLimitFilter();
+    }
+
     @Bean
     public RequestUserContextFilter requestUserContextFilter() {
         return new RequestUserContextFilter();
     }
 
     @Bean
-    public PacketFingerprintFilter packetFingerprintFilter(PacketFingerprintService packetFingerprintService) {
-        return new PacketFingerprintFilter(packetFingerprintService);
+    public PacketFingerprintFilter packetFingerprintFilter(PacketFingerprintService packetFingerprintService,
+                                                           RequestBodyCaptureService requestBodyCaptureService) {
+        return new PacketFingerprintFilter(packetFingerprintService, requestBodyCaptureService);
     }
 
     @Bean
@@ -88,16 +97,19 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public AuditTrailFilter auditTrailFilter(AuditLogAsyncRecorderService auditLogAsyncRecorderService,
-                                             EndpointRbacCacheService endpointRbacCacheService) {
-        return new AuditTrailFilter(auditLogAsyncRecorderService, endpointRbacCacheService);
+                                             RequestSecurityEnvelopeService requestSecurityEnvelopeService,
+                                             RequestBodyCaptureService requestBodyCaptureService) {
+        return new AuditTrailFilter(auditLogAsyncRecorderService, requestSecurityEnvelopeService, requestBodyCaptureService);
     }
 
     @Bean
     public CustomAuthenticationFilter customAuthenticationFilter(JwtProperties jwtProperties,
                                                                  LoginSecurityService loginSecurityService,
                                                                  AttackEventAsyncRecorderService attackEventAsyncRecorderService,
-                                                                 PacketFingerprintService packetFingerprintService) throws Exception {
-        return new CustomAuthenticationFilter(authenticationManager(), jwtProperties, loginSecurityService, attackEventAsyncRecorderService, packetFingerprintService);
+                                                                 PacketFingerprintService packetFingerprintService,
+                                                                 UserAgentClassifierService userAgentClassifierService,
+                                                                 UserPermissionCacheService userPermissionCacheService) throws Exception {
+        return new CustomAuthenticationFilter(authenticationManager(), jwtProperties, loginSecurityService, attackEventAsyncRecorderService, packetFingerprintService, userAgentClassifierService, userPermissionCacheService);
     }
 
     @Bean
@@ -116,41 +128,43 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         return new ServiceCallVoter();
     }
 
+    @Bean
+    public CompiledAuthorizationVoter compiledAuthorizationVoter() {
+        return new CompiledAuthorizationVoter(requestSecurityEnvelopeService);
+    }
+
 
     @Autowired
-    public SecurityConfig(SecurityProperties securityProperties,
-                          AuditLogAsyncRecorderService auditLogAsyncRecorderService,
-                          EndpointRbacCacheService endpointRbacCacheService,
+    public SecurityConfig(AuditLogAsyncRecorderService auditLogAsyncRecorderService,
+                          RequestSecurityEnvelopeService requestSecurityEnvelopeService,
                           JwtProperties jwtProperties,
                           LoginSecurityService loginSecurityService,
                           AttackEventAsyncRecorderService attackEventAsyncRecorderService,
-                          PacketFingerprintService packetFingerprintService) {
-        this.securityProperties = securityProperties;
+                          PacketFingerprintService packetFingerprintService,
+                          UserAgentClassifierService userAgentClassifierService,
+                          RequestBodyCaptureService requestBodyCaptureService,
+                          UserPermissionCacheService userPermissionCacheService) {
         this.auditLogAsyncRecorderService = auditLogAsyncRecorderService;
-        this.endpointRbacCacheService = endpointRbacCacheService;
+        this.requestSecurityEnvelopeService = requestSecurityEnvelopeService;
         this.jwtProperties = jwtProperties;
         this.loginSecurityService = loginSecurityService;
         this.attackEventAsyncRecorderService = attackEventAsyncRecorderService;
         this.packetFingerprintService = packetFingerprintService;
+        this.userAgentClassifierService = userAgentClassifierService;
+        this.requestBodyCaptureService = requestBodyCaptureService;
+        this.userPermissionCacheService = userPermissionCacheService;
     }
 
     // 直接配置 AccessDecisionManager
     @Bean
     @Primary
-    public AccessDecisionManager accessDecisionManager(WebExpressionVoter webExpressionVoter) {
+    public AccessDecisionManager accessDecisionManager() {
         return new AffirmativeBased(Arrays.asList(
-                serviceCallVoter(),       // 自定义：建议对普通用户 ABSTAIN
-                webExpressionVoter,       // ★ 必须：处理 antMatchers 等表达式
-                new RoleVoter(),          // 角色投票
-                new AuthenticatedVoter()  // 是否已认证
+                serviceCallVoter(),            // 自定义：建议对普通用户 ABSTAIN
+                compiledAuthorizationVoter()   // permit-all / role-based / 接口RBAC 编译后的单一决策
         ));
     }
 
-    @Bean
-    public WebExpressionVoter webExpressionVoter() {
-        return new WebExpressionVoter();
-    }
-
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         // 禁用 CSRF（前后端分离项目通常不使用基于 Cookie 的 Session 认证）
@@ -159,7 +173,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         http.cors().and();
 
         // 审计过滤器包住整条安全链，记录全局/业务/安全操作日志
-        http.addFilterBefore(auditTrailFilter(auditLogAsyncRecorderService, endpointRbacCacheService), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(auditTrailFilter(auditLogAsyncRecorderService, requestSecurityEnvelopeService, requestBodyCaptureService), UsernamePasswordAuthenticationFilter.class);
 
         // 先注册 ServicePermissionFilter，让其类在 Spring Security 过滤器顺序表中可作为锚点
         http.addFilterBefore(servicePermissionFilter(), UsernamePasswordAuthenticationFilter.class);
@@ -167,24 +181,13 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         // 异常识别过滤器（IP黑名单/频率异常/注入特征检测），放在 ServicePermissionFilter 之前
         http.addFilterBefore(threatDetectionFilter(), ServicePermissionFilter.class);
 
-        // 使用 URL 授权配置注册器统一配置所有 URL 的访问规则
+        // 自适应并发限制，放在异常识别之前，过载时优先拒绝匿名/未知接口请求
+        http.addFilterBefore(concurrencyLimitFilter(), ThreatDetectionFilter.class);
+
+        // URL 授权：permit-all / role-based 已由 AuthorizationPolicyService 编译进接口注册表的授权决策，
+        // 这里只保留一条兜底规则触发投票，实际结论由 CompiledAuthorizationVoter 一次查表给出
         ExpressionUrlAuthorizationConfigurer<HttpSecurity>.ExpressionInterceptUrlRegistry registry = http
-                .authorizeRequests().accessDecisionManager(accessDecisionManager(new WebExpressionVoter()));
-        // 1. 加入允许所有人访问的 URL
-        if (securityProperties.getPermitAll() != null) {
-            for (String url : securityProperties.getPermitAll()) {
-                registry.antMatchers(url).permitAll();
-            }
-        }
-
-        // 2. 加入基于角色限制的 URL
-        if (securityProperties.getRoleBased() != null) {
-            for (SecurityProperties.RoleMapping mapping : securityProperties.getRoleBased()) {
-                registry.antMatchers(mapping.getPattern()).hasRole(mapping.getRole());
-            }
-        }
-
-        // 3. 其他所有请求均需要认证
+                .authorizeRequests().accessDecisionManager(accessDecisionManager());
         registry.anyRequest().authenticated();
 
         // 禁用默认的表单登录（前后端分离项目通常使用自定义认证方式）
@@ -192,11 +195,11 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         // 设置 Session 管理为无状态，不在服务端保存 Session 信息
         http.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
         // 添加自定义认证过滤器（处理 JSON 格式的登录请求）
-        http.addFilter(customAuthenticationFilter(jwtProperties, loginSecurityService, attackEventAsyncRecorderService, packetFingerprintService));
+        http.addFilter(customAuthenticationFilter(jwtProperties, loginSecurityService, attackEventAsyncRecorderService, packetFingerprintService, userAgentClassifierService, userPermissionCacheService));
         // 添加 JWT 授权过滤器，在认证过滤器之前拦截请求，根据请求头中的 JWT Token 进行授权验证
         http.addFilterBefore(jwtAuthorizationFilter(), CustomAuthenticationFilter.class);
         // 校验请求包指纹，防重放/参数篡改
-        http.addFilterAfter(packetFingerprintFilter(packetFingerprintService), JwtAuthorizationFilter.class);
+        http.addFilterAfter(packetFingerprintFilter(packetFingerprintService, requestBodyCaptureService), JwtAuthorizationFilter.class);
         // 将登录主体写入线程上下文（供业务层/过滤器热路径读取）
         http.addFilterAfter(requestUserContextFilter(), PacketFingerprintFilter.class);
         // 基于 api_endpoints 的接口级 RBAC 快速预检（复杂表达式仍由方法级注解兜底）
@@ -0,0 +1,62 @@
+package com.ssy.config;
+
+import com.ssy.filter.support.StageTimingFilter;
+import com.ssy.service.impl.SecurityLatencyMetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.Filter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 为 Spring Security 过滤链中的本模块过滤器套上计时包装（{@link StageTimingFilter}）。
+ *
+ * 不改动 SecurityConfig 中按过滤器类型定位的注册顺序：过滤链构建完成后原位替换链中的过滤器实例。
+ * 在所有单例创建完成、Web 容器启动之前执行，此时尚无请求进入，替换是安全的。
+ */
+@Component
+public class SecurityFilterMetricsInitializer implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityFilterMetricsInitializer.class);
+
+    private static final String FILTER_PACKAGE = "com.ssy.filter.";
+
+    private final ApplicationContext applicationContext;
+    private final SecurityLatencyMetricsService metricsService;
+
+    public SecurityFilterMetricsInitializer(ApplicationContext applicationContext,
+                                            SecurityLatencyMetricsService metricsService) {
+        this.applicationContext = applicationContext;
+        this.metricsService = metricsService;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<String> stages = new ArrayList<>();
+        for (FilterChainProxy proxy : applicationContext.getBeansOfType(FilterChainProxy.class).values()) {
+            for (SecurityFilterChain chain : proxy.getFilterChains()) {
+                List<Filter> filters = chain.getFilters();
+                for (int i = 0; i < filters.size(); i++) {
+                    Filter filter = filters.get(i);
+                    if (filter instanceof StageTimingFilter || !filter.getClass().getName().startsWith(FILTER_PACKAGE)) {
+                        continue;
+                    }
+                    String stage = filter.getClass().getSimpleName();
+                    try {
+                        filters.set(i, new StageTimingFilter(filter, metricsService.registerStage(stage), metricsService));
+                        stages.add(stage);
+                    } catch (UnsupportedOperationException e) {
+                        log.warn("安全过滤链不可修改，跳过分阶段耗时统计: {}", stage);
+                    }
+                }
+            }
+        }
+        log.info("安全过滤链分阶段耗时统计已挂载: {}", stages);
+    }
+}
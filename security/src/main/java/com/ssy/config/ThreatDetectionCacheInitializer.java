@@ -2,7 +2,9 @@ package com.ssy.config;
 
 import com.ssy.properties.ThreatDetectionProperties;
 import com.ssy.service.impl.EndpointThreatCacheService;
+import com.ssy.service.impl.EndpointTrafficBaselineService;
 import com.ssy.service.impl.IpAccessControlService;
+import com.ssy.service.impl.ThreatSignatureRuleService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationListener;
@@ -19,13 +21,19 @@ public class ThreatDetectionCacheInitializer implements ApplicationListener<Appl
     private final ThreatDetectionProperties properties;
     private final EndpointThreatCacheService endpointThreatCacheService;
     private final IpAccessControlService ipAccessControlService;
+    private final ThreatSignatureRuleService threatSignatureRuleService;
+    private final EndpointTrafficBaselineService endpointTrafficBaselineService;
 
     public ThreatDetectionCacheInitializer(ThreatDetectionProperties properties,
                                            EndpointThreatCacheService endpointThreatCacheService,
-                                           IpAccessControlService ipAccessControlService) {
+                                           IpAccessControlService ipAccessControlService,
+                                           ThreatSignatureRuleService threatSignatureRuleService,
+                                           EndpointTrafficBaselineService endpointTrafficBaselineService) {
         this.properties = properties;
         this.endpointThreatCacheService = endpointThreatCacheService;
         this.ipAccessControlService = ipAccessControlService;
+        this.threatSignatureRuleService = threatSignatureRuleService;
+        this.endpointTrafficBaselineService = endpointTrafficBaselineService;
     }
 
     @Override
@@ -36,12 +44,16 @@ public class ThreatDetectionCacheInitializer implements ApplicationListener<Appl
         }
 
         long start = System.currentTimeMillis();
+        // 先恢复已持久化的基线（同时驻留接口下标），再装载接口缓存
+        endpointTrafficBaselineService.restore();
         endpointThreatCacheService.refresh();
         ipAccessControlService.refreshCaches();
-        log.info("异常识别缓存初始化完成: endpointCacheSize={}, blacklistSize={}, whitelistSize={}, cost={}ms",
+        threatSignatureRuleService.refresh();
+        log.info("异常识别缓存初始化完成: endpointCacheSize={}, blacklistSize={}, whitelistSize={}, customRules={}, cost={}ms",
                 endpointThreatCacheService.size(),
                 ipAccessControlService.blacklistSize(),
                 ipAccessControlService.whitelistSize(),
+                threatSignatureRuleService.customRuleCount(),
                 (System.currentTimeMillis() - start));
     }
 }
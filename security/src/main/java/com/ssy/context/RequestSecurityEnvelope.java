@@ -0,0 +1,128 @@
+package com.ssy.context;
+
+import com.ssy.security.AuthorizationDecision;
+import com.ssy.service.impl.EndpointRbacCacheService;
+import com.ssy.service.impl.EndpointThreatCacheService;
+import com.ssy.utils.IpAddress;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * 请求级安全信封：客户端IP、规范化路径、接口匹配结果、授权决策、放行分类。
+ * 由链路中第一个需要它的过滤器计算一次并挂在 request attribute 上，后续过滤器只读复用。
+ */
+public class RequestSecurityEnvelope {
+
+    public static final String REQUEST_ATTR = "REQUEST_SECURITY_ENVELOPE";
+
+    /**
+     * 放行分类：PREFLIGHT 为 CORS 预检，STATIC_RESOURCE 为静态资源/文档页
+     */
+    public enum BypassType {
+        NONE,
+        PREFLIGHT,
+        STATIC_RESOURCE
+    }
+
+    private final String clientIp;
+    private final IpAddress clientAddress;
+    private final String method;
+    private final String requestUri;
+    private final String canonicalPath;
+    private final int pathFlags;
+    private final BypassType bypassType;
+    private final EndpointThreatCacheService.EndpointThreatRule threatRule;
+    private final EndpointRbacCacheService.EndpointAccessRule accessRule;
+    private final AuthorizationDecision authorizationDecision;
+
+    public RequestSecurityEnvelope(String clientIp,
+                                   IpAddress clientAddress,
+                                   String method,
+                                   String requestUri,
+                                   String canonicalPath,
+                                   int pathFlags,
+                                   BypassType bypassType,
+                                   EndpointThreatCacheService.EndpointThreatRule threatRule,
+                                   EndpointRbacCacheService.EndpointAccessRule accessRule,
+                                   AuthorizationDecision authorizationDecision) {
+        this.clientIp = clientIp;
+        this.clientAddress = clientAddress;
+        this.method = method;
+        this.requestUri = requestUri;
+        this.canonicalPath = canonicalPath;
+        this.pathFlags = pathFlags;
+        this.bypassType = bypassType;
+        this.threatRule = threatRule;
+        this.accessRule = accessRule;
+        this.authorizationDecision = authorizationDecision;
+    }
+
+    /**
+     * 读取已计算的信封；尚未计算时返回 null。
+     */
+    public static RequestSecurityEnvelope from(ServletRequest request) {
+        Object value = request.getAttribute(REQUEST_ATTR);
+        return value instanceof RequestSecurityEnvelope ? (RequestSecurityEnvelope) value : null;
+    }
+
+    public String getClientIp() {
+        return clientIp;
+    }
+
+    /**
+     * 已解析的客户端地址，供黑白名单前缀树直接按位匹配；无法解析时为 null
+     */
+    public IpAddress getClientAddress() {
+        return clientAddress;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRequestUri() {
+        return requestUri;
+    }
+
+    public String getCanonicalPath() {
+        return canonicalPath;
+    }
+
+    /**
+     * 路径规范化过程中的可疑特征标记，见 {@link com.ssy.utils.RequestPathCanonicalizer} 的 FLAG_* 常量
+     */
+    public int getPathFlags() {
+        return pathFlags;
+    }
+
+    public boolean hasPathFlag(int flag) {
+        return (pathFlags & flag) != 0;
+    }
+
+    public BypassType getBypassType() {
+        return bypassType;
+    }
+
+    public boolean isPreflight() {
+        return bypassType == BypassType.PREFLIGHT;
+    }
+
+    public boolean isStaticResource() {
+        return bypassType == BypassType.STATIC_RESOURCE;
+    }
+
+    public EndpointThreatCacheService.EndpointThreatRule getThreatRule() {
+        return threatRule;
+    }
+
+    public EndpointRbacCacheService.EndpointAccessRule getAccessRule() {
+        return accessRule;
+    }
+
+    /**
+     * 本请求的完整授权决策（静态策略已按规范化路径补全），不会为 null
+     */
+    public AuthorizationDecision getAuthorizationDecision() {
+        return authorizationDecision;
+    }
+}
@@ -1,12 +1,15 @@
 package com.ssy.context;
 
+import com.ssy.utils.PermissionMask;
+
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * 当前请求线程内的用户上下文（用户端/服务端调用均可承载）。
- * 热路径只读，角色与权限预先转为 Set 方便 O(1) 判断。
+ * 热路径只读，角色与权限预先转为 Set 方便 O(1) 判断；
+ * 来自权限快照的请求另带权限位图，接口级权限判断按位图求交。
  */
 public class RequestUserContext {
 
@@ -21,6 +24,7 @@ public class RequestUserContext {
     private final String clientIp;
     private final Set<String> roles;
     private final Set<String> permissions;
+    private final PermissionMask permissionMask;
 
     private RequestUserContext(Builder builder) {
         this.authenticated = builder.authenticated;
@@ -34,6 +38,7 @@ public class RequestUserContext {
         this.clientIp = builder.clientIp;
         this.roles = freezeUpperCase(builder.roles);
         this.permissions = freeze(builder.permissions);
+        this.permissionMask = builder.permissionMask;
     }
 
     public boolean isAuthenticated() {
@@ -80,6 +85,13 @@ public class RequestUserContext {
         return permissions;
     }
 
+    /**
+     * 权限位图，未携带时为 null（此时按权限编码集合判断）
+     */
+    public PermissionMask getPermissionMask() {
+        return permissionMask;
+    }
+
     public boolean hasRole(String roleCode) {
         if (roleCode == null || roleCode.trim().isEmpty()) {
             return false;
@@ -110,7 +122,8 @@ public class RequestUserContext {
                 .requestUri(this.requestUri)
                 .clientIp(this.clientIp)
                 .roles(this.roles)
-                .permissions(this.permissions);
+                .permissions(this.permissions)
+                .permissionMask(this.permissionMask);
     }
 
     public static Builder builder() {
@@ -154,6 +167,7 @@ public class RequestUserContext {
         private String clientIp;
         private Set<String> roles = new LinkedHashSet<>();
         private Set<String> permissions = new LinkedHashSet<>();
+        private PermissionMask permissionMask;
 
         public Builder authenticated(boolean authenticated) {
             this.authenticated = authenticated;
@@ -212,8 +226,12 @@ public class RequestUserContext {
             return this;
         }
 
+        /**
+         * 重设权限编码会同时清除权限位图，避免两者不一致；需要位图时在此之后调用 {@link #permissionMask(PermissionMask)}
+         */
         public Builder permissions(Iterable<String> permissions) {
             this.permissions.clear();
+            this.permissionMask = null;
             if (permissions != null) {
                 for (String permission : permissions) {
                     if (permission != null && !permission.trim().isEmpty()) {
@@ -224,6 +242,11 @@ public class RequestUserContext {
             return this;
         }
 
+        public Builder permissionMask(PermissionMask permissionMask) {
+            this.permissionMask = permissionMask;
+            return this;
+        }
+
         public RequestUserContext build() {
             return new RequestUserContext(this);
         }
@@ -130,6 +130,7 @@ public class ApiEndpointController {
             endpoint.setId(id);
             endpoint.setDescription(updateDTO.getDescription());
             endpoint.setThreatMonitorEnabled(updateDTO.getThreatMonitorEnabled());
+            endpoint.setResponseLeakScanEnabled(updateDTO.getResponseLeakScanEnabled());
             endpoint.setRequireAuth(updateDTO.getRequireAuth());
             endpoint.setModuleGroup(updateDTO.getModuleGroup());
             endpoint.setStatus(updateDTO.getStatus());
@@ -201,6 +202,7 @@ public class ApiEndpointController {
     public static class ApiEndpointUpdateDTO {
         private String description;
         private Integer threatMonitorEnabled;
+        private Integer responseLeakScanEnabled;
         private Integer requireAuth;
         private String moduleGroup;
         private Integer status;
@@ -231,6 +233,14 @@ public class ApiEndpointController {
             this.threatMonitorEnabled = threatMonitorEnabled;
         }
 
+        public Integer getResponseLeakScanEnabled() {
+            return responseLeakScanEnabled;
+        }
+
+        public void setResponseLeakScanEnabled(Integer responseLeakScanEnabled) {
+            this.responseLeakScanEnabled = responseLeakScanEnabled;
+        }
+
         public String getModuleGroup() {
             return moduleGroup;
         }
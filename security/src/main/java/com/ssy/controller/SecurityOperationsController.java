@@ -6,11 +6,15 @@ import com.ssy.properties.AuditLogProperties;
 import com.ssy.properties.ThreatDetectionProperties;
 import com.ssy.service.impl.AuditFieldDiffRecorderService;
 import com.ssy.service.impl.AuditLogService;
+import com.ssy.service.impl.AdaptiveConcurrencyLimiterService;
+import com.ssy.service.impl.SecurityLatencyMetricsService;
 import com.ssy.service.impl.ThreatRuntimeConfigService;
 import com.ssy.mapper.UserMapper;
 import com.ssy.dto.UserEntity;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -30,19 +34,25 @@ public class SecurityOperationsController {
     private final ThreatRuntimeConfigService threatRuntimeConfigService;
     private final AuditFieldDiffRecorderService auditFieldDiffRecorderService;
     private final UserMapper userMapper;
+    private final SecurityLatencyMetricsService securityLatencyMetricsService;
+    private final AdaptiveConcurrencyLimiterService adaptiveConcurrencyLimiterService;
 
     public SecurityOperationsController(ThreatDetectionProperties threatDetectionProperties,
                                         AuditLogProperties auditLogProperties,
                                         AuditLogService auditLogService,
                                         ThreatRuntimeConfigService threatRuntimeConfigService,
                                         AuditFieldDiffRecorderService auditFieldDiffRecorderService,
-                                        UserMapper userMapper) {
+                                        UserMapper userMapper,
+                                        SecurityLatencyMetricsService securityLatencyMetricsService,
+                                        AdaptiveConcurrencyLimiterService adaptiveConcurrencyLimiterService) {
         this.threatDetectionProperties = threatDetectionProperties;
         this.auditLogProperties = auditLogProperties;
         this.auditLogService = auditLogService;
         this.threatRuntimeConfigService = threatRuntimeConfigService;
         this.auditFieldDiffRecorderService = auditFieldDiffRecorderService;
         this.userMapper = userMapper;
+        this.securityLatencyMetricsService = securityLatencyMetricsService;
+        this.adaptiveConcurrencyLimiterService = adaptiveConcurrencyLimiterService;
     }
 
     @ApiOperation("获取安全配置概览")
@@ -115,6 +125,32 @@ public class SecurityOperationsController {
         return Result.success(auditLogService.queryLogs(category, page, size, keyword));
     }
 
+    @ApiOperation("安全过滤链分阶段耗时（p50/p99/p999，单位微秒）及并发限制状态")
+    @GetMapping("/metrics")
+    @PreAuthorize("hasAuthority('security:settings:read') or hasAuthority('threat:admin:read')")
+    public Result<Map<String, Object>> getFilterMetrics() {
+        Map<String, Object> result = securityLatencyMetricsService.snapshot();
+        result.put("concurrency", adaptiveConcurrencyLimiterService.snapshotStats());
+        return Result.success(result);
+    }
+
+    @ApiOperation("安全过滤链分阶段耗时（Prometheus 文本格式）")
+    @GetMapping(value = "/metrics", params = "format=prometheus")
+    @PreAuthorize("hasAuthority('security:settings:read') or hasAuthority('threat:admin:read')")
+    public ResponseEntity<String> getFilterMetricsPrometheus() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8"))
+                .body(securityLatencyMetricsService.renderPrometheus() + adaptiveConcurrencyLimiterService.renderPrometheus());
+    }
+
+    @ApiOperation("重置安全过滤链耗时统计")
+    @PostMapping("/metrics/reset")
+    @PreAuthorize("hasAuthority('threat:admin:manage')")
+    public Result<Void> resetFilterMetrics() {
+        securityLatencyMetricsService.reset();
+        return Result.success();
+    }
+
     @ApiOperation("分页查询被禁用用户")
     @GetMapping("/banned-users/page")
     @PreAuthorize("hasAuthority('security:settings:read') or hasAuthority('iam:user:read')")
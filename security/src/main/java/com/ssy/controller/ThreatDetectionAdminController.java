@@ -2,17 +2,32 @@ package com.ssy.controller;
 
 import com.common.result.Result;
 import com.ssy.dto.UserEntity;
+import com.ssy.filter.support.ThreatRuleMode;
 import com.ssy.mapper.ApiEndpointMapper;
 import com.ssy.entity.SecurityAttackEventEntity;
 import com.ssy.entity.SecurityIpBlacklistEntity;
 import com.ssy.entity.SecurityIpWhitelistEntity;
+import com.ssy.entity.SecurityThreatRuleEntity;
 import com.ssy.mapper.SecurityAttackEventMapper;
 import com.ssy.mapper.SecurityIpBlacklistMapper;
 import com.ssy.mapper.SecurityIpWhitelistMapper;
+import com.ssy.service.impl.AttackEventAggregationService;
 import com.ssy.service.impl.AuditFieldDiffRecorderService;
 import com.ssy.service.impl.EndpointThreatCacheService;
+import com.ssy.service.impl.EndpointTrafficBaselineService;
+import com.ssy.service.impl.HeavyHitterTrackerService;
+import com.ssy.service.impl.HorizontalProbeTrackerService;
 import com.ssy.service.impl.IpAccessControlService;
+import com.ssy.service.impl.RequestBodyCaptureService;
+import com.ssy.service.impl.ResponseLeakScanService;
+import com.ssy.service.impl.SlowClientGuardService;
+import com.ssy.service.impl.ThreatRuleRegistryService;
+import com.ssy.service.impl.ThreatSignatureRuleService;
+import com.ssy.service.impl.UserAgentClassifierService;
+import com.ssy.service.impl.UserPermissionCacheService;
+import com.ssy.service.impl.VerifiedTokenCacheService;
 import com.ssy.utils.AttackTypeLabelUtils;
+import com.ssy.utils.IpPrefixTrie;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -41,6 +56,18 @@ public class ThreatDetectionAdminController {
     private final IpAccessControlService ipAccessControlService;
     private final EndpointThreatCacheService endpointThreatCacheService;
     private final AuditFieldDiffRecorderService auditFieldDiffRecorderService;
+    private final AttackEventAggregationService attackEventAggregationService;
+    private final HeavyHitterTrackerService heavyHitterTrackerService;
+    private final ThreatRuleRegistryService threatRuleRegistryService;
+    private final ThreatSignatureRuleService threatSignatureRuleService;
+    private final HorizontalProbeTrackerService horizontalProbeTrackerService;
+    private final EndpointTrafficBaselineService endpointTrafficBaselineService;
+    private final UserAgentClassifierService userAgentClassifierService;
+    private final RequestBodyCaptureService requestBodyCaptureService;
+    private final ResponseLeakScanService responseLeakScanService;
+    private final SlowClientGuardService slowClientGuardService;
+    private final VerifiedTokenCacheService verifiedTokenCacheService;
+    private final UserPermissionCacheService userPermissionCacheService;
 
     public ThreatDetectionAdminController(SecurityAttackEventMapper securityAttackEventMapper,
                                           SecurityIpBlacklistMapper securityIpBlacklistMapper,
@@ -48,7 +75,19 @@ public class ThreatDetectionAdminController {
                                           ApiEndpointMapper apiEndpointMapper,
                                           IpAccessControlService ipAccessControlService,
                                           EndpointThreatCacheService endpointThreatCacheService,
-                                          AuditFieldDiffRecorderService auditFieldDiffRecorderService) {
+                                          AuditFieldDiffRecorderService auditFieldDiffRecorderService,
+                                          AttackEventAggregationService attackEventAggregationService,
+                                          HeavyHitterTrackerService heavyHitterTrackerService,
+                                          ThreatRuleRegistryService threatRuleRegistryService,
+                                          ThreatSignatureRuleService threatSignatureRuleService,
+                                          HorizontalProbeTrackerService horizontalProbeTrackerService,
+                                          EndpointTrafficBaselineService endpointTrafficBaselineService,
+                                          UserAgentClassifierService userAgentClassifierService,
+                                          RequestBodyCaptureService requestBodyCaptureService,
+                                          ResponseLeakScanService responseLeakScanService,
+                                          SlowClientGuardService slowClientGuardService,
+                                          VerifiedTokenCacheService verifiedTokenCacheService,
+                                          UserPermissionCacheService userPermissionCacheService) {
         this.securityAttackEventMapper = securityAttackEventMapper;
         this.securityIpBlacklistMapper = securityIpBlacklistMapper;
         this.securityIpWhitelistMapper = securityIpWhitelistMapper;
@@ -56,6 +95,18 @@ public class ThreatDetectionAdminController {
         this.ipAccessControlService = ipAccessControlService;
         this.endpointThreatCacheService = endpointThreatCacheService;
         this.auditFieldDiffRecorderService = auditFieldDiffRecorderService;
+        this.attackEventAggregationService = attackEventAggregationService;
+        this.heavyHitterTrackerService = heavyHitterTrackerService;
+        this.threatRuleRegistryService = threatRuleRegistryService;
+        this.threatSignatureRuleService = threatSignatureRuleService;
+        this.horizontalProbeTrackerService = horizontalProbeTrackerService;
+        this.endpointTrafficBaselineService = endpointTrafficBaselineService;
+        this.userAgentClassifierService = userAgentClassifierService;
+        this.requestBodyCaptureService = requestBodyCaptureService;
+        this.responseLeakScanService = responseLeakScanService;
+        this.slowClientGuardService = slowClientGuardService;
+        this.verifiedTokenCacheService = verifiedTokenCacheService;
+        this.userPermissionCacheService = userPermissionCacheService;
     }
 
     @ApiOperation("获取异常识别缓存状态")
@@ -63,8 +114,21 @@ public class ThreatDetectionAdminController {
     public Result<Map<String, Object>> stats() {
         Map<String, Object> stats = new HashMap<>();
         stats.put("endpointCacheSize", endpointThreatCacheService.size());
+        stats.put("endpointRegistry", endpointThreatCacheService.snapshotStats());
         stats.put("blacklistCacheSize", ipAccessControlService.blacklistSize());
         stats.put("whitelistCacheSize", ipAccessControlService.whitelistSize());
+        stats.put("customRuleCount", threatSignatureRuleService.customRuleCount());
+        stats.put("eventAggregation", attackEventAggregationService.snapshotStats());
+        stats.put("rateLimiter", ipAccessControlService.rateLimiterStats());
+        stats.put("heavyHitters", heavyHitterTrackerService.snapshotStats());
+        stats.put("horizontalProbe", horizontalProbeTrackerService.snapshotStats());
+        stats.put("endpointBaseline", endpointTrafficBaselineService.snapshotStats());
+        stats.put("userAgentCache", userAgentClassifierService.snapshotStats());
+        stats.put("bodyCapture", requestBodyCaptureService.snapshotStats());
+        stats.put("responseLeakScan", responseLeakScanService.snapshotStats());
+        stats.put("slowClientGuard", slowClientGuardService.snapshotStats());
+        stats.put("verifiedTokenCache", verifiedTokenCacheService.snapshotStats());
+        stats.put("userPermissionCache", userPermissionCacheService.snapshotStats());
         return Result.success(stats);
     }
 
@@ -142,6 +206,9 @@ public class ThreatDetectionAdminController {
         if (dto == null || dto.getIp() == null || dto.getIp().trim().isEmpty()) {
             return Result.error("IP不能为空");
         }
+        if (!IpPrefixTrie.isValidIpOrCidr(dto.getIp())) {
+            return Result.error("IP或CIDR格式非法");
+        }
         int expireSeconds = dto.getExpireSeconds() == null ? 3600 : Math.max(dto.getExpireSeconds(), 0);
         String reason = dto.getReason() == null || dto.getReason().trim().isEmpty() ? "管理员手动拉黑" : dto.getReason().trim();
         SecurityIpBlacklistEntity before = securityIpBlacklistMapper.selectRecent(1000).stream()
@@ -216,6 +283,9 @@ public class ThreatDetectionAdminController {
         if (dto == null || dto.getIpOrCidr() == null || dto.getIpOrCidr().trim().isEmpty()) {
             return Result.error("白名单IP或CIDR不能为空");
         }
+        if (!IpPrefixTrie.isValidIpOrCidr(dto.getIpOrCidr())) {
+            return Result.error("白名单IP或CIDR格式非法");
+        }
         SecurityIpWhitelistEntity before = securityIpWhitelistMapper.selectRecent(1000).stream()
                 .filter(item -> dto.getIpOrCidr().trim().equals(item.getIpOrCidr()))
                 .findFirst().orElse(null);
@@ -284,10 +354,122 @@ public class ThreatDetectionAdminController {
                 dto.getThreatMonitorEnabled(),
                 LocalDateTime.now()
         );
-        endpointThreatCacheService.refresh();
+        endpointThreatCacheService.refreshDelta();
+        return Result.success("批量更新完成，影响 " + affected + " 条接口记录");
+    }
+
+    @ApiOperation("按模块批量开关接口响应体泄露扫描")
+    @PreAuthorize("hasAuthority('threat:admin:manage')")
+    @PostMapping("/endpoint-leak-scan/module-toggle")
+    public Result<String> batchToggleModuleLeakScan(@RequestBody ModuleLeakScanToggleDTO dto) {
+        if (dto == null || dto.getModuleGroup() == null || dto.getModuleGroup().trim().isEmpty()) {
+            return Result.error("模块分组不能为空");
+        }
+        if (dto.getResponseLeakScanEnabled() == null || (dto.getResponseLeakScanEnabled() != 0 && dto.getResponseLeakScanEnabled() != 1)) {
+            return Result.error("responseLeakScanEnabled 只能是 0 或 1");
+        }
+
+        int affected = apiEndpointMapper.updateResponseLeakScanByModule(
+                dto.getModuleGroup().trim(),
+                dto.getResponseLeakScanEnabled(),
+                LocalDateTime.now()
+        );
+        endpointThreatCacheService.refreshDelta();
         return Result.success("批量更新完成，影响 " + affected + " 条接口记录");
     }
 
+    @ApiOperation("获取检测规则运行模式与性能计数")
+    @GetMapping("/rules/stats")
+    public Result<Map<String, Object>> ruleStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("rules", threatRuleRegistryService.snapshotStats());
+        stats.put("signatureScan", threatRuleRegistryService.engineScanStats());
+        return Result.success(stats);
+    }
+
+    @ApiOperation("切换检测规则运行模式（ENFORCE/SHADOW/OFF）")
+    @PreAuthorize("hasAuthority('threat:admin:manage')")
+    @PutMapping("/rules/{ruleId}/mode")
+    public Result<String> updateRuleMode(@PathVariable String ruleId, @RequestParam String mode) {
+        if (!threatRuleRegistryService.isKnownRule(ruleId)) {
+            return Result.error("未知的检测规则: " + ruleId);
+        }
+        ThreatRuleMode ruleMode = ThreatRuleMode.parse(mode);
+        if (ruleMode == null) {
+            return Result.error("mode 只能是 ENFORCE、SHADOW 或 OFF");
+        }
+        threatRuleRegistryService.setMode(ruleId, ruleMode);
+        threatSignatureRuleService.persistMode(ruleId, ruleMode);
+        return Result.success("规则模式已更新");
+    }
+
+    @ApiOperation("重置检测规则性能计数")
+    @PreAuthorize("hasAuthority('threat:admin:manage')")
+    @PostMapping("/rules/stats/reset")
+    public Result<String> resetRuleStats() {
+        threatRuleRegistryService.resetCounters();
+        return Result.success("规则计数已重置");
+    }
+
+    @ApiOperation("查询自定义威胁特征规则")
+    @GetMapping("/rules/custom")
+    public Result<List<SecurityThreatRuleEntity>> customRules() {
+        return Result.success(threatSignatureRuleService.listRules());
+    }
+
+    @ApiOperation("新增或更新自定义威胁特征规则（按规则编码覆盖，保存后立即生效）")
+    @PreAuthorize("hasAuthority('threat:admin:manage')")
+    @PostMapping("/rules/custom")
+    public Result<SecurityThreatRuleEntity> saveCustomRule(@RequestBody SecurityThreatRuleEntity rule) {
+        if (rule == null || rule.getRuleCode() == null || rule.getRuleCode().trim().isEmpty()) {
+            return Result.error("规则编码不能为空");
+        }
+        SecurityThreatRuleEntity before = threatSignatureRuleService.findRule(rule.getRuleCode().trim().toUpperCase());
+        SecurityThreatRuleEntity after;
+        try {
+            after = threatSignatureRuleService.saveRule(rule);
+        } catch (IllegalArgumentException e) {
+            return Result.error(e.getMessage());
+        }
+        auditFieldDiffRecorderService.recordSecurityDiff(
+                "THREAT_DETECTION",
+                "SAVE_THREAT_RULE",
+                "THREAT_RULE",
+                after == null ? rule.getRuleCode() : after.getRuleCode(),
+                before,
+                after
+        );
+        return Result.success(after);
+    }
+
+    @ApiOperation("停用自定义威胁特征规则")
+    @PreAuthorize("hasAuthority('threat:admin:manage')")
+    @DeleteMapping("/rules/custom/{ruleCode}")
+    public Result<String> disableCustomRule(@PathVariable String ruleCode) {
+        SecurityThreatRuleEntity before = threatSignatureRuleService.findRule(ruleCode);
+        if (before == null) {
+            return Result.error("规则不存在: " + ruleCode);
+        }
+        threatSignatureRuleService.disableRule(ruleCode);
+        auditFieldDiffRecorderService.recordSecurityDiff(
+                "THREAT_DETECTION",
+                "DISABLE_THREAT_RULE",
+                "THREAT_RULE",
+                ruleCode,
+                before,
+                threatSignatureRuleService.findRule(ruleCode)
+        );
+        return Result.success("规则已停用");
+    }
+
+    @ApiOperation("重新加载自定义威胁特征规则")
+    @PreAuthorize("hasAuthority('threat:admin:manage')")
+    @PostMapping("/rules/custom/reload")
+    public Result<String> reloadCustomRules() {
+        threatSignatureRuleService.refresh();
+        return Result.success("已加载 " + threatSignatureRuleService.customRuleCount() + " 条自定义规则");
+    }
+
     private LocalDateTime parseDateTime(String value) {
         if (value == null || value.trim().isEmpty()) {
             return null;
@@ -377,6 +559,27 @@ public class ThreatDetectionAdminController {
         }
     }
 
+    public static class ModuleLeakScanToggleDTO {
+        private String moduleGroup;
+        private Integer responseLeakScanEnabled;
+
+        public String getModuleGroup() {
+            return moduleGroup;
+        }
+
+        public void setModuleGroup(String moduleGroup) {
+            this.moduleGroup = moduleGroup;
+        }
+
+        public Integer getResponseLeakScanEnabled() {
+            return responseLeakScanEnabled;
+        }
+
+        public void setResponseLeakScanEnabled(Integer responseLeakScanEnabled) {
+            this.responseLeakScanEnabled = responseLeakScanEnabled;
+        }
+    }
+
     public static class PageResult<T> {
         private List<T> records;
         private long total;
@@ -1,16 +1,18 @@
 package com.ssy.details;
 
 import com.ssy.dto.UserEntity;
+import com.ssy.utils.PermissionMask;
 import lombok.Data;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * TODO
@@ -23,18 +25,47 @@ import java.util.stream.Collectors;
 @Data
 public class CustomUserDetails implements UserDetails {
     private final UserEntity user;
+    private final List<GrantedAuthority> authorities;
+    private final PermissionMask permissionMask;
 
     public CustomUserDetails(UserEntity user) {
         this.user = user;
+        this.authorities = buildAuthorities(user.getRoles(), user.getPermissions(), user.getAuthorities());
+        this.permissionMask = null;
+    }
+
+    /**
+     * 由用户权限快照构建：权限列表与权限位图均已在快照加载时预先生成，请求期直接复用
+     */
+    public CustomUserDetails(UserEntity user, List<GrantedAuthority> authorities, PermissionMask permissionMask) {
+        this.user = user;
+        this.authorities = authorities;
+        this.permissionMask = permissionMask;
     }
 
     // 这里返回用户对应的权限列表
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    /**
+     * 用户权限位图；来自旧 Token 声明、未经权限快照构建时为 null
+     */
+    public PermissionMask getPermissionMask() {
+        return permissionMask;
+    }
+
+    /**
+     * 合并角色（补 ROLE_ 前缀）与权限编码为不可变的权限列表
+     */
+    public static List<GrantedAuthority> buildAuthorities(Collection<String> roles,
+                                                          Collection<String> permissions,
+                                                          Collection<String> legacyAuthorities) {
         Set<String> merged = new LinkedHashSet<>();
 
-        if (user.getRoles() != null) {
-            for (String role : user.getRoles()) {
+        if (roles != null) {
+            for (String role : roles) {
                 if (role == null || role.trim().isEmpty()) {
                     continue;
                 }
@@ -46,8 +77,8 @@ public class CustomUserDetails implements UserDetails {
             }
         }
 
-        if (user.getPermissions() != null) {
-            for (String perm : user.getPermissions()) {
+        if (permissions != null) {
+            for (String perm : permissions) {
                 if (perm == null || perm.trim().isEmpty()) {
                     continue;
                 }
@@ -56,8 +87,8 @@ public class CustomUserDetails implements UserDetails {
         }
 
         // 极少数旧数据兼容回退
-        if (merged.isEmpty() && user.getAuthorities() != null) {
-            for (String auth : user.getAuthorities()) {
+        if (merged.isEmpty() && legacyAuthorities != null) {
+            for (String auth : legacyAuthorities) {
                 if (auth == null || auth.trim().isEmpty()) {
                     continue;
                 }
@@ -73,7 +104,11 @@ public class CustomUserDetails implements UserDetails {
             return Collections.emptyList();
         }
 
-        return merged.stream().map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+        List<GrantedAuthority> authorities = new ArrayList<>(merged.size());
+        for (String authority : merged) {
+            authorities.add(new SimpleGrantedAuthority(authority));
+        }
+        return Collections.unmodifiableList(authorities);
     }
 
     @Override
@@ -40,6 +40,9 @@ public class ApiEndpointEntity {
     /** 异常识别监控开关 (0-白名单直通, 1-启用监控) */
     private Integer threatMonitorEnabled;
 
+    /** 响应体泄露扫描开关 (0-关闭, 1-开启) */
+    private Integer responseLeakScanEnabled;
+
     /** 是否需要认证 (0-不需要, 1-需要) */
     private Integer requireAuth;
 
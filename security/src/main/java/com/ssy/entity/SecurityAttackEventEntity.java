@@ -29,6 +29,7 @@ public class SecurityAttackEventEntity {
     private String requestBodySample;
     private String requestBodyHash;
     private Integer riskScore;
+    private Integer hitCount;
     private String blockAction;
     private String blockReason;
     private String suggestedAction;
@@ -0,0 +1,14 @@
+package com.ssy.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class SecurityEndpointBaselineEntity {
+    private Long endpointId;
+    private Double meanRate;
+    private Double rateVariance;
+    private Long sampleCount;
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,25 @@
+package com.ssy.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class SecurityThreatRuleEntity {
+    private Long id;
+    private String ruleCode;
+    private String ruleName;
+    private String target;
+    private String matcherType;
+    private String expression;
+    private String anchors;
+    private Integer riskScore;
+    private String action;
+    private Integer httpStatus;
+    private String reason;
+    private String suggestedAction;
+    private String mode;
+    private Integer status;
+    private LocalDateTime createTime;
+    private LocalDateTime updateTime;
+}
@@ -2,14 +2,16 @@ package com.ssy.filter;
 
 import com.alibaba.fastjson.JSON;
 import com.ssy.context.AuditTraceContext;
+import com.ssy.context.RequestSecurityEnvelope;
 import com.ssy.context.RequestUserContext;
 import com.ssy.entity.AuditLogRecordEntity;
+import com.ssy.filter.support.CachedBodyHttpServletRequest;
 import com.ssy.holder.AuditTraceContextHolder;
 import com.ssy.service.impl.AuditLogAsyncRecorderService;
 import com.ssy.service.impl.EndpointRbacCacheService;
-import org.springframework.util.StreamUtils;
+import com.ssy.service.impl.RequestBodyCaptureService;
+import com.ssy.service.impl.RequestSecurityEnvelopeService;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.util.ContentCachingRequestWrapper;
 import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import javax.servlet.FilterChain;
@@ -42,26 +44,27 @@ public class AuditTrailFilter extends OncePerRequestFilter {
             "权限", "安全", "审计", "威胁", "认证", "鉴权", "登录", "授权", "封禁", "黑名单", "白名单"
     ));
 
+    /**
+     * 审计请求体样本：最多解码前 8000 字节，保留前 2000 个字符
+     */
+    private static final int BODY_SAMPLE_BYTES = 8000;
+    private static final int BODY_SAMPLE_CHARS = 2000;
+
     private final AuditLogAsyncRecorderService auditLogAsyncRecorderService;
-    private final EndpointRbacCacheService endpointRbacCacheService;
+    private final RequestSecurityEnvelopeService requestSecurityEnvelopeService;
+    private final RequestBodyCaptureService requestBodyCaptureService;
 
     public AuditTrailFilter(AuditLogAsyncRecorderService auditLogAsyncRecorderService,
-                            EndpointRbacCacheService endpointRbacCacheService) {
+                            RequestSecurityEnvelopeService requestSecurityEnvelopeService,
+                            RequestBodyCaptureService requestBodyCaptureService) {
         this.auditLogAsyncRecorderService = auditLogAsyncRecorderService;
-        this.endpointRbacCacheService = endpointRbacCacheService;
+        this.requestSecurityEnvelopeService = requestSecurityEnvelopeService;
+        this.requestBodyCaptureService = requestBodyCaptureService;
     }
 
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
-        String uri = request.getRequestURI();
-        return uri == null
-                || uri.startsWith("/css/")
-                || uri.startsWith("/js/")
-                || uri.startsWith("/webjars/")
-                || uri.startsWith("/swagger")
-                || uri.startsWith("/v2/api-docs")
-                || uri.startsWith("/v3/api-docs")
-                || uri.startsWith("/favicon");
+        return request.getRequestURI() == null || requestSecurityEnvelopeService.resolve(request).isStaticResource();
     }
 
     @Override
@@ -70,17 +73,28 @@ public class AuditTrailFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
         long start = System.currentTimeMillis();
         String traceId = UUID.randomUUID().toString().replace("-", "");
-        ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request);
+        HttpServletRequest requestToUse = request;
         ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
-        AuditTraceContext traceContext = buildTraceContext(requestWrapper, traceId);
+        AuditTraceContext traceContext = buildTraceContext(request, traceId);
         AuditTraceContextHolder.set(traceContext);
+        // 优先复用异常识别阶段已捕获的请求体；未捕获时自行捕获文本请求体，由本过滤器负责释放
+        CachedBodyHttpServletRequest capturedBody = CachedBodyHttpServletRequest.find(request);
+        CachedBodyHttpServletRequest ownedBody = null;
         try {
-            filterChain.doFilter(requestWrapper, responseWrapper);
+            if (capturedBody == null && requestBodyCaptureService.isTextualBody(request)) {
+                ownedBody = requestBodyCaptureService.capture(request);
+                capturedBody = ownedBody;
+                requestToUse = ownedBody;
+            }
+            filterChain.doFilter(requestToUse, responseWrapper);
         } finally {
-            enrichTraceSamples(traceContext, requestWrapper, responseWrapper);
-            recordAudit(requestWrapper, responseWrapper, traceId, System.currentTimeMillis() - start, traceContext);
+            enrichTraceSamples(traceContext, capturedBody, responseWrapper);
+            recordAudit(requestToUse, responseWrapper, traceId, System.currentTimeMillis() - start, traceContext, capturedBody);
             responseWrapper.copyBodyToResponse();
             AuditTraceContextHolder.clear();
+            if (ownedBody != null) {
+                ownedBody.release();
+            }
         }
     }
 
@@ -89,8 +103,9 @@ public class AuditTrailFilter extends OncePerRequestFilter {
         context.setTraceId(traceId);
         context.setRequestMethod(request.getMethod());
         context.setRequestUri(request.getRequestURI());
-        context.setClientIp(resolveClientIp(request));
-        EndpointRbacCacheService.EndpointAccessRule rule = endpointRbacCacheService.match(request.getMethod(), request.getRequestURI());
+        RequestSecurityEnvelope envelope = requestSecurityEnvelopeService.resolve(request);
+        context.setClientIp(envelope.getClientIp());
+        EndpointRbacCacheService.EndpointAccessRule rule = envelope.getAccessRule();
         if (rule != null) {
             context.setEndpointId(rule.getEndpointId());
             context.setModuleGroup(rule.getModuleGroup());
@@ -101,16 +116,17 @@ public class AuditTrailFilter extends OncePerRequestFilter {
     }
 
     private void enrichTraceSamples(AuditTraceContext context,
-                                    ContentCachingRequestWrapper request,
+                                    CachedBodyHttpServletRequest capturedBody,
                                     ContentCachingResponseWrapper response) {
         if (context == null) {
             return;
         }
-        context.setRequestBodySample(extractBodySample(request.getContentAsByteArray(), request.getCharacterEncoding()));
+        context.setRequestBodySample(capturedBody == null ? null : trimSample(capturedBody.getCachedBodyAsString(BODY_SAMPLE_BYTES)));
         context.setResponseBodySample(extractBodySample(response.getContentAsByteArray(), response.getCharacterEncoding()));
     }
 
-    private void recordAudit(HttpServletRequest request, HttpServletResponse response, String traceId, long costMs, AuditTraceContext traceContext) {
+    private void recordAudit(HttpServletRequest request, HttpServletResponse response, String traceId, long costMs,
+                             AuditTraceContext traceContext, CachedBodyHttpServletRequest capturedBody) {
         String uri = request.getRequestURI();
         if (uri == null) {
             return;
@@ -133,7 +149,7 @@ public class AuditTrailFilter extends OncePerRequestFilter {
         entity.setDetailText("status=" + responseCode + ", costMs=" + costMs);
         entity.setRequestMethod(method);
         entity.setRequestUri(uri);
-        entity.setClientIp(resolveClientIp(request));
+        entity.setClientIp(requestSecurityEnvelopeService.resolveClientIp(request));
         entity.setResponseCode(responseCode);
         entity.setTraceId(traceId);
         entity.setExtJson(JSON.toJSONString(traceContext));
@@ -149,7 +165,7 @@ public class AuditTrailFilter extends OncePerRequestFilter {
             entity.setLoginType(context.getLoginType());
         } else {
             // 登录请求在认证完成前没有 RequestUserContext，从请求体提取用户名
-            resolveLoginUsername(request, entity);
+            resolveLoginUsername(request, capturedBody, entity);
         }
         auditLogAsyncRecorderService.record(entity);
     }
@@ -160,17 +176,19 @@ public class AuditTrailFilter extends OncePerRequestFilter {
         }
         try {
             String charset = encoding == null ? StandardCharsets.UTF_8.name() : encoding;
-            String text = new String(bytes, charset);
-            return text.length() <= 2000 ? text : text.substring(0, 2000);
+            return trimSample(new String(bytes, charset));
         } catch (Exception ignored) {
-            try {
-                return StreamUtils.copyToString(new java.io.ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
-            } catch (IOException ex) {
-                return null;
-            }
+            return trimSample(new String(bytes, StandardCharsets.UTF_8));
         }
     }
 
+    private String trimSample(String text) {
+        if (text == null) {
+            return null;
+        }
+        return text.length() <= BODY_SAMPLE_CHARS ? text : text.substring(0, BODY_SAMPLE_CHARS);
+    }
+
     /**
      * 动态分类策略（自动匹配 api_endpoints 表，新增接口无需改代码）：
      *
@@ -215,22 +233,21 @@ public class AuditTrailFilter extends OncePerRequestFilter {
     /**
      * 登录请求特殊处理：从缓存的请求体中提取 username。
      * /login 和 /login-admin 由 Spring Security Filter 处理，在认证完成前没有用户上下文，
-     * 但 ContentCachingRequestWrapper 已缓存了请求体，可安全读取。
+     * 但请求体已被统一捕获，可安全读取。
      */
-    private void resolveLoginUsername(HttpServletRequest request, AuditLogRecordEntity entity) {
+    private void resolveLoginUsername(HttpServletRequest request, CachedBodyHttpServletRequest capturedBody, AuditLogRecordEntity entity) {
         String uri = request.getRequestURI();
         if (uri == null || !uri.startsWith("/login")) {
             return;
         }
-        if (!(request instanceof ContentCachingRequestWrapper)) {
+        if (capturedBody == null || !capturedBody.isComplete()) {
             return;
         }
-        byte[] body = ((ContentCachingRequestWrapper) request).getContentAsByteArray();
-        if (body == null || body.length == 0) {
+        String bodyStr = capturedBody.getCachedBodyAsString(capturedBody.getCapturedLength());
+        if (bodyStr == null) {
             return;
         }
         try {
-            String bodyStr = new String(body, StandardCharsets.UTF_8);
             com.alibaba.fastjson.JSONObject json = JSON.parseObject(bodyStr);
             if (json != null) {
                 String username = json.getString("username");
@@ -265,17 +282,4 @@ public class AuditTrailFilter extends OncePerRequestFilter {
     private String buildOperationName(String method, String uri) {
         return method + " " + uri;
     }
-
-    private String resolveClientIp(HttpServletRequest request) {
-        String xff = request.getHeader("X-Forwarded-For");
-        if (xff != null && !xff.trim().isEmpty()) {
-            int comma = xff.indexOf(',');
-            return (comma >= 0 ? xff.substring(0, comma) : xff).trim();
-        }
-        String xri = request.getHeader("X-Real-IP");
-        if (xri != null && !xri.trim().isEmpty()) {
-            return xri.trim();
-        }
-        return request.getRemoteAddr();
-    }
 }
@@ -0,0 +1,106 @@
+package com.ssy.filter;
+
+import com.alibaba.fastjson.JSON;
+import com.common.result.Result;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.ssy.context.RequestSecurityEnvelope;
+import com.ssy.service.ServiceTokenService;
+import com.ssy.service.impl.AdaptiveConcurrencyLimiterService;
+import com.ssy.service.impl.RequestSecurityEnvelopeService;
+import com.ssy.service.impl.VerifiedTokenCacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 过载保护：位于整条安全链最前面，按自适应并发上限准入请求，超出时直接返回 503 + Retry-After，
+ * 不再让请求堆积在审计、鉴权等依赖数据库的环节里一起超时。
+ *
+ * 优先级按校验过的凭据判定，不看请求头形态：
+ * - 高优先级：Token 通过 VerifiedTokenCacheService 校验的用户请求（结果缓存，JwtAuthorizationFilter 直接复用），
+ *   以及 Token 经 ServiceTokenService.isIssuedTo 确认签发给该 appid 的 X-Service-Call 服务调用（不访问数据库）；
+ * - 低优先级：其余请求，包括匿名请求、凭据校验失败的请求和未纳入 api_endpoints 的接口，
+ *   只能占用并发上限的一部分，过载时最先被拒绝。
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String SERVICE_CALL_HEADER = "X-Service-Call";
+    private static final String APP_ID_HEADER = "appid";
+    private static final String TOKEN_HEADER = "Authorization";
+    private static final String TOKEN_PREFIX = "Bearer ";
+
+    private static final byte[] OVERLOAD_RESPONSE_BYTES = JSON.toJSONString(
+            Result.error("服务繁忙，请稍后重试", HttpServletResponse.SC_SERVICE_UNAVAILABLE)).getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private AdaptiveConcurrencyLimiterService adaptiveConcurrencyLimiterService;
+    @Autowired
+    private RequestSecurityEnvelopeService requestSecurityEnvelopeService;
+    @Autowired
+    private VerifiedTokenCacheService verifiedTokenCacheService;
+    @Autowired
+    private ServiceTokenService serviceTokenService;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!adaptiveConcurrencyLimiterService.isEnabled()) {
+            return true;
+        }
+        RequestSecurityEnvelope envelope = requestSecurityEnvelopeService.resolve(request);
+        return envelope.isPreflight() || envelope.isStaticResource();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean highPriority = isHighPriority(request, requestSecurityEnvelopeService.resolve(request));
+        if (!adaptiveConcurrencyLimiterService.tryAcquire(highPriority)) {
+            writeOverloadResponse(response);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            adaptiveConcurrencyLimiterService.release(start);
+        }
+    }
+
+    private boolean isHighPriority(HttpServletRequest request, RequestSecurityEnvelope envelope) {
+        if (envelope.getThreatRule() == null) {
+            return false;
+        }
+        String authorization = request.getHeader(TOKEN_HEADER);
+        if (authorization == null || !authorization.startsWith(TOKEN_PREFIX)
+                || authorization.length() == TOKEN_PREFIX.length()) {
+            return false;
+        }
+        String token = authorization.substring(TOKEN_PREFIX.length());
+        if ("true".equals(request.getHeader(SERVICE_CALL_HEADER))) {
+            return serviceTokenService.isIssuedTo(token, request.getHeader(APP_ID_HEADER));
+        }
+        try {
+            return verifiedTokenCacheService.verify(token).getSubject() != null;
+        } catch (JWTVerificationException e) {
+            return false;
+        }
+    }
+
+    private void writeOverloadResponse(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", String.valueOf(adaptiveConcurrencyLimiterService.retryAfterSeconds()));
+        response.setContentType("application/json;charset=UTF-8");
+        response.setContentLength(OVERLOAD_RESPONSE_BYTES.length);
+        ServletOutputStream outputStream = response.getOutputStream();
+        outputStream.write(OVERLOAD_RESPONSE_BYTES);
+        outputStream.flush();
+    }
+}
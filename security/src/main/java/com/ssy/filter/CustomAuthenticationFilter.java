@@ -5,6 +5,7 @@ import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ssy.constant.LoginRequest;
+import com.ssy.context.RequestSecurityEnvelope;
 import com.ssy.details.CustomUserDetails;
 import com.ssy.dto.UserEntity;
 import com.ssy.entity.HttpMessage;
@@ -15,6 +16,8 @@ import com.ssy.properties.JwtProperties;
 import com.ssy.service.impl.AttackEventAsyncRecorderService;
 import com.ssy.service.impl.LoginSecurityService;
 import com.ssy.service.impl.PacketFingerprintService;
+import com.ssy.service.impl.UserAgentClassifierService;
+import com.ssy.service.impl.UserPermissionCacheService;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -36,12 +39,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFilter {
 
@@ -53,18 +53,24 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
     private final LoginSecurityService loginSecurityService;
     private final AttackEventAsyncRecorderService attackEventAsyncRecorderService;
     private final PacketFingerprintService packetFingerprintService;
+    private final UserAgentClassifierService userAgentClassifierService;
+    private final UserPermissionCacheService userPermissionCacheService;
 
     public CustomAuthenticationFilter(AuthenticationManager authenticationManager,
                                       JwtProperties jwtProperties,
                                       LoginSecurityService loginSecurityService,
                                       AttackEventAsyncRecorderService attackEventAsyncRecorderService,
-                                      PacketFingerprintService packetFingerprintService) {
+                                      PacketFingerprintService packetFingerprintService,
+                                      UserAgentClassifierService userAgentClassifierService,
+                                      UserPermissionCacheService userPermissionCacheService) {
         super(authenticationManager);
         this.authenticationManager = authenticationManager;
         this.jwtProperties = jwtProperties;
         this.loginSecurityService = loginSecurityService;
         this.attackEventAsyncRecorderService = attackEventAsyncRecorderService;
         this.packetFingerprintService = packetFingerprintService;
+        this.userAgentClassifierService = userAgentClassifierService;
+        this.userPermissionCacheService = userPermissionCacheService;
 
         OrRequestMatcher orMatcher = new OrRequestMatcher(
                 new AntPathRequestMatcher("/login", "POST"),
@@ -118,23 +124,11 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
                 request.getHeader("User-Agent")
         );
 
-        Collection<String> roleCodes = userDetailsUser.getRoles() == null ? Collections.emptyList() : userDetailsUser.getRoles();
-        Collection<String> permissionCodes = userDetailsUser.getPermissions() == null ? Collections.emptyList() : userDetailsUser.getPermissions();
-
-        String rolesClaim = roleCodes.stream()
-                .filter(x -> x != null && !x.trim().isEmpty())
-                .map(String::trim)
-                .collect(Collectors.joining(","));
-        String permissionsClaim = permissionCodes.stream()
-                .filter(x -> x != null && !x.trim().isEmpty())
-                .map(String::trim)
-                .collect(Collectors.joining(","));
-
+        // Token 只携带 userId 与签发时的权限版本，角色/权限以服务端权限快照为准（见 UserPermissionCacheService）
         String token = JWT.create()
                 .withSubject(userDetails.getUsername())
-                .withClaim("roles", rolesClaim)
-                .withClaim("permissions", permissionsClaim)
                 .withClaim("userId", userDetails.getUser().getUserId())
+                .withClaim("permEpoch", userPermissionCacheService.currentEpoch(userDetailsUser.getUserId()))
                 .withClaim("status", userDetails.getUser().getStatus())
                 .withClaim("loginType", loginType)
                 .withExpiresAt(new Date(System.currentTimeMillis() + jwtProperties.getTtl()))
@@ -260,6 +254,11 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
     }
 
     private String resolveClientIp(HttpServletRequest request) {
+        // 优先复用前置过滤器已计算的请求信封
+        RequestSecurityEnvelope envelope = RequestSecurityEnvelope.from(request);
+        if (envelope != null) {
+            return envelope.getClientIp();
+        }
         String xff = request.getHeader("X-Forwarded-For");
         if (StringUtils.hasText(xff)) {
             int comma = xff.indexOf(',');
@@ -273,28 +272,11 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
     }
 
     private String resolveClientTool(String userAgent) {
-        if (!StringUtils.hasText(userAgent)) {
-            return "UNKNOWN";
-        }
-        String normalized = userAgent.toLowerCase();
-        if (normalized.contains("sqlmap")) {
-            return "SQLMAP";
-        }
-        if (normalized.contains("curl")) {
-            return "CURL";
-        }
-        if (normalized.contains("python-requests")) {
-            return "PYTHON_REQUESTS";
-        }
-        if (normalized.contains("mozilla")) {
-            return "BROWSER";
-        }
-        return "UNKNOWN";
+        return userAgentClassifierService.classify(userAgent).getTool();
     }
 
     private Integer resolveBrowserTrusted(String userAgent, String browserFingerprint) {
-        boolean browserLike = StringUtils.hasText(userAgent) && userAgent.toLowerCase().contains("mozilla");
-        if (!browserLike) {
+        if (!userAgentClassifierService.classify(userAgent).isBrowserLike()) {
             return 0;
         }
         // 原判断要求指纹长度 >= 16，但前端旧版 hashString 输出最多 9 字符（fp_ + 6位base36），
@@ -7,11 +7,12 @@ import com.ssy.entity.HttpStatus;
 import com.ssy.entity.Result;
 import com.ssy.entity.SecurityAttackEventEntity;
 import com.ssy.holder.RequestUserContextHolder;
-import com.ssy.properties.SecurityProperties;
+import com.ssy.security.AuthorizationDecision;
 import com.ssy.service.impl.AttackEventAsyncRecorderService;
-import com.ssy.service.impl.EndpointRbacCacheService;
-import com.ssy.service.impl.EndpointRbacCacheService.EndpointAccessRule;
+import com.ssy.service.impl.HorizontalProbeTrackerService;
+import com.ssy.service.impl.RequestSecurityEnvelopeService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -21,30 +22,25 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.LinkedHashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * 基于 api_endpoints + sys_permission_endpoint_rel 的接口级 RBAC 鉴权前置过滤器。
- * 热路径只做内存匹配与 permission Set contains 判断。
+ * 热路径只读取请求安全信封上已编译的 {@link AuthorizationDecision} 做一次判定，
+ * 结论写入请求属性，URL 授权投票器直接复用，不再重复匹配 antMatchers。
  */
 public class EndpointRbacAuthorizationFilter extends OncePerRequestFilter {
 
     private static final String SERVICE_CALL_HEADER = "X-Service-Call";
     private static final Pattern RESOURCE_ID_PATTERN = Pattern.compile("/([0-9]{1,20}|[0-9a-fA-F\\-]{8,})");
-    private static final int HORIZONTAL_PROBE_THRESHOLD = 4;
-    private static final Map<String, EnumerationWindow> ENUMERATION_CACHE = new ConcurrentHashMap<>();
 
     @Autowired
-    private EndpointRbacCacheService endpointRbacCacheService;
-    @Autowired(required = false)
-    private SecurityProperties securityProperties;
+    private RequestSecurityEnvelopeService requestSecurityEnvelopeService;
     @Autowired
     private AttackEventAsyncRecorderService attackEventAsyncRecorderService;
+    @Autowired
+    private HorizontalProbeTrackerService horizontalProbeTrackerService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -62,65 +58,33 @@ public class EndpointRbacAuthorizationFilter extends OncePerRequestFilter {
             return;
         }
 
-        EndpointAccessRule rule = endpointRbacCacheService.match(request.getMethod(), request.getRequestURI());
-        if (rule == null) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        // 禁用接口直接拦截（只针对已纳入 api_endpoints 的记录）
-        if (rule.getStatus() != 1) {
-            writeError(response, HttpStatus.FORBIDDEN, "接口已禁用");
-            return;
-        }
-
+        AuthorizationDecision decision = requestSecurityEnvelopeService.resolve(request).getAuthorizationDecision();
         RequestUserContext context = RequestUserContextHolder.get();
-        boolean authenticated = context != null && context.isAuthenticated() && !context.isServiceCall();
-
-        if (rule.isRequireAuth() && !authenticated) {
-            writeError(response, HttpStatus.NOT_LOGIN, HttpMessage.NO_TOKEN);
-            return;
-        }
+        AuthorizationDecision.Verdict verdict = decision.decide(context, SecurityContextHolder.getContext().getAuthentication());
+        request.setAttribute(AuthorizationDecision.VERDICT_ATTR, verdict);
 
-        if (rule.hasOnlyDisabledPermissionBindings()) {
-            writeError(response, HttpStatus.FORBIDDEN, "权限已被停用");
-            return;
-        }
-
-        // 未绑定权限：仅执行 require_auth 规则（是否需要登录）
-        if (!rule.hasPermissionBindings()) {
-            if (isStrictUnboundDenyEnabled() && rule.isRequireAuth()) {
+        switch (verdict) {
+            // 禁用接口直接拦截（只针对已纳入 api_endpoints 的记录）
+            case ENDPOINT_DISABLED:
+                writeError(response, HttpStatus.FORBIDDEN, "接口已禁用");
+                return;
+            case LOGIN_REQUIRED:
+                writeError(response, HttpStatus.NOT_LOGIN, HttpMessage.NO_TOKEN);
+                return;
+            case PERMISSION_DISABLED:
+                writeError(response, HttpStatus.FORBIDDEN, "权限已被停用");
+                return;
+            case UNBOUND_DENIED:
                 writeError(response, HttpStatus.FORBIDDEN, "接口未绑定权限，严格模式已拒绝访问");
                 return;
-            }
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        if (!authenticated) {
-            writeError(response, HttpStatus.NOT_LOGIN, HttpMessage.NO_TOKEN);
-            return;
-        }
-
-        if (matchesAnyPermission(rule, context)) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        recordPrivilegeProbe(request, context);
-        writeError(response, HttpStatus.FORBIDDEN, "权限不足，缺少接口访问权限");
-    }
-
-    private boolean matchesAnyPermission(EndpointAccessRule rule, RequestUserContext context) {
-        if (context == null) {
-            return false;
-        }
-        for (String permissionCode : rule.getPermissionCodes()) {
-            if (context.hasPermission(permissionCode)) {
-                return true;
-            }
+            case PERMISSION_DENIED:
+                recordPrivilegeProbe(request, context);
+                writeError(response, HttpStatus.FORBIDDEN, "权限不足，缺少接口访问权限");
+                return;
+            default:
+                // 放行；角色/登录类拒绝交由 URL 授权投票器按原有方式返回
+                filterChain.doFilter(request, response);
         }
-        return false;
     }
 
     private void writeError(HttpServletResponse response, int status, String msg) throws IOException {
@@ -159,9 +123,7 @@ public class EndpointRbacAuthorizationFilter extends OncePerRequestFilter {
         }
         String resourceId = matcher.group(1);
         String template = matcher.replaceAll("/{id}");
-        String key = context.getUserId() + "#" + template;
-        EnumerationWindow window = ENUMERATION_CACHE.computeIfAbsent(key, ignored -> new EnumerationWindow());
-        if (window.record(resourceId)) {
+        if (horizontalProbeTrackerService.recordAndCheck(context.getUserId(), template, resourceId)) {
             return "HORIZONTAL_PRIVILEGE_ESCALATION";
         }
         return null;
@@ -179,27 +141,4 @@ public class EndpointRbacAuthorizationFilter extends OncePerRequestFilter {
                 || normalized.startsWith("/audit-center")
                 || normalized.startsWith("/security-center");
     }
-
-    private boolean isStrictUnboundDenyEnabled() {
-        if (securityProperties == null || securityProperties.getEndpointRbac() == null) {
-            return false;
-        }
-        Boolean enabled = securityProperties.getEndpointRbac().getStrictUnboundPermissionDeny();
-        return enabled != null && enabled;
-    }
-
-    private static class EnumerationWindow {
-        private long windowStart;
-        private final Set<String> resourceIds = new LinkedHashSet<>();
-
-        synchronized boolean record(String resourceId) {
-            long now = System.currentTimeMillis();
-            if (windowStart == 0L || now - windowStart > 60_000L) {
-                windowStart = now;
-                resourceIds.clear();
-            }
-            resourceIds.add(resourceId);
-            return resourceIds.size() >= HORIZONTAL_PROBE_THRESHOLD;
-        }
-    }
 }
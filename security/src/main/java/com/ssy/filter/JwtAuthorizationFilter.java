@@ -1,27 +1,25 @@
 package com.ssy.filter;
 
 import com.alibaba.fastjson.JSON;
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.AlgorithmMismatchException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.exceptions.SignatureVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
-import com.auth0.jwt.interfaces.DecodedJWT;
 import com.ssy.details.CustomUserDetails;
 import com.ssy.dto.UserEntity;
 import com.ssy.entity.HttpMessage;
 import com.ssy.entity.HttpStatus;
 import com.ssy.entity.Result;
 import com.ssy.properties.JwtProperties;
-import com.ssy.properties.SecurityProperties;
+import com.ssy.service.impl.RequestSecurityEnvelopeService;
 import com.ssy.service.impl.UserPermissionCacheService;
 import com.ssy.service.impl.UserPermissionCacheService.UserAuthSnapshot;
+import com.ssy.service.impl.VerifiedTokenCacheService;
+import com.ssy.service.impl.VerifiedTokenCacheService.VerifiedToken;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import javax.servlet.FilterChain;
@@ -29,17 +27,21 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 @Order(2)
 public class JwtAuthorizationFilter extends OncePerRequestFilter {
+
+    /**
+     * Token 签发后用户权限已变更时在响应中标记，前端可据此重新登录换取新 Token
+     */
+    private static final String PERMISSION_STALE_HEADER = "X-Permission-Stale";
+
     @Autowired
     JwtProperties jwtProperties;
     @Autowired
-    SecurityProperties securityProperties;
-    @Autowired(required = false)
+    RequestSecurityEnvelopeService requestSecurityEnvelopeService;
+    @Autowired
+    VerifiedTokenCacheService verifiedTokenCacheService;
+    @Autowired
     UserPermissionCacheService userPermissionCacheService;
 
     @Override
@@ -52,7 +54,7 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
         System.out.println("requestURI" + requestURI);
 
         // 1. 如果在白名单中，直接放行
-        if (isPermitAll(requestURI)) {
+        if (isPermitAll(request)) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -74,59 +76,40 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
         // 去掉前缀，获取实际的 Token
         String token = header.replace(jwtProperties.getHeadBase(), "");
         try {
-            // 验证 Token 合法性
-            DecodedJWT decodedJWT = JWT.require(Algorithm.HMAC256(jwtProperties.getSecretKey().getBytes()))
-                    .build()
-                    .verify(token);
-            String subject = decodedJWT.getSubject();
+            // 验证 Token 合法性（共用验证器；同一 Token 的重复请求直接取缓存的解析结果）
+            VerifiedToken verifiedToken = verifiedTokenCacheService.verify(token);
+            String subject = verifiedToken.getSubject();
             if (subject != null) {
 
                 // 从Token中提取用户信息，构建CustomUserDetails
-                Long userId = decodedJWT.getClaim("userId").asLong();
-                Integer status = decodedJWT.getClaim("status").asInt();
-                String loginType = decodedJWT.getClaim("loginType").asString();
-                String rolesClaim = decodedJWT.getClaim("roles").asString();
-                String permissionsClaim = decodedJWT.getClaim("permissions").asString();
-                // 兼容极少数旧token（可逐步移除）
-                String authoritiesClaim = decodedJWT.getClaim("authorities").asString();
+                Long userId = verifiedToken.getUserId();
+                Integer status = verifiedToken.getStatus();
 
                 // 构建UserEntity
                 UserEntity user = new UserEntity();
                 user.setUserId(userId != null ? userId : 0L); // 提供默认值避免null
                 user.setUsername(subject);
                 user.setStatus(status != null ? status : 0);
-                user.setLoginType(loginType);
+                user.setLoginType(verifiedToken.getLoginType());
 
-
-                if (rolesClaim != null && !rolesClaim.isEmpty()) {
-                    List<String> roles = Arrays.stream(rolesClaim.split(","))
-                            .map(String::trim)
-                            .filter(s -> !s.isEmpty())
-                            .collect(Collectors.toList());
-                    user.setRoles(roles);
+                if (!verifiedToken.getRoles().isEmpty()) {
+                    user.setRoles(verifiedToken.getRoles());
                 }
 
-                if (permissionsClaim != null && !permissionsClaim.isEmpty()) {
-                    List<String> permissions = Arrays.stream(permissionsClaim.split(","))
-                            .map(String::trim)
-                            .filter(s -> !s.isEmpty())
-                            .collect(Collectors.toList());
-                    user.setPermissions(permissions);
+                if (!verifiedToken.getPermissions().isEmpty()) {
+                    user.setPermissions(verifiedToken.getPermissions());
                 }
 
-                if ((user.getRoles() == null || user.getRoles().isEmpty())
-                        && (user.getPermissions() == null || user.getPermissions().isEmpty())
-                        && authoritiesClaim != null && !authoritiesClaim.isEmpty()) {
-                    List<String> authorities = Arrays.stream(authoritiesClaim.split(","))
-                            .map(String::trim)
-                            .filter(s -> !s.isEmpty())
-                            .collect(Collectors.toList());
-                    user.setAuthorities(authorities);
+                // 兼容极少数旧token（可逐步移除）
+                if (verifiedToken.getRoles().isEmpty() && verifiedToken.getPermissions().isEmpty()
+                        && !verifiedToken.getAuthorities().isEmpty()) {
+                    user.setAuthorities(verifiedToken.getAuthorities());
                 }
 
                 // 单体项目场景：以本地RBAC缓存为准，避免角色/权限变更后必须等待旧token过期
-                if (userId != null && userPermissionCacheService != null) {
-                    UserAuthSnapshot snapshot = userPermissionCacheService.getUserSnapshot(userId);
+                UserAuthSnapshot snapshot = null;
+                if (userId != null) {
+                    snapshot = userPermissionCacheService.getUserSnapshot(userId);
                     if (snapshot == null || !snapshot.exists()) {
                         writeUnauthorizedResponse(response);
                         return;
@@ -139,12 +122,22 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
                     if (snapshot.getUsername() != null && !snapshot.getUsername().trim().isEmpty()) {
                         user.setUsername(snapshot.getUsername());
                     }
-                    user.setRoles(new java.util.ArrayList<>(snapshot.getRoles()));
-                    user.setPermissions(new java.util.ArrayList<>(snapshot.getPermissions()));
+                    // 快照集合不可变且请求内只读，直接共用，不再逐请求复制
+                    user.setRoles(snapshot.getRoles());
+                    user.setPermissions(snapshot.getPermissions());
+
+                    // 权限版本比对：Token 签发后发生过角色/权限变更（快照已按新版本重新加载）
+                    Long permEpoch = verifiedToken.getPermEpoch();
+                    if (permEpoch != null && permEpoch < snapshot.getEpoch()) {
+                        response.setHeader(PERMISSION_STALE_HEADER, "true");
+                    }
                 }
 
-                // 创建CustomUserDetails
-                CustomUserDetails userDetails = new CustomUserDetails(user);
+                // 创建CustomUserDetails（有权限快照时直接复用快照上预先生成的权限列表与权限位图；
+                // 快照无任何角色/权限时仍走旧数据兼容回退）
+                CustomUserDetails userDetails = snapshot != null && !snapshot.getAuthorities().isEmpty()
+                        ? new CustomUserDetails(user, snapshot.getAuthorities(), snapshot.getPermissionMask())
+                        : new CustomUserDetails(user);
 
                 UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
@@ -172,11 +165,11 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
-    private boolean isPermitAll(String requestURI) {
-        List<String> permitAllList = securityProperties.getPermitAll();
-        return permitAllList.stream().anyMatch(pattern ->
-
-        new AntPathMatcher().match(pattern, requestURI));
+    /**
+     * 白名单判定直接读取请求安全信封上已编译的授权决策，不再逐条构造 AntPathMatcher
+     */
+    private boolean isPermitAll(HttpServletRequest request) {
+        return requestSecurityEnvelopeService.resolve(request).getAuthorizationDecision().isPublic();
     }
 
     private void writeUnauthorizedResponse(HttpServletResponse response) throws IOException {
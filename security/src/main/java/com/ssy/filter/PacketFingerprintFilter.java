@@ -4,6 +4,7 @@ import com.alibaba.fastjson.JSON;
 import com.ssy.entity.Result;
 import com.ssy.filter.support.CachedBodyHttpServletRequest;
 import com.ssy.service.impl.PacketFingerprintService;
+import com.ssy.service.impl.RequestBodyCaptureService;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import javax.servlet.FilterChain;
@@ -19,9 +20,12 @@ public class PacketFingerprintFilter extends OncePerRequestFilter {
     private static final String HEADER_SIGNATURE = "X-Packet-Signature";
 
     private final PacketFingerprintService packetFingerprintService;
+    private final RequestBodyCaptureService requestBodyCaptureService;
 
-    public PacketFingerprintFilter(PacketFingerprintService packetFingerprintService) {
+    public PacketFingerprintFilter(PacketFingerprintService packetFingerprintService,
+                                   RequestBodyCaptureService requestBodyCaptureService) {
         this.packetFingerprintService = packetFingerprintService;
+        this.requestBodyCaptureService = requestBodyCaptureService;
     }
 
     @Override
@@ -41,14 +45,34 @@ public class PacketFingerprintFilter extends OncePerRequestFilter {
             return;
         }
 
+        // 上游已捕获请求体时直接复用，下游继续读取原请求即可回放；否则在此捕获并负责释放
         HttpServletRequest requestToUse = request;
+        CachedBodyHttpServletRequest ownedBody = null;
         String body = "";
         if (shouldCacheBody(request)) {
-            CachedBodyHttpServletRequest cachedRequest = new CachedBodyHttpServletRequest(request);
-            requestToUse = cachedRequest;
-            body = cachedRequest.getCachedBodyAsString(8192);
+            CachedBodyHttpServletRequest capturedBody = CachedBodyHttpServletRequest.find(request);
+            if (capturedBody == null) {
+                ownedBody = requestBodyCaptureService.capture(request);
+                capturedBody = ownedBody;
+                requestToUse = ownedBody;
+            }
+            body = capturedBody.getCachedBodyAsString(RequestBodyCaptureService.FINGERPRINT_BODY_BYTES);
         }
+        try {
+            verifyAndContinue(request, requestToUse, response, filterChain, authorization, body);
+        } finally {
+            if (ownedBody != null) {
+                ownedBody.release();
+            }
+        }
+    }
 
+    private void verifyAndContinue(HttpServletRequest request,
+                                   HttpServletRequest requestToUse,
+                                   HttpServletResponse response,
+                                   FilterChain filterChain,
+                                   String authorization,
+                                   String body) throws ServletException, IOException {
         String pathWithQuery = request.getRequestURI();
         if (request.getQueryString() != null && !request.getQueryString().isEmpty()) {
             pathWithQuery += "?" + request.getQueryString();
@@ -4,6 +4,8 @@ import com.ssy.context.RequestUserContext;
 import com.ssy.details.CustomUserDetails;
 import com.ssy.dto.UserEntity;
 import com.ssy.holder.RequestUserContextHolder;
+import com.ssy.service.impl.RequestSecurityEnvelopeService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -25,6 +27,9 @@ public class RequestUserContextFilter extends OncePerRequestFilter {
 
     public static final String REQUEST_USER_CONTEXT_ATTR = "REQUEST_USER_CONTEXT";
 
+    @Autowired
+    private RequestSecurityEnvelopeService requestSecurityEnvelopeService;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -48,7 +53,7 @@ public class RequestUserContextFilter extends OncePerRequestFilter {
         RequestUserContext.Builder builder = RequestUserContext.builder()
                 .requestMethod(request.getMethod())
                 .requestUri(request.getRequestURI())
-                .clientIp(resolveClientIp(request));
+                .clientIp(requestSecurityEnvelopeService.resolveClientIp(request));
 
         if (authentication == null || !authentication.isAuthenticated()
                 || authentication instanceof AnonymousAuthenticationToken) {
@@ -57,7 +62,8 @@ public class RequestUserContextFilter extends OncePerRequestFilter {
 
         Object principal = authentication.getPrincipal();
         if (principal instanceof CustomUserDetails) {
-            UserEntity user = ((CustomUserDetails) principal).getUser();
+            CustomUserDetails userDetails = (CustomUserDetails) principal;
+            UserEntity user = userDetails.getUser();
             return builder
                     .authenticated(true)
                     .serviceCall(false)
@@ -67,6 +73,7 @@ public class RequestUserContextFilter extends OncePerRequestFilter {
                     .loginType(user.getLoginType())
                     .roles(user.getRoles())
                     .permissions(user.getPermissions())
+                    .permissionMask(userDetails.getPermissionMask())
                     .build();
         }
 
@@ -96,17 +103,4 @@ public class RequestUserContextFilter extends OncePerRequestFilter {
                 .username(principalText)
                 .build();
     }
-
-    private String resolveClientIp(HttpServletRequest request) {
-        String xff = request.getHeader("X-Forwarded-For");
-        if (xff != null && !xff.trim().isEmpty()) {
-            int comma = xff.indexOf(',');
-            return (comma >= 0 ? xff.substring(0, comma) : xff).trim();
-        }
-        String xri = request.getHeader("X-Real-IP");
-        if (xri != null && !xri.trim().isEmpty()) {
-            return xri.trim();
-        }
-        return request.getRemoteAddr();
-    }
 }
@@ -2,13 +2,32 @@ package com.ssy.filter;
 
 import com.alibaba.fastjson.JSON;
 import com.common.result.Result;
+import com.ssy.context.RequestSecurityEnvelope;
 import com.ssy.entity.SecurityAttackEventEntity;
+import com.ssy.filter.support.BodyReadGuard;
 import com.ssy.filter.support.CachedBodyHttpServletRequest;
+import com.ssy.filter.support.LeakScanningHttpServletResponse;
+import com.ssy.filter.support.ResponseLeakDetector;
+import com.ssy.filter.support.SignatureEvaluation;
+import com.ssy.filter.support.SlowClientException;
 import com.ssy.filter.support.StatusCaptureHttpServletResponse;
+import com.ssy.filter.support.StreamInspectingHttpServletRequest;
+import com.ssy.filter.support.ThreatRuleMode;
+import com.ssy.filter.support.ThreatSignatureEngine;
 import com.ssy.properties.ThreatDetectionProperties;
+import com.ssy.service.impl.AttackEventAggregationService;
 import com.ssy.service.impl.AttackEventAsyncRecorderService;
 import com.ssy.service.impl.EndpointThreatCacheService;
+import com.ssy.service.impl.GcraRateLimiter;
 import com.ssy.service.impl.IpAccessControlService;
+import com.ssy.service.impl.RequestBodyCaptureService;
+import com.ssy.service.impl.RequestSecurityEnvelopeService;
+import com.ssy.service.impl.ResponseLeakScanService;
+import com.ssy.service.impl.SlowClientGuardService;
+import com.ssy.service.impl.ThreatRuleRegistryService;
+import com.ssy.service.impl.ThreatSignatureRuleService;
+import com.ssy.service.impl.UserAgentClassifierService;
+import com.ssy.utils.RequestPathCanonicalizer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.security.core.Authentication;
@@ -18,6 +37,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -27,49 +47,49 @@ import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
  * 异常攻击识别过滤器（第一阶段实现）
  * - IP黑名单拦截
  * - 高频访问识别与自动拉黑
- * - 常见SQL注入/XSS/路径穿越/扫描探测识别
+ * - 常见SQL注入/XSS/路径穿越/扫描探测识别（多模式特征引擎单遍扫描，取风险最高的命中）
+ * - 大请求体/分块请求体在控制器读取时流式检测，命中高风险特征中断请求
+ * - 慢速客户端/超大请求防护：单IP在途请求上限，请求体读取时限/速率/大小约束，违规累计自动拉黑
+ * - 按接口开启的响应体泄露扫描（私钥、JWT、身份证号、手机号、异常堆栈），命中仅记录
  * - 异常事件异步落库
  */
 @Order(0)
 public class ThreatDetectionFilter extends OncePerRequestFilter {
 
-    private static final Pattern SQLI_PATTERN = Pattern.compile(
-            "(?i)(\\bunion\\b\\s+\\bselect\\b|\\bselect\\b.+\\bfrom\\b|\\bdrop\\b\\s+\\btable\\b|\\binsert\\b\\s+\\binto\\b|\\bor\\b\\s+1=1|--|/\\*|\\bbenchmark\\b\\(|\\bsleep\\b\\()"
-    );
-    private static final Pattern XSS_PATTERN = Pattern.compile(
-            "(?i)(<\\s*script|javascript:|onerror\\s*=|onload\\s*=|<\\s*img[^>]+onerror)"
-    );
-    private static final Pattern JS_INJECTION_PATTERN = Pattern.compile(
-            "(?i)(document\\.cookie|document\\.write\\(|createElement\\(['\"]script|eval\\(|new\\s+function\\(|setTimeout\\(['\"])"
-    );
-    private static final Pattern PATH_TRAVERSAL_PATTERN = Pattern.compile(
-            "(?i)(\\.\\./|\\.\\.\\\\|%2e%2e%2f|%2e%2e/|%252e%252e)"
-    );
-    private static final Pattern TOOL_UA_PATTERN = Pattern.compile(
-            "(?i)(sqlmap|nikto|nmap|masscan|zgrab|curl|python-requests|gobuster|dirbuster|whatweb|httpx|postmanruntime)"
+    private static final BlockDecision BLACKLIST_HIT_DECISION = BlockDecision.block(
+            "BLACKLIST_HIT",
+            "IP命中黑名单",
+            "检查该IP历史攻击事件并人工确认是否解封",
+            HttpServletResponse.SC_FORBIDDEN,
+            true,
+            95
     );
+    private static final byte[] BLACKLIST_RESPONSE_BYTES = JSON.toJSONString(
+            Result.error("请求已被安全策略拦截", HttpServletResponse.SC_FORBIDDEN)).getBytes(StandardCharsets.UTF_8);
 
-    private static final Set<String> LIGHT_SKIP_PREFIXES = new HashSet<>(Arrays.asList(
-            "/css/", "/js/", "/webjars/", "/swagger-ui", "/swagger-resources",
-            "/v2/api-docs", "/v3/api-docs", "/favicon.ico", "/doc.html"
-    ));
     private static final Set<String> AUTH_FEEDBACK_SKIP_PATHS = new HashSet<>(Arrays.asList(
             "/login", "/login-admin", "/error"
     ));
 
     @Autowired
     private ThreatDetectionProperties properties;
+    @Autowired
+    private RequestBodyCaptureService requestBodyCaptureService;
+    @Autowired
+    private ResponseLeakScanService responseLeakScanService;
+    @Autowired
+    private SlowClientGuardService slowClientGuardService;
 
     @Autowired
-    private EndpointThreatCacheService endpointThreatCacheService;
+    private RequestSecurityEnvelopeService requestSecurityEnvelopeService;
 
     @Autowired
     private IpAccessControlService ipAccessControlService;
@@ -77,6 +97,17 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
     @Autowired
     private AttackEventAsyncRecorderService attackEventAsyncRecorderService;
 
+    @Autowired
+    private AttackEventAggregationService attackEventAggregationService;
+
+    @Autowired
+    private ThreatRuleRegistryService threatRuleRegistryService;
+
+    @Autowired
+    private ThreatSignatureRuleService threatSignatureRuleService;
+    @Autowired
+    private UserAgentClassifierService userAgentClassifierService;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -86,176 +117,286 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
             return;
         }
 
-        String ip = resolveClientIp(request);
+        RequestSecurityEnvelope envelope = requestSecurityEnvelopeService.resolve(request);
+        String ip = envelope.getClientIp();
         String method = request.getMethod();
-        String path = normalizePath(request.getRequestURI());
-
-        // 黑名单优先：被拉黑IP禁止访问任何接口
-        if (ipAccessControlService.isBlacklisted(ip)) {
-            BlockDecision decision = BlockDecision.block(
-                    "BLACKLIST_HIT",
-                    "IP命中黑名单",
-                    "检查该IP历史攻击事件并人工确认是否解封",
-                    HttpServletResponse.SC_FORBIDDEN,
-                    true,
-                    95
-            );
-            recordEventAsync(request, ip, method, path, null, null, decision);
-            writeBlockResponse(response, decision.getHttpStatus(), "请求已被安全策略拦截");
+        String path = envelope.getCanonicalPath();
+
+        // 黑名单优先：被拉黑IP禁止访问任何接口（洪泛快速拒绝：预编码响应 + 事件聚合）
+        if (ipAccessControlService.isBlacklisted(envelope.getClientAddress())) {
+            attackEventAggregationService.recordFastReject();
+            recordEventAsync(request, ip, method, path, null, null, BLACKLIST_HIT_DECISION);
+            writePreEncodedResponse(response, BLACKLIST_HIT_DECISION.getHttpStatus(), BLACKLIST_RESPONSE_BYTES);
             return;
         }
 
         // 白名单IP：跳过检测（但黑名单优先于白名单）
-        if (ipAccessControlService.isWhitelisted(ip)) {
+        if (ipAccessControlService.isWhitelisted(envelope.getClientAddress())) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        if ("OPTIONS".equalsIgnoreCase(method)) {
+        if (envelope.isPreflight()) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        EndpointThreatCacheService.EndpointThreatRule endpointRule = endpointThreatCacheService.match(method, path);
+        if (!slowClientGuardService.isEnabled()) {
+            doFilterMonitored(request, response, filterChain, envelope, ip, method, path);
+            return;
+        }
+
+        // 声明长度超限直接拒绝，不读取请求体
+        if (slowClientGuardService.isOversized(request)) {
+            rejectSlowClient(request, response, ip, method, path, envelope.getThreatRule(),
+                    new SlowClientException("Content-Length 超过请求体大小上限 " + properties.getMaxRequestBodyBytes() + " 字节", true),
+                    HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "请求体过大");
+            return;
+        }
+
+        // 单IP在途请求上限：少数IP无法占满容器工作线程
+        if (!slowClientGuardService.tryEnter(ip)) {
+            rejectSlowClient(request, response, ip, method, path, envelope.getThreatRule(),
+                    new SlowClientException("单IP在途请求数超过上限 " + properties.getMaxInflightPerIp(), false),
+                    429, "并发请求过多，请稍后重试");
+            return;
+        }
+
+        try {
+            doFilterMonitored(request, response, filterChain, envelope, ip, method, path);
+        } finally {
+            slowClientGuardService.exit(ip);
+            // 请求体读取违规统一在此记录（捕获阶段、流式检测、控制器续读都经过同一个守卫）
+            SlowClientException violation = bodyReadViolation(request);
+            if (violation != null) {
+                handleSlowClientViolation(request, ip, method, path, envelope.getThreatRule(), violation);
+            }
+        }
+    }
+
+    private void doFilterMonitored(HttpServletRequest request,
+                                   HttpServletResponse response,
+                                   FilterChain filterChain,
+                                   RequestSecurityEnvelope envelope,
+                                   String ip,
+                                   String method,
+                                   String path)
+            throws ServletException, IOException {
+        EndpointThreatCacheService.EndpointThreatRule endpointRule = envelope.getThreatRule();
         boolean monitorEnabled = endpointRule == null
                 ? properties.isMonitorUnknownEndpoints()
                 : endpointRule.getThreatMonitorEnabled() != 0;
 
-        if (!monitorEnabled || shouldLightSkip(path)) {
+        if (!monitorEnabled || envelope.isStaticResource()) {
             filterChain.doFilter(request, response);
             return;
         }
 
         HttpServletRequest requestToUse = request;
         String bodySample = null;
+        StreamInspectingHttpServletRequest streamRequest = null;
+        CachedBodyHttpServletRequest capturedBody = null;
         if (shouldCacheBody(request)) {
             try {
-                CachedBodyHttpServletRequest cachedRequest = new CachedBodyHttpServletRequest(request);
-                requestToUse = cachedRequest;
-                bodySample = trim(cachedRequest.getCachedBodyAsString(properties.getMaxInspectBodyBytes()), properties.getMaxInspectBodyBytes());
+                // 统一捕获：审计、报文指纹校验直接复用这份池化缓冲，不再各自包装复制
+                capturedBody = requestBodyCaptureService.capture(request);
+                requestToUse = capturedBody;
+                bodySample = trim(capturedBody.getCachedBodyAsString(properties.getMaxInspectBodyBytes()), properties.getMaxInspectBodyBytes());
+            } catch (SlowClientException e) {
+                // 请求体已被部分消费，不能继续下发；违规由外层统一记录
+                writeSlowClientResponse(response, e);
+                return;
             } catch (Exception e) {
                 // 请求体缓存失败不影响主流程
             }
+        } else if (shouldStreamInspectBody(request)) {
+            ThreatSignatureEngine engine = resolveSignatureEngine();
+            streamRequest = new StreamInspectingHttpServletRequest(request, engine,
+                    properties.getStreamInspectWindowBytes(), properties.getStreamInspectBlockRiskScore(),
+                    threatRuleRegistryService.modesFor(engine), slowClientGuardService.bodyReadGuard(request));
+            requestToUse = streamRequest;
         }
 
-        String endpointKey = (endpointRule == null ? method.toUpperCase(Locale.ROOT) + ":" + path
-                : endpointRule.getMethod() + ":" + endpointRule.getPath());
+        try {
+            long endpointKey = GcraRateLimiter.endpointKey(endpointRule == null ? null : endpointRule.getEndpointId(), method, path);
+
+            IpAccessControlService.RateCheckResult rateCheckResult =
+                    ipAccessControlService.checkRate(ip, endpointKey,
+                            endpointRule == null ? -1 : endpointRule.getBaselineSlot(), true);
+
+            if (!rateCheckResult.isAllow()) {
+                BlockDecision decision = BlockDecision.block(
+                        rateCheckResult.getAttackType(),
+                        rateCheckResult.getReason() + "，计数=" + rateCheckResult.getObservedCount(),
+                        rateCheckResult.isShouldBlacklist() ? "已自动临时拉黑该IP，建议核查来源与请求模式" : "建议观察该IP后续行为，必要时加入永久黑名单",
+                        429,
+                        rateCheckResult.isShouldBlacklist(),
+                        rateCheckResult.isShouldBlacklist() ? 90 : 70
+                );
+                if (decision.isAutoBlacklist()) {
+                    ipAccessControlService.addToBlacklist(ip, decision.getAttackType(), decision.getReason(), properties.getAutoBlockSeconds());
+                }
+                recordEventAsync(requestToUse, ip, method, path, endpointRule, bodySample, decision);
+                writeBlockResponse(response, decision.getHttpStatus(), "访问频率异常，已触发安全策略");
+                return;
+            }
 
-        IpAccessControlService.RateCheckResult rateCheckResult =
-                ipAccessControlService.checkRate(ip, endpointKey, true);
+            BlockDecision signatureDecision = detectAttack(requestToUse, method, path, envelope.getPathFlags(), bodySample);
+            if (signatureDecision != null) {
+                if (signatureDecision.isAutoBlacklist()) {
+                    ipAccessControlService.addToBlacklist(ip, signatureDecision.getAttackType(),
+                            signatureDecision.getReason(), properties.getAutoBlockSeconds());
+                }
+                recordEventAsync(requestToUse, ip, method, path, endpointRule, bodySample, signatureDecision);
+                writeBlockResponse(response, signatureDecision.getHttpStatus(), "请求包含可疑攻击特征，已被拦截");
+                return;
+            }
 
-        if (!rateCheckResult.isAllow()) {
-            BlockDecision decision = BlockDecision.block(
-                    rateCheckResult.getAttackType(),
-                    rateCheckResult.getReason() + "，计数=" + rateCheckResult.getObservedCount(),
-                    rateCheckResult.isShouldBlacklist() ? "已自动临时拉黑该IP，建议核查来源与请求模式" : "建议观察该IP后续行为，必要时加入永久黑名单",
-                    429,
-                    rateCheckResult.isShouldBlacklist(),
-                    rateCheckResult.isShouldBlacklist() ? 90 : 70
-            );
-            if (decision.isAutoBlacklist()) {
-                ipAccessControlService.addToBlacklist(ip, decision.getAttackType(), decision.getReason(), properties.getAutoBlockSeconds());
+            // 按接口开启的响应体泄露扫描：写出时逐字节扫描，不缓存响应
+            LeakScanningHttpServletResponse leakScanResponse = responseLeakScanService.shouldScan(endpointRule)
+                    ? responseLeakScanService.wrap(response)
+                    : null;
+            HttpServletResponse responseToUse = leakScanResponse == null ? response : leakScanResponse;
+
+            if (streamRequest != null) {
+                doFilterWithStreamInspection(streamRequest, responseToUse, filterChain, ip, method, path, endpointRule);
+            } else {
+                StatusCaptureHttpServletResponse statusCaptureResponse = new StatusCaptureHttpServletResponse(responseToUse);
+                filterChain.doFilter(requestToUse, statusCaptureResponse);
+
+                handleAuthResultFeedback(requestToUse, ip, method, path, endpointRule, bodySample, statusCaptureResponse.getStatus());
+            }
+
+            if (leakScanResponse != null) {
+                recordResponseLeak(requestToUse, ip, method, path, endpointRule, leakScanResponse);
+            }
+        } finally {
+            if (capturedBody != null) {
+                capturedBody.release();
+            }
+        }
+    }
+
+    /**
+     * 流式检测请求的链路执行：响应不做整体缓存，下载/流式响应照常边写边发。
+     * 读取请求体途中被特征中断时，控制器通常尚未提交响应（异常处理器只写出少量内容，仍在容器缓冲区内），
+     * 此时 reset 后改写为统一拦截响应；已提交的响应无法改写，只记录事件。
+     */
+    private void doFilterWithStreamInspection(StreamInspectingHttpServletRequest streamRequest,
+                                              HttpServletResponse response,
+                                              FilterChain filterChain,
+                                              String ip,
+                                              String method,
+                                              String path,
+                                              EndpointThreatCacheService.EndpointThreatRule endpointRule)
+            throws ServletException, IOException {
+        StatusCaptureHttpServletResponse statusCaptureResponse = new StatusCaptureHttpServletResponse(response);
+        try {
+            filterChain.doFilter(streamRequest, statusCaptureResponse);
+        } catch (IOException | ServletException e) {
+            // 中断异常可能未被 MVC 异常处理器吞掉，按拦截处理；其他异常照常上抛
+            if (streamRequest.getBlockedSignature() == null && bodyReadViolation(streamRequest) == null) {
+                throw e;
+            }
+        }
+
+        SlowClientException readViolation = bodyReadViolation(streamRequest);
+        if (readViolation != null && streamRequest.getBlockedSignature() == null) {
+            // 慢速/超限读取：丢弃控制器写出的内容，违规由外层统一记录
+            if (!response.isCommitted()) {
+                response.reset();
+                writeSlowClientResponse(response, readViolation);
             }
-            recordEventAsync(requestToUse, ip, method, path, endpointRule, bodySample, decision);
-            writeBlockResponse(response, decision.getHttpStatus(), "访问频率异常，已触发安全策略");
             return;
         }
 
-        BlockDecision signatureDecision = detectAttack(requestToUse, ip, method, path, bodySample);
-        if (signatureDecision != null) {
-            if (signatureDecision.isAutoBlacklist()) {
-                ipAccessControlService.addToBlacklist(ip, signatureDecision.getAttackType(),
-                        signatureDecision.getReason(), properties.getAutoBlockSeconds());
+        ThreatSignatureEngine.Signature blockedSignature = streamRequest.getBlockedSignature();
+        threatRuleRegistryService.recordStreamShadowHits(streamRequest);
+        if (blockedSignature != null) {
+            threatRuleRegistryService.recordBlocked(blockedSignature.getAttackType());
+            BlockDecision decision = BlockDecision.fromSignature(blockedSignature);
+            if (decision.isAutoBlacklist()) {
+                ipAccessControlService.addToBlacklist(ip, decision.getAttackType(), decision.getReason(), properties.getAutoBlockSeconds());
+            }
+            recordEventAsync(streamRequest, ip, method, path, endpointRule, streamRequest.getInspectedSample(), decision);
+            if (!response.isCommitted()) {
+                response.reset();
+                writeBlockResponse(response, decision.getHttpStatus(), "请求包含可疑攻击特征，已被拦截");
             }
-            recordEventAsync(requestToUse, ip, method, path, endpointRule, bodySample, signatureDecision);
-            writeBlockResponse(response, signatureDecision.getHttpStatus(), "请求包含可疑攻击特征，已被拦截");
             return;
         }
 
-        StatusCaptureHttpServletResponse statusCaptureResponse = new StatusCaptureHttpServletResponse(response);
-        filterChain.doFilter(requestToUse, statusCaptureResponse);
+        ThreatSignatureEngine.Signature detectedSignature = streamRequest.finishInspection();
+        if (detectedSignature != null) {
+            recordEventAsync(streamRequest, ip, method, path, endpointRule, streamRequest.getInspectedSample(),
+                    detectedSignature.getAttackType(),
+                    detectedSignature.getReason() + "（流式检测，风险分未达中断阈值）",
+                    detectedSignature.getSuggestedAction(),
+                    false,
+                    detectedSignature.getRiskScore());
+        }
 
-        handleAuthResultFeedback(requestToUse, ip, method, path, endpointRule, bodySample, statusCaptureResponse.getStatus());
+        handleAuthResultFeedback(streamRequest, ip, method, path, endpointRule, null, statusCaptureResponse.getStatus());
     }
 
     private BlockDecision detectAttack(HttpServletRequest request,
-                                       String ip,
                                        String method,
                                        String path,
+                                       int pathFlags,
                                        String bodySample) {
-        String queryString = request.getQueryString();
-        String lowerPath = path.toLowerCase(Locale.ROOT);
-
-        if (PATH_TRAVERSAL_PATTERN.matcher(path).find() || containsEncodedTraversal(queryString)) {
-            return BlockDecision.block("PATH_TRAVERSAL",
-                    "检测到路径穿越特征",
-                    "建议审计来源IP并排查是否存在目录遍历扫描",
-                    HttpServletResponse.SC_FORBIDDEN,
-                    true,
-                    95);
-        }
-
-        if (isScannerPath(lowerPath)) {
-            return BlockDecision.block("SCANNER_PROBE",
-                    "检测到疑似扫描/探测路径",
-                    "建议检查该IP近期请求轨迹，必要时加入永久黑名单",
-                    HttpServletResponse.SC_NOT_FOUND,
-                    false,
-                    65);
-        }
-
-        if (isDependencyProbePath(lowerPath)) {
-            return BlockDecision.block("DEPENDENCY_PROBE",
-                    "检测到依赖/敏感文件探测行为",
-                    "建议检查是否存在源码、依赖清单或构建文件泄露风险",
-                    HttpServletResponse.SC_NOT_FOUND,
-                    false,
-                    72);
-        }
-
-        String queryToCheck = queryString == null ? "" : queryString;
-        if (SQLI_PATTERN.matcher(queryToCheck).find() || SQLI_PATTERN.matcher(path).find()
-                || (bodySample != null && SQLI_PATTERN.matcher(bodySample).find())) {
-            return BlockDecision.block("SQL_INJECTION",
-                    "检测到SQL注入攻击特征",
-                    "建议核查参数过滤规则与日志样本，评估是否需要永久封禁该IP",
-                    HttpServletResponse.SC_FORBIDDEN,
-                    true,
-                    92);
-        }
-
-        if (XSS_PATTERN.matcher(queryToCheck).find() || XSS_PATTERN.matcher(path).find()
-                || (bodySample != null && XSS_PATTERN.matcher(bodySample).find())) {
-            return BlockDecision.block("XSS_ATTACK",
-                    "检测到XSS攻击特征",
-                    "建议核查输入校验与输出编码策略",
-                    HttpServletResponse.SC_FORBIDDEN,
-                    false,
-                    88);
-        }
-
-        if (JS_INJECTION_PATTERN.matcher(queryToCheck).find() || (bodySample != null && JS_INJECTION_PATTERN.matcher(bodySample).find())) {
-            return BlockDecision.block("JS_INJECTION",
-                    "检测到前端脚本注入特征",
-                    "建议检查前端模板注入、DOM 直写和 CSP 配置",
-                    HttpServletResponse.SC_FORBIDDEN,
-                    false,
-                    86);
+        // 路径规范化阶段已识别的特征：点段在规范路径中已被消除，只能依据标记判定
+        if (threatRuleRegistryService.mode(ThreatRuleRegistryService.RULE_PATH_TRAVERSAL) != ThreatRuleMode.OFF) {
+            long start = System.nanoTime();
+            boolean hit = RequestPathCanonicalizer.hasFlag(pathFlags, RequestPathCanonicalizer.FLAG_DOT_DOT_SEGMENT);
+            if (threatRuleRegistryService.recordCheck(ThreatRuleRegistryService.RULE_PATH_TRAVERSAL, hit, System.nanoTime() - start)) {
+                threatRuleRegistryService.recordBlocked(ThreatRuleRegistryService.RULE_PATH_TRAVERSAL);
+                return BlockDecision.block("PATH_TRAVERSAL",
+                        "检测到路径穿越特征",
+                        "建议审计来源IP并排查是否存在目录遍历扫描",
+                        HttpServletResponse.SC_FORBIDDEN,
+                        true,
+                        95);
+            }
         }
 
         String userAgent = request.getHeader("User-Agent");
-        if (StringUtils.hasText(userAgent) && TOOL_UA_PATTERN.matcher(userAgent).find()) {
-            return BlockDecision.block("AUTOMATION_TOOL",
-                    "检测到自动化扫描工具特征",
-                    "建议排查该IP是否在进行接口扫描、爆破或注入测试",
-                    HttpServletResponse.SC_NOT_FOUND,
-                    true,
-                    91);
+        ThreatSignatureEngine engine = resolveSignatureEngine();
+        SignatureEvaluation evaluation = threatRuleRegistryService.newEvaluation(engine);
+        long scanStart = System.nanoTime();
+        ThreatSignatureEngine.Signature signature = engine.inspect(path, request.getQueryString(), bodySample, userAgent, evaluation);
+        threatRuleRegistryService.recordEvaluation(engine, evaluation, System.nanoTime() - scanStart);
+
+        boolean encodingEvasion = false;
+        if (threatRuleRegistryService.mode(ThreatRuleRegistryService.RULE_ENCODING_EVASION) != ThreatRuleMode.OFF) {
+            long start = System.nanoTime();
+            boolean hit = RequestPathCanonicalizer.hasFlag(pathFlags,
+                    RequestPathCanonicalizer.FLAG_DOUBLE_ENCODED | RequestPathCanonicalizer.FLAG_CONTROL_CHAR);
+            encodingEvasion = threatRuleRegistryService.recordCheck(ThreatRuleRegistryService.RULE_ENCODING_EVASION, hit, System.nanoTime() - start);
+        }
+        if (signature != null && (!encodingEvasion || signature.getRiskScore() >= 80)) {
+            threatRuleRegistryService.recordBlocked(signature.getAttackType());
+            return BlockDecision.fromSignature(signature);
+        }
+
+        if (encodingEvasion) {
+            threatRuleRegistryService.recordBlocked(ThreatRuleRegistryService.RULE_ENCODING_EVASION);
+            return BlockDecision.block("ENCODING_EVASION",
+                    "检测到多重编码或控制字符，疑似绕过检测",
+                    "建议核查该IP请求样本，确认是否存在编码绕过探测",
+                    HttpServletResponse.SC_BAD_REQUEST,
+                    false,
+                    80);
         }
 
         // 粗粒度越权探测：高频访问明显管理端路径且未携带认证头（后续可结合401/403埋点增强）
-        if (lowerPath.startsWith("/admin") && !StringUtils.hasText(request.getHeader("Authorization"))) {
-            if ("GET".equalsIgnoreCase(method) || "POST".equalsIgnoreCase(method)) {
+        // 风险分低于所有特征，仅在特征未命中时判定
+        if (threatRuleRegistryService.mode(ThreatRuleRegistryService.RULE_PRIVILEGE_PROBE) != ThreatRuleMode.OFF) {
+            long start = System.nanoTime();
+            boolean hit = path.regionMatches(true, 0, "/admin", 0, 6)
+                    && !StringUtils.hasText(request.getHeader("Authorization"))
+                    && ("GET".equalsIgnoreCase(method) || "POST".equalsIgnoreCase(method));
+            if (threatRuleRegistryService.recordCheck(ThreatRuleRegistryService.RULE_PRIVILEGE_PROBE, hit, System.nanoTime() - start)) {
+                threatRuleRegistryService.recordBlocked(ThreatRuleRegistryService.RULE_PRIVILEGE_PROBE);
                 return BlockDecision.block("PRIVILEGE_PROBE",
                         "疑似未授权访问管理接口",
                         "建议检查访问日志并确认是否存在越权探测",
@@ -268,6 +409,10 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
         return null;
     }
 
+    private ThreatSignatureEngine resolveSignatureEngine() {
+        return threatSignatureRuleService.currentEngine();
+    }
+
     private void recordEventAsync(HttpServletRequest request,
                                   String ip,
                                   String method,
@@ -275,6 +420,9 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
                                   EndpointThreatCacheService.EndpointThreatRule endpointRule,
                                   String bodySample,
                                   BlockDecision decision) {
+        if (!attackEventAggregationService.tryAcquire(ip, decision.getAttackType(), method, path, decision.getRiskScore())) {
+            return;
+        }
         SecurityAttackEventEntity event = new SecurityAttackEventEntity();
         event.setIp(ip);
         event.setAttackType(decision.getAttackType());
@@ -310,6 +458,9 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
                                   String suggestedAction,
                                   boolean autoBlacklist,
                                   int riskScore) {
+        if (!attackEventAggregationService.tryAcquire(ip, attackType, method, path, riskScore)) {
+            return;
+        }
         SecurityAttackEventEntity event = new SecurityAttackEventEntity();
         event.setIp(ip);
         event.setAttackType(attackType);
@@ -334,6 +485,74 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
         attackEventAsyncRecorderService.record(event);
     }
 
+    private void recordResponseLeak(HttpServletRequest request,
+                                    String ip,
+                                    String method,
+                                    String path,
+                                    EndpointThreatCacheService.EndpointThreatRule endpointRule,
+                                    LeakScanningHttpServletResponse leakScanResponse) {
+        List<ResponseLeakDetector.Finding> findings = responseLeakScanService.complete(leakScanResponse);
+        if (findings.isEmpty()) {
+            return;
+        }
+        // 命中列表按风险分降序，取最高一项作为事件风险分；响应内容本身不落库，原因中只含脱敏样本
+        recordEventAsync(request, ip, method, path, endpointRule, null,
+                ResponseLeakScanService.ATTACK_TYPE,
+                responseLeakScanService.describe(findings),
+                "建议核查接口返回字段，对敏感数据脱敏或移除，关闭异常堆栈等调试信息输出",
+                false,
+                findings.get(0).getKind().getRiskScore());
+    }
+
+    private void rejectSlowClient(HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  String ip,
+                                  String method,
+                                  String path,
+                                  EndpointThreatCacheService.EndpointThreatRule endpointRule,
+                                  SlowClientException violation,
+                                  int statusCode,
+                                  String message) throws IOException {
+        handleSlowClientViolation(request, ip, method, path, endpointRule, violation);
+        writeBlockResponse(response, statusCode, message);
+    }
+
+    /**
+     * 计入违规窗口，达到阈值自动拉黑，并记录 SLOW_CLIENT 事件。
+     */
+    private void handleSlowClientViolation(HttpServletRequest request,
+                                           String ip,
+                                           String method,
+                                           String path,
+                                           EndpointThreatCacheService.EndpointThreatRule endpointRule,
+                                           SlowClientException violation) {
+        boolean shouldBlacklist = slowClientGuardService.recordViolation(ip, violation.isOversized());
+        if (shouldBlacklist) {
+            ipAccessControlService.addToBlacklist(ip, SlowClientGuardService.ATTACK_TYPE,
+                    violation.getMessage(), properties.getAutoBlockSeconds());
+        }
+        recordEventAsync(request, ip, method, path, endpointRule, null, BlockDecision.block(
+                SlowClientGuardService.ATTACK_TYPE,
+                violation.getMessage(),
+                shouldBlacklist ? "已自动临时拉黑该IP，建议核查是否存在慢速连接耗尽攻击" : "建议观察该IP后续行为，必要时加入永久黑名单",
+                violation.isOversized() ? HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE : HttpServletResponse.SC_REQUEST_TIMEOUT,
+                shouldBlacklist,
+                shouldBlacklist ? 85 : 60));
+    }
+
+    private void writeSlowClientResponse(HttpServletResponse response, SlowClientException violation) throws IOException {
+        if (violation.isOversized()) {
+            writeBlockResponse(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "请求体过大");
+        } else {
+            writeBlockResponse(response, HttpServletResponse.SC_REQUEST_TIMEOUT, "请求体上传过慢，请求已中断");
+        }
+    }
+
+    private static SlowClientException bodyReadViolation(HttpServletRequest request) {
+        Object guard = request.getAttribute(BodyReadGuard.ATTRIBUTE);
+        return guard instanceof BodyReadGuard ? ((BodyReadGuard) guard).getViolation() : null;
+    }
+
     private void handleAuthResultFeedback(HttpServletRequest request,
                                           String ip,
                                           String method,
@@ -353,8 +572,7 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
             return;
         }
 
-        String endpointKey = (endpointRule == null ? method.toUpperCase(Locale.ROOT) + ":" + path
-                : endpointRule.getMethod() + ":" + endpointRule.getPath());
+        long endpointKey = GcraRateLimiter.endpointKey(endpointRule == null ? null : endpointRule.getEndpointId(), method, path);
 
         IpAccessControlService.AuthFeedbackResult authFeedbackResult =
                 ipAccessControlService.recordAuthResultAndCheck(ip, endpointKey, statusCode);
@@ -400,84 +618,40 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
         if (contentLength <= 0 || contentLength > properties.getMaxInspectBodyBytes()) {
             return false;
         }
-        String contentType = request.getContentType();
-        if (contentType == null) {
-            return false;
-        }
-        contentType = contentType.toLowerCase(Locale.ROOT);
-        return contentType.contains("application/json")
-                || contentType.contains("application/x-www-form-urlencoded")
-                || contentType.contains("text/plain")
-                || contentType.contains("application/xml")
-                || contentType.contains("text/xml");
+        return isInspectableContentType(request.getContentType());
     }
 
-    private String resolveClientIp(HttpServletRequest request) {
-        if (properties.isTrustForwardHeaders()) {
-            String xff = request.getHeader("X-Forwarded-For");
-            if (StringUtils.hasText(xff)) {
-                int comma = xff.indexOf(',');
-                String ip = (comma > 0 ? xff.substring(0, comma) : xff).trim();
-                if (!ip.isEmpty()) {
-                    return ip;
-                }
-            }
-            String realIp = request.getHeader("X-Real-IP");
-            if (StringUtils.hasText(realIp)) {
-                return realIp.trim();
-            }
+    /**
+     * 小请求体之外的文本请求体（超长或 chunked 未声明长度）走流式检测，不做整体缓存。
+     */
+    private boolean shouldStreamInspectBody(HttpServletRequest request) {
+        if (!properties.isStreamInspectEnabled()) {
+            return false;
         }
-        return request.getRemoteAddr();
-    }
-
-    private boolean shouldLightSkip(String path) {
-        for (String prefix : LIGHT_SKIP_PREFIXES) {
-            if (path.startsWith(prefix)) {
-                return true;
-            }
+        String method = request.getMethod();
+        if ("GET".equalsIgnoreCase(method) || "DELETE".equalsIgnoreCase(method) || "OPTIONS".equalsIgnoreCase(method)) {
+            return false;
         }
-        return false;
-    }
-
-    private boolean containsEncodedTraversal(String queryString) {
-        if (queryString == null || queryString.isEmpty()) {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength == 0) {
             return false;
         }
-        return PATH_TRAVERSAL_PATTERN.matcher(queryString).find();
-    }
-
-    private boolean isScannerPath(String lowerPath) {
-        for (String keyword : properties.getScannerPathKeywords()) {
-            if (keyword != null && !keyword.isEmpty() && lowerPath.contains(keyword.toLowerCase(Locale.ROOT))) {
-                return true;
-            }
+        if (contentLength < 0 && request.getHeader("Transfer-Encoding") == null) {
+            return false;
         }
-        return false;
-    }
-
-    private boolean isDependencyProbePath(String lowerPath) {
-        return lowerPath.contains(".git")
-                || lowerPath.contains("package.json")
-                || lowerPath.contains("package-lock.json")
-                || lowerPath.contains("yarn.lock")
-                || lowerPath.contains("pnpm-lock")
-                || lowerPath.contains("pom.xml")
-                || lowerPath.contains("composer.json")
-                || lowerPath.contains("node_modules")
-                || lowerPath.contains("webpack.config")
-                || lowerPath.contains("vite.config");
+        return isInspectableContentType(request.getContentType());
     }
 
-    private String normalizePath(String path) {
-        if (path == null || path.isEmpty()) {
-            return "/";
-        }
-        String normalized = path.startsWith("/") ? path : "/" + path;
-        normalized = normalized.replaceAll("/+", "/");
-        if (normalized.length() > 1 && normalized.endsWith("/")) {
-            normalized = normalized.substring(0, normalized.length() - 1);
+    private boolean isInspectableContentType(String contentType) {
+        if (contentType == null) {
+            return false;
         }
-        return normalized;
+        contentType = contentType.toLowerCase(Locale.ROOT);
+        return contentType.contains("application/json")
+                || contentType.contains("application/x-www-form-urlencoded")
+                || contentType.contains("text/plain")
+                || contentType.contains("application/xml")
+                || contentType.contains("text/xml");
     }
 
     private String trim(String value, int maxLen) {
@@ -517,41 +691,21 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
         }
     }
 
+    private void writePreEncodedResponse(HttpServletResponse response, int statusCode, byte[] body) throws IOException {
+        response.setStatus(statusCode);
+        response.setContentType("application/json;charset=UTF-8");
+        response.setContentLength(body.length);
+        ServletOutputStream outputStream = response.getOutputStream();
+        outputStream.write(body);
+        outputStream.flush();
+    }
+
     private String resolveClientTool(String userAgent) {
-        if (!StringUtils.hasText(userAgent)) {
-            return "UNKNOWN";
-        }
-        String normalized = userAgent.toLowerCase(Locale.ROOT);
-        if (normalized.contains("sqlmap")) {
-            return "SQLMAP";
-        }
-        if (normalized.contains("nikto")) {
-            return "NIKTO";
-        }
-        if (normalized.contains("gobuster")) {
-            return "GOBUSTER";
-        }
-        if (normalized.contains("dirbuster")) {
-            return "DIRBUSTER";
-        }
-        if (normalized.contains("curl")) {
-            return "CURL";
-        }
-        if (normalized.contains("python-requests")) {
-            return "PYTHON_REQUESTS";
-        }
-        if (normalized.contains("postmanruntime")) {
-            return "POSTMAN";
-        }
-        if (normalized.contains("mozilla")) {
-            return "BROWSER";
-        }
-        return "UNKNOWN";
+        return userAgentClassifierService.classify(userAgent).getTool();
     }
 
     private Integer resolveBrowserTrusted(String userAgent, String browserFingerprint) {
-        boolean browserLike = StringUtils.hasText(userAgent) && userAgent.toLowerCase(Locale.ROOT).contains("mozilla");
-        if (!browserLike) {
+        if (!userAgentClassifierService.classify(userAgent).isBrowserLike()) {
             return 0;
         }
         return StringUtils.hasText(browserFingerprint) && browserFingerprint.length() >= 16 ? 1 : 0;
@@ -578,6 +732,11 @@ public class ThreatDetectionFilter extends OncePerRequestFilter {
             return new BlockDecision(attackType, reason, suggestedAction, httpStatus, autoBlacklist, riskScore);
         }
 
+        static BlockDecision fromSignature(ThreatSignatureEngine.Signature signature) {
+            return new BlockDecision(signature.getAttackType(), signature.getReason(), signature.getSuggestedAction(),
+                    signature.getHttpStatus(), signature.isAutoBlacklist(), signature.getRiskScore());
+        }
+
         public String getAttackType() {
             return attackType;
         }
@@ -0,0 +1,81 @@
+package com.ssy.filter.support;
+
+/**
+ * 单个请求的请求体读取守卫（非线程安全，随请求登记在请求属性中，所有包装共用）：
+ * - 总读取时长超过 deadline 即中断；
+ * - 过了宽限期后平均上传速率低于 minBytesPerSecond 即中断（慢速上传占住工作线程）；
+ * - 累计字节数超过 maxBytes 即中断（未声明长度的超大请求体）。
+ *
+ * 每次读取前后检查一次；单次阻塞读取本身的等待上限由容器的连接超时决定。
+ */
+public final class BodyReadGuard {
+
+    public static final String ATTRIBUTE = BodyReadGuard.class.getName();
+
+    private final long deadlineNanos;
+    private final long graceNanos;
+    private final long minBytesPerSecond;
+    private final long maxBytes;
+
+    private long startNanos;
+    private long bytes;
+    private SlowClientException violation;
+
+    public BodyReadGuard(long deadlineMillis, long graceMillis, long minBytesPerSecond, long maxBytes) {
+        this.deadlineNanos = Math.max(1L, deadlineMillis) * 1_000_000L;
+        this.graceNanos = Math.max(0L, graceMillis) * 1_000_000L;
+        this.minBytesPerSecond = Math.max(0L, minBytesPerSecond);
+        this.maxBytes = maxBytes;
+    }
+
+    public void beforeRead() throws SlowClientException {
+        if (violation != null) {
+            throw violation;
+        }
+        if (startNanos == 0L) {
+            startNanos = System.nanoTime();
+            return;
+        }
+        check(System.nanoTime() - startNanos);
+    }
+
+    public void afterRead(int n) throws SlowClientException {
+        if (n > 0) {
+            bytes += n;
+        }
+        check(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 已触发的违规；未触发返回 null。
+     */
+    public SlowClientException getViolation() {
+        return violation;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedMillis() {
+        return startNanos == 0L ? 0L : (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    private void check(long elapsedNanos) throws SlowClientException {
+        if (maxBytes > 0 && bytes > maxBytes) {
+            trip(new SlowClientException("请求体超过大小上限 " + maxBytes + " 字节", true));
+        }
+        if (elapsedNanos > deadlineNanos) {
+            trip(new SlowClientException("请求体读取超时，" + elapsedNanos / 1_000_000L + "ms 内仅收到 " + bytes + " 字节", false));
+        }
+        if (minBytesPerSecond > 0 && elapsedNanos > graceNanos
+                && bytes * 1_000_000_000L / elapsedNanos < minBytesPerSecond) {
+            trip(new SlowClientException("请求体上传速率过低，" + elapsedNanos / 1_000_000L + "ms 内仅收到 " + bytes + " 字节", false));
+        }
+    }
+
+    private void trip(SlowClientException exception) throws SlowClientException {
+        violation = exception;
+        throw exception;
+    }
+}
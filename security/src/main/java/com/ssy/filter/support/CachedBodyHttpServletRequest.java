@@ -6,64 +6,207 @@ import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 /**
- * 仅用于小请求体缓存，支持后续过滤器/控制器继续读取。
+ * 请求体一次性捕获：按块读入池化缓冲区（最多 maxBytes 字节），各过滤器通过只读视图共享，
+ * 后续过滤器/控制器读取时先回放已捕获部分，超出上限的剩余部分直接从原始流续读，不再整体缓存。
+ *
+ * 捕获后登记在请求属性中，下游过滤器用 {@link #find(ServletRequest)} 取用，不要重复包装；
+ * 由创建它的过滤器在请求结束时调用 {@link #release()} 归还缓冲区。
+ * 捕获与续读都经过 {@link BodyReadGuard}，慢速上传或超大请求体会被中断。
  */
 public class CachedBodyHttpServletRequest extends HttpServletRequestWrapper {
 
-    private final byte[] cachedBody;
+    public static final String ATTRIBUTE = CachedBodyHttpServletRequest.class.getName();
 
-    public CachedBodyHttpServletRequest(HttpServletRequest request) throws IOException {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final RequestBodyBufferPool pool;
+    private final BodyReadGuard readGuard;
+    private byte[][] chunks;
+    private int length;
+    private boolean complete;
+    private String bodyHash;
+    private volatile boolean released;
+
+    public CachedBodyHttpServletRequest(HttpServletRequest request,
+                                        RequestBodyBufferPool pool,
+                                        int maxBytes,
+                                        BodyReadGuard readGuard) throws IOException {
         super(request);
-        this.cachedBody = readAllBytes(request);
+        this.pool = pool;
+        this.readGuard = readGuard;
+        capture(request.getInputStream(), Math.max(0, maxBytes), request.getContentLengthLong());
+        request.setAttribute(ATTRIBUTE, this);
+    }
+
+    /**
+     * 取当前请求上已捕获的请求体；尚未捕获或已释放时返回 null。
+     */
+    public static CachedBodyHttpServletRequest find(ServletRequest request) {
+        Object captured = request.getAttribute(ATTRIBUTE);
+        if (captured instanceof CachedBodyHttpServletRequest && !((CachedBodyHttpServletRequest) captured).released) {
+            return (CachedBodyHttpServletRequest) captured;
+        }
+        return null;
+    }
+
+    /**
+     * 已捕获的字节数（不超过捕获上限）。
+     */
+    public int getCapturedLength() {
+        return length;
+    }
+
+    /**
+     * 是否已捕获完整请求体；为 false 时各视图只覆盖前 {@link #getCapturedLength()} 字节。
+     */
+    public boolean isComplete() {
+        return complete;
     }
 
+    /**
+     * 前 maxLen 字节按请求编码解码后的文本；请求体为空时返回 null。
+     */
     public String getCachedBodyAsString(int maxLen) {
-        if (cachedBody == null || cachedBody.length == 0 || maxLen <= 0) {
+        if (released || length == 0 || maxLen <= 0) {
             return null;
         }
-        int len = Math.min(maxLen, cachedBody.length);
+        int len = Math.min(maxLen, length);
         Charset charset = resolveCharset(getRequest());
-        return new String(cachedBody, 0, len, charset);
+        if (len <= chunks[0].length) {
+            return new String(chunks[0], 0, len, charset);
+        }
+        return new String(copyPrefix(len), charset);
     }
 
-    @Override
-    public ServletInputStream getInputStream() {
-        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(cachedBody);
-        return new ServletInputStream() {
-            @Override
-            public boolean isFinished() {
-                return byteArrayInputStream.available() <= 0;
-            }
+    /**
+     * 前 maxLen 字节的副本。
+     */
+    public byte[] copyCapturedBytes(int maxLen) {
+        if (released || length == 0 || maxLen <= 0) {
+            return new byte[0];
+        }
+        return copyPrefix(Math.min(maxLen, length));
+    }
 
-            @Override
-            public boolean isReady() {
-                return true;
+    /**
+     * 已捕获部分的 SHA-256（十六进制小写），首次调用时计算；请求体为空时返回 null。
+     */
+    public String getBodyHash() {
+        if (bodyHash != null || released || length == 0) {
+            return bodyHash;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            int remaining = length;
+            for (int i = 0; remaining > 0; i++) {
+                int n = Math.min(remaining, chunks[i].length);
+                digest.update(chunks[i], 0, n);
+                remaining -= n;
             }
-
-            @Override
-            public void setReadListener(ReadListener readListener) {
-                // 同步读取场景，无需实现
+            byte[] bytes = digest.digest();
+            char[] hex = new char[bytes.length * 2];
+            for (int i = 0; i < bytes.length; i++) {
+                hex[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[bytes[i] & 0xF];
             }
+            bodyHash = new String(hex);
+        } catch (Exception ignored) {
+            return null;
+        }
+        return bodyHash;
+    }
 
-            @Override
-            public int read() {
-                return byteArrayInputStream.read();
-            }
-        };
+    /**
+     * 归还缓冲区。异步请求的控制器可能在过滤器返回后才读取请求体，此时只解除登记、不归还缓冲池，
+     * 已捕获内容保持可读，请求结束后随本对象交给 GC。
+     */
+    public void release() {
+        if (released) {
+            return;
+        }
+        getRequest().removeAttribute(ATTRIBUTE);
+        if (isAsyncStarted()) {
+            return;
+        }
+        released = true;
+        byte[][] captured = chunks;
+        chunks = null;
+        if (captured == null) {
+            return;
+        }
+        for (byte[] chunk : captured) {
+            pool.giveBack(chunk);
+        }
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (released) {
+            throw new IOException("请求体缓存已释放");
+        }
+        return new ReplayInputStream();
     }
 
     @Override
-    public BufferedReader getReader() {
+    public BufferedReader getReader() throws IOException {
         return new BufferedReader(new InputStreamReader(getInputStream(), resolveCharset(getRequest())));
     }
 
+    private void capture(ServletInputStream source, int maxBytes, long contentLength) throws IOException {
+        int chunkBytes = pool.getChunkBytes();
+        chunks = new byte[Math.max(1, (maxBytes + chunkBytes - 1) / chunkBytes)][];
+        try {
+            int index = 0;
+            int offset = 0;
+            while (length < maxBytes) {
+                if (chunks[index] == null) {
+                    chunks[index] = pool.borrow();
+                }
+                if (readGuard != null) {
+                    readGuard.beforeRead();
+                }
+                int n = source.read(chunks[index], offset, Math.min(chunkBytes - offset, maxBytes - length));
+                if (readGuard != null) {
+                    readGuard.afterRead(n);
+                }
+                if (n < 0) {
+                    complete = true;
+                    break;
+                }
+                length += n;
+                offset += n;
+                if (offset == chunkBytes && length < maxBytes) {
+                    index++;
+                    offset = 0;
+                }
+            }
+            if (!complete && contentLength >= 0 && length >= contentLength) {
+                complete = true;
+            }
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    private byte[] copyPrefix(int len) {
+        byte[] copy = new byte[len];
+        int copied = 0;
+        for (int i = 0; copied < len; i++) {
+            int n = Math.min(len - copied, chunks[i].length);
+            System.arraycopy(chunks[i], 0, copy, copied, n);
+            copied += n;
+        }
+        return copy;
+    }
+
     private static Charset resolveCharset(ServletRequest request) {
         try {
             String encoding = request.getCharacterEncoding();
@@ -76,13 +219,98 @@ public class CachedBodyHttpServletRequest extends HttpServletRequestWrapper {
         return StandardCharsets.UTF_8;
     }
 
-    private static byte[] readAllBytes(HttpServletRequest request) throws IOException {
-        byte[] buffer = new byte[1024];
-        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
-        int n;
-        while ((n = request.getInputStream().read(buffer)) != -1) {
-            out.write(buffer, 0, n);
+    /**
+     * 先回放已捕获部分，未捕获完整时再从原始流续读。
+     */
+    private final class ReplayInputStream extends ServletInputStream {
+
+        private int position;
+        private ServletInputStream remainder;
+
+        @Override
+        public boolean isFinished() {
+            if (position < length) {
+                return false;
+            }
+            return complete || remainder().isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return position < length || complete || remainder().isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            // 同步读取场景，无需实现
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position < length) {
+                byte[][] captured = capturedChunks();
+                int chunkBytes = pool.getChunkBytes();
+                int value = captured[position / chunkBytes][position % chunkBytes] & 0xFF;
+                position++;
+                return value;
+            }
+            if (complete) {
+                return -1;
+            }
+            if (readGuard != null) {
+                readGuard.beforeRead();
+            }
+            int b = remainder().read();
+            if (readGuard != null) {
+                readGuard.afterRead(b < 0 ? -1 : 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position < length) {
+                byte[][] captured = capturedChunks();
+                int chunkBytes = pool.getChunkBytes();
+                int chunkOffset = position % chunkBytes;
+                int n = Math.min(len, Math.min(length - position, chunkBytes - chunkOffset));
+                System.arraycopy(captured[position / chunkBytes], chunkOffset, b, off, n);
+                position += n;
+                return n;
+            }
+            if (complete) {
+                return -1;
+            }
+            if (readGuard != null) {
+                readGuard.beforeRead();
+            }
+            int n = remainder().read(b, off, len);
+            if (readGuard != null) {
+                readGuard.afterRead(n);
+            }
+            return n;
+        }
+
+        private byte[][] capturedChunks() throws IOException {
+            byte[][] captured = chunks;
+            if (released || captured == null) {
+                throw new IOException("请求体缓存已释放");
+            }
+            return captured;
+        }
+
+        private ServletInputStream remainder() {
+            if (remainder == null) {
+                try {
+                    remainder = getRequest().getInputStream();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return remainder;
         }
-        return out.toByteArray();
     }
 }
@@ -0,0 +1,159 @@
+package com.ssy.filter.support;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 响应体泄露扫描包装：写出的字节/字符原样透传给下游，同时逐个推进 {@link ResponseLeakDetector.Scan}，不缓存响应体。
+ * 首次写出时按 Content-Type 判定，二进制响应（图片、文件下载等）不扫描。
+ */
+public class LeakScanningHttpServletResponse extends HttpServletResponseWrapper {
+
+    private final ResponseLeakDetector.Scan scan;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+    private Boolean textual;
+
+    public LeakScanningHttpServletResponse(HttpServletResponse response, ResponseLeakDetector.Scan scan) {
+        super(response);
+        this.scan = scan;
+    }
+
+    /**
+     * 链路结束后调用，返回脱敏后的命中列表。
+     */
+    public List<ResponseLeakDetector.Finding> finishScan() {
+        return scan.finish();
+    }
+
+    public ResponseLeakDetector.Scan getScan() {
+        return scan;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new ScanningOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new ScanningWriter(super.getWriter()));
+        }
+        return writer;
+    }
+
+    private boolean shouldScan() {
+        if (textual == null) {
+            String contentType = getContentType();
+            if (contentType == null) {
+                textual = Boolean.TRUE;
+            } else {
+                contentType = contentType.toLowerCase(Locale.ROOT);
+                textual = contentType.contains("json")
+                        || contentType.contains("xml")
+                        || contentType.contains("javascript")
+                        || contentType.startsWith("text/");
+            }
+        }
+        return textual;
+    }
+
+    private final class ScanningOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private ScanningOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (shouldScan()) {
+                scan.update(b & 0xFF);
+            }
+            delegate.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (shouldScan()) {
+                scan.update(b, off, len);
+            }
+            delegate.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private final class ScanningWriter extends Writer {
+
+        private final PrintWriter delegate;
+
+        private ScanningWriter(PrintWriter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int c) {
+            if (shouldScan()) {
+                scan.update(c);
+            }
+            delegate.write(c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            if (shouldScan()) {
+                scan.update(cbuf, off, len);
+            }
+            delegate.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            if (shouldScan()) {
+                scan.update(str, off, len);
+            }
+            delegate.write(str, off, len);
+        }
+
+        @Override
+        public void flush() {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.ssy.filter.support;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Aho-Corasick 多模式字面量匹配器（ASCII 大小写不敏感）。
+ * 构建期把 trie + fail 指针展开成完整 DFA 跳转表，热路径每个字符只做一次数组寻址；
+ * 扫描状态就是一个 int，可在分片/流式输入之间延续。
+ */
+public final class MultiPatternMatcher {
+
+    private static final int ALPHABET = 128;
+    private static final int[] NO_OUTPUT = new int[0];
+    private static final char[] LOWER = new char[ALPHABET];
+
+    static {
+        for (int i = 0; i < ALPHABET; i++) {
+            LOWER[i] = (i >= 'A' && i <= 'Z') ? (char) (i + 32) : (char) i;
+        }
+    }
+
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int[] patternLengths;
+
+    private MultiPatternMatcher(int[] transitions, int[][] outputs, int[] patternLengths) {
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.patternLengths = patternLengths;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 初始状态。
+     */
+    public int root() {
+        return 0;
+    }
+
+    /**
+     * 推进一个字符。非 ASCII 字符统一映射到 0（模式中不允许出现），等价于打断当前匹配。
+     */
+    public int next(int state, int ch) {
+        int symbol = ch >= 0 && ch < ALPHABET ? LOWER[ch] : 0;
+        return transitions[state * ALPHABET + symbol];
+    }
+
+    /**
+     * 当前状态命中的模式编号（已合并 fail 链上的输出），无命中返回空数组。
+     */
+    public int[] outputs(int state) {
+        return outputs[state];
+    }
+
+    public int patternCount() {
+        return patternLengths.length;
+    }
+
+    public int patternLength(int patternId) {
+        return patternLengths[patternId];
+    }
+
+    public static final class Builder {
+
+        private final List<String> patterns = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 添加一个字面量模式，返回模式编号；空串或包含非 ASCII 字符时返回 -1（由调用方自行兜底）。
+         */
+        public int add(String literal) {
+            if (!isIndexable(literal)) {
+                return -1;
+            }
+            patterns.add(literal.toLowerCase(Locale.ROOT));
+            return patterns.size() - 1;
+        }
+
+        public static boolean isIndexable(String literal) {
+            if (literal == null || literal.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (c == 0 || c >= ALPHABET) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public MultiPatternMatcher build() {
+            int capacity = 1;
+            for (String pattern : patterns) {
+                capacity += pattern.length();
+            }
+            int[] trie = new int[capacity * ALPHABET];
+            Arrays.fill(trie, -1);
+            List<List<Integer>> nodeOutputs = new ArrayList<>(capacity);
+            nodeOutputs.add(new ArrayList<>());
+            int nodeCount = 1;
+
+            int[] lengths = new int[patterns.size()];
+            for (int id = 0; id < patterns.size(); id++) {
+                String pattern = patterns.get(id);
+                lengths[id] = pattern.length();
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    int idx = state * ALPHABET + pattern.charAt(i);
+                    if (trie[idx] < 0) {
+                        trie[idx] = nodeCount++;
+                        nodeOutputs.add(new ArrayList<>());
+                    }
+                    state = trie[idx];
+                }
+                nodeOutputs.get(state).add(id);
+            }
+
+            // BFS 补全 fail 跳转，浅层节点先处理，保证合并输出时 fail 节点已就绪
+            int[] fail = new int[nodeCount];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = trie[c];
+                if (child < 0) {
+                    trie[c] = 0;
+                } else {
+                    fail[child] = 0;
+                    queue.add(child);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                nodeOutputs.get(node).addAll(nodeOutputs.get(fail[node]));
+                for (int c = 0; c < ALPHABET; c++) {
+                    int idx = node * ALPHABET + c;
+                    int child = trie[idx];
+                    int fallback = trie[fail[node] * ALPHABET + c];
+                    if (child < 0) {
+                        trie[idx] = fallback;
+                    } else {
+                        fail[child] = fallback;
+                        queue.add(child);
+                    }
+                }
+            }
+
+            int[][] outputs = new int[nodeCount][];
+            for (int i = 0; i < nodeCount; i++) {
+                List<Integer> ids = nodeOutputs.get(i);
+                if (ids.isEmpty()) {
+                    outputs[i] = NO_OUTPUT;
+                    continue;
+                }
+                int[] arr = new int[ids.size()];
+                for (int j = 0; j < arr.length; j++) {
+                    arr[j] = ids.get(j);
+                }
+                outputs[i] = arr;
+            }
+            return new MultiPatternMatcher(Arrays.copyOf(trie, nodeCount * ALPHABET), outputs, lengths);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ssy.filter.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求体缓存的定长字节块池：捕获请求体时按块借出，请求结束后归还复用。
+ *
+ * - 池容量有上限，归还时池已满的块直接丢弃交给 GC，突发流量不会让常驻内存无限增长；
+ * - 池空时临时分配新块，借出路径不阻塞。
+ */
+public final class RequestBodyBufferPool {
+
+    private final int chunkBytes;
+    private final ArrayBlockingQueue<byte[]> chunks;
+
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public RequestBodyBufferPool(int chunkBytes, int maxPooledChunks) {
+        this.chunkBytes = Math.max(512, chunkBytes);
+        this.chunks = new ArrayBlockingQueue<>(Math.max(1, maxPooledChunks));
+    }
+
+    public int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    byte[] borrow() {
+        byte[] chunk = chunks.poll();
+        if (chunk != null) {
+            reused.increment();
+            return chunk;
+        }
+        allocated.increment();
+        return new byte[chunkBytes];
+    }
+
+    void giveBack(byte[] chunk) {
+        if (chunk == null || chunk.length != chunkBytes) {
+            return;
+        }
+        if (!chunks.offer(chunk)) {
+            dropped.increment();
+        }
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chunkBytes", chunkBytes);
+        stats.put("pooledChunks", chunks.size());
+        stats.put("reused", reused.sum());
+        stats.put("allocated", allocated.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,20 @@
+package com.ssy.filter.support;
+
+import java.io.IOException;
+
+/**
+ * 流式检测在请求体中命中高风险特征时抛出，用于中断控制器对请求体的继续读取。
+ */
+public class RequestBodyThreatException extends IOException {
+
+    private final ThreatSignatureEngine.Signature signature;
+
+    public RequestBodyThreatException(ThreatSignatureEngine.Signature signature) {
+        super("request body blocked by signature " + signature.getAttackType());
+        this.signature = signature;
+    }
+
+    public ThreatSignatureEngine.Signature getSignature() {
+        return signature;
+    }
+}
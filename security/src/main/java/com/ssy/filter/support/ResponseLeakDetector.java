@@ -0,0 +1,382 @@
+package com.ssy.filter.support;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 响应体敏感数据泄露识别（编译一次，请求期只读）。
+ * - 私钥、JWT、异常堆栈的字面量锚点编入 Aho-Corasick 自动机，响应字节/字符流过时逐个推进，不缓存响应体
+ * - 带正则的类型在锚点命中后延迟一小段再对尾部窗口做一次确认，使锚点后的上下文落在窗口内
+ * - 身份证号、手机号没有字面量锚点，由数字串状态机识别：前后必须是非字母数字边界，身份证号再校验出生日期与校验位
+ * - 每个响应的扫描字节数与正则确认次数都有上限，超出后只透传不再扫描
+ */
+public final class ResponseLeakDetector {
+
+    public enum LeakKind {
+        PRIVATE_KEY("私钥", 95),
+        JWT("JWT令牌", 85),
+        ID_CARD("身份证号", 80),
+        STACK_TRACE("异常堆栈", 60),
+        PHONE_NUMBER("手机号", 50);
+
+        private final String label;
+        private final int riskScore;
+
+        LeakKind(String label, int riskScore) {
+            this.label = label;
+            this.riskScore = riskScore;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int getRiskScore() {
+            return riskScore;
+        }
+    }
+
+    private static final String PRIVATE_KEY_ANCHOR = "private key-----";
+    private static final String[] JWT_ANCHORS = {"eyj"};
+    private static final String[] STACK_TRACE_ANCHORS = {".java:", "exception"};
+
+    /**
+     * header.payload 两段都以 base64("{\"") 开头即可认定为 JWT，签名段可能远在窗口之外
+     */
+    private static final Pattern JWT_PATTERN = Pattern.compile(
+            "eyJ[A-Za-z0-9_-]{10,}\\.eyJ[A-Za-z0-9_-]{10,}"
+    );
+    private static final Pattern STACK_TRACE_PATTERN = Pattern.compile(
+            "\\(\\w+\\.java:\\d+\\)|\\b(?:java|javax|org|com|net|io)\\.[\\w$.]+(?:Exception|Error)\\b"
+    );
+
+    private static final int[] ID_CARD_WEIGHTS = {7, 9, 10, 5, 8, 4, 2, 1, 6, 3, 7, 9, 10, 5, 8, 4, 2};
+    private static final char[] ID_CARD_CHECK_CODES = "10X98765432".toCharArray();
+    private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private static final int WINDOW_BYTES = 256;
+    private static final int CONFIRM_DELAY = 96;
+
+    private final MultiPatternMatcher matcher;
+    /**
+     * 模式编号 -> 泄露类型
+     */
+    private final LeakKind[] patternKind;
+
+    private ResponseLeakDetector(MultiPatternMatcher matcher, LeakKind[] patternKind) {
+        this.matcher = matcher;
+        this.patternKind = patternKind;
+    }
+
+    public static ResponseLeakDetector compile() {
+        MultiPatternMatcher.Builder builder = MultiPatternMatcher.builder();
+        List<LeakKind> kinds = new ArrayList<>();
+        builder.add(PRIVATE_KEY_ANCHOR);
+        kinds.add(LeakKind.PRIVATE_KEY);
+        for (String anchor : JWT_ANCHORS) {
+            builder.add(anchor);
+            kinds.add(LeakKind.JWT);
+        }
+        for (String anchor : STACK_TRACE_ANCHORS) {
+            builder.add(anchor);
+            kinds.add(LeakKind.STACK_TRACE);
+        }
+        return new ResponseLeakDetector(builder.build(), kinds.toArray(new LeakKind[0]));
+    }
+
+    /**
+     * 创建单个响应的扫描器（每个响应一个实例，非线程安全）。
+     *
+     * @param maxBytes    最多扫描的字节/字符数
+     * @param maxConfirms 最多执行的正则确认次数
+     */
+    public Scan newScan(long maxBytes, int maxConfirms) {
+        return new Scan(this, Math.max(1L, maxBytes), Math.max(1, maxConfirms));
+    }
+
+    private static Pattern confirmPattern(LeakKind kind) {
+        return kind == LeakKind.JWT ? JWT_PATTERN : STACK_TRACE_PATTERN;
+    }
+
+    private static boolean isAlphanumeric(int ch) {
+        return (ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_';
+    }
+
+    private static boolean isValidIdCard(byte[] digits) {
+        if (digits[0] < '1' || digits[0] > '8') {
+            return false;
+        }
+        int year = number(digits, 6, 4);
+        int month = number(digits, 10, 2);
+        int day = number(digits, 12, 2);
+        if (year < 1900 || year > 2099 || month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1]) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < ID_CARD_WEIGHTS.length; i++) {
+            sum += (digits[i] - '0') * ID_CARD_WEIGHTS[i];
+        }
+        int check = digits[17] == 'x' ? 'X' : digits[17];
+        return ID_CARD_CHECK_CODES[sum % 11] == check;
+    }
+
+    private static int number(byte[] digits, int offset, int length) {
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = value * 10 + (digits[i] - '0');
+        }
+        return value;
+    }
+
+    private static String mask(LeakKind kind, String text) {
+        switch (kind) {
+            case PRIVATE_KEY:
+                return "-----BEGIN *** PRIVATE KEY-----";
+            case JWT:
+                return text.substring(0, Math.min(10, text.length())) + "***";
+            case STACK_TRACE:
+                return text.length() <= 80 ? text : text.substring(0, 80);
+            case ID_CARD:
+                return text.substring(0, 6) + "********" + text.substring(14);
+            case PHONE_NUMBER:
+                return text.substring(0, 3) + "****" + text.substring(7);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 单个响应的扫描状态：自动机状态、尾部窗口、数字串状态，内存占用固定。
+     */
+    public static final class Scan {
+
+        private final ResponseLeakDetector detector;
+        private final long maxBytes;
+        private final byte[] window = new byte[WINDOW_BYTES];
+        private final String[] samples = new String[LeakKind.values().length];
+        private final byte[] digits = new byte[18];
+        private int state;
+        private long position;
+        private long confirmAt = -1;
+        private int candidates;
+        private int hitMask;
+        private int confirmsLeft;
+        private boolean exhausted;
+        private boolean budgetExceeded;
+
+        private int runLength;
+        private boolean runBounded;
+        private boolean runEndsWithX;
+        private boolean previousAlphanumeric;
+
+        private Scan(ResponseLeakDetector detector, long maxBytes, int maxConfirms) {
+            this.detector = detector;
+            this.maxBytes = maxBytes;
+            this.confirmsLeft = maxConfirms;
+            this.state = detector.matcher.root();
+        }
+
+        public void update(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length && !exhausted; i++) {
+                update(bytes[i] & 0xFF);
+            }
+        }
+
+        public void update(char[] chars, int offset, int length) {
+            for (int i = offset; i < offset + length && !exhausted; i++) {
+                update(chars[i]);
+            }
+        }
+
+        public void update(String text, int offset, int length) {
+            for (int i = offset; i < offset + length && !exhausted; i++) {
+                update(text.charAt(i));
+            }
+        }
+
+        /**
+         * 推进一个字节（输出流）或一个字符（Writer）；非 ASCII 统一视为边界。
+         */
+        public void update(int ch) {
+            if (exhausted) {
+                return;
+            }
+            if (position >= maxBytes) {
+                budgetExceeded = true;
+                stop();
+                return;
+            }
+            window[(int) (position % WINDOW_BYTES)] = (byte) (ch < 128 ? ch : 0);
+            position++;
+            trackDigits(ch);
+            state = detector.matcher.next(state, ch);
+            for (int hit : detector.matcher.outputs(state)) {
+                LeakKind kind = detector.patternKind[hit];
+                if (isHit(kind)) {
+                    continue;
+                }
+                if (kind == LeakKind.PRIVATE_KEY) {
+                    markHit(kind, null);
+                    continue;
+                }
+                candidates |= 1 << kind.ordinal();
+                if (confirmAt < 0) {
+                    confirmAt = position + CONFIRM_DELAY;
+                }
+            }
+            if (confirmAt >= 0 && position >= confirmAt) {
+                confirmCandidates();
+            }
+        }
+
+        /**
+         * 响应结束：确认尚未确认的候选并结算末尾的数字串，返回按风险分降序的命中列表。
+         */
+        public List<Finding> finish() {
+            stop();
+            List<Finding> findings = new ArrayList<>();
+            for (LeakKind kind : LeakKind.values()) {
+                if (isHit(kind)) {
+                    findings.add(new Finding(kind, samples[kind.ordinal()]));
+                }
+            }
+            return findings.isEmpty() ? Collections.<Finding>emptyList() : findings;
+        }
+
+        public long getScannedBytes() {
+            return position;
+        }
+
+        /**
+         * 是否因扫描字节数或正则确认次数达到上限而提前停止。
+         */
+        public boolean isBudgetExceeded() {
+            return budgetExceeded;
+        }
+
+        private void stop() {
+            if (exhausted) {
+                return;
+            }
+            if (confirmAt >= 0) {
+                confirmCandidates();
+            }
+            evaluateDigitRun();
+            exhausted = true;
+        }
+
+        private boolean isHit(LeakKind kind) {
+            return (hitMask & (1 << kind.ordinal())) != 0;
+        }
+
+        private void markHit(LeakKind kind, String text) {
+            hitMask |= 1 << kind.ordinal();
+            samples[kind.ordinal()] = mask(kind, text);
+            if (hitMask == (1 << LeakKind.values().length) - 1) {
+                exhausted = true;
+            }
+        }
+
+        private void confirmCandidates() {
+            int pending = candidates;
+            candidates = 0;
+            confirmAt = -1;
+            if (confirmsLeft <= 0) {
+                return;
+            }
+            confirmsLeft--;
+            String text = new String(linearWindow(), StandardCharsets.ISO_8859_1);
+            for (LeakKind kind : LeakKind.values()) {
+                if ((pending & (1 << kind.ordinal())) == 0 || isHit(kind)) {
+                    continue;
+                }
+                Matcher m = confirmPattern(kind).matcher(text);
+                if (m.find()) {
+                    markHit(kind, m.group());
+                }
+            }
+            if (confirmsLeft == 0) {
+                budgetExceeded = true;
+            }
+        }
+
+        private byte[] linearWindow() {
+            if (position <= WINDOW_BYTES) {
+                byte[] linear = new byte[(int) position];
+                System.arraycopy(window, 0, linear, 0, linear.length);
+                return linear;
+            }
+            byte[] linear = new byte[WINDOW_BYTES];
+            int start = (int) (position % WINDOW_BYTES);
+            System.arraycopy(window, start, linear, 0, WINDOW_BYTES - start);
+            System.arraycopy(window, 0, linear, WINDOW_BYTES - start, start);
+            return linear;
+        }
+
+        private void trackDigits(int ch) {
+            boolean alphanumeric = isAlphanumeric(ch);
+            if (ch >= '0' && ch <= '9') {
+                if (runLength == 0) {
+                    runBounded = !previousAlphanumeric;
+                }
+                if (runEndsWithX) {
+                    runLength = digits.length + 1;
+                } else if (runLength < digits.length) {
+                    digits[runLength++] = (byte) ch;
+                } else {
+                    runLength = digits.length + 1;
+                }
+            } else if ((ch == 'X' || ch == 'x') && runLength == digits.length - 1) {
+                digits[runLength++] = (byte) ch;
+                runEndsWithX = true;
+            } else {
+                if (!alphanumeric) {
+                    evaluateDigitRun();
+                }
+                runLength = 0;
+                runEndsWithX = false;
+            }
+            previousAlphanumeric = alphanumeric;
+        }
+
+        private void evaluateDigitRun() {
+            if (runLength == 0 || !runBounded) {
+                return;
+            }
+            if (runLength == 11 && !runEndsWithX && digits[0] == '1' && digits[1] >= '3' && digits[1] <= '9') {
+                if (!isHit(LeakKind.PHONE_NUMBER)) {
+                    markHit(LeakKind.PHONE_NUMBER, new String(digits, 0, 11, StandardCharsets.ISO_8859_1));
+                }
+            } else if (runLength == digits.length && !isHit(LeakKind.ID_CARD) && isValidIdCard(digits)) {
+                markHit(LeakKind.ID_CARD, new String(digits, 0, digits.length, StandardCharsets.ISO_8859_1));
+            }
+            runLength = 0;
+            runEndsWithX = false;
+        }
+    }
+
+    /**
+     * 一类泄露的命中结果，样本已脱敏。
+     */
+    public static final class Finding {
+        private final LeakKind kind;
+        private final String maskedSample;
+
+        private Finding(LeakKind kind, String maskedSample) {
+            this.kind = kind;
+            this.maskedSample = maskedSample;
+        }
+
+        public LeakKind getKind() {
+            return kind;
+        }
+
+        public String getMaskedSample() {
+            return maskedSample;
+        }
+    }
+}
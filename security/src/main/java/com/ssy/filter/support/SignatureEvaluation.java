@@ -0,0 +1,49 @@
+package com.ssy.filter.support;
+
+/**
+ * 单次请求的特征评估结果（非线程安全，每个请求一个实例）。
+ * 按特征编号记录运行模式、是否命中以及正则确认耗时，供规则统计使用。
+ */
+public final class SignatureEvaluation {
+
+    private final ThreatRuleMode[] modes;
+    private final long[] hits;
+    private final long[] confirmNanos;
+
+    /**
+     * @param signatureCount 引擎特征数量
+     * @param modes          按特征编号排列的运行模式（见 {@link ThreatSignatureEngine.Signature#getId()}），缺省视为 ENFORCE
+     */
+    public SignatureEvaluation(int signatureCount, ThreatRuleMode[] modes) {
+        this.modes = modes == null ? new ThreatRuleMode[0] : modes;
+        this.hits = new long[(Math.max(signatureCount, 1) + 63) >>> 6];
+        this.confirmNanos = new long[signatureCount];
+    }
+
+    public ThreatRuleMode mode(int signatureId) {
+        ThreatRuleMode mode = signatureId < modes.length ? modes[signatureId] : null;
+        return mode == null ? ThreatRuleMode.ENFORCE : mode;
+    }
+
+    public boolean isHit(int signatureId) {
+        int word = signatureId >>> 6;
+        return word < hits.length && (hits[word] & (1L << (signatureId & 63))) != 0;
+    }
+
+    public long getConfirmNanos(int signatureId) {
+        return signatureId < confirmNanos.length ? confirmNanos[signatureId] : 0L;
+    }
+
+    void markHit(int signatureId) {
+        int word = signatureId >>> 6;
+        if (word < hits.length) {
+            hits[word] |= 1L << (signatureId & 63);
+        }
+    }
+
+    void addConfirmNanos(int signatureId, long nanos) {
+        if (signatureId < confirmNanos.length) {
+            confirmNanos[signatureId] += nanos;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.ssy.filter.support;
+
+import java.io.IOException;
+
+/**
+ * 请求体读取超时、上传速率过低或超过大小上限时抛出，用于中断读取并释放工作线程。
+ */
+public class SlowClientException extends IOException {
+
+    private final boolean oversized;
+
+    public SlowClientException(String reason, boolean oversized) {
+        super(reason);
+        this.oversized = oversized;
+    }
+
+    /**
+     * 是否因超过请求体大小上限触发（否则为读取过慢）
+     */
+    public boolean isOversized() {
+        return oversized;
+    }
+}
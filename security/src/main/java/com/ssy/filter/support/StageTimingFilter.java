@@ -0,0 +1,103 @@
+package com.ssy.filter.support;
+
+import com.ssy.service.impl.SecurityLatencyMetricsService;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * 安全过滤器计时包装：自身耗时 = 总耗时 - 下游链耗时，嵌套的包装器各自只统计本过滤器的部分。
+ *
+ * 是否抽样由最外层包装器决定并写入请求属性，同一请求的所有阶段要么全部计时、要么全部跳过；
+ * 最外层包装器结束时把各阶段自身耗时之和记入接口分组。
+ */
+public class StageTimingFilter implements Filter {
+
+    private static final String TIMING_ATTRIBUTE = StageTimingFilter.class.getName() + ".TIMING";
+    private static final Object NOT_SAMPLED = new Object();
+
+    private final Filter delegate;
+    private final int stageIndex;
+    private final SecurityLatencyMetricsService metricsService;
+
+    public StageTimingFilter(Filter delegate, int stageIndex, SecurityLatencyMetricsService metricsService) {
+        this.delegate = delegate;
+        this.stageIndex = stageIndex;
+        this.metricsService = metricsService;
+    }
+
+    public Filter getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest) || !metricsService.isEnabled()) {
+            delegate.doFilter(request, response, chain);
+            return;
+        }
+        Object marker = request.getAttribute(TIMING_ATTRIBUTE);
+        boolean outermost = marker == null;
+        if (outermost) {
+            marker = metricsService.shouldSample() ? new ChainTiming() : NOT_SAMPLED;
+            request.setAttribute(TIMING_ATTRIBUTE, marker);
+        }
+        if (marker == NOT_SAMPLED) {
+            try {
+                delegate.doFilter(request, response, chain);
+            } finally {
+                if (outermost) {
+                    request.removeAttribute(TIMING_ATTRIBUTE);
+                }
+            }
+            return;
+        }
+
+        ChainTiming timing = (ChainTiming) marker;
+        DownstreamTimingChain downstream = new DownstreamTimingChain(chain);
+        long start = System.nanoTime();
+        try {
+            delegate.doFilter(request, response, downstream);
+        } finally {
+            long self = System.nanoTime() - start - downstream.nanos;
+            metricsService.recordStage(stageIndex, self);
+            timing.totalNanos += self;
+            if (outermost) {
+                request.removeAttribute(TIMING_ATTRIBUTE);
+                metricsService.recordChain((HttpServletRequest) request, timing.totalNanos);
+            }
+        }
+    }
+
+    /**
+     * 单个请求的累计自身耗时（同一请求内串行访问）
+     */
+    private static final class ChainTiming {
+        private long totalNanos;
+    }
+
+    private static final class DownstreamTimingChain implements FilterChain {
+        private final FilterChain chain;
+        private long nanos;
+
+        private DownstreamTimingChain(FilterChain chain) {
+            this.chain = chain;
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+            long start = System.nanoTime();
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.ssy.filter.support;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 大请求体/分块请求体的流式检测包装：不缓存请求体，在控制器读取时边读边扫描。
+ * - 命中风险分达到阈值的特征时抛出 {@link RequestBodyThreatException} 中断读取
+ * - 低于阈值的命中仅记录，由过滤器在链路结束后落库
+ * - 读取经过 {@link BodyReadGuard}，慢速上传或超大请求体抛出 {@link SlowClientException}
+ */
+public class StreamInspectingHttpServletRequest extends HttpServletRequestWrapper {
+
+    private final ThreatSignatureEngine engine;
+    private final ThreatSignatureEngine.BodyStreamScanner scanner;
+    private final int blockRiskScore;
+    private final BodyReadGuard readGuard;
+    private ServletInputStream inspectingStream;
+    private BufferedReader reader;
+    private volatile ThreatSignatureEngine.Signature blockedSignature;
+
+    public StreamInspectingHttpServletRequest(HttpServletRequest request,
+                                              ThreatSignatureEngine engine,
+                                              int windowBytes,
+                                              int blockRiskScore) {
+        this(request, engine, windowBytes, blockRiskScore, null);
+    }
+
+    public StreamInspectingHttpServletRequest(HttpServletRequest request,
+                                              ThreatSignatureEngine engine,
+                                              int windowBytes,
+                                              int blockRiskScore,
+                                              ThreatRuleMode[] ruleModes) {
+        this(request, engine, windowBytes, blockRiskScore, ruleModes, null);
+    }
+
+    public StreamInspectingHttpServletRequest(HttpServletRequest request,
+                                              ThreatSignatureEngine engine,
+                                              int windowBytes,
+                                              int blockRiskScore,
+                                              ThreatRuleMode[] ruleModes,
+                                              BodyReadGuard readGuard) {
+        super(request);
+        this.engine = engine;
+        this.scanner = engine.newBodyStreamScanner(windowBytes, ruleModes);
+        this.blockRiskScore = blockRiskScore;
+        this.readGuard = readGuard;
+    }
+
+    /**
+     * 触发中断的特征；未中断返回 null。
+     */
+    public ThreatSignatureEngine.Signature getBlockedSignature() {
+        return blockedSignature;
+    }
+
+    /**
+     * 已读取部分中风险分最高的命中特征（含未达阈值的命中）。
+     */
+    public ThreatSignatureEngine.Signature getDetectedSignature() {
+        return scanner.getBest();
+    }
+
+    /**
+     * 链路结束后调用：确认尚未确认的候选特征（控制器未读到流末尾时）。
+     */
+    public ThreatSignatureEngine.Signature finishInspection() {
+        return scanner.finish();
+    }
+
+    public ThreatSignatureEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * SHADOW 模式特征是否在已读取的请求体中命中。
+     */
+    public boolean isShadowHit(int signatureId) {
+        return scanner.isShadowHit(signatureId);
+    }
+
+    public long getInspectedBytes() {
+        return scanner.getScannedBytes();
+    }
+
+    public String getInspectedSample() {
+        return scanner.windowSample(resolveCharset(getRequest()));
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (inspectingStream == null) {
+            inspectingStream = new InspectingServletInputStream(super.getInputStream());
+        }
+        return inspectingStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            reader = new BufferedReader(new InputStreamReader(getInputStream(), resolveCharset(getRequest())));
+        }
+        return reader;
+    }
+
+    private void checkBlocked(ThreatSignatureEngine.Signature signature) throws RequestBodyThreatException {
+        if (signature != null && signature.getRiskScore() >= blockRiskScore) {
+            blockedSignature = signature;
+            throw new RequestBodyThreatException(signature);
+        }
+    }
+
+    private static Charset resolveCharset(ServletRequest request) {
+        try {
+            String encoding = request.getCharacterEncoding();
+            if (encoding != null && !encoding.isEmpty()) {
+                return Charset.forName(encoding);
+            }
+        } catch (Exception ignored) {
+            // fallback UTF-8
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private class InspectingServletInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        private InspectingServletInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (blockedSignature != null) {
+                throw new RequestBodyThreatException(blockedSignature);
+            }
+            if (readGuard != null) {
+                readGuard.beforeRead();
+            }
+            int b = delegate.read();
+            if (readGuard != null) {
+                readGuard.afterRead(b < 0 ? -1 : 1);
+            }
+            if (b < 0) {
+                checkBlocked(scanner.finish());
+                return b;
+            }
+            checkBlocked(scanner.update(b));
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (blockedSignature != null) {
+                throw new RequestBodyThreatException(blockedSignature);
+            }
+            if (readGuard != null) {
+                readGuard.beforeRead();
+            }
+            int n = delegate.read(buffer, offset, length);
+            if (readGuard != null) {
+                readGuard.afterRead(n);
+            }
+            if (n < 0) {
+                checkBlocked(scanner.finish());
+                return n;
+            }
+            ThreatSignatureEngine.Signature signature = scanner.update(buffer, offset, n);
+            // 反序列化器读完根对象后通常不会再读到 -1，这里按容器的结束标记提前收尾确认
+            if (delegate.isFinished()) {
+                signature = scanner.finish();
+            }
+            checkBlocked(signature);
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.ssy.filter.support;
+
+import java.util.Locale;
+
+/**
+ * 威胁检测规则运行模式。
+ * ENFORCE：命中即拦截；SHADOW：照常评估并计数，但不拦截（上线前观察命中率与误杀）；OFF：不评估。
+ */
+public enum ThreatRuleMode {
+    ENFORCE,
+    SHADOW,
+    OFF;
+
+    /**
+     * 解析配置值，非法或为空时返回 null（由调用方决定默认值）。
+     */
+    public static ThreatRuleMode parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return ThreatRuleMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
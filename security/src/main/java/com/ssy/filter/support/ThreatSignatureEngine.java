@@ -0,0 +1,603 @@
+package com.ssy.filter.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * 攻击特征匹配引擎（编译一次，请求期只读）。
+ * - 所有特征的字面量锚点编入同一个 Aho-Corasick 自动机，每个输入（路径/查询串/请求体/UA）只扫描一遍
+ * - 纯字面量特征命中即确认；带正则的特征仅在锚点命中后才对该输入执行一次正则确认
+ * - 返回命中特征中风险分最高的一条
+ */
+public final class ThreatSignatureEngine {
+
+    public static final int TARGET_PATH = 1;
+    public static final int TARGET_QUERY = 1 << 1;
+    public static final int TARGET_BODY = 1 << 2;
+    public static final int TARGET_USER_AGENT = 1 << 3;
+
+    private static final Pattern SQLI_PATTERN = Pattern.compile(
+            "(?i)(\\bunion\\b\\s+\\bselect\\b|\\bselect\\b.+\\bfrom\\b|\\bdrop\\b\\s+\\btable\\b|\\binsert\\b\\s+\\binto\\b|\\bor\\b\\s+1=1|--|/\\*|\\bbenchmark\\b\\(|\\bsleep\\b\\()"
+    );
+    private static final Pattern XSS_PATTERN = Pattern.compile(
+            "(?i)(<\\s*script|javascript:|onerror\\s*=|onload\\s*=|<\\s*img[^>]+onerror)"
+    );
+    private static final Pattern JS_INJECTION_PATTERN = Pattern.compile(
+            "(?i)(document\\.cookie|document\\.write\\(|createElement\\(['\"]script|eval\\(|new\\s+function\\(|setTimeout\\(['\"])"
+    );
+
+    private static final List<String> PATH_TRAVERSAL_LITERALS = Arrays.asList(
+            "../", "..\\", "%2e%2e%2f", "%2e%2e/", "%252e%252e"
+    );
+    private static final List<String> DEPENDENCY_PROBE_LITERALS = Arrays.asList(
+            ".git", "package.json", "package-lock.json", "yarn.lock", "pnpm-lock",
+            "pom.xml", "composer.json", "node_modules", "webpack.config", "vite.config"
+    );
+    private static final List<String> TOOL_UA_LITERALS = Arrays.asList(
+            "sqlmap", "nikto", "nmap", "masscan", "zgrab", "curl", "python-requests",
+            "gobuster", "dirbuster", "whatweb", "httpx", "postmanruntime"
+    );
+    /**
+     * 正则特征的必要字面量：正则每个分支的任意匹配都必然包含其中之一
+     */
+    private static final List<String> SQLI_ANCHORS = Arrays.asList(
+            "union", "select", "drop", "insert", "1=1", "--", "/*", "benchmark", "sleep"
+    );
+    private static final List<String> XSS_ANCHORS = Arrays.asList(
+            "script", "javascript:", "onerror", "onload"
+    );
+    private static final List<String> JS_INJECTION_ANCHORS = Arrays.asList(
+            "document.cookie", "document.write(", "createelement(", "eval(", "function(", "settimeout("
+    );
+
+    private final MultiPatternMatcher matcher;
+    private final Signature[] signatures;
+    /**
+     * 模式编号 -> 特征编号
+     */
+    private final int[] patternSignature;
+    /**
+     * 无法编入自动机的扫描关键字（非 ASCII），退化为 contains 兜底
+     */
+    private final List<String> fallbackScannerKeywords;
+    private final Signature scannerSignature;
+    private final List<String> compiledFrom;
+
+    private ThreatSignatureEngine(MultiPatternMatcher matcher,
+                                  Signature[] signatures,
+                                  int[] patternSignature,
+                                  List<String> fallbackScannerKeywords,
+                                  Signature scannerSignature,
+                                  List<String> compiledFrom) {
+        this.matcher = matcher;
+        this.signatures = signatures;
+        this.patternSignature = patternSignature;
+        this.fallbackScannerKeywords = fallbackScannerKeywords;
+        this.scannerSignature = scannerSignature;
+        this.compiledFrom = compiledFrom;
+    }
+
+    public static ThreatSignatureEngine compile(Collection<String> scannerPathKeywords) {
+        return compile(scannerPathKeywords, Collections.<RuleDefinition>emptyList());
+    }
+
+    /**
+     * 编译内置特征 + 自定义特征（自定义特征排在内置特征之后，编号随之顺延）。
+     */
+    public static ThreatSignatureEngine compile(Collection<String> scannerPathKeywords, List<RuleDefinition> customRules) {
+        List<Signature> signatures = new ArrayList<>();
+        List<Integer> patternSignature = new ArrayList<>();
+        MultiPatternMatcher.Builder builder = MultiPatternMatcher.builder();
+
+        Signature pathTraversal = register(signatures, new Signature("PATH_TRAVERSAL",
+                "检测到路径穿越特征",
+                "建议审计来源IP并排查是否存在目录遍历扫描",
+                403, true, 95, TARGET_PATH | TARGET_QUERY, null));
+        addLiterals(builder, patternSignature, pathTraversal, PATH_TRAVERSAL_LITERALS);
+
+        Signature scanner = register(signatures, new Signature("SCANNER_PROBE",
+                "检测到疑似扫描/探测路径",
+                "建议检查该IP近期请求轨迹，必要时加入永久黑名单",
+                404, false, 65, TARGET_PATH, null));
+        List<String> fallbackKeywords = new ArrayList<>();
+        List<String> keywordSource = new ArrayList<>();
+        if (scannerPathKeywords != null) {
+            for (String keyword : scannerPathKeywords) {
+                keywordSource.add(keyword);
+                if (keyword == null || keyword.isEmpty()) {
+                    continue;
+                }
+                if (builder.add(keyword) >= 0) {
+                    patternSignature.add(scanner.id);
+                } else {
+                    fallbackKeywords.add(keyword.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        Signature dependencyProbe = register(signatures, new Signature("DEPENDENCY_PROBE",
+                "检测到依赖/敏感文件探测行为",
+                "建议检查是否存在源码、依赖清单或构建文件泄露风险",
+                404, false, 72, TARGET_PATH, null));
+        addLiterals(builder, patternSignature, dependencyProbe, DEPENDENCY_PROBE_LITERALS);
+
+        Signature sqlInjection = register(signatures, new Signature("SQL_INJECTION",
+                "检测到SQL注入攻击特征",
+                "建议核查参数过滤规则与日志样本，评估是否需要永久封禁该IP",
+                403, true, 92, TARGET_PATH | TARGET_QUERY | TARGET_BODY, SQLI_PATTERN));
+        addLiterals(builder, patternSignature, sqlInjection, SQLI_ANCHORS);
+
+        Signature xss = register(signatures, new Signature("XSS_ATTACK",
+                "检测到XSS攻击特征",
+                "建议核查输入校验与输出编码策略",
+                403, false, 88, TARGET_PATH | TARGET_QUERY | TARGET_BODY, XSS_PATTERN));
+        addLiterals(builder, patternSignature, xss, XSS_ANCHORS);
+
+        Signature jsInjection = register(signatures, new Signature("JS_INJECTION",
+                "检测到前端脚本注入特征",
+                "建议检查前端模板注入、DOM 直写和 CSP 配置",
+                403, false, 86, TARGET_QUERY | TARGET_BODY, JS_INJECTION_PATTERN));
+        addLiterals(builder, patternSignature, jsInjection, JS_INJECTION_ANCHORS);
+
+        Signature automationTool = register(signatures, new Signature("AUTOMATION_TOOL",
+                "检测到自动化扫描工具特征",
+                "建议排查该IP是否在进行接口扫描、爆破或注入测试",
+                404, true, 91, TARGET_USER_AGENT, null));
+        addLiterals(builder, patternSignature, automationTool, TOOL_UA_LITERALS);
+
+        if (customRules != null) {
+            for (RuleDefinition rule : customRules) {
+                Signature custom = register(signatures, new Signature(rule.attackType, rule.reason, rule.suggestedAction,
+                        rule.httpStatus, rule.autoBlacklist, rule.riskScore, rule.targetMask, rule.confirmPattern));
+                addLiterals(builder, patternSignature, custom, rule.literals);
+            }
+        }
+
+        int[] mapping = new int[patternSignature.size()];
+        for (int i = 0; i < mapping.length; i++) {
+            mapping[i] = patternSignature.get(i);
+        }
+        return new ThreatSignatureEngine(
+                builder.build(),
+                signatures.toArray(new Signature[0]),
+                mapping,
+                Collections.unmodifiableList(fallbackKeywords),
+                scanner,
+                Collections.unmodifiableList(keywordSource)
+        );
+    }
+
+    /**
+     * 是否由同一份扫描关键字编译而来（调用方据此判断是否需要重建引擎）。
+     */
+    public boolean isCompiledFrom(List<String> scannerPathKeywords) {
+        return scannerPathKeywords == null ? compiledFrom.isEmpty() : compiledFrom.equals(scannerPathKeywords);
+    }
+
+    public int signatureCount() {
+        return signatures.length;
+    }
+
+    public Signature signatureAt(int id) {
+        return signatures[id];
+    }
+
+    /**
+     * 对一次请求的各个检测面做单遍扫描，返回风险分最高的命中特征；未命中返回 null。
+     */
+    public Signature inspect(String path, String queryString, String body, String userAgent) {
+        Signature best = null;
+        best = scan(path, TARGET_PATH, best);
+        best = scan(queryString, TARGET_QUERY, best);
+        best = scan(body, TARGET_BODY, best);
+        best = scan(userAgent, TARGET_USER_AGENT, best);
+        if (!fallbackScannerKeywords.isEmpty() && path != null && isBetter(scannerSignature, best)) {
+            String lowerPath = path.toLowerCase(Locale.ROOT);
+            for (String keyword : fallbackScannerKeywords) {
+                if (lowerPath.contains(keyword)) {
+                    best = scannerSignature;
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 按规则模式完整评估：OFF 特征跳过；ENFORCE 与 SHADOW 特征全部确认并记入 evaluation（不再按风险分剪枝，
+     * 以便统计每条规则的真实命中率与正则耗时）。返回 ENFORCE 特征中风险分最高的命中；evaluation 为 null 时等价于 4 参数版本。
+     */
+    public Signature inspect(String path, String queryString, String body, String userAgent, SignatureEvaluation evaluation) {
+        if (evaluation == null) {
+            return inspect(path, queryString, body, userAgent);
+        }
+        evaluate(path, TARGET_PATH, evaluation);
+        evaluate(queryString, TARGET_QUERY, evaluation);
+        evaluate(body, TARGET_BODY, evaluation);
+        evaluate(userAgent, TARGET_USER_AGENT, evaluation);
+        if (!fallbackScannerKeywords.isEmpty() && path != null
+                && evaluation.mode(scannerSignature.id) != ThreatRuleMode.OFF && !evaluation.isHit(scannerSignature.id)) {
+            String lowerPath = path.toLowerCase(Locale.ROOT);
+            for (String keyword : fallbackScannerKeywords) {
+                if (lowerPath.contains(keyword)) {
+                    evaluation.markHit(scannerSignature.id);
+                    break;
+                }
+            }
+        }
+        Signature best = null;
+        for (Signature signature : signatures) {
+            if (evaluation.isHit(signature.id) && evaluation.mode(signature.id) == ThreatRuleMode.ENFORCE
+                    && isBetter(signature, best)) {
+                best = signature;
+            }
+        }
+        return best;
+    }
+
+    private void evaluate(String input, int target, SignatureEvaluation evaluation) {
+        if (input == null || input.isEmpty()) {
+            return;
+        }
+        long[] candidates = null;
+        int state = matcher.root();
+        for (int i = 0; i < input.length(); i++) {
+            state = matcher.next(state, input.charAt(i));
+            for (int hit : matcher.outputs(state)) {
+                Signature signature = signatures[patternSignature[hit]];
+                if ((signature.targetMask & target) == 0 || evaluation.isHit(signature.id)
+                        || evaluation.mode(signature.id) == ThreatRuleMode.OFF) {
+                    continue;
+                }
+                if (signature.confirmPattern == null) {
+                    evaluation.markHit(signature.id);
+                    continue;
+                }
+                if (candidates == null) {
+                    candidates = new long[(signatures.length + 63) >>> 6];
+                }
+                candidates[signature.id >>> 6] |= 1L << (signature.id & 63);
+            }
+        }
+        if (candidates == null) {
+            return;
+        }
+        for (Signature signature : signatures) {
+            if ((candidates[signature.id >>> 6] & (1L << (signature.id & 63))) == 0 || evaluation.isHit(signature.id)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean matched = signature.confirmPattern.matcher(input).find();
+            evaluation.addConfirmNanos(signature.id, System.nanoTime() - start);
+            if (matched) {
+                evaluation.markHit(signature.id);
+            }
+        }
+    }
+
+    private Signature scan(String input, int target, Signature best) {
+        if (input == null || input.isEmpty()) {
+            return best;
+        }
+        long[] candidates = null;
+        int state = matcher.root();
+        for (int i = 0; i < input.length(); i++) {
+            state = matcher.next(state, input.charAt(i));
+            int[] hits = matcher.outputs(state);
+            for (int hit : hits) {
+                Signature signature = signatures[patternSignature[hit]];
+                if ((signature.targetMask & target) == 0 || !isBetter(signature, best)) {
+                    continue;
+                }
+                if (signature.confirmPattern == null) {
+                    best = signature;
+                    continue;
+                }
+                if (candidates == null) {
+                    candidates = new long[(signatures.length + 63) >>> 6];
+                }
+                candidates[signature.id >>> 6] |= 1L << (signature.id & 63);
+            }
+        }
+        if (candidates == null) {
+            return best;
+        }
+        // 仅对锚点命中且风险分高于当前结果的正则特征做确认
+        Signature confirmed = null;
+        for (Signature signature : signatures) {
+            if ((candidates[signature.id >>> 6] & (1L << (signature.id & 63))) == 0
+                    || !isBetter(signature, best) || !isBetter(signature, confirmed)) {
+                continue;
+            }
+            if (signature.confirmPattern.matcher(input).find()) {
+                confirmed = signature;
+            }
+        }
+        return confirmed == null ? best : confirmed;
+    }
+
+    /**
+     * 创建请求体流式扫描器（每个请求一个实例，非线程安全）。
+     *
+     * @param windowBytes 正则确认使用的尾部窗口大小，决定单次确认能看到的上下文长度
+     */
+    public BodyStreamScanner newBodyStreamScanner(int windowBytes) {
+        return newBodyStreamScanner(windowBytes, null);
+    }
+
+    /**
+     * 带规则模式的流式扫描器：OFF 特征跳过，SHADOW 特征命中只记录不参与拦截。
+     */
+    public BodyStreamScanner newBodyStreamScanner(int windowBytes, ThreatRuleMode[] modes) {
+        return new BodyStreamScanner(this, Math.max(windowBytes, 256), modes);
+    }
+
+    private static boolean isBetter(Signature candidate, Signature current) {
+        return current == null || candidate.riskScore > current.riskScore;
+    }
+
+    private static Signature register(List<Signature> signatures, Signature signature) {
+        signature.id = signatures.size();
+        signatures.add(signature);
+        return signature;
+    }
+
+    private static void addLiterals(MultiPatternMatcher.Builder builder,
+                                    List<Integer> patternSignature,
+                                    Signature signature,
+                                    List<String> literals) {
+        for (String literal : literals) {
+            if (builder.add(literal) >= 0) {
+                patternSignature.add(signature.id);
+            }
+        }
+    }
+
+    /**
+     * 请求体流式扫描器：按字节推进自动机，状态跨分片延续，内存占用仅为一个固定大小的尾部窗口。
+     * 正则特征的锚点命中后延迟半个窗口再确认，使锚点前后的上下文都落在窗口内；流结束时确认剩余候选。
+     */
+    public static final class BodyStreamScanner {
+
+        private final ThreatSignatureEngine engine;
+        private final ThreatRuleMode[] modes;
+        private final byte[] window;
+        private byte[] linear;
+        private long[] shadowHits;
+        private int state;
+        private long position;
+        private long confirmAt = -1;
+        private long[] candidates;
+        private Signature best;
+
+        private BodyStreamScanner(ThreatSignatureEngine engine, int windowBytes, ThreatRuleMode[] modes) {
+            this.engine = engine;
+            this.modes = modes;
+            this.window = new byte[windowBytes];
+            this.state = engine.matcher.root();
+        }
+
+        /**
+         * 扫描一段字节，返回目前为止风险分最高的命中特征；未命中返回 null。
+         */
+        public Signature update(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                update(bytes[i]);
+            }
+            return best;
+        }
+
+        public Signature update(int b) {
+            byte value = (byte) b;
+            window[(int) (position % window.length)] = value;
+            position++;
+            state = engine.matcher.next(state, value & 0xFF);
+            for (int hit : engine.matcher.outputs(state)) {
+                Signature signature = engine.signatures[engine.patternSignature[hit]];
+                if ((signature.targetMask & TARGET_BODY) == 0) {
+                    continue;
+                }
+                ThreatRuleMode mode = modeOf(signature.id);
+                boolean shadow = mode == ThreatRuleMode.SHADOW;
+                if (mode == ThreatRuleMode.OFF || (shadow ? isShadowHit(signature.id) : !isBetter(signature, best))) {
+                    continue;
+                }
+                if (signature.confirmPattern == null) {
+                    if (shadow) {
+                        markShadowHit(signature.id);
+                    } else {
+                        best = signature;
+                    }
+                    continue;
+                }
+                if (candidates == null) {
+                    candidates = new long[(engine.signatures.length + 63) >>> 6];
+                }
+                candidates[signature.id >>> 6] |= 1L << (signature.id & 63);
+                if (confirmAt < 0) {
+                    confirmAt = position + window.length / 2;
+                }
+            }
+            if (confirmAt >= 0 && position >= confirmAt) {
+                confirmCandidates();
+            }
+            return best;
+        }
+
+        /**
+         * 流结束：确认尚未确认的候选特征。
+         */
+        public Signature finish() {
+            if (confirmAt >= 0) {
+                confirmCandidates();
+            }
+            return best;
+        }
+
+        public Signature getBest() {
+            return best;
+        }
+
+        public long getScannedBytes() {
+            return position;
+        }
+
+        /**
+         * SHADOW 模式特征是否在请求体中命中（不参与拦截，仅用于统计）。
+         */
+        public boolean isShadowHit(int signatureId) {
+            return shadowHits != null && (shadowHits[signatureId >>> 6] & (1L << (signatureId & 63))) != 0;
+        }
+
+        /**
+         * 当前尾部窗口内容，用于事件样本记录。
+         */
+        public String windowSample(Charset charset) {
+            int len = fillLinear();
+            return len == 0 ? null : new String(linear, 0, len, charset);
+        }
+
+        private void confirmCandidates() {
+            // 特征正则均为 ASCII，按 ISO-8859-1 一字节一字符解码即可
+            int len = fillLinear();
+            String text = new String(linear, 0, len, StandardCharsets.ISO_8859_1);
+            for (Signature signature : engine.signatures) {
+                if ((candidates[signature.id >>> 6] & (1L << (signature.id & 63))) == 0) {
+                    continue;
+                }
+                boolean shadow = modeOf(signature.id) == ThreatRuleMode.SHADOW;
+                if (shadow ? isShadowHit(signature.id) : !isBetter(signature, best)) {
+                    continue;
+                }
+                if (signature.confirmPattern.matcher(text).find()) {
+                    if (shadow) {
+                        markShadowHit(signature.id);
+                    } else {
+                        best = signature;
+                    }
+                }
+            }
+            Arrays.fill(candidates, 0L);
+            confirmAt = -1;
+        }
+
+        private ThreatRuleMode modeOf(int signatureId) {
+            ThreatRuleMode mode = modes != null && signatureId < modes.length ? modes[signatureId] : null;
+            return mode == null ? ThreatRuleMode.ENFORCE : mode;
+        }
+
+        private void markShadowHit(int signatureId) {
+            if (shadowHits == null) {
+                shadowHits = new long[(engine.signatures.length + 63) >>> 6];
+            }
+            shadowHits[signatureId >>> 6] |= 1L << (signatureId & 63);
+        }
+
+        private int fillLinear() {
+            if (linear == null) {
+                linear = new byte[window.length];
+            }
+            if (position <= window.length) {
+                System.arraycopy(window, 0, linear, 0, (int) position);
+                return (int) position;
+            }
+            int start = (int) (position % window.length);
+            int head = window.length - start;
+            System.arraycopy(window, start, linear, 0, head);
+            System.arraycopy(window, 0, linear, head, start);
+            return window.length;
+        }
+    }
+
+    /**
+     * 自定义特征定义（由规则表解析而来，已校验）：字面量编入自动机，confirmPattern 非空时字面量作为正则的必要锚点。
+     */
+    public static final class RuleDefinition {
+        private final String attackType;
+        private final String reason;
+        private final String suggestedAction;
+        private final int httpStatus;
+        private final boolean autoBlacklist;
+        private final int riskScore;
+        private final int targetMask;
+        private final List<String> literals;
+        private final Pattern confirmPattern;
+
+        public RuleDefinition(String attackType, String reason, String suggestedAction, int httpStatus,
+                              boolean autoBlacklist, int riskScore, int targetMask,
+                              List<String> literals, Pattern confirmPattern) {
+            this.attackType = attackType;
+            this.reason = reason;
+            this.suggestedAction = suggestedAction;
+            this.httpStatus = httpStatus;
+            this.autoBlacklist = autoBlacklist;
+            this.riskScore = riskScore;
+            this.targetMask = targetMask;
+            this.literals = Collections.unmodifiableList(new ArrayList<>(literals));
+            this.confirmPattern = confirmPattern;
+        }
+
+        public String getAttackType() {
+            return attackType;
+        }
+    }
+
+    public static final class Signature {
+        private int id;
+        private final String attackType;
+        private final String reason;
+        private final String suggestedAction;
+        private final int httpStatus;
+        private final boolean autoBlacklist;
+        private final int riskScore;
+        private final int targetMask;
+        private final Pattern confirmPattern;
+
+        private Signature(String attackType, String reason, String suggestedAction, int httpStatus,
+                          boolean autoBlacklist, int riskScore, int targetMask, Pattern confirmPattern) {
+            this.attackType = attackType;
+            this.reason = reason;
+            this.suggestedAction = suggestedAction;
+            this.httpStatus = httpStatus;
+            this.autoBlacklist = autoBlacklist;
+            this.riskScore = riskScore;
+            this.targetMask = targetMask;
+            this.confirmPattern = confirmPattern;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getAttackType() {
+            return attackType;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public String getSuggestedAction() {
+            return suggestedAction;
+        }
+
+        public int getHttpStatus() {
+            return httpStatus;
+        }
+
+        public boolean isAutoBlacklist() {
+            return autoBlacklist;
+        }
+
+        public int getRiskScore() {
+            return riskScore;
+        }
+    }
+}
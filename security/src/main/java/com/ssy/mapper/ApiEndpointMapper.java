@@ -71,6 +71,27 @@ public interface ApiEndpointMapper {
         @Select("SELECT * FROM api_endpoints ORDER BY controller_class, path")
         List<ApiEndpointEntity> selectAll();
 
+        /**
+         * 查询 update_time 不早于水位线的接口（注册表增量刷新）
+         *
+         * @param since 水位线
+         * @return API接口列表
+         */
+        @Select("SELECT * FROM api_endpoints WHERE update_time >= #{since}")
+        List<ApiEndpointEntity> selectUpdatedSince(@Param("since") java.time.LocalDateTime since);
+
+        /**
+         * 按ID批量查询API接口，不存在的ID不返回
+         *
+         * @param ids 接口ID
+         * @return API接口列表
+         */
+        @Select("<script>" +
+                "SELECT * FROM api_endpoints WHERE id IN " +
+                "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+                "</script>")
+        List<ApiEndpointEntity> selectByIds(@Param("ids") java.util.Collection<Long> ids);
+
         /**
          * 分页查询API接口
          *
@@ -135,6 +156,7 @@ public interface ApiEndpointMapper {
                 "<if test='description != null'>description = #{description},</if>" +
                 "<if test='auth != null'>auth = #{auth},</if>" +
                 "<if test='threatMonitorEnabled != null'>threat_monitor_enabled = #{threatMonitorEnabled},</if>" +
+                "<if test='responseLeakScanEnabled != null'>response_leak_scan_enabled = #{responseLeakScanEnabled},</if>" +
                 "<if test='requireAuth != null'>require_auth = #{requireAuth},</if>" +
                 "<if test='moduleGroup != null'>module_group = #{moduleGroup},</if>" +
                 "<if test='status != null'>status = #{status},</if>" +
@@ -171,6 +193,15 @@ public interface ApiEndpointMapper {
                                         @Param("enabled") Integer enabled,
                                         @Param("updateTime") java.time.LocalDateTime updateTime);
 
+        /**
+         * 按模块批量更新响应体泄露扫描开关
+         */
+        @Update("UPDATE api_endpoints SET response_leak_scan_enabled = #{enabled}, update_time = #{updateTime} " +
+                "WHERE module_group = #{moduleGroup}")
+        int updateResponseLeakScanByModule(@Param("moduleGroup") String moduleGroup,
+                                           @Param("enabled") Integer enabled,
+                                           @Param("updateTime") java.time.LocalDateTime updateTime);
+
         /**
          * 查询所有模块分组
          *
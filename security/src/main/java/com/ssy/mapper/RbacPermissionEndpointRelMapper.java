@@ -4,6 +4,7 @@ import com.ssy.entity.RbacPermissionEndpointRelEntity;
 import org.apache.ibatis.annotations.*;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -30,6 +31,27 @@ public interface RbacPermissionEndpointRelMapper {
             "JOIN sys_permission p ON p.id = rel.permission_id")
     List<EndpointPermissionBindingRow> selectAllEndpointPermissionBindings();
 
+    @Select("<script>" +
+            "SELECT rel.endpoint_id AS endpointId, p.perm_code AS permCode, " +
+            "rel.status AS relStatus, p.status AS permStatus " +
+            "FROM sys_permission_endpoint_rel rel " +
+            "JOIN sys_permission p ON p.id = rel.permission_id " +
+            "WHERE rel.endpoint_id IN " +
+            "<foreach collection='endpointIds' item='endpointId' open='(' separator=',' close=')'>#{endpointId}</foreach>" +
+            "</script>")
+    List<EndpointPermissionBindingRow> selectEndpointPermissionBindingsByEndpointIds(@Param("endpointIds") Collection<Long> endpointIds);
+
+    /**
+     * 绑定关系或所绑权限在水位线之后有变更的接口ID（注册表增量刷新）；物理删除的绑定查不到，由调用方显式传入
+     */
+    @Select("SELECT DISTINCT rel.endpoint_id FROM sys_permission_endpoint_rel rel " +
+            "JOIN sys_permission p ON p.id = rel.permission_id " +
+            "WHERE rel.update_time >= #{since} OR p.update_time >= #{since}")
+    List<Long> selectEndpointIdsWithBindingChangesSince(@Param("since") LocalDateTime since);
+
+    @Select("SELECT endpoint_id FROM sys_permission_endpoint_rel WHERE permission_id = #{permissionId}")
+    List<Long> selectEndpointIdsByPermissionId(@Param("permissionId") Long permissionId);
+
     @Delete("DELETE FROM sys_permission_endpoint_rel WHERE endpoint_id = #{endpointId}")
     int deleteByEndpointId(@Param("endpointId") Long endpointId);
 
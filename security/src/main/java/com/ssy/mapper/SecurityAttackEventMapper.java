@@ -17,10 +17,10 @@ public interface SecurityAttackEventMapper {
     @Insert("INSERT INTO security_attack_event " +
             "(ip, country, region_name, city, isp, location_label, attack_type, path, method, endpoint_id, username, app_id, client_tool, " +
             "browser_fingerprint, browser_trusted, user_agent, referer, query_string, request_body_sample, request_body_hash, " +
-            "risk_score, block_action, block_reason, suggested_action, create_time) " +
+            "risk_score, hit_count, block_action, block_reason, suggested_action, create_time) " +
             "VALUES (#{ip}, #{country}, #{regionName}, #{city}, #{isp}, #{locationLabel}, #{attackType}, #{path}, #{method}, #{endpointId}, #{username}, #{appId}, #{clientTool}, " +
             "#{browserFingerprint}, #{browserTrusted}, #{userAgent}, #{referer}, #{queryString}, #{requestBodySample}, #{requestBodyHash}, " +
-            "#{riskScore}, #{blockAction}, #{blockReason}, #{suggestedAction}, #{createTime})")
+            "#{riskScore}, #{hitCount}, #{blockAction}, #{blockReason}, #{suggestedAction}, #{createTime})")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(SecurityAttackEventEntity entity);
 
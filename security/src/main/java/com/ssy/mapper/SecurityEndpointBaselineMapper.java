@@ -0,0 +1,26 @@
+package com.ssy.mapper;
+
+import com.ssy.entity.SecurityEndpointBaselineEntity;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+@Mapper
+public interface SecurityEndpointBaselineMapper {
+
+    @Select("SELECT * FROM security_endpoint_baseline")
+    List<SecurityEndpointBaselineEntity> selectAll();
+
+    @Insert("<script>" +
+            "INSERT INTO security_endpoint_baseline (endpoint_id, mean_rate, rate_variance, sample_count, update_time) VALUES " +
+            "<foreach collection='list' item='item' separator=','>" +
+            "(#{item.endpointId}, #{item.meanRate}, #{item.rateVariance}, #{item.sampleCount}, NOW())" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE mean_rate = VALUES(mean_rate), rate_variance = VALUES(rate_variance), " +
+            "sample_count = VALUES(sample_count), update_time = NOW()" +
+            "</script>")
+    int batchUpsert(@Param("list") List<SecurityEndpointBaselineEntity> list);
+}
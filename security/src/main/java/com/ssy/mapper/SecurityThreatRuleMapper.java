@@ -0,0 +1,39 @@
+package com.ssy.mapper;
+
+import com.ssy.entity.SecurityThreatRuleEntity;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+@Mapper
+public interface SecurityThreatRuleMapper {
+
+    @Select("SELECT * FROM security_threat_rule WHERE status = 1 ORDER BY id")
+    List<SecurityThreatRuleEntity> selectEnabledList();
+
+    @Select("SELECT * FROM security_threat_rule ORDER BY id DESC")
+    List<SecurityThreatRuleEntity> selectAll();
+
+    @Select("SELECT * FROM security_threat_rule WHERE rule_code = #{ruleCode} LIMIT 1")
+    SecurityThreatRuleEntity selectByCode(@Param("ruleCode") String ruleCode);
+
+    @Insert("INSERT INTO security_threat_rule (rule_code, rule_name, target, matcher_type, expression, anchors, risk_score, action, " +
+            "http_status, reason, suggested_action, mode, status, create_time, update_time) " +
+            "VALUES (#{ruleCode}, #{ruleName}, #{target}, #{matcherType}, #{expression}, #{anchors}, #{riskScore}, #{action}, " +
+            "#{httpStatus}, #{reason}, #{suggestedAction}, #{mode}, 1, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE rule_name = VALUES(rule_name), target = VALUES(target), matcher_type = VALUES(matcher_type), " +
+            "expression = VALUES(expression), anchors = VALUES(anchors), risk_score = VALUES(risk_score), action = VALUES(action), " +
+            "http_status = VALUES(http_status), reason = VALUES(reason), suggested_action = VALUES(suggested_action), " +
+            "mode = VALUES(mode), status = 1, update_time = NOW()")
+    int upsert(SecurityThreatRuleEntity entity);
+
+    @Update("UPDATE security_threat_rule SET mode = #{mode}, update_time = NOW() WHERE rule_code = #{ruleCode}")
+    int updateMode(@Param("ruleCode") String ruleCode, @Param("mode") String mode);
+
+    @Update("UPDATE security_threat_rule SET status = 0, update_time = NOW() WHERE rule_code = #{ruleCode}")
+    int disableByCode(@Param("ruleCode") String ruleCode);
+}
@@ -18,6 +18,10 @@ public class JwtProperties {
     private long ttl;
     private String headName;
     private String headBase;
+    /**
+     * 已校验 Token 解析结果缓存容量（W-TinyLFU 淘汰）
+     */
+    private int verifiedCacheSize = 10000;
 
     // 兼容方法
     public String getHeadName() {
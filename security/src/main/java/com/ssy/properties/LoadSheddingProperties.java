@@ -0,0 +1,57 @@
+package com.ssy.properties;
+
+import com.ssy.factory.YamlPropertySourceFactory;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@PropertySource(value = "classpath:security.yml", factory = YamlPropertySourceFactory.class)
+@ConfigurationProperties(prefix = "security.load-shedding")
+public class LoadSheddingProperties {
+
+    /**
+     * 自适应并发限制与过载降级开关
+     */
+    private boolean enabled = true;
+
+    /**
+     * 并发上限的初始值与上下界
+     */
+    private int initialLimit = 200;
+    private int minLimit = 20;
+    private int maxLimit = 1000;
+
+    /**
+     * 低优先级请求（匿名、未纳入 api_endpoints 的接口）只能占用并发上限的该比例，过载时最先被拒绝
+     */
+    private double lowPriorityShare = 0.6;
+
+    /**
+     * 采样窗口：每个窗口结束时按平均耗时调整一次并发上限；样本数不足时顺延
+     */
+    private long sampleWindowMs = 250L;
+    private int minWindowSamples = 10;
+
+    /**
+     * 长期基准耗时的平滑窗口（按采样窗口个数计）
+     */
+    private int longWindowSize = 600;
+
+    /**
+     * 短期耗时超过基准耗时 × 该倍数才开始收缩并发上限
+     */
+    private double rttTolerance = 1.5;
+
+    /**
+     * 每次调整向新上限靠拢的比例（0~1）
+     */
+    private double smoothing = 0.2;
+
+    /**
+     * 拒绝响应的 Retry-After（秒）
+     */
+    private int retryAfterSeconds = 1;
+}
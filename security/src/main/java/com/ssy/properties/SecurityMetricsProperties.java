@@ -0,0 +1,29 @@
+package com.ssy.properties;
+
+import com.ssy.factory.YamlPropertySourceFactory;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@PropertySource(value = "classpath:security.yml", factory = YamlPropertySourceFactory.class)
+@ConfigurationProperties(prefix = "security.metrics")
+public class SecurityMetricsProperties {
+
+    /**
+     * 安全过滤链分阶段耗时统计开关
+     */
+    private boolean enabled = true;
+
+    /**
+     * 采样率：每 N 个请求抽样 1 个计时（1 表示全量）
+     */
+    private int sampleRate = 8;
+
+    /**
+     * 接口分组数上限（分组按已登记接口划分，未登记路径统一归入 _unregistered），超出后归入 _other
+     */
+    private int maxEndpointGroups = 128;
+}
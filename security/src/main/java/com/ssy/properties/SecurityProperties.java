@@ -82,5 +82,20 @@ public class SecurityProperties {
          * 默认 false，便于平滑迁移。
          */
         private Boolean strictUnboundPermissionDeny = false;
+
+        /**
+         * 横向越权探测：窗口内同一账号对同一资源模板访问的不同资源ID数达到该值即判定
+         */
+        private int horizontalProbeThreshold = 4;
+
+        /**
+         * 横向越权探测统计窗口（毫秒），按 4 个时间桶滑动
+         */
+        private long horizontalProbeWindowMs = 60_000L;
+
+        /**
+         * 横向越权探测最多跟踪的（账号, 资源模板）数量，超出后不再新增跟踪
+         */
+        private int horizontalProbeMaxKeys = 50_000;
     }
 }
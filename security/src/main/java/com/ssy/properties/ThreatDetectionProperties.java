@@ -7,7 +7,9 @@ import org.springframework.context.annotation.PropertySource;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Component
@@ -41,17 +43,136 @@ public class ThreatDetectionProperties {
     private int maxInspectBodyBytes = 4096;
 
     /**
-     * 全局IP固定窗口限流配置
+     * 超过 maxInspectBodyBytes 或未声明长度（chunked）的请求体是否在读取时流式检测
+     */
+    private boolean streamInspectEnabled = true;
+
+    /**
+     * 流式检测的尾部窗口大小（字节），决定跨分片正则确认可见的上下文长度
+     */
+    private int streamInspectWindowBytes = 1024;
+
+    /**
+     * 流式检测命中特征的风险分达到该值时中断请求，低于该值仅记录
+     */
+    private int streamInspectBlockRiskScore = 80;
+
+    /**
+     * 请求体统一捕获的上限（字节），超出部分不缓存、由下游从原始流续读；实际取值不低于 maxInspectBodyBytes 与报文指纹签名长度
+     */
+    private int bodyCaptureMaxBytes = 8192;
+
+    /**
+     * 请求体捕获缓冲块大小（字节）
+     */
+    private int bodyCaptureChunkBytes = 4096;
+
+    /**
+     * 缓冲池最多保留的空闲块数，超出归还时直接丢弃
+     */
+    private int bodyCapturePoolChunks = 256;
+
+    /**
+     * 响应体泄露扫描总开关（还需在 api_endpoints.response_leak_scan_enabled 按接口开启）
+     */
+    private boolean responseLeakScanEnabled = false;
+
+    /**
+     * 单个响应最多扫描的字节数，超出部分只透传
+     */
+    private int responseLeakScanMaxBytes = 262144;
+
+    /**
+     * 单个响应最多执行的正则确认次数
+     */
+    private int responseLeakScanMaxConfirms = 32;
+
+    /**
+     * 慢速客户端/超大请求防护总开关
+     */
+    private boolean slowClientGuardEnabled = true;
+
+    /**
+     * 单个IP同时在处理中的请求上限，超出直接 429，防止少数IP占满工作线程
+     */
+    private int maxInflightPerIp = 32;
+
+    /**
+     * 请求体读取总时长上限（毫秒）
+     */
+    private long bodyReadDeadlineMs = 30_000L;
+
+    /**
+     * 上传速率检查的宽限期（毫秒），宽限期内读完的请求体不检查速率
+     */
+    private long bodyReadGraceMs = 5_000L;
+
+    /**
+     * 宽限期后的最低平均上传速率（字节/秒）
+     */
+    private long minBodyBytesPerSecond = 256L;
+
+    /**
+     * 请求体大小上限（字节），Content-Length 超出直接 413，未声明长度的按实际读取字节数中断
+     */
+    private long maxRequestBodyBytes = 10L * 1024 * 1024;
+
+    /**
+     * 统计窗口内慢速/超限违规达到该次数自动加入黑名单
+     */
+    private int slowClientViolationThreshold = 5;
+    private long slowClientViolationWindowMs = 60_000L;
+
+    /**
+     * 最多跟踪的IP数，超出后新IP不计在途数（违规计数仍然生效）
+     */
+    private int slowClientMaxTrackedIps = 100_000;
+
+    /**
+     * 全局IP限流配置（GCRA 平滑窗口：窗口内最多 limit 次，不存在窗口边界突发）
      */
     private long globalWindowMs = 10_000L;
     private int globalWindowLimit = 300;
 
     /**
-     * 单接口固定窗口限流配置（监控接口生效）
+     * 单接口限流配置（监控接口生效）
      */
     private long endpointWindowMs = 10_000L;
     private int endpointWindowLimit = 120;
 
+    /**
+     * 每张限流表的槽位数（全局/单接口/认证回流各一张，向上取 2 的幂）
+     */
+    private int rateLimiterSlots = 65_536;
+
+    /**
+     * 来源IP重流量概率统计（Count-Min Sketch + Space-Saving Top-K），内存固定：2 × width × depth × 4 字节
+     */
+    private boolean heavyHitterEnabled = true;
+    private int heavyHitterSketchWidth = 16_384;
+    private int heavyHitterSketchDepth = 4;
+
+    /**
+     * Top-K 表大小，以及进入 Top-K 所需的窗口内最小估算请求数
+     */
+    private int heavyHitterTopK = 32;
+    private int heavyHitterMinCount = 50;
+
+    /**
+     * 接口流量基线：按统计周期学习每个接口“每限流窗口请求总数”（所有来源合计）的指数加权均值与方差（alpha 为每周期平滑系数）。
+     * 预热满 warmupIntervals 个周期后，接口总量超过 均值 + sigma × 标准差 即判定为整体偏离并单独告警；
+     * 基线不改变单来源的接口阈值 endpointWindowLimit
+     */
+    private boolean endpointBaselineEnabled = true;
+    private double endpointBaselineAlpha = 0.005;
+    private double endpointBaselineSigma = 4.0;
+    private int endpointBaselineWarmupIntervals = 360;
+
+    /**
+     * 参与基线学习的接口数上限（统计数组按此预分配）
+     */
+    private int endpointBaselineMaxEndpoints = 4096;
+
     /**
      * 触发自动拉黑时长（秒）
      */
@@ -92,6 +213,17 @@ public class ThreatDetectionProperties {
      */
     private int blacklistQueueCapacity = 1024;
 
+    /**
+     * 洪泛聚合：同一IP+攻击类型在窗口内只落一条完整事件，其余命中计数后汇总
+     */
+    private boolean floodAggregationEnabled = true;
+    private long floodAggregationWindowMs = 60_000L;
+
+    /**
+     * 聚合窗口表上限，超过后新来源折叠进按攻击类型的溢出窗口（首个命中仍落完整事件）
+     */
+    private int floodAggregationMaxKeys = 10_000;
+
     /**
      * 是否启用设备信誉评分
      */
@@ -171,6 +303,18 @@ public class ThreatDetectionProperties {
      */
     private int deviceRiskDecayHalfLifeHours = 168;
 
+    /**
+     * User-Agent 解析结果记忆化缓存容量（W-TinyLFU 淘汰），超过 userAgentMaxCacheLength 的 UA 不缓存
+     */
+    private int userAgentCacheSize = 2048;
+    private int userAgentMaxCacheLength = 512;
+
+    /**
+     * 检测规则运行模式：规则ID（攻击类型，如 SQL_INJECTION）-> ENFORCE / SHADOW / OFF，未配置的规则为 ENFORCE。
+     * 运行期可通过 /threat-detection/rules/{ruleId}/mode 调整。
+     */
+    private Map<String, String> ruleModes = new LinkedHashMap<>();
+
     /**
      * 静态扫描探测关键字（路径中命中即认为是扫描/探测）
      */
@@ -0,0 +1,245 @@
+package com.ssy.security;
+
+import com.ssy.context.RequestUserContext;
+import com.ssy.service.impl.EndpointRbacCacheService.EndpointAccessRule;
+import com.ssy.utils.PermissionMask;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * 编译后的授权决策记录：permit-all / role-based 静态策略与接口级 RBAC 规则在接口注册表刷新时合并为一条。
+ *
+ * 每个请求只做一次查找（随请求安全信封解析）和一次 {@link #decide(RequestUserContext, Authentication)} 判定，
+ * JWT 过滤器据 {@link #isPublic()} 决定是否要求登录，URL 授权投票器直接复用已判定的结论。
+ *
+ * 静态策略按 Spring Security antMatchers 的首个命中规则语义计算；模式路由（含 {var}/*）的请求路径不固定，
+ * 静态部分在首次请求时按命中的静态规则补全并缓存。
+ */
+public final class AuthorizationDecision {
+
+    /**
+     * 接口级过滤器写入的判定结论（{@link Verdict}），URL 授权投票器直接读取
+     */
+    public static final String VERDICT_ATTR = "AUTHORIZATION_VERDICT";
+
+    public enum Kind {
+        PUBLIC,
+        AUTHENTICATED,
+        ROLE_GATED,
+        PERMISSION_GATED,
+        DISABLED
+    }
+
+    public enum Verdict {
+        ALLOW,
+        ENDPOINT_DISABLED,
+        LOGIN_REQUIRED,
+        PERMISSION_DISABLED,
+        UNBOUND_DENIED,
+        PERMISSION_DENIED,
+        ROLE_DENIED,
+        UNAUTHENTICATED
+    }
+
+    private final EndpointAccessRule endpointRule;
+    private final boolean strictUnboundDeny;
+    private final StaticRule staticRule;
+    private final Kind kind;
+    private final AuthorizationDecision[] resolvedByStaticRule;
+
+    private AuthorizationDecision(EndpointAccessRule endpointRule, boolean strictUnboundDeny,
+                                  StaticRule staticRule, int staticRuleCount) {
+        this.endpointRule = endpointRule;
+        this.strictUnboundDeny = strictUnboundDeny;
+        this.staticRule = staticRule;
+        this.kind = kindOf(endpointRule, staticRule);
+        this.resolvedByStaticRule = staticRule == null ? new AuthorizationDecision[staticRuleCount] : null;
+    }
+
+    /**
+     * @param endpointRule      接口级 RBAC 规则，未登记的路径为 null
+     * @param strictUnboundDeny 严格模式：require_auth=1 但未绑定权限时拒绝
+     * @param staticRule        已确定的静态策略；模式路由传 null，按请求补全
+     * @param staticRuleCount   静态规则总数（含默认规则），用于缓存补全结果
+     */
+    public static AuthorizationDecision compile(EndpointAccessRule endpointRule, boolean strictUnboundDeny,
+                                                StaticRule staticRule, int staticRuleCount) {
+        return new AuthorizationDecision(endpointRule, strictUnboundDeny, staticRule, staticRuleCount);
+    }
+
+    /**
+     * 补全静态策略：已确定时返回自身，否则按命中的静态规则返回缓存的完整决策。
+     */
+    public AuthorizationDecision resolve(StaticRule matched) {
+        if (staticRule != null) {
+            return this;
+        }
+        AuthorizationDecision resolved = resolvedByStaticRule[matched.getIndex()];
+        if (resolved == null) {
+            resolved = new AuthorizationDecision(endpointRule, strictUnboundDeny, matched, 0);
+            resolvedByStaticRule[matched.getIndex()] = resolved;
+        }
+        return resolved;
+    }
+
+    public boolean isResolved() {
+        return staticRule != null;
+    }
+
+    /**
+     * 命中 permit-all，无需携带 Token
+     */
+    public boolean isPublic() {
+        return staticRule != null && staticRule.isPublicPath();
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public EndpointAccessRule getEndpointRule() {
+        return endpointRule;
+    }
+
+    public String getRequiredRole() {
+        return staticRule == null ? null : staticRule.getRole();
+    }
+
+    /**
+     * 一次判定：先按接口级规则（禁用、登录、权限绑定），再按静态策略（permit-all / 角色 / 登录）。
+     *
+     * @param context        当前请求的用户上下文
+     * @param authentication 当前认证主体，角色按 Spring hasRole 语义匹配 ROLE_ 前缀权限
+     */
+    public Verdict decide(RequestUserContext context, Authentication authentication) {
+        boolean authenticated = context != null && context.isAuthenticated();
+        boolean userAuthenticated = authenticated && !context.isServiceCall();
+        EndpointAccessRule rule = endpointRule;
+        if (rule != null) {
+            if (rule.getStatus() != 1) {
+                return Verdict.ENDPOINT_DISABLED;
+            }
+            if (rule.isRequireAuth() && !userAuthenticated) {
+                return Verdict.LOGIN_REQUIRED;
+            }
+            if (rule.hasOnlyDisabledPermissionBindings()) {
+                return Verdict.PERMISSION_DISABLED;
+            }
+            if (!rule.hasPermissionBindings()) {
+                if (strictUnboundDeny && rule.isRequireAuth()) {
+                    return Verdict.UNBOUND_DENIED;
+                }
+            } else {
+                if (!userAuthenticated) {
+                    return Verdict.LOGIN_REQUIRED;
+                }
+                if (!matchesAnyPermission(rule, context)) {
+                    return Verdict.PERMISSION_DENIED;
+                }
+            }
+        }
+        if (isPublic()) {
+            return Verdict.ALLOW;
+        }
+        if (!authenticated) {
+            return Verdict.UNAUTHENTICATED;
+        }
+        String role = getRequiredRole();
+        if (role != null && !hasRoleAuthority(authentication, role)) {
+            return Verdict.ROLE_DENIED;
+        }
+        return Verdict.ALLOW;
+    }
+
+    /**
+     * 仅按静态策略判定（服务间调用等未经过接口级过滤器的请求）。
+     */
+    public boolean permitsStatic(boolean authenticated, Authentication authentication) {
+        if (isPublic()) {
+            return true;
+        }
+        if (!authenticated) {
+            return false;
+        }
+        String role = getRequiredRole();
+        return role == null || hasRoleAuthority(authentication, role);
+    }
+
+    private static boolean hasRoleAuthority(Authentication authentication, String role) {
+        if (authentication == null || authentication.getAuthorities() == null) {
+            return false;
+        }
+        String expected = "ROLE_" + role;
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (authority != null && expected.equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 用户与接口位图均来自同一权限字典，携带位图时逐字 AND；否则退回按权限编码逐个判断。
+     */
+    private static boolean matchesAnyPermission(EndpointAccessRule rule, RequestUserContext context) {
+        PermissionMask userMask = context.getPermissionMask();
+        if (userMask != null) {
+            return userMask.intersects(rule.getRequiredMask());
+        }
+        for (String permissionCode : rule.getPermissionCodes()) {
+            if (context.hasPermission(permissionCode)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Kind kindOf(EndpointAccessRule rule, StaticRule staticRule) {
+        if (rule != null && rule.getStatus() != 1) {
+            return Kind.DISABLED;
+        }
+        if (rule != null && (rule.hasPermissionBindings() || rule.hasOnlyDisabledPermissionBindings())) {
+            return Kind.PERMISSION_GATED;
+        }
+        if (staticRule != null && staticRule.getRole() != null) {
+            return Kind.ROLE_GATED;
+        }
+        if (staticRule != null && staticRule.isPublicPath() && (rule == null || !rule.isRequireAuth())) {
+            return Kind.PUBLIC;
+        }
+        return Kind.AUTHENTICATED;
+    }
+
+    /**
+     * 静态策略规则：permit-all 或 role-based 中的一条，以及未命中任何规则时的默认规则（仅要求登录）。
+     */
+    public static final class StaticRule {
+        private final int index;
+        private final String pattern;
+        private final boolean publicPath;
+        private final String role;
+
+        public StaticRule(int index, String pattern, boolean publicPath, String role) {
+            this.index = index;
+            this.pattern = pattern;
+            this.publicPath = publicPath;
+            this.role = role;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public boolean isPublicPath() {
+            return publicPath;
+        }
+
+        public String getRole() {
+            return role;
+        }
+    }
+}
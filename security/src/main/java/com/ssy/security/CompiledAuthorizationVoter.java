@@ -0,0 +1,49 @@
+package com.ssy.security;
+
+import com.ssy.service.impl.RequestSecurityEnvelopeService;
+import org.springframework.security.access.AccessDecisionVoter;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.FilterInvocation;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
+
+/**
+ * URL 授权投票器：替代 WebExpressionVoter + RoleVoter + AuthenticatedVoter 对 antMatchers 的重复求值。
+ *
+ * 接口级过滤器已判定放行的请求直接复用其结论；其余请求（服务间调用、OPTIONS、过滤器判定为角色/登录不满足）
+ * 按同一条已编译决策的静态部分，用当前认证主体的权限再判定一次。
+ */
+public class CompiledAuthorizationVoter implements AccessDecisionVoter<FilterInvocation> {
+
+    private final RequestSecurityEnvelopeService requestSecurityEnvelopeService;
+
+    public CompiledAuthorizationVoter(RequestSecurityEnvelopeService requestSecurityEnvelopeService) {
+        this.requestSecurityEnvelopeService = requestSecurityEnvelopeService;
+    }
+
+    @Override
+    public boolean supports(ConfigAttribute attribute) {
+        return true;
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return FilterInvocation.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public int vote(Authentication authentication, FilterInvocation invocation, Collection<ConfigAttribute> attributes) {
+        HttpServletRequest request = invocation.getRequest();
+        if (request.getAttribute(AuthorizationDecision.VERDICT_ATTR) == AuthorizationDecision.Verdict.ALLOW) {
+            return ACCESS_GRANTED;
+        }
+        AuthorizationDecision decision = requestSecurityEnvelopeService.resolve(request).getAuthorizationDecision();
+        boolean authenticated = authentication != null
+                && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken);
+        return decision.permitsStatic(authenticated, authentication) ? ACCESS_GRANTED : ACCESS_DENIED;
+    }
+}
@@ -31,6 +31,16 @@ public interface ServiceTokenService {
      */
     ServiceTokenEntity validateToken(String token);
 
+    /**
+     * 判断token是否为签发给该应用的凭据（只查缓存与校验签名，不访问数据库）
+     * 已吊销但签名有效的token仍可能返回true，最终以validateToken为准
+     *
+     * @param token token值
+     * @param appId 应用ID
+     * @return 缓存中已验证且appId一致，或签名有效且appId声明一致时返回true
+     */
+    boolean isIssuedTo(String token, String appId);
+
     /**
      * 根据appId获取有效token
      * 
@@ -0,0 +1,209 @@
+package com.ssy.service.impl;
+
+import com.ssy.properties.LoadSheddingProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应并发限制（梯度算法）：按请求实际耗时动态调整允许同时处理的请求数。
+ *
+ * - 每个采样窗口结束时取窗口内平均耗时（短期耗时），与长期基准耗时比较：
+ *   梯度 = clamp(容忍倍数 × 基准耗时 / 短期耗时, 0.5, 1)，新上限 = 上限 × 梯度 + sqrt(上限)；
+ *   下游（数据库等）变慢时耗时升高、上限收缩，恢复后按 sqrt(上限) 逐步放开；
+ * - 窗口内并发峰值不足上限一半时不扩张，避免空闲期上限无限膨胀；
+ * - 准入只做一次 CAS，按优先级使用不同的占用比例：低优先级请求只能占用上限的 lowPriorityShare，过载时最先被拒绝；
+ * - 窗口调整由抢到 CAS 的单个线程完成，热路径不加锁。
+ */
+@Service
+public class AdaptiveConcurrencyLimiterService {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyLimiterService.class);
+
+    private static final double MIN_GRADIENT = 0.5D;
+    private static final long REJECT_LOG_INTERVAL_NANOS = 10_000_000_000L;
+
+    private final LoadSheddingProperties properties;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicInteger windowPeakInflight = new AtomicInteger();
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicLong windowEndNanos = new AtomicLong();
+
+    private final LongAdder admittedHigh = new LongAdder();
+    private final LongAdder admittedLow = new LongAdder();
+    private final LongAdder rejectedHigh = new LongAdder();
+    private final LongAdder rejectedLow = new LongAdder();
+
+    private volatile double limit;
+    private volatile double shortRttNanos;
+    private volatile double longRttNanos;
+    private long lastRejectLogNanos;
+    private long rejectedAtLastLog;
+
+    public AdaptiveConcurrencyLimiterService(LoadSheddingProperties properties) {
+        this.properties = properties;
+        this.limit = clampLimit(properties.getInitialLimit());
+        this.windowEndNanos.set(System.nanoTime() + windowNanos());
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 尝试占用一个并发名额；成功后必须在请求结束时调用 {@link #release(long)}。
+     */
+    public boolean tryAcquire(boolean highPriority) {
+        int currentLimit = (int) limit;
+        int admitLimit = highPriority ? currentLimit : lowPriorityLimit(currentLimit);
+        while (true) {
+            int current = inflight.get();
+            if (current >= admitLimit) {
+                (highPriority ? rejectedHigh : rejectedLow).increment();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                if (current + 1 > windowPeakInflight.get()) {
+                    windowPeakInflight.accumulateAndGet(current + 1, Math::max);
+                }
+                (highPriority ? admittedHigh : admittedLow).increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放名额并记录本次请求耗时。
+     */
+    public void release(long startNanos) {
+        inflight.decrementAndGet();
+        long now = System.nanoTime();
+        windowLatencyNanos.add(now - startNanos);
+        windowSamples.increment();
+        long end = windowEndNanos.get();
+        if (now - end >= 0L
+                && windowSamples.sum() >= Math.max(1, properties.getMinWindowSamples())
+                && windowEndNanos.compareAndSet(end, now + windowNanos())) {
+            long samples = windowSamples.sumThenReset();
+            long latency = windowLatencyNanos.sumThenReset();
+            adjust(latency / (double) Math.max(1L, samples), windowPeakInflight.getAndSet(inflight.get()), now);
+        }
+    }
+
+    public int retryAfterSeconds() {
+        return Math.max(1, properties.getRetryAfterSeconds());
+    }
+
+    public Map<String, Object> snapshotStats() {
+        int currentLimit = (int) limit;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("limit", currentLimit);
+        stats.put("lowPriorityLimit", lowPriorityLimit(currentLimit));
+        stats.put("inflight", inflight.get());
+        stats.put("shortRttMs", round(shortRttNanos / 1_000_000D));
+        stats.put("longRttMs", round(longRttNanos / 1_000_000D));
+        stats.put("admittedHigh", admittedHigh.sum());
+        stats.put("admittedLow", admittedLow.sum());
+        stats.put("rejectedHigh", rejectedHigh.sum());
+        stats.put("rejectedLow", rejectedLow.sum());
+        return stats;
+    }
+
+    public String renderPrometheus() {
+        StringBuilder builder = new StringBuilder(1024);
+        builder.append("# HELP security_concurrency_limit Current adaptive concurrency limit\n");
+        builder.append("# TYPE security_concurrency_limit gauge\n");
+        builder.append("security_concurrency_limit ").append((int) limit).append('\n');
+        builder.append("# HELP security_concurrency_inflight Requests currently holding a concurrency permit\n");
+        builder.append("# TYPE security_concurrency_inflight gauge\n");
+        builder.append("security_concurrency_inflight ").append(inflight.get()).append('\n');
+        builder.append("# HELP security_concurrency_rtt_seconds Average request latency used by the limiter\n");
+        builder.append("# TYPE security_concurrency_rtt_seconds gauge\n");
+        builder.append("security_concurrency_rtt_seconds{window=\"short\"} ")
+                .append(String.format(Locale.ROOT, "%.6f", shortRttNanos / 1_000_000_000D)).append('\n');
+        builder.append("security_concurrency_rtt_seconds{window=\"long\"} ")
+                .append(String.format(Locale.ROOT, "%.6f", longRttNanos / 1_000_000_000D)).append('\n');
+        builder.append("# HELP security_concurrency_requests_total Requests admitted or shed by the concurrency limiter\n");
+        builder.append("# TYPE security_concurrency_requests_total counter\n");
+        appendCounter(builder, "high", "admitted", admittedHigh.sum());
+        appendCounter(builder, "low", "admitted", admittedLow.sum());
+        appendCounter(builder, "high", "rejected", rejectedHigh.sum());
+        appendCounter(builder, "low", "rejected", rejectedLow.sum());
+        return builder.toString();
+    }
+
+    /**
+     * 单线程执行（抢到窗口 CAS 的线程），limit/rtt 以 volatile 发布给准入路径。
+     */
+    private void adjust(double rtt, int peakInflight, long now) {
+        shortRttNanos = rtt;
+        double longRtt = longRttNanos;
+        if (longRtt <= 0.0D) {
+            longRtt = rtt;
+        } else {
+            double alpha = 2.0D / (Math.max(1, properties.getLongWindowSize()) + 1.0D);
+            // 耗时回落时基准更快跟随，避免一次慢高峰把基准长期抬高
+            longRtt += (rtt < longRtt ? Math.min(1.0D, alpha * 4.0D) : alpha) * (rtt - longRtt);
+        }
+        longRttNanos = longRtt;
+
+        double current = limit;
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0D,
+                Math.max(1.0D, properties.getRttTolerance()) * longRtt / Math.max(1.0D, rtt)));
+        double target = current * gradient + Math.sqrt(current);
+        if (target > current && peakInflight < current / 2.0D) {
+            return;
+        }
+        double smoothing = Math.min(1.0D, Math.max(0.01D, properties.getSmoothing()));
+        limit = clampLimit(current * (1.0D - smoothing) + target * smoothing);
+        logRejections(now);
+    }
+
+    private void logRejections(long now) {
+        if (now - lastRejectLogNanos < REJECT_LOG_INTERVAL_NANOS) {
+            return;
+        }
+        long rejected = rejectedHigh.sum() + rejectedLow.sum();
+        if (rejected > rejectedAtLastLog) {
+            log.warn("并发限制触发降级: limit={}, inflight={}, shortRtt={}ms, longRtt={}ms, 近期拒绝={}",
+                    (int) limit, inflight.get(), round(shortRttNanos / 1_000_000D), round(longRttNanos / 1_000_000D),
+                    rejected - rejectedAtLastLog);
+        }
+        rejectedAtLastLog = rejected;
+        lastRejectLogNanos = now;
+    }
+
+    private int lowPriorityLimit(int currentLimit) {
+        double share = Math.min(1.0D, Math.max(0.0D, properties.getLowPriorityShare()));
+        return Math.max(1, (int) (currentLimit * share));
+    }
+
+    private double clampLimit(double value) {
+        int min = Math.max(1, properties.getMinLimit());
+        int max = Math.max(min, properties.getMaxLimit());
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private long windowNanos() {
+        return Math.max(10L, properties.getSampleWindowMs()) * 1_000_000L;
+    }
+
+    private static void appendCounter(StringBuilder builder, String priority, String outcome, long value) {
+        builder.append("security_concurrency_requests_total{priority=\"").append(priority)
+                .append("\",outcome=\"").append(outcome).append("\"} ").append(value).append('\n');
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0D) / 100.0D;
+    }
+}
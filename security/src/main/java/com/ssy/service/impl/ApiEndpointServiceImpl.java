@@ -42,10 +42,7 @@ public class ApiEndpointServiceImpl implements ApiEndpointService {
     private ApplicationContext applicationContext;
 
     @Autowired(required = false)
-    private EndpointThreatCacheService endpointThreatCacheService;
-
-    @Autowired(required = false)
-    private EndpointRbacCacheService endpointRbacCacheService;
+    private EndpointRegistryService endpointRegistryService;
 
     /**
      * API扫描功能开关，从yml配置文件读取
@@ -221,7 +218,7 @@ public class ApiEndpointServiceImpl implements ApiEndpointService {
         apiEndpoint.setUpdateTime(LocalDateTime.now());
         boolean success = apiEndpointMapper.update(apiEndpoint) > 0;
         if (success) {
-            refreshEndpointCachesQuietly();
+            refreshEndpointCachesQuietly(apiEndpoint.getId());
         }
         return success;
     }
@@ -727,23 +724,28 @@ public class ApiEndpointServiceImpl implements ApiEndpointService {
     }
 
     private void refreshEndpointCachesQuietly() {
-        if (endpointThreatCacheService == null) {
-            // 继续尝试刷新 RBAC 缓存
-        } else {
-            try {
-                endpointThreatCacheService.refresh();
-            } catch (Exception e) {
-                logger.warn("刷新异常识别接口缓存失败: {}", e.getMessage());
-            }
+        if (endpointRegistryService == null) {
+            return;
         }
+        // 异常识别与 RBAC 接口缓存共用同一注册表快照，一次装载、一次原子替换
+        try {
+            endpointRegistryService.refresh();
+        } catch (Exception e) {
+            logger.warn("刷新接口注册表失败: {}", e.getMessage());
+        }
+    }
 
-        if (endpointRbacCacheService == null) {
+    /**
+     * 单个接口编辑后增量刷新注册表，只重建该接口及水位线之后变更的接口
+     */
+    private void refreshEndpointCachesQuietly(Long endpointId) {
+        if (endpointRegistryService == null) {
             return;
         }
         try {
-            endpointRbacCacheService.refresh();
+            endpointRegistryService.refreshDelta(Collections.singletonList(endpointId));
         } catch (Exception e) {
-            logger.warn("刷新接口RBAC缓存失败: {}", e.getMessage());
+            logger.warn("增量刷新接口注册表失败: {}", e.getMessage());
         }
     }
 }
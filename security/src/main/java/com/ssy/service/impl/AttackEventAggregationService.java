@@ -0,0 +1,206 @@
+package com.ssy.service.impl;
+
+import com.ssy.entity.SecurityAttackEventEntity;
+import com.ssy.properties.ThreatDetectionProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 攻击事件洪泛聚合：同一 (ip, attackType) 在窗口内只落一条完整事件，
+ * 后续重复命中只计数，窗口结束时汇总为一条带命中次数的聚合事件，避免洪泛挤掉其他IP的真实事件。
+ *
+ * 聚合表达到 floodAggregationMaxKeys 后（多为伪造来源IP洪泛），新的 (ip, attackType) 折叠进按 attackType 的粗粒度溢出窗口：
+ * 每个攻击类型在窗口内的首个溢出命中仍落完整事件，其余只计数并在窗口结束时汇总，新攻击者的首个事件不会丢失。
+ */
+@Service
+public class AttackEventAggregationService {
+
+    private final ThreatDetectionProperties properties;
+    private final AttackEventAsyncRecorderService attackEventAsyncRecorderService;
+
+    private final ConcurrentHashMap<String, AggregationWindow> windows = new ConcurrentHashMap<>();
+    /**
+     * 聚合表已满时按 attackType 折叠的溢出窗口，键数量以攻击类型数为上限
+     */
+    private final ConcurrentHashMap<String, AggregationWindow> overflowWindows = new ConcurrentHashMap<>();
+
+    private final AtomicLong fastRejectCount = new AtomicLong();
+    private final AtomicLong suppressedHitCount = new AtomicLong();
+    private final AtomicLong overflowSuppressedCount = new AtomicLong();
+    private final AtomicLong summaryEventCount = new AtomicLong();
+
+    public AttackEventAggregationService(ThreatDetectionProperties properties,
+                                         AttackEventAsyncRecorderService attackEventAsyncRecorderService) {
+        this.properties = properties;
+        this.attackEventAsyncRecorderService = attackEventAsyncRecorderService;
+    }
+
+    /**
+     * 判断本次命中是否需要落完整事件：窗口内首次命中返回 true，重复命中仅计数并返回 false。
+     */
+    public boolean tryAcquire(String ip, String attackType, String method, String path, int riskScore) {
+        if (!properties.isFloodAggregationEnabled()) {
+            return true;
+        }
+        String key = ip + '\n' + attackType;
+        long now = System.currentTimeMillis();
+        while (true) {
+            AggregationWindow window = windows.get(key);
+            if (window == null) {
+                if (windows.size() >= properties.getFloodAggregationMaxKeys()) {
+                    return tryAcquireOverflow(ip, attackType, method, path, riskScore, now);
+                }
+                window = windows.putIfAbsent(key, new AggregationWindow(ip, attackType, method, path, riskScore, now, false));
+                if (window == null) {
+                    return true;
+                }
+            }
+            if (window.recordHit(method, path)) {
+                suppressedHitCount.incrementAndGet();
+                return false;
+            }
+            // 窗口刚被定时任务关闭并汇总：移除后重新开窗，本次命中作为新窗口的首个事件
+            windows.remove(key, window);
+        }
+    }
+
+    /**
+     * 聚合表已满：折叠进该攻击类型的溢出窗口，首个命中仍落完整事件
+     */
+    private boolean tryAcquireOverflow(String ip, String attackType, String method, String path, int riskScore, long now) {
+        while (true) {
+            AggregationWindow window = overflowWindows.putIfAbsent(attackType,
+                    new AggregationWindow(ip, attackType, method, path, riskScore, now, true));
+            if (window == null) {
+                return true;
+            }
+            if (window.recordHit(method, path)) {
+                overflowSuppressedCount.incrementAndGet();
+                return false;
+            }
+            overflowWindows.remove(attackType, window);
+        }
+    }
+
+    public void recordFastReject() {
+        fastRejectCount.incrementAndGet();
+    }
+
+    @Scheduled(fixedDelay = 5_000)
+    public void flushExpiredWindows() {
+        long now = System.currentTimeMillis();
+        long windowMs = Math.max(1_000L, properties.getFloodAggregationWindowMs());
+        flushExpired(windows, now, windowMs);
+        flushExpired(overflowWindows, now, windowMs);
+    }
+
+    private void flushExpired(ConcurrentHashMap<String, AggregationWindow> source, long now, long windowMs) {
+        for (Map.Entry<String, AggregationWindow> entry : source.entrySet()) {
+            AggregationWindow window = entry.getValue();
+            if (now - window.startMillis < windowMs) {
+                continue;
+            }
+            // 先关闭再按值移除：关闭后到达的命中会另开新窗口，既不会计入已汇总的旧窗口而丢失，也不会被这里误删
+            int suppressed = window.close();
+            source.remove(entry.getKey(), window);
+            if (suppressed > 0) {
+                attackEventAsyncRecorderService.record(buildSummaryEvent(window, suppressed, now));
+                summaryEventCount.incrementAndGet();
+            }
+        }
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isFloodAggregationEnabled());
+        stats.put("activeWindows", windows.size());
+        stats.put("overflowWindows", overflowWindows.size());
+        stats.put("fastRejectCount", fastRejectCount.get());
+        stats.put("suppressedHitCount", suppressedHitCount.get());
+        stats.put("overflowSuppressedCount", overflowSuppressedCount.get());
+        stats.put("summaryEventCount", summaryEventCount.get());
+        stats.put("recorderDroppedCount", attackEventAsyncRecorderService.droppedCount());
+        return stats;
+    }
+
+    private SecurityAttackEventEntity buildSummaryEvent(AggregationWindow window, int suppressed, long now) {
+        SecurityAttackEventEntity event = new SecurityAttackEventEntity();
+        event.setIp(window.ip);
+        event.setAttackType(window.attackType);
+        event.setMethod(window.lastMethod);
+        event.setPath(window.lastPath);
+        event.setRiskScore(window.riskScore);
+        event.setHitCount(suppressed);
+        event.setBlockAction("AGGREGATED");
+        String since = LocalDateTime.ofInstant(Instant.ofEpochMilli(window.startMillis), ZoneId.systemDefault()).toString();
+        if (window.overflow) {
+            event.setBlockReason("聚合表已满，多个来源IP的同类命中已合并，共 " + suppressed + " 次（" + since + " 起，IP为首个来源）");
+            event.setSuggestedAction("疑似大量伪造来源IP洪泛，建议核查上游代理与 X-Forwarded-For 信任配置");
+        } else {
+            event.setBlockReason("窗口内重复命中已聚合，共 " + suppressed + " 次（" + since + " 起）");
+            event.setSuggestedAction("该IP持续重复触发同类拦截，建议核查是否需要永久封禁");
+        }
+        event.setCreateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault()));
+        return event;
+    }
+
+    private static class AggregationWindow {
+        /**
+         * suppressed 取该值表示窗口已关闭，不再接受计数
+         */
+        private static final int CLOSED = -1;
+
+        private final String ip;
+        private final String attackType;
+        private final int riskScore;
+        private final long startMillis;
+        private final boolean overflow;
+        private final AtomicInteger suppressed = new AtomicInteger();
+        private volatile String lastMethod;
+        private volatile String lastPath;
+
+        private AggregationWindow(String ip, String attackType, String method, String path, int riskScore,
+                                  long startMillis, boolean overflow) {
+            this.ip = ip;
+            this.attackType = attackType;
+            this.lastMethod = method;
+            this.lastPath = path;
+            this.riskScore = riskScore;
+            this.startMillis = startMillis;
+            this.overflow = overflow;
+        }
+
+        /**
+         * 计入一次重复命中；窗口已关闭时返回 false，由调用方另开新窗口。
+         */
+        private boolean recordHit(String method, String path) {
+            while (true) {
+                int current = suppressed.get();
+                if (current == CLOSED) {
+                    return false;
+                }
+                if (suppressed.compareAndSet(current, current + 1)) {
+                    lastMethod = method;
+                    lastPath = path;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 关闭窗口并取走全部计数，此后的 recordHit 均失败。
+         */
+        private int close() {
+            return suppressed.getAndSet(CLOSED);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 异常事件异步落库，避免阻塞请求线程。
@@ -24,6 +25,7 @@ public class AttackEventAsyncRecorderService {
     private final SecurityAttackEventMapper securityAttackEventMapper;
     private final IpGeoLocationService ipGeoLocationService;
     private final ExecutorService executor;
+    private final AtomicLong droppedCount = new AtomicLong();
 
     public AttackEventAsyncRecorderService(SecurityAttackEventMapper securityAttackEventMapper,
                                            IpGeoLocationService ipGeoLocationService,
@@ -41,7 +43,11 @@ public class AttackEventAsyncRecorderService {
                     t.setDaemon(true);
                     return t;
                 },
-                new ThreadPoolExecutor.DiscardOldestPolicy()
+                (task, pool) -> {
+                    // 队列满时丢弃最旧事件，并计数便于观察
+                    droppedCount.incrementAndGet();
+                    new ThreadPoolExecutor.DiscardOldestPolicy().rejectedExecution(task, pool);
+                }
         );
     }
 
@@ -49,6 +55,9 @@ public class AttackEventAsyncRecorderService {
         if (entity == null) {
             return;
         }
+        if (entity.getHitCount() == null) {
+            entity.setHitCount(1);
+        }
         executor.execute(() -> {
             try {
                 securityAttackEventMapper.insert(entity);
@@ -68,6 +77,10 @@ public class AttackEventAsyncRecorderService {
         });
     }
 
+    public long droppedCount() {
+        return droppedCount.get();
+    }
+
     @PreDestroy
     public void destroy() {
         executor.shutdown();
@@ -0,0 +1,135 @@
+package com.ssy.service.impl;
+
+import com.ssy.properties.SecurityProperties;
+import com.ssy.security.AuthorizationDecision;
+import com.ssy.security.AuthorizationDecision.StaticRule;
+import com.ssy.utils.PathPatternTrie;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 授权策略编译：启动时把 security.permit-all / security.role-based 编译为有序静态规则表，
+ * 接口注册表刷新时再与每个接口的 RBAC 规则合并为 {@link AuthorizationDecision}。
+ *
+ * 静态规则沿用 antMatchers 的注册顺序与首个命中语义（permit-all 在前），启动时编译为两部分：
+ * 不含通配的规则放入精确路径表，含通配的规则放入 {@link PathPatternTrie}，查询时取两者中注册序号最小的命中规则，
+ * 请求期不再逐条做 AntPathMatcher 匹配；
+ * 精确路径接口在编译期即确定静态部分，未登记路径的决策按静态规则预先生成，请求期不再创建对象。
+ */
+@Service
+public class AuthorizationPolicyService {
+
+    private static final Comparator<StaticRule> REGISTRATION_ORDER = Comparator.comparingInt(StaticRule::getIndex);
+
+    private final StaticRule[] staticRules;
+    private final Map<String, StaticRule> exactRules;
+    private final PathPatternTrie<StaticRule> patternRules;
+    private final StaticRule defaultRule;
+    private final AuthorizationDecision[] unregisteredDecisions;
+    private final boolean strictUnboundDeny;
+
+    public AuthorizationPolicyService(SecurityProperties securityProperties) {
+        List<StaticRule> rules = new ArrayList<>();
+        if (securityProperties.getPermitAll() != null) {
+            for (String pattern : securityProperties.getPermitAll()) {
+                if (StringUtils.hasText(pattern)) {
+                    rules.add(new StaticRule(rules.size(), pattern.trim(), true, null));
+                }
+            }
+        }
+        if (securityProperties.getRoleBased() != null) {
+            for (SecurityProperties.RoleMapping mapping : securityProperties.getRoleBased()) {
+                if (mapping != null && StringUtils.hasText(mapping.getPattern()) && StringUtils.hasText(mapping.getRole())) {
+                    rules.add(new StaticRule(rules.size(), mapping.getPattern().trim(), false, normalizeRole(mapping.getRole())));
+                }
+            }
+        }
+        this.staticRules = rules.toArray(new StaticRule[0]);
+        Map<String, StaticRule> exact = new HashMap<>();
+        PathPatternTrie.Builder<StaticRule> patterns = PathPatternTrie.builder();
+        for (StaticRule rule : staticRules) {
+            if (isPatternRule(rule.getPattern())) {
+                patterns.add(rule.getPattern(), rule);
+            } else {
+                exact.putIfAbsent(rule.getPattern(), rule);
+            }
+        }
+        this.exactRules = exact;
+        this.patternRules = patterns.build();
+        this.defaultRule = new StaticRule(staticRules.length, null, false, null);
+        this.unregisteredDecisions = new AuthorizationDecision[staticRules.length + 1];
+        for (StaticRule rule : staticRules) {
+            unregisteredDecisions[rule.getIndex()] = AuthorizationDecision.compile(null, false, rule, 0);
+        }
+        unregisteredDecisions[defaultRule.getIndex()] = AuthorizationDecision.compile(null, false, defaultRule, 0);
+
+        SecurityProperties.EndpointRbac endpointRbac = securityProperties.getEndpointRbac();
+        this.strictUnboundDeny = endpointRbac != null
+                && endpointRbac.getStrictUnboundPermissionDeny() != null
+                && endpointRbac.getStrictUnboundPermissionDeny();
+    }
+
+    /**
+     * 注册表刷新时为接口编译决策；模式路由的静态部分留待请求时按实际路径补全。
+     */
+    public AuthorizationDecision compile(EndpointRbacCacheService.EndpointAccessRule rule, String path, boolean patternPath) {
+        StaticRule staticRule = patternPath ? null : matchStatic(path);
+        return AuthorizationDecision.compile(rule, strictUnboundDeny, staticRule, staticRules.length + 1);
+    }
+
+    /**
+     * 请求期解析：已登记接口取注册表条目上的决策，未登记路径取预先生成的纯静态决策。
+     */
+    public AuthorizationDecision resolve(EndpointRegistry.Entry entry, String canonicalPath) {
+        if (entry == null) {
+            return unregisteredDecisions[matchStatic(canonicalPath).getIndex()];
+        }
+        AuthorizationDecision decision = entry.getAuthorizationDecision();
+        return decision.isResolved() ? decision : decision.resolve(matchStatic(canonicalPath));
+    }
+
+    /**
+     * 按注册顺序返回首个命中的静态规则，均未命中返回默认规则（仅要求登录）。
+     */
+    public StaticRule matchStatic(String path) {
+        if (path == null) {
+            return defaultRule;
+        }
+        StaticRule exact = exactRules.get(path);
+        StaticRule pattern = patternRules.matchFirst(path, REGISTRATION_ORDER);
+        if (exact == null) {
+            return pattern != null ? pattern : defaultRule;
+        }
+        return pattern != null && pattern.getIndex() < exact.getIndex() ? pattern : exact;
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        int publicRules = 0;
+        for (StaticRule rule : staticRules) {
+            if (rule.isPublicPath()) {
+                publicRules++;
+            }
+        }
+        stats.put("permitAllRules", publicRules);
+        stats.put("roleRules", staticRules.length - publicRules);
+        stats.put("strictUnboundDeny", strictUnboundDeny);
+        return stats;
+    }
+
+    private static boolean isPatternRule(String pattern) {
+        return pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0 || pattern.indexOf('{') >= 0;
+    }
+
+    private static String normalizeRole(String role) {
+        String normalized = role.trim();
+        return normalized.startsWith("ROLE_") ? normalized.substring(5) : normalized;
+    }
+}
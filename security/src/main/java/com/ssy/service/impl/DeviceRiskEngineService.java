@@ -26,11 +26,14 @@ import java.util.concurrent.ConcurrentHashMap;
 public class DeviceRiskEngineService {
 
     private final ThreatDetectionProperties properties;
+    private final UserAgentClassifierService userAgentClassifierService;
     /** key = 浏览器指纹，value = 设备历史 */
     private final Map<String, DeviceProfile> deviceProfiles = new ConcurrentHashMap<>();
 
-    public DeviceRiskEngineService(ThreatDetectionProperties properties) {
+    public DeviceRiskEngineService(ThreatDetectionProperties properties,
+                                   UserAgentClassifierService userAgentClassifierService) {
         this.properties = properties;
+        this.userAgentClassifierService = userAgentClassifierService;
     }
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -53,8 +56,9 @@ public class DeviceRiskEngineService {
         List<String> reasons = new ArrayList<>();
         String normalizedFingerprint = normalize(browserFingerprint);
         String normalizedUsername = normalize(username);
-        String userAgentFamily = resolveUserAgentFamily(userAgent);
-        boolean browserLike = isBrowserLike(userAgent);
+        UserAgentClassifierService.UserAgentProfile userAgentProfile = userAgentClassifierService.classify(userAgent);
+        String userAgentFamily = userAgentProfile.getFamily();
+        boolean browserLike = userAgentProfile.isBrowserLike();
 
         DeviceProfile profile = StringUtils.hasText(normalizedFingerprint)
                 ? deviceProfiles.get(normalizedFingerprint)
@@ -173,7 +177,7 @@ public class DeviceRiskEngineService {
         DeviceProfile profile = deviceProfiles.computeIfAbsent(fp, k -> new DeviceProfile());
         profile.lastSeenAt = LocalDateTime.now();
         profile.lastIp = normalize(ip);
-        profile.lastUserAgentFamily = resolveUserAgentFamily(userAgent);
+        profile.lastUserAgentFamily = userAgentClassifierService.classify(userAgent).getFamily();
         // 登录失败：重置连续成功计数
         profile.consecutiveSuccessCount = 0;
         String normalizedUsername = normalize(username);
@@ -194,7 +198,7 @@ public class DeviceRiskEngineService {
         profile.lastSeenAt = LocalDateTime.now();
         profile.lastSuccessAt = LocalDateTime.now();
         profile.lastIp = normalize(ip);
-        profile.lastUserAgentFamily = resolveUserAgentFamily(userAgent);
+        profile.lastUserAgentFamily = userAgentClassifierService.classify(userAgent).getFamily();
         // 登录成功：累加连续成功次数
         profile.consecutiveSuccessCount++;
         String normalizedUsername = normalize(username);
@@ -270,32 +274,6 @@ public class DeviceRiskEngineService {
         return false;
     }
 
-    private boolean isBrowserLike(String userAgent) {
-        if (!StringUtils.hasText(userAgent)) {
-            return false;
-        }
-        String normalized = userAgent.toLowerCase();
-        return normalized.contains("mozilla")
-                || normalized.contains("chrome")
-                || normalized.contains("safari")
-                || normalized.contains("firefox")
-                || normalized.contains("edg/");
-    }
-
-    private String resolveUserAgentFamily(String userAgent) {
-        if (!StringUtils.hasText(userAgent)) {
-            return "";
-        }
-        String normalized = userAgent.toLowerCase();
-        if (normalized.contains("edg/")) return "EDGE";
-        if (normalized.contains("chrome")) return "CHROME";
-        if (normalized.contains("firefox")) return "FIREFOX";
-        if (normalized.contains("safari")) return "SAFARI";
-        if (normalized.contains("curl")) return "CURL";
-        if (normalized.contains("python-requests")) return "PYTHON_REQUESTS";
-        return "UNKNOWN";
-    }
-
     private String normalize(String value) {
         return value == null ? "" : value.trim();
     }
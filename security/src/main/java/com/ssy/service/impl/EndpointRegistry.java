@@ -0,0 +1,314 @@
+package com.ssy.service.impl;
+
+import com.ssy.security.AuthorizationDecision;
+import com.ssy.utils.PathPatternTrie;
+import com.ssy.utils.RequestPathUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 接口注册表不可变快照：一次装载 api_endpoints 与权限绑定后构建，
+ * 同时携带 RBAC 规则、编译后的授权决策、异常识别开关、审计元数据与驻留的整数接口下标。
+ *
+ * 所有按接口寻址的缓存都从同一快照读取，由 {@link EndpointRegistryService} 一次原子替换发布，
+ * 同一请求内 RBAC 与异常识别看到的一定是同一版本的接口配置。
+ *
+ * 增量刷新通过 {@link #derive} 生成新快照：未变化的条目与未受影响方法的路由树原样复用，
+ * 只重建有模式路由变化的方法的前缀树。
+ */
+public final class EndpointRegistry {
+
+    private static final EndpointRegistry EMPTY = new EndpointRegistry(0L,
+            Collections.emptyMap(), Collections.emptyMap(), new Entry[0], 0, 0);
+
+    private final long version;
+    private final Map<String, Entry> exactEntries;
+    private final Map<String, PathPatternTrie<Entry>> patternTriesByMethod;
+    private final Entry[] entriesByIndex;
+    private final int exactCount;
+    private final int patternCount;
+
+    private EndpointRegistry(long version,
+                             Map<String, Entry> exactEntries,
+                             Map<String, PathPatternTrie<Entry>> patternTriesByMethod,
+                             Entry[] entriesByIndex,
+                             int exactCount,
+                             int patternCount) {
+        this.version = version;
+        this.exactEntries = exactEntries;
+        this.patternTriesByMethod = patternTriesByMethod;
+        this.entriesByIndex = entriesByIndex;
+        this.exactCount = exactCount;
+        this.patternCount = patternCount;
+    }
+
+    public static EndpointRegistry empty() {
+        return EMPTY;
+    }
+
+    static Builder builder(long version) {
+        return new Builder(version);
+    }
+
+    /**
+     * 路由匹配：精确路径一次哈希查找，未命中再走该方法的路径段前缀树；未登记返回 null。
+     */
+    public Entry match(String method, String requestPath) {
+        String normalizedMethod = normalizeMethod(method);
+        String normalizedPath = RequestPathUtils.normalizePath(requestPath);
+        Entry exact = exactEntries.get(buildKey(normalizedMethod, normalizedPath));
+        if (exact != null) {
+            return exact;
+        }
+        PathPatternTrie<Entry> patternTrie = patternTriesByMethod.get(normalizedMethod);
+        return patternTrie == null ? null : patternTrie.match(normalizedPath);
+    }
+
+    /**
+     * 按驻留下标取接口；下标越界或该接口已删除返回 null。
+     */
+    public Entry byIndex(int index) {
+        return index >= 0 && index < entriesByIndex.length ? entriesByIndex[index] : null;
+    }
+
+    /**
+     * 驻留下标上界（不含），按下标寻址的数组据此分配。
+     */
+    public int indexBound() {
+        return entriesByIndex.length;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return exactCount + patternCount;
+    }
+
+    public int getExactCount() {
+        return exactCount;
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    /**
+     * 基于当前快照派生新版本：先按下标移除 removedIndexes 与被替换的旧条目，再写入 upserts。
+     */
+    EndpointRegistry derive(long newVersion, Collection<Entry> upserts, Collection<Integer> removedIndexes) {
+        int bound = entriesByIndex.length;
+        for (Entry entry : upserts) {
+            bound = Math.max(bound, entry.getIndex() + 1);
+        }
+        Entry[] byIndex = Arrays.copyOf(entriesByIndex, bound);
+        Map<String, Entry> exact = new HashMap<>(exactEntries);
+        Set<String> dirtyMethods = new HashSet<>();
+
+        List<Integer> detach = new ArrayList<>(removedIndexes);
+        for (Entry entry : upserts) {
+            detach.add(entry.getIndex());
+        }
+        for (Integer index : detach) {
+            Entry old = index == null || index >= byIndex.length ? null : byIndex[index];
+            if (old == null) {
+                continue;
+            }
+            byIndex[index] = null;
+            if (isPatternPath(old.getPath())) {
+                dirtyMethods.add(old.getMethod());
+            } else {
+                exact.remove(buildKey(old.getMethod(), old.getPath()), old);
+            }
+        }
+        for (Entry entry : upserts) {
+            byIndex[entry.getIndex()] = entry;
+            if (isPatternPath(entry.getPath())) {
+                dirtyMethods.add(entry.getMethod());
+            } else {
+                exact.put(buildKey(entry.getMethod(), entry.getPath()), entry);
+            }
+        }
+
+        Map<String, PathPatternTrie<Entry>> patternTries = new HashMap<>(patternTriesByMethod);
+        if (!dirtyMethods.isEmpty()) {
+            Map<String, PathPatternTrie.Builder<Entry>> builders = new HashMap<>();
+            for (String method : dirtyMethods) {
+                builders.put(method, PathPatternTrie.builder());
+            }
+            for (Entry entry : byIndex) {
+                if (entry != null && isPatternPath(entry.getPath()) && builders.containsKey(entry.getMethod())) {
+                    builders.get(entry.getMethod()).add(entry.getPath(), entry);
+                }
+            }
+            builders.forEach((method, builder) -> {
+                PathPatternTrie<Entry> trie = builder.build();
+                if (trie.size() == 0) {
+                    patternTries.remove(method);
+                } else {
+                    patternTries.put(method, trie);
+                }
+            });
+        }
+        int patterns = 0;
+        for (PathPatternTrie<Entry> trie : patternTries.values()) {
+            patterns += trie.size();
+        }
+        return new EndpointRegistry(newVersion,
+                Collections.unmodifiableMap(exact),
+                Collections.unmodifiableMap(patternTries),
+                byIndex,
+                exact.size(),
+                patterns);
+    }
+
+    static String normalizeMethod(String method) {
+        return method == null ? "GET" : method.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static String buildKey(String method, String path) {
+        return method + '\n' + path;
+    }
+
+    static boolean isPatternPath(String path) {
+        return path.indexOf('{') >= 0 || path.indexOf('*') >= 0;
+    }
+
+    public static final class Entry {
+        private final int index;
+        private final Long endpointId;
+        private final String path;
+        private final String method;
+        private final String moduleGroup;
+        private final String description;
+        private final String controllerClass;
+        private final String controllerMethod;
+        private final EndpointRbacCacheService.EndpointAccessRule accessRule;
+        private final EndpointThreatCacheService.EndpointThreatRule threatRule;
+        private final AuthorizationDecision authorizationDecision;
+
+        Entry(int index, Long endpointId, String path, String method, String moduleGroup, String description,
+              String controllerClass, String controllerMethod,
+              EndpointRbacCacheService.EndpointAccessRule accessRule,
+              EndpointThreatCacheService.EndpointThreatRule threatRule,
+              AuthorizationDecision authorizationDecision) {
+            this.index = index;
+            this.endpointId = endpointId;
+            this.path = path;
+            this.method = method;
+            this.moduleGroup = moduleGroup;
+            this.description = description;
+            this.controllerClass = controllerClass;
+            this.controllerMethod = controllerMethod;
+            this.accessRule = accessRule;
+            this.threatRule = threatRule;
+            this.authorizationDecision = authorizationDecision;
+        }
+
+        /**
+         * 驻留的整数接口下标：同一接口在各次刷新间保持不变，删除后不复用
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public Long getEndpointId() {
+            return endpointId;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getModuleGroup() {
+            return moduleGroup;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getControllerClass() {
+            return controllerClass;
+        }
+
+        public String getControllerMethod() {
+            return controllerMethod;
+        }
+
+        public EndpointRbacCacheService.EndpointAccessRule getAccessRule() {
+            return accessRule;
+        }
+
+        public EndpointThreatCacheService.EndpointThreatRule getThreatRule() {
+            return threatRule;
+        }
+
+        /**
+         * 合并 permit-all / role-based 与接口 RBAC 的授权决策；模式路由需经
+         * {@link AuthorizationPolicyService#resolve} 按请求路径补全静态部分
+         */
+        public AuthorizationDecision getAuthorizationDecision() {
+            return authorizationDecision;
+        }
+    }
+
+    static final class Builder {
+        private final long version;
+        private final Map<String, Entry> exactEntries = new HashMap<>();
+        private final Map<String, PathPatternTrie.Builder<Entry>> patternBuilders = new HashMap<>();
+        private final List<Entry> entries = new ArrayList<>();
+        private int exactCount;
+        private int patternCount;
+
+        private Builder(long version) {
+            this.version = version;
+        }
+
+        Builder add(Entry entry) {
+            entries.add(entry);
+            if (isPatternPath(entry.getPath())) {
+                patternBuilders.computeIfAbsent(entry.getMethod(), k -> PathPatternTrie.builder())
+                        .add(entry.getPath(), entry);
+                patternCount++;
+            } else {
+                exactEntries.put(buildKey(entry.getMethod(), entry.getPath()), entry);
+                exactCount++;
+            }
+            return this;
+        }
+
+        EndpointRegistry build() {
+            Map<String, PathPatternTrie<Entry>> patternTries = new HashMap<>();
+            patternBuilders.forEach((k, v) -> patternTries.put(k, v.build()));
+            int bound = 0;
+            for (Entry entry : entries) {
+                bound = Math.max(bound, entry.getIndex() + 1);
+            }
+            Entry[] byIndex = new Entry[bound];
+            for (Entry entry : entries) {
+                byIndex[entry.getIndex()] = entry;
+            }
+            return new EndpointRegistry(version,
+                    Collections.unmodifiableMap(exactEntries),
+                    Collections.unmodifiableMap(patternTries),
+                    byIndex,
+                    exactCount,
+                    patternCount);
+        }
+    }
+}
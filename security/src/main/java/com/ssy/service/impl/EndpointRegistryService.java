@@ -0,0 +1,332 @@
+package com.ssy.service.impl;
+
+import com.ssy.entity.ApiEndpointEntity;
+import com.ssy.mapper.ApiEndpointMapper;
+import com.ssy.mapper.RbacPermissionEndpointRelMapper;
+import com.ssy.mapper.RbacPermissionEndpointRelMapper.EndpointPermissionBindingRow;
+import com.ssy.utils.RequestPathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 接口注册表装载：一次查询 api_endpoints 与权限绑定，构建 {@link EndpointRegistry} 后原子替换。
+ *
+ * 接口RBAC缓存、异常识别接口缓存、授权决策与请求安全信封都从同一快照读取，
+ * 刷新时不再各自查库、规范化路径和构建路由树。
+ *
+ * 单个接口/绑定变更走 {@link #refreshDelta(Collection)}：只加载 update_time 晚于水位线的接口与绑定变更的接口，
+ * 新快照复用未变化的条目。物理删除的行查不到 update_time，由调用方传入受影响的接口ID，
+ * 另有定时全量对账兜底（数据库时钟偏差、绕过本服务直接改库等情况）。
+ */
+@Service
+public class EndpointRegistryService {
+
+    private static final Logger log = LoggerFactory.getLogger(EndpointRegistryService.class);
+
+    /**
+     * 增量查询向前多看的秒数，容忍应用与数据库时钟偏差及同一秒内的并发写入
+     */
+    private static final long WATERMARK_OVERLAP_SECONDS = 30L;
+
+    private final ApiEndpointMapper apiEndpointMapper;
+    private final RbacPermissionEndpointRelMapper endpointRelMapper;
+    private final EndpointTrafficBaselineService endpointTrafficBaselineService;
+    private final AuthorizationPolicyService authorizationPolicyService;
+    private final PermissionDictionaryService permissionDictionaryService;
+
+    private final AtomicReference<EndpointRegistry> registryRef = new AtomicReference<>(EndpointRegistry.empty());
+    private final ConcurrentHashMap<Long, Integer> indexByEndpointId = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private long version;
+    private LocalDateTime watermark;
+    private long fullRefreshCount;
+    private long deltaRefreshCount;
+    private long lastDeltaChanged;
+
+    public EndpointRegistryService(ApiEndpointMapper apiEndpointMapper,
+                                   RbacPermissionEndpointRelMapper endpointRelMapper,
+                                   EndpointTrafficBaselineService endpointTrafficBaselineService,
+                                   AuthorizationPolicyService authorizationPolicyService,
+                                   PermissionDictionaryService permissionDictionaryService) {
+        this.apiEndpointMapper = apiEndpointMapper;
+        this.endpointRelMapper = endpointRelMapper;
+        this.endpointTrafficBaselineService = endpointTrafficBaselineService;
+        this.authorizationPolicyService = authorizationPolicyService;
+        this.permissionDictionaryService = permissionDictionaryService;
+    }
+
+    public EndpointRegistry current() {
+        return registryRef.get();
+    }
+
+    /**
+     * 尚未装载过时装载一次（多个启动初始化器共用，避免重复查库）。
+     */
+    public void ensureLoaded() {
+        if (registryRef.get().getVersion() == 0L) {
+            refresh();
+        }
+    }
+
+    public synchronized void refresh() {
+        long start = System.currentTimeMillis();
+        LocalDateTime loadTime = LocalDateTime.now();
+
+        List<ApiEndpointEntity> endpoints = apiEndpointMapper.selectAll();
+        Map<Long, LinkedHashSet<String>> permissionMap = new HashMap<>();
+        Map<Long, LinkedHashSet<String>> disabledPermissionMap = new HashMap<>();
+        groupBindings(endpointRelMapper.selectAllEndpointPermissionBindings(), permissionMap, disabledPermissionMap);
+
+        EndpointRegistry.Builder builder = EndpointRegistry.builder(++version);
+        int protectedCount = 0;
+        int permissionBoundCount = 0;
+        for (ApiEndpointEntity endpoint : endpoints) {
+            EndpointRegistry.Entry entry = buildEntry(endpoint, permissionMap, disabledPermissionMap);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.getAccessRule().isRequireAuth()) {
+                protectedCount++;
+            }
+            if (entry.getAccessRule().hasPermissionBindings()) {
+                permissionBoundCount++;
+            }
+            builder.add(entry);
+        }
+
+        EndpointRegistry registry = builder.build();
+        registryRef.set(registry);
+        watermark = loadTime;
+        fullRefreshCount++;
+        log.info("接口注册表已刷新: version={}, total={}, protected={}, permissionBound={}, exact={}, pattern={}, cost={}ms",
+                registry.getVersion(), endpoints.size(), protectedCount, permissionBoundCount,
+                registry.getExactCount(), registry.getPatternCount(), (System.currentTimeMillis() - start));
+    }
+
+    public void refreshDelta() {
+        refreshDelta(Collections.emptyList());
+    }
+
+    /**
+     * 增量刷新：重建水位线之后有变更的接口、绑定变更的接口以及调用方显式传入的接口（含已删除的），
+     * 其余条目与路由树原样复用。尚未全量装载过时退化为全量刷新。
+     *
+     * @param touchedEndpointIds 调用方已知受影响的接口ID（物理删除绑定/接口时必须传入）
+     */
+    public synchronized void refreshDelta(Collection<Long> touchedEndpointIds) {
+        EndpointRegistry current = registryRef.get();
+        if (current.getVersion() == 0L || watermark == null) {
+            refresh();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        LocalDateTime loadTime = LocalDateTime.now();
+        LocalDateTime since = watermark.minusSeconds(WATERMARK_OVERLAP_SECONDS);
+
+        Map<Long, ApiEndpointEntity> changed = new LinkedHashMap<>();
+        for (ApiEndpointEntity endpoint : apiEndpointMapper.selectUpdatedSince(since)) {
+            if (endpoint != null && endpoint.getId() != null) {
+                changed.put(endpoint.getId(), endpoint);
+            }
+        }
+        Set<Long> missing = new HashSet<>();
+        for (Long endpointId : endpointRelMapper.selectEndpointIdsWithBindingChangesSince(since)) {
+            if (endpointId != null && !changed.containsKey(endpointId)) {
+                missing.add(endpointId);
+            }
+        }
+        if (touchedEndpointIds != null) {
+            for (Long endpointId : touchedEndpointIds) {
+                if (endpointId != null && !changed.containsKey(endpointId)) {
+                    missing.add(endpointId);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (ApiEndpointEntity endpoint : apiEndpointMapper.selectByIds(missing)) {
+                if (endpoint != null && endpoint.getId() != null) {
+                    changed.put(endpoint.getId(), endpoint);
+                }
+            }
+        }
+
+        // 传入或绑定变更但已查不到的接口视为已删除
+        List<Integer> removedIndexes = new ArrayList<>();
+        for (Long endpointId : missing) {
+            if (!changed.containsKey(endpointId)) {
+                Integer index = indexByEndpointId.get(endpointId);
+                if (index != null) {
+                    removedIndexes.add(index);
+                }
+            }
+        }
+
+        Map<Long, LinkedHashSet<String>> permissionMap = new HashMap<>();
+        Map<Long, LinkedHashSet<String>> disabledPermissionMap = new HashMap<>();
+        if (!changed.isEmpty()) {
+            groupBindings(endpointRelMapper.selectEndpointPermissionBindingsByEndpointIds(changed.keySet()),
+                    permissionMap, disabledPermissionMap);
+        }
+        List<EndpointRegistry.Entry> upserts = new ArrayList<>(changed.size());
+        for (ApiEndpointEntity endpoint : changed.values()) {
+            EndpointRegistry.Entry entry = buildEntry(endpoint, permissionMap, disabledPermissionMap);
+            if (entry != null) {
+                upserts.add(entry);
+            } else if (indexByEndpointId.containsKey(endpoint.getId())) {
+                removedIndexes.add(indexByEndpointId.get(endpoint.getId()));
+            }
+        }
+
+        EndpointRegistry registry = current.derive(++version, upserts, removedIndexes);
+        registryRef.set(registry);
+        watermark = loadTime;
+        deltaRefreshCount++;
+        lastDeltaChanged = upserts.size() + removedIndexes.size();
+        log.info("接口注册表增量刷新: version={}, upserted={}, removed={}, total={}, cost={}ms",
+                registry.getVersion(), upserts.size(), removedIndexes.size(), registry.size(),
+                (System.currentTimeMillis() - start));
+    }
+
+    /**
+     * 定时全量对账：兜底增量刷新无法感知的变更（物理删除未传ID、直接改库、时钟偏差超过容忍窗口）。
+     */
+    @Scheduled(fixedDelay = 600_000, initialDelay = 600_000)
+    public void reconcile() {
+        if (registryRef.get().getVersion() == 0L) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("接口注册表定时全量对账失败: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> snapshotStats() {
+        EndpointRegistry registry = registryRef.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", registry.getVersion());
+        stats.put("size", registry.size());
+        stats.put("exact", registry.getExactCount());
+        stats.put("pattern", registry.getPatternCount());
+        stats.put("indexBound", registry.indexBound());
+        synchronized (this) {
+            stats.put("watermark", watermark == null ? null : watermark.toString());
+            stats.put("fullRefreshes", fullRefreshCount);
+            stats.put("deltaRefreshes", deltaRefreshCount);
+            stats.put("lastDeltaChanged", lastDeltaChanged);
+        }
+        stats.put("authorization", authorizationPolicyService.snapshotStats());
+        stats.put("permissionDictionary", permissionDictionaryService.snapshotStats());
+        return stats;
+    }
+
+    /**
+     * 接口ID驻留为稠密整数下标，跨刷新保持不变。
+     */
+    private int internIndex(Long endpointId) {
+        return indexByEndpointId.computeIfAbsent(endpointId, id -> nextIndex.getAndIncrement());
+    }
+
+    private static void groupBindings(List<EndpointPermissionBindingRow> bindings,
+                                      Map<Long, LinkedHashSet<String>> permissionMap,
+                                      Map<Long, LinkedHashSet<String>> disabledPermissionMap) {
+        for (EndpointPermissionBindingRow row : bindings) {
+            if (row == null || row.getEndpointId() == null || !StringUtils.hasText(row.getPermCode())) {
+                continue;
+            }
+            boolean relEnabled = row.getRelStatus() == null || row.getRelStatus() == 1;
+            boolean permEnabled = row.getPermStatus() == null || row.getPermStatus() == 1;
+            if (relEnabled && permEnabled) {
+                permissionMap.computeIfAbsent(row.getEndpointId(), k -> new LinkedHashSet<>()).add(row.getPermCode().trim());
+            } else if (relEnabled) {
+                disabledPermissionMap.computeIfAbsent(row.getEndpointId(), k -> new LinkedHashSet<>()).add(row.getPermCode().trim());
+            }
+        }
+    }
+
+    /**
+     * 由接口行与其权限绑定构建注册表条目；ID、路径或方法缺失返回 null。
+     */
+    private EndpointRegistry.Entry buildEntry(ApiEndpointEntity endpoint,
+                                              Map<Long, LinkedHashSet<String>> permissionMap,
+                                              Map<Long, LinkedHashSet<String>> disabledPermissionMap) {
+        if (endpoint.getId() == null || !StringUtils.hasText(endpoint.getPath()) || !StringUtils.hasText(endpoint.getMethod())) {
+            return null;
+        }
+        String path = RequestPathUtils.normalizePath(endpoint.getPath());
+        String method = EndpointRegistry.normalizeMethod(endpoint.getMethod());
+        List<String> perms = permissionMap.containsKey(endpoint.getId())
+                ? Collections.unmodifiableList(new ArrayList<>(permissionMap.get(endpoint.getId())))
+                : Collections.emptyList();
+        List<String> disabledPerms = disabledPermissionMap.containsKey(endpoint.getId())
+                ? Collections.unmodifiableList(new ArrayList<>(disabledPermissionMap.get(endpoint.getId())))
+                : Collections.emptyList();
+
+        EndpointRbacCacheService.EndpointAccessRule accessRule = buildAccessRule(endpoint, path, method, perms, disabledPerms);
+        EndpointThreatCacheService.EndpointThreatRule threatRule = new EndpointThreatCacheService.EndpointThreatRule(
+                endpoint.getId(),
+                path,
+                method,
+                endpoint.getStatus() == null ? 1 : endpoint.getStatus(),
+                endpoint.getThreatMonitorEnabled() == null ? 1 : endpoint.getThreatMonitorEnabled(),
+                endpointTrafficBaselineService.slotOf(endpoint.getId()),
+                endpoint.getResponseLeakScanEnabled() == null ? 0 : endpoint.getResponseLeakScanEnabled()
+        );
+        return new EndpointRegistry.Entry(
+                internIndex(endpoint.getId()),
+                endpoint.getId(),
+                path,
+                method,
+                endpoint.getModuleGroup(),
+                endpoint.getDescription(),
+                endpoint.getControllerClass(),
+                endpoint.getControllerMethod(),
+                accessRule,
+                threatRule,
+                authorizationPolicyService.compile(accessRule, path, EndpointRegistry.isPatternPath(path)));
+    }
+
+    private EndpointRbacCacheService.EndpointAccessRule buildAccessRule(ApiEndpointEntity endpoint,
+                                                                        String path,
+                                                                        String method,
+                                                                        List<String> permissionCodes,
+                                                                        List<String> disabledPermissionCodes) {
+        int status = endpoint.getStatus() == null ? 1 : endpoint.getStatus();
+        boolean requireAuth = endpoint.getRequireAuth() != null && endpoint.getRequireAuth() == 1;
+        if (!permissionCodes.isEmpty()) {
+            requireAuth = true;
+        }
+
+        return new EndpointRbacCacheService.EndpointAccessRule(
+                endpoint.getId(),
+                path,
+                method,
+                endpoint.getModuleGroup(),
+                endpoint.getDescription(),
+                status,
+                requireAuth,
+                permissionCodes,
+                disabledPermissionCodes,
+                permissionDictionaryService.maskOf(permissionCodes)
+        );
+    }
+}
@@ -0,0 +1,293 @@
+package com.ssy.service.impl;
+
+import com.ssy.entity.SecurityEndpointBaselineEntity;
+import com.ssy.mapper.SecurityEndpointBaselineMapper;
+import com.ssy.properties.ThreatDetectionProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 接口流量基线：按接口学习“每限流窗口请求总数”（所有来源合计）的指数加权均值与方差，检测接口整体流量偏离。
+ *
+ * - 基线是接口维度的总量统计，不能作为单个来源的限流阈值（单来源仍由 endpointWindowLimit 约束），
+ *   偏离基线作为独立信号输出：进入偏离时记录告警日志，并在 snapshotStats 中列出偏离中的接口；
+ * - 接口ID在缓存刷新时驻留为稠密下标（slot），统计量全部存放在按下标寻址的原子数组中；
+ * - 热路径只对本接口的计数槽做一次原子自增，常数时间、无锁、无分配；
+ * - 定时任务每个统计周期把计数折算为每窗口速率，更新均值/方差并重算偏离阈值；
+ *   当周期速率超过 均值 + sigma × 标准差 时判定为偏离基线，该周期以 1/10 的系数学习，避免攻击流量迅速抬高基线；
+ * - 学到的基线定期写入 security_endpoint_baseline，重启后恢复，无需重新预热。
+ */
+@Service
+public class EndpointTrafficBaselineService {
+
+    private static final Logger log = LoggerFactory.getLogger(EndpointTrafficBaselineService.class);
+
+    /**
+     * 计数槽按 8 个 long（64 字节）间隔存放，避免相邻热点接口的自增落在同一缓存行
+     */
+    private static final int COUNTER_STRIDE_SHIFT = 3;
+    private static final int PERSIST_BATCH_SIZE = 500;
+    private static final double SURGE_ALPHA_FACTOR = 0.1D;
+
+    private final ThreatDetectionProperties properties;
+    private final SecurityEndpointBaselineMapper securityEndpointBaselineMapper;
+
+    private final int capacity;
+    private final ConcurrentHashMap<Long, Integer> slotByEndpointId = new ConcurrentHashMap<>();
+    private final AtomicInteger allocatedSlots = new AtomicInteger();
+    private final AtomicLongArray endpointIds;
+    private final AtomicLongArray counters;
+    private final AtomicLongArray meanBits;
+    private final AtomicLongArray varianceBits;
+    private final AtomicLongArray lastRateBits;
+    private final AtomicLongArray samples;
+    private final AtomicIntegerArray thresholds;
+    private final AtomicIntegerArray surging;
+    private final AtomicLong surgeIntervals = new AtomicLong();
+    private long lastTickNanos;
+
+    public EndpointTrafficBaselineService(ThreatDetectionProperties properties,
+                                          SecurityEndpointBaselineMapper securityEndpointBaselineMapper) {
+        this.properties = properties;
+        this.securityEndpointBaselineMapper = securityEndpointBaselineMapper;
+        this.capacity = Math.max(64, properties.getEndpointBaselineMaxEndpoints());
+        this.endpointIds = new AtomicLongArray(capacity);
+        this.counters = new AtomicLongArray(capacity << COUNTER_STRIDE_SHIFT);
+        this.meanBits = new AtomicLongArray(capacity);
+        this.varianceBits = new AtomicLongArray(capacity);
+        this.lastRateBits = new AtomicLongArray(capacity);
+        this.samples = new AtomicLongArray(capacity);
+        this.thresholds = new AtomicIntegerArray(capacity);
+        this.surging = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * 接口ID驻留为统计下标，仅在缓存刷新等冷路径调用；未启用、ID为空或已达上限时返回 -1（不参与基线统计）。
+     */
+    public int slotOf(Long endpointId) {
+        if (endpointId == null || !properties.isEndpointBaselineEnabled()) {
+            return -1;
+        }
+        Integer slot = slotByEndpointId.get(endpointId);
+        if (slot != null) {
+            return slot;
+        }
+        if (allocatedSlots.get() >= capacity) {
+            return -1;
+        }
+        slot = slotByEndpointId.computeIfAbsent(endpointId, id -> {
+            int next = allocatedSlots.getAndIncrement();
+            if (next >= capacity) {
+                return null;
+            }
+            endpointIds.set(next, id);
+            return next;
+        });
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * 记录一次访问（热路径）。
+     */
+    public void record(int slot) {
+        if (slot >= 0) {
+            counters.incrementAndGet(slot << COUNTER_STRIDE_SHIFT);
+        }
+    }
+
+    @Scheduled(fixedDelay = 5_000)
+    public synchronized void tick() {
+        long now = System.nanoTime();
+        long elapsedNanos = now - lastTickNanos;
+        boolean firstTick = lastTickNanos == 0L;
+        lastTickNanos = now;
+        int size = size();
+        if (firstTick || !properties.isEndpointBaselineEnabled()) {
+            for (int slot = 0; slot < size; slot++) {
+                counters.set(slot << COUNTER_STRIDE_SHIFT, 0L);
+            }
+            return;
+        }
+        double scale = Math.max(1L, properties.getEndpointWindowMs()) * 1_000_000D / Math.max(1L, elapsedNanos);
+        double baseAlpha = Math.min(1.0D, Math.max(0.0001D, properties.getEndpointBaselineAlpha()));
+        for (int slot = 0; slot < size; slot++) {
+            double rate = counters.getAndSet(slot << COUNTER_STRIDE_SHIFT, 0L) * scale;
+            long sampleCount = samples.get(slot);
+            double mean = Double.longBitsToDouble(meanBits.get(slot));
+            double variance = Double.longBitsToDouble(varianceBits.get(slot));
+            boolean surge = false;
+            if (sampleCount == 0L) {
+                mean = rate;
+                variance = 0.0D;
+            } else {
+                surge = isWarmedUp(sampleCount) && rate > mean + sigma() * effectiveStdDev(mean, variance);
+                double alpha = surge ? baseAlpha * SURGE_ALPHA_FACTOR : baseAlpha;
+                double diff = rate - mean;
+                double increment = alpha * diff;
+                mean += increment;
+                variance = (1.0D - alpha) * (variance + diff * increment);
+            }
+            sampleCount++;
+            meanBits.set(slot, Double.doubleToRawLongBits(mean));
+            varianceBits.set(slot, Double.doubleToRawLongBits(variance));
+            lastRateBits.set(slot, Double.doubleToRawLongBits(rate));
+            samples.set(slot, sampleCount);
+            thresholds.set(slot, surgeThreshold(mean, variance, sampleCount));
+            int previous = surging.getAndSet(slot, surge ? 1 : 0);
+            if (surge) {
+                surgeIntervals.incrementAndGet();
+                if (previous == 0) {
+                    log.warn("接口整体流量偏离基线: endpointId={}, rate={}, mean={}, threshold={}",
+                            endpointIds.get(slot), round(rate), round(mean), thresholds.get(slot));
+                }
+            }
+        }
+    }
+
+    /**
+     * 启动时恢复已持久化的基线。
+     */
+    public synchronized void restore() {
+        if (!properties.isEndpointBaselineEnabled()) {
+            return;
+        }
+        List<SecurityEndpointBaselineEntity> rows;
+        try {
+            rows = securityEndpointBaselineMapper.selectAll();
+        } catch (Exception e) {
+            log.warn("加载接口流量基线失败，将重新学习: {}", e.getMessage());
+            return;
+        }
+        int restored = 0;
+        for (SecurityEndpointBaselineEntity row : rows) {
+            int slot = slotOf(row.getEndpointId());
+            if (slot < 0 || row.getSampleCount() == null || row.getSampleCount() <= 0L) {
+                continue;
+            }
+            double mean = row.getMeanRate() == null ? 0.0D : row.getMeanRate();
+            double variance = row.getRateVariance() == null ? 0.0D : Math.max(0.0D, row.getRateVariance());
+            meanBits.set(slot, Double.doubleToRawLongBits(mean));
+            varianceBits.set(slot, Double.doubleToRawLongBits(variance));
+            samples.set(slot, row.getSampleCount());
+            thresholds.set(slot, surgeThreshold(mean, variance, row.getSampleCount()));
+            restored++;
+        }
+        log.info("接口流量基线已恢复: restored={}, warmupIntervals={}", restored, properties.getEndpointBaselineWarmupIntervals());
+    }
+
+    @Scheduled(fixedDelay = 300_000)
+    public synchronized void persist() {
+        if (!properties.isEndpointBaselineEnabled()) {
+            return;
+        }
+        List<SecurityEndpointBaselineEntity> batch = new ArrayList<>();
+        int persisted = 0;
+        try {
+            int size = size();
+            for (int slot = 0; slot < size; slot++) {
+                long sampleCount = samples.get(slot);
+                if (sampleCount == 0L) {
+                    continue;
+                }
+                SecurityEndpointBaselineEntity entity = new SecurityEndpointBaselineEntity();
+                entity.setEndpointId(endpointIds.get(slot));
+                entity.setMeanRate(Double.longBitsToDouble(meanBits.get(slot)));
+                entity.setRateVariance(Double.longBitsToDouble(varianceBits.get(slot)));
+                entity.setSampleCount(sampleCount);
+                batch.add(entity);
+                if (batch.size() >= PERSIST_BATCH_SIZE) {
+                    persisted += securityEndpointBaselineMapper.batchUpsert(batch) > 0 ? batch.size() : 0;
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                persisted += securityEndpointBaselineMapper.batchUpsert(batch) > 0 ? batch.size() : 0;
+            }
+            log.debug("接口流量基线已持久化: endpoints={}", persisted);
+        } catch (Exception e) {
+            log.warn("接口流量基线持久化失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flush() {
+        persist();
+    }
+
+    public Map<String, Object> snapshotStats() {
+        int size = size();
+        int warmed = 0;
+        List<Map<String, Object>> surgingEndpoints = new ArrayList<>();
+        for (int slot = 0; slot < size; slot++) {
+            if (thresholds.get(slot) > 0) {
+                warmed++;
+            }
+            if (surging.get(slot) != 0) {
+                double mean = Double.longBitsToDouble(meanBits.get(slot));
+                double variance = Double.longBitsToDouble(varianceBits.get(slot));
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("endpointId", endpointIds.get(slot));
+                item.put("meanRate", round(mean));
+                item.put("stdDev", round(Math.sqrt(Math.max(0.0D, variance))));
+                item.put("lastRate", round(Double.longBitsToDouble(lastRateBits.get(slot))));
+                item.put("threshold", thresholds.get(slot));
+                surgingEndpoints.add(item);
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEndpointBaselineEnabled());
+        stats.put("trackedEndpoints", size);
+        stats.put("capacity", capacity);
+        stats.put("warmedEndpoints", warmed);
+        stats.put("surgeIntervals", surgeIntervals.get());
+        stats.put("surgingEndpoints", surgingEndpoints);
+        return stats;
+    }
+
+    private int size() {
+        return Math.min(allocatedSlots.get(), capacity);
+    }
+
+    private boolean isWarmedUp(long sampleCount) {
+        return sampleCount >= Math.max(1, properties.getEndpointBaselineWarmupIntervals());
+    }
+
+    /**
+     * 接口每窗口总请求数的偏离阈值（仅用于判定与展示接口整体偏离），未预热返回 0
+     */
+    private int surgeThreshold(double mean, double variance, long sampleCount) {
+        if (!isWarmedUp(sampleCount)) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(mean + sigma() * effectiveStdDev(mean, variance)));
+    }
+
+    /**
+     * 标准差下限取泊松噪声 sqrt(均值)：长期平稳的接口方差趋近 0，不应因正常抖动就判定为偏离
+     */
+    private double effectiveStdDev(double mean, double variance) {
+        return Math.max(Math.sqrt(Math.max(0.0D, variance)), Math.sqrt(Math.max(1.0D, mean)));
+    }
+
+    private double sigma() {
+        return Math.max(1.0D, properties.getEndpointBaselineSigma());
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0D) / 100.0D;
+    }
+}
@@ -0,0 +1,208 @@
+package com.ssy.service.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GCRA（通用信元速率算法）无锁限流表。
+ * 每个键只保存一个 long：理论到达时间 TAT（微秒），每次请求 CAS 推进一个发射间隔 T = window / limit；
+ * 窗口内估算计数 = ceil((TAT - now) / T)，相当于平滑滑动窗口，不存在固定窗口边界处的 2 倍突发。
+ *
+ * 存储为定长开放寻址表（键、TAT 交错存放在同一个 AtomicLongArray 中），键为 64 位复合指纹
+ * （IP + 接口ID），热路径不创建字符串、不加锁。TAT 已落后于当前时间的槽位与“从未出现”的键完全等价，
+ * 可以被新键直接复用，因此无需定时清理；探测范围内全部被活跃键占满时返回 {@link #SATURATED} 并计入溢出次数，
+ * 由调用方决定放行还是退化判定。已超限的键 TAT 仍领先当前时间，其槽位不会被复用，因此总能定位到自己的槽位并被拒绝，
+ * 饱和只影响尚未被跟踪的新键。
+ */
+public final class GcraRateLimiter {
+
+    /**
+     * 探测范围内无可用槽位（新键无法被跟踪）
+     */
+    public static final int SATURATED = -1;
+
+    private static final int MAX_PROBE = 16;
+    private static final long EMPTY = 0L;
+    private static final long HASHED_KEY_TAG = 1L << 63;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final long epochNanos = System.nanoTime();
+    private final LongAdder overflowCount = new LongAdder();
+
+    public GcraRateLimiter(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1024, Math.min(capacity, 1 << 24)) - 1) << 1;
+        this.slots = new AtomicLongArray(size * 2);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 记录一次到达并返回窗口内估算计数（含本次）。
+     * maxCount 为 TAT 领先当前时间的上限（按计数表示），超过阈值倍数后不再继续累加，避免持续攻击把恢复时间无限拉长。
+     * 槽位不足时返回 {@link #SATURATED}，不代表放行。
+     */
+    public int acquire(long key, long windowMs, int limit, int maxCount) {
+        long now = nowMicros();
+        int slot = locate(fingerprint(key), now);
+        if (slot < 0) {
+            overflowCount.increment();
+            return SATURATED;
+        }
+        long interval = Math.max(1L, windowMs * 1000L / Math.max(1, limit));
+        long ceiling = interval * Math.max(1, maxCount);
+        int stateIndex = slot + 1;
+        long tat;
+        while (true) {
+            long current = slots.get(stateIndex);
+            tat = Math.max(current, now) + interval;
+            if (tat - now > ceiling) {
+                tat = now + ceiling;
+            }
+            if (current == tat || slots.compareAndSet(stateIndex, current, tat)) {
+                break;
+            }
+        }
+        return (int) ((tat - now + interval - 1) / interval);
+    }
+
+    /**
+     * 当前仍处于活跃期（TAT 未过期）的键数量，仅用于监控，O(capacity)。
+     */
+    public int activeKeys() {
+        long now = nowMicros();
+        int count = 0;
+        for (int i = 0; i < slots.length(); i += 2) {
+            if (slots.get(i) != EMPTY && slots.get(i + 1) > now) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long overflowCount() {
+        return overflowCount.sum();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 查找或占用槽位：命中同键直接返回；遇到空槽即停止并占用；否则复用探测范围内第一个已过期槽位。
+     * 复用与并发更新同一槽位的旧键之间存在极小的竞争窗口，最坏只让一次计数串到新键上，对限流判定可忽略。
+     */
+    private int locate(long key, long now) {
+        int start = (int) (key ^ (key >>> 32)) & mask;
+        int reusable = -1;
+        for (int probe = 0; probe < MAX_PROBE; probe++) {
+            int index = ((start + probe) & mask) << 1;
+            long existing = slots.get(index);
+            if (existing == key) {
+                return index;
+            }
+            if (existing == EMPTY) {
+                if (slots.compareAndSet(index, EMPTY, key)) {
+                    return index;
+                }
+                if (slots.get(index) == key) {
+                    return index;
+                }
+                continue;
+            }
+            if (reusable < 0 && slots.get(index + 1) <= now) {
+                reusable = index;
+            }
+        }
+        if (reusable >= 0) {
+            long stale = slots.get(reusable);
+            if (slots.get(reusable + 1) <= now && slots.compareAndSet(reusable, stale, key)) {
+                return reusable;
+            }
+            return slots.get(reusable) == key ? reusable : -1;
+        }
+        return -1;
+    }
+
+    private long nowMicros() {
+        // 以构造时刻为基准，保证恒为正数，新槽位初始 TAT=0 天然视为已过期
+        return (System.nanoTime() - epochNanos) / 1000L + 1L;
+    }
+
+    /**
+     * IP 转为 long 键：IPv4 直接解析为 32 位无符号整数（无分配），其他格式（IPv6 等）取 64 位 FNV 哈希并置最高位。
+     */
+    public static long ipKey(String ip) {
+        if (ip == null) {
+            return 0L;
+        }
+        long value = 0L;
+        int octet = -1;
+        int dots = 0;
+        int length = ip.length();
+        for (int i = 0; i < length; i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return hashKey(ip) | HASHED_KEY_TAG;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                value = (value << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return hashKey(ip) | HASHED_KEY_TAG;
+            }
+        }
+        if (dots != 3 || octet < 0) {
+            return hashKey(ip) | HASHED_KEY_TAG;
+        }
+        return (value << 8) | octet;
+    }
+
+    /**
+     * 接口键：已登记接口直接使用 api_endpoints 主键；未登记接口按 method + path 哈希（最高位区分），不拼接字符串。
+     */
+    public static long endpointKey(Long endpointId, String method, String path) {
+        if (endpointId != null) {
+            return endpointId;
+        }
+        long hash = 0xcbf29ce484222325L;
+        if (method != null) {
+            for (int i = 0; i < method.length(); i++) {
+                char c = method.charAt(i);
+                hash = (hash ^ (c >= 'a' && c <= 'z' ? c - 32 : c)) * 0x100000001b3L;
+            }
+        }
+        hash = (hash ^ '\n') * 0x100000001b3L;
+        if (path != null) {
+            for (int i = 0; i < path.length(); i++) {
+                hash = (hash ^ path.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        return hash | HASHED_KEY_TAG;
+    }
+
+    public static long compose(long first, long second) {
+        return mix(first * 0x9E3779B97F4A7C15L + mix(second + 0x632BE59BD9B4E019L));
+    }
+
+    private static long hashKey(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long fingerprint(long key) {
+        long mixed = mix(key);
+        return mixed == EMPTY ? 1L : mixed;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
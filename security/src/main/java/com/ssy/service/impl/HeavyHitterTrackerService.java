@@ -0,0 +1,331 @@
+package com.ssy.service.impl;
+
+import com.ssy.properties.ThreatDetectionProperties;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 来源IP重流量（heavy hitter）概率统计，内存为固定预算，与来源IP基数无关。
+ *
+ * - Count-Min Sketch：depth × width 个计数器估算每个IP在窗口内的请求数（只会高估，不会低估），
+ *   当前代 + 上一代两代轮换，上一代按已过去的窗口比例线性衰减，近似滑动窗口；
+ * - Space-Saving Top-K：sketch 估算值达到 heavyHitterMinCount 且表已满时还须高于表内最小计数（volatile 读取，不加锁）
+ *   才尝试进入；进入时只 tryLock，锁被占用即放弃本次更新。洪泛期间大量键的估算值都会越过最小阈值，
+ *   这样热路径上既不会排队等待监视器，也不会为每个请求扫描整张表；Top-K 仅用于监控，偶发少计可以接受。
+ *
+ * 伪造 X-Forwarded-For 洪泛时，限流表槽位可能被占满，此时由 IpAccessControlService 使用扣除噪声下限
+ * （{@link #noiseFloor()}）后的估算值做限流拦截，但不据此自动拉黑。
+ */
+@Service
+public class HeavyHitterTrackerService {
+
+    private final ThreatDetectionProperties properties;
+    private final AtomicReference<SketchGeneration> generation = new AtomicReference<>();
+    private final LongAdder totalRecorded = new LongAdder();
+
+    private final long[] topKeys;
+    private final String[] topLabels;
+    private final long[] topCounts;
+    private final long[] topErrors;
+    private final ReentrantLock topLock = new ReentrantLock();
+    private int topSize;
+    /**
+     * 表已满时的最小计数，未满时为 0；热路径据此在加锁前过滤
+     */
+    private volatile long topAdmissionFloor;
+
+    public HeavyHitterTrackerService(ThreatDetectionProperties properties) {
+        this.properties = properties;
+        int k = Math.max(8, properties.getHeavyHitterTopK());
+        this.topKeys = new long[k];
+        this.topLabels = new String[k];
+        this.topCounts = new long[k];
+        this.topErrors = new long[k];
+    }
+
+    public boolean isEnabled() {
+        return properties.isHeavyHitterEnabled();
+    }
+
+    /**
+     * 记录一次请求并返回该IP在窗口内的估算请求数。ipKey 与 GcraRateLimiter.ipKey 一致。
+     */
+    public int record(long ipKey, String ip) {
+        if (!properties.isHeavyHitterEnabled()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        SketchGeneration current = currentGeneration(now);
+        int estimate = current.incrementAndEstimate(ipKey, now);
+        totalRecorded.increment();
+        if (estimate >= properties.getHeavyHitterMinCount() && estimate > topAdmissionFloor && topLock.tryLock()) {
+            try {
+                offerTopK(ipKey, ip, estimate);
+            } finally {
+                topLock.unlock();
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * sketch 碰撞噪声下限：窗口内总计数 / 每行宽度（上一代按剩余比例计入），即任一计数器因其他键碰撞而平均多计的量。
+     */
+    public int noiseFloor() {
+        if (!properties.isHeavyHitterEnabled()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        return currentGeneration(now).noiseFloor(now);
+    }
+
+    /**
+     * 仅估算，不计数。
+     */
+    public int estimate(long ipKey) {
+        if (!properties.isHeavyHitterEnabled()) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        return currentGeneration(now).estimate(ipKey, now);
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isHeavyHitterEnabled());
+        SketchGeneration current = generation.get();
+        int width = current == null ? sketchWidth() : current.width;
+        int depth = current == null ? sketchDepth() : current.depth;
+        stats.put("sketchWidth", width);
+        stats.put("sketchDepth", depth);
+        // 两代 sketch 的 int 计数器 + Top-K 四个数组
+        stats.put("memoryBytes", 2L * width * depth * 4 + (long) topKeys.length * (8 + 8 + 8 + 8));
+        stats.put("windowMs", properties.getGlobalWindowMs());
+        stats.put("totalRecorded", totalRecorded.sum());
+        stats.put("topTalkers", topTalkers());
+        return stats;
+    }
+
+    public List<Map<String, Object>> topTalkers() {
+        long now = System.currentTimeMillis();
+        SketchGeneration current = generation.get();
+        List<Map<String, Object>> result = new ArrayList<>();
+        topLock.lock();
+        try {
+            Integer[] order = new Integer[topSize];
+            for (int i = 0; i < topSize; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(topCounts[b], topCounts[a]));
+            for (Integer index : order) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("ip", topLabels[index]);
+                item.put("count", topCounts[index]);
+                item.put("error", topErrors[index]);
+                item.put("windowEstimate", current == null ? 0 : current.estimate(topKeys[index], now));
+                result.add(item);
+            }
+        } finally {
+            topLock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Space-Saving（以 sketch 估算值过滤）：已在表中则计数 +1；表未满直接加入；
+     * 否则仅当估算值超过表中最小计数时替换该条目，新条目以估算值起算，误差上界即为起算值。
+     * 相比原始 Space-Saving 的“最小值 +1”替换，大量低频伪造来源不会把表冲刷成噪声。调用方须持有 topLock。
+     */
+    private void offerTopK(long ipKey, String ip, int estimate) {
+        int minIndex = -1;
+        long minCount = Long.MAX_VALUE;
+        for (int i = 0; i < topSize; i++) {
+            if (topKeys[i] == ipKey) {
+                topCounts[i]++;
+                refreshAdmissionFloor();
+                return;
+            }
+            if (topCounts[i] < minCount) {
+                minCount = topCounts[i];
+                minIndex = i;
+            }
+        }
+        if (topSize < topKeys.length) {
+            minIndex = topSize++;
+        } else if (estimate <= minCount) {
+            return;
+        }
+        topKeys[minIndex] = ipKey;
+        topLabels[minIndex] = ip;
+        topCounts[minIndex] = estimate;
+        topErrors[minIndex] = estimate;
+        refreshAdmissionFloor();
+    }
+
+    private void refreshAdmissionFloor() {
+        if (topSize < topKeys.length) {
+            topAdmissionFloor = 0L;
+            return;
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < topSize; i++) {
+            min = Math.min(min, topCounts[i]);
+        }
+        topAdmissionFloor = min;
+    }
+
+    /**
+     * 窗口轮换时 Top-K 计数减半，让已停止的来源逐步让位，持续的重流量来源保持在表中。
+     */
+    private void decayTopK() {
+        topLock.lock();
+        try {
+            decayTopKLocked();
+        } finally {
+            topLock.unlock();
+        }
+    }
+
+    private void decayTopKLocked() {
+        int kept = 0;
+        for (int i = 0; i < topSize; i++) {
+            long count = topCounts[i] >>> 1;
+            if (count == 0) {
+                continue;
+            }
+            topKeys[kept] = topKeys[i];
+            topLabels[kept] = topLabels[i];
+            topCounts[kept] = count;
+            topErrors[kept] = topErrors[i] >>> 1;
+            kept++;
+        }
+        for (int i = kept; i < topSize; i++) {
+            topLabels[i] = null;
+        }
+        topSize = kept;
+        refreshAdmissionFloor();
+    }
+
+    private SketchGeneration currentGeneration(long now) {
+        long windowMs = Math.max(1000L, properties.getGlobalWindowMs());
+        while (true) {
+            SketchGeneration current = generation.get();
+            if (current != null && now - current.startMillis < windowMs) {
+                return current;
+            }
+            SketchGeneration previous = current == null || now - current.startMillis >= windowMs * 2 ? null : current;
+            SketchGeneration next = new SketchGeneration(sketchWidth(), sketchDepth(), now, windowMs, previous);
+            if (generation.compareAndSet(current, next)) {
+                if (current != null) {
+                    decayTopK();
+                }
+                return next;
+            }
+        }
+    }
+
+    private int sketchWidth() {
+        int width = Math.max(1024, Math.min(properties.getHeavyHitterSketchWidth(), 1 << 22));
+        return Integer.highestOneBit(width - 1) << 1;
+    }
+
+    private int sketchDepth() {
+        return Math.max(2, Math.min(properties.getHeavyHitterSketchDepth(), 8));
+    }
+
+    private static final class SketchGeneration {
+        private final int width;
+        private final int depth;
+        private final long startMillis;
+        private final long windowMs;
+        private final AtomicIntegerArray counters;
+        private final LongAdder total;
+        private final SketchGeneration previous;
+
+        private SketchGeneration(int width, int depth, long startMillis, long windowMs, SketchGeneration previous) {
+            this.width = width;
+            this.depth = depth;
+            this.startMillis = startMillis;
+            this.windowMs = windowMs;
+            this.counters = new AtomicIntegerArray(width * depth);
+            this.total = new LongAdder();
+            // 只保留一代历史，避免链式引用让旧数组无法回收
+            this.previous = previous == null ? null : previous.detach();
+        }
+
+        private SketchGeneration(SketchGeneration source) {
+            this.width = source.width;
+            this.depth = source.depth;
+            this.startMillis = source.startMillis;
+            this.windowMs = source.windowMs;
+            this.counters = source.counters;
+            this.total = source.total;
+            this.previous = null;
+        }
+
+        private SketchGeneration detach() {
+            return this.previous == null ? this : new SketchGeneration(this);
+        }
+
+        int incrementAndEstimate(long key, long now) {
+            total.increment();
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                int value = counters.incrementAndGet(index(key, row));
+                if (value < min) {
+                    min = value;
+                }
+            }
+            return min + previousWeighted(key, now);
+        }
+
+        int estimate(long key, long now) {
+            return ownEstimate(key) + previousWeighted(key, now);
+        }
+
+        int noiseFloor(long now) {
+            long noise = total.sum() / width;
+            if (previous != null && previous.width == width) {
+                double remaining = 1.0D - Math.min(1.0D, (now - startMillis) / (double) windowMs);
+                noise += (long) (previous.total.sum() / width * remaining);
+            }
+            return (int) Math.min(Integer.MAX_VALUE, noise);
+        }
+
+        private int ownEstimate(long key) {
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                int value = counters.get(index(key, row));
+                if (value < min) {
+                    min = value;
+                }
+            }
+            return min;
+        }
+
+        private int previousWeighted(long key, long now) {
+            if (previous == null || previous.width != width || previous.depth != depth) {
+                return 0;
+            }
+            double remaining = 1.0D - Math.min(1.0D, (now - startMillis) / (double) windowMs);
+            return (int) (previous.ownEstimate(key) * remaining);
+        }
+
+        private int index(long key, int row) {
+            long h = key * (0x9E3779B97F4A7C15L + 2L * row) + row;
+            h ^= h >>> 29;
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 32;
+            return row * width + ((int) h & (width - 1));
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.ssy.service.impl;
+
+import com.ssy.properties.SecurityProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 横向越权探测跟踪：统计同一账号在窗口内对同一资源模板（/order/{id}）访问的不同资源ID数。
+ *
+ * - 跟踪键数量有上限，空闲超过一个窗口的键定时清除，内存不随租户规模增长；
+ * - 窗口切成 4 个时间桶，过期桶原位替换，无需整体清空；
+ * - 每个桶先用 16 槽的精确哈希集合（CAS 插入），满了再升级为 HyperLogLog（128 个寄存器），
+ *   判定阈值通常很小，绝大多数情况下由精确集合给出准确结果；
+ * - 全程无锁，同一账号并发请求之间不再争用 synchronized。
+ */
+@Service
+public class HorizontalProbeTrackerService {
+
+    private static final int BUCKETS = 4;
+    private static final int EXACT_SLOTS = 16;
+    private static final int HLL_PRECISION = 7;
+    private static final int HLL_REGISTERS = 1 << HLL_PRECISION;
+
+    private final SecurityProperties securityProperties;
+    private final ConcurrentHashMap<Long, ProbeWindow> windows = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final AtomicLong untrackedCount = new AtomicLong();
+    private final AtomicLong detectedCount = new AtomicLong();
+
+    public HorizontalProbeTrackerService(SecurityProperties securityProperties) {
+        this.securityProperties = securityProperties;
+    }
+
+    /**
+     * 记录一次资源访问，返回窗口内不同资源ID数是否达到判定阈值。
+     */
+    public boolean recordAndCheck(Long userId, String template, String resourceId) {
+        if (userId == null || template == null || resourceId == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        long key = mix(userId * 0x9E3779B97F4A7C15L ^ hash(template));
+        ProbeWindow window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= maxKeys()) {
+                sweep(now);
+                if (windows.size() >= maxKeys()) {
+                    untrackedCount.incrementAndGet();
+                    return false;
+                }
+            }
+            window = windows.computeIfAbsent(key, ignored -> new ProbeWindow());
+        }
+        long bucketMs = bucketMs();
+        long epoch = now / bucketMs;
+        window.lastSeen = now;
+        window.bucket(epoch).add(hash(resourceId));
+        if (window.distinctCount(epoch) >= threshold()) {
+            detectedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelay = 30_000)
+    public void evictIdle() {
+        sweep(System.currentTimeMillis());
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedKeys", windows.size());
+        stats.put("maxKeys", maxKeys());
+        stats.put("threshold", threshold());
+        stats.put("windowMs", bucketMs() * BUCKETS);
+        stats.put("untrackedCount", untrackedCount.get());
+        stats.put("detectedCount", detectedCount.get());
+        return stats;
+    }
+
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long idleMs = bucketMs() * BUCKETS;
+            Iterator<ProbeWindow> iterator = windows.values().iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next().lastSeen > idleMs) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private int threshold() {
+        return Math.max(2, endpointRbac().getHorizontalProbeThreshold());
+    }
+
+    private int maxKeys() {
+        return Math.max(1024, endpointRbac().getHorizontalProbeMaxKeys());
+    }
+
+    private long bucketMs() {
+        return Math.max(1_000L, endpointRbac().getHorizontalProbeWindowMs()) / BUCKETS;
+    }
+
+    private SecurityProperties.EndpointRbac endpointRbac() {
+        SecurityProperties.EndpointRbac config = securityProperties.getEndpointRbac();
+        return config == null ? new SecurityProperties.EndpointRbac() : config;
+    }
+
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h = mix(h);
+        return h == 0L ? 1L : h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class ProbeWindow {
+        private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKETS);
+        private volatile long lastSeen;
+
+        Bucket bucket(long epoch) {
+            int slot = (int) (epoch % BUCKETS);
+            while (true) {
+                Bucket current = buckets.get(slot);
+                if (current != null && current.epoch >= epoch) {
+                    return current;
+                }
+                Bucket next = new Bucket(epoch);
+                if (buckets.compareAndSet(slot, current, next)) {
+                    return next;
+                }
+            }
+        }
+
+        /**
+         * 合并窗口内各桶：都未溢出时精确去重计数，否则按 HyperLogLog 寄存器取最大值合并估算。
+         */
+        int distinctCount(long epoch) {
+            long[] union = new long[BUCKETS * EXACT_SLOTS];
+            int unionSize = 0;
+            int[] registers = null;
+            for (int i = 0; i < BUCKETS; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket == null || epoch - bucket.epoch >= BUCKETS || bucket.epoch > epoch) {
+                    continue;
+                }
+                AtomicIntegerArray sketch = bucket.sketch.get();
+                if (sketch != null) {
+                    if (registers == null) {
+                        registers = new int[HLL_REGISTERS];
+                    }
+                    for (int r = 0; r < HLL_REGISTERS; r++) {
+                        registers[r] = Math.max(registers[r], sketch.get(r));
+                    }
+                    continue;
+                }
+                for (int s = 0; s < EXACT_SLOTS; s++) {
+                    long value = bucket.slots.get(s);
+                    if (value != 0L && !contains(union, unionSize, value)) {
+                        union[unionSize++] = value;
+                    }
+                }
+            }
+            if (registers == null) {
+                return unionSize;
+            }
+            for (int i = 0; i < unionSize; i++) {
+                offer(registers, union[i]);
+            }
+            return estimate(registers);
+        }
+
+        private static boolean contains(long[] values, int size, long value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void offer(int[] registers, long hash) {
+            int index = (int) (hash >>> (64 - HLL_PRECISION));
+            int rank = Long.numberOfLeadingZeros((hash << HLL_PRECISION) | (1L << (HLL_PRECISION - 1))) + 1;
+            if (rank > registers[index]) {
+                registers[index] = rank;
+            }
+        }
+
+        private static int estimate(int[] registers) {
+            double sum = 0.0D;
+            int zeros = 0;
+            for (int register : registers) {
+                sum += 1.0D / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+            double m = HLL_REGISTERS;
+            double estimate = 0.7213D / (1.0D + 1.079D / m) * m * m / sum;
+            if (estimate <= 2.5D * m && zeros > 0) {
+                estimate = m * Math.log(m / zeros);
+            }
+            return (int) Math.round(estimate);
+        }
+    }
+
+    private static final class Bucket {
+        private final long epoch;
+        private final AtomicLongArray slots = new AtomicLongArray(EXACT_SLOTS);
+        private final AtomicReference<AtomicIntegerArray> sketch = new AtomicReference<>();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        void add(long hash) {
+            AtomicIntegerArray registers = sketch.get();
+            if (registers != null) {
+                offer(registers, hash);
+                return;
+            }
+            int start = (int) hash & (EXACT_SLOTS - 1);
+            for (int i = 0; i < EXACT_SLOTS; i++) {
+                int slot = (start + i) & (EXACT_SLOTS - 1);
+                long current = slots.get(slot);
+                while (current == 0L) {
+                    if (slots.compareAndSet(slot, 0L, hash)) {
+                        return;
+                    }
+                    current = slots.get(slot);
+                }
+                if (current == hash) {
+                    return;
+                }
+            }
+            promote(hash);
+        }
+
+        /**
+         * 精确集合已满：升级为 HyperLogLog，并把已有的精确值一并计入。
+         */
+        private void promote(long hash) {
+            AtomicIntegerArray registers = sketch.get();
+            if (registers == null) {
+                AtomicIntegerArray created = new AtomicIntegerArray(HLL_REGISTERS);
+                for (int i = 0; i < EXACT_SLOTS; i++) {
+                    offer(created, slots.get(i));
+                }
+                registers = sketch.compareAndSet(null, created) ? created : sketch.get();
+            }
+            offer(registers, hash);
+        }
+
+        private static void offer(AtomicIntegerArray registers, long hash) {
+            int index = (int) (hash >>> (64 - HLL_PRECISION));
+            int rank = Long.numberOfLeadingZeros((hash << HLL_PRECISION) | (1L << (HLL_PRECISION - 1))) + 1;
+            int current = registers.get(index);
+            while (rank > current && !registers.compareAndSet(index, current, rank)) {
+                current = registers.get(index);
+            }
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.ssy.entity.SecurityIpWhitelistEntity;
 import com.ssy.mapper.SecurityIpBlacklistMapper;
 import com.ssy.mapper.SecurityIpWhitelistMapper;
 import com.ssy.properties.ThreatDetectionProperties;
+import com.ssy.utils.IpAddress;
+import com.ssy.utils.IpPrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -13,15 +15,14 @@ import org.springframework.stereotype.Service;
 import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * IP黑白名单 + 高频访问检测（本地内存热路径，异步持久化）。
@@ -34,29 +35,35 @@ public class IpAccessControlService {
     private final SecurityIpBlacklistMapper securityIpBlacklistMapper;
     private final SecurityIpWhitelistMapper securityIpWhitelistMapper;
     private final ThreatDetectionProperties properties;
+    private final HeavyHitterTrackerService heavyHitterTrackerService;
+    private final EndpointTrafficBaselineService endpointTrafficBaselineService;
 
     /**
-     * 黑名单缓存：ip -> 过期毫秒时间戳（Long.MAX_VALUE 表示永久）
+     * 黑名单前缀树：IP/CIDR -> 过期毫秒时间戳（Long.MAX_VALUE 表示永久）；白名单前缀树：IP/CIDR -> 1。
+     * 两者均为不可变快照，刷新与增删通过原子替换发布，读路径无锁且不存在清空后重建的空窗期。
      */
-    private final ConcurrentHashMap<String, Long> blacklistCache = new ConcurrentHashMap<>();
-    private final Set<String> whitelistCache = ConcurrentHashMap.newKeySet();
-    private final CopyOnWriteArrayList<CidrWhitelistRule> whitelistCidrRules = new CopyOnWriteArrayList<>();
+    private final AtomicReference<IpPrefixTrie> blacklistTrie = new AtomicReference<>(IpPrefixTrie.empty());
+    private final AtomicReference<IpPrefixTrie> whitelistTrie = new AtomicReference<>(IpPrefixTrie.empty());
 
     /**
-     * 固定窗口计数器
+     * GCRA 无锁限流表（键为 IP/接口 复合 long，已过期槽位自动复用，无需定时清理）
      */
-    private final ConcurrentHashMap<String, FixedWindowCounter> globalCounters = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, FixedWindowCounter> endpointCounters = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, FixedWindowCounter> authFeedbackCounters = new ConcurrentHashMap<>();
+    private final GcraRateLimiter globalLimiter;
+    private final GcraRateLimiter endpointLimiter;
+    private final GcraRateLimiter authFeedbackLimiter;
 
     private final ExecutorService blacklistPersistenceExecutor;
 
     public IpAccessControlService(SecurityIpBlacklistMapper securityIpBlacklistMapper,
                                   SecurityIpWhitelistMapper securityIpWhitelistMapper,
-                                  ThreatDetectionProperties properties) {
+                                  ThreatDetectionProperties properties,
+                                  HeavyHitterTrackerService heavyHitterTrackerService,
+                                  EndpointTrafficBaselineService endpointTrafficBaselineService) {
         this.securityIpBlacklistMapper = securityIpBlacklistMapper;
         this.securityIpWhitelistMapper = securityIpWhitelistMapper;
         this.properties = properties;
+        this.heavyHitterTrackerService = heavyHitterTrackerService;
+        this.endpointTrafficBaselineService = endpointTrafficBaselineService;
         this.blacklistPersistenceExecutor = new ThreadPoolExecutor(
                 1,
                 1,
@@ -70,93 +77,111 @@ public class IpAccessControlService {
                 },
                 new ThreadPoolExecutor.DiscardOldestPolicy()
         );
+        int limiterSlots = properties.getRateLimiterSlots();
+        this.globalLimiter = new GcraRateLimiter(limiterSlots);
+        this.endpointLimiter = new GcraRateLimiter(limiterSlots);
+        this.authFeedbackLimiter = new GcraRateLimiter(limiterSlots);
     }
 
     public void refreshCaches() {
         List<SecurityIpBlacklistEntity> activeBlackList = safeBlacklistLoad();
         List<SecurityIpWhitelistEntity> activeWhiteList = safeWhitelistLoad();
 
-        blacklistCache.clear();
-        whitelistCache.clear();
-        whitelistCidrRules.clear();
-
+        IpPrefixTrie blacklist = IpPrefixTrie.empty();
         for (SecurityIpBlacklistEntity entity : activeBlackList) {
             if (entity.getIp() == null || entity.getIp().isEmpty()) {
                 continue;
             }
-            blacklistCache.put(entity.getIp(), toExpireEpochMillis(entity.getExpireTime()));
+            IpPrefixTrie next = blacklist.put(entity.getIp(), toExpireEpochMillis(entity.getExpireTime()));
+            if (next == null) {
+                log.warn("忽略非法黑名单IP配置: {}", entity.getIp());
+                continue;
+            }
+            blacklist = next;
         }
+        IpPrefixTrie whitelist = IpPrefixTrie.empty();
         for (SecurityIpWhitelistEntity entity : activeWhiteList) {
             if (entity.getIpOrCidr() == null || entity.getIpOrCidr().isEmpty()) {
                 continue;
             }
             String value = entity.getIpOrCidr().trim();
-            if (value.contains("/")) {
-                CidrWhitelistRule rule = CidrWhitelistRule.parse(value);
-                if (rule != null) {
-                    whitelistCidrRules.add(rule);
-                } else {
-                    log.warn("忽略非法CIDR白名单配置: {}", value);
-                }
-            } else {
-                whitelistCache.add(value);
+            IpPrefixTrie next = whitelist.put(value, 1L);
+            if (next == null) {
+                log.warn("忽略非法白名单IP/CIDR配置: {}", value);
+                continue;
             }
+            whitelist = next;
         }
 
-        log.info("IP黑白名单缓存已刷新: blacklist={}, whitelist={}", blacklistCache.size(), whitelistCache.size());
+        blacklistTrie.set(blacklist);
+        whitelistTrie.set(whitelist);
+        log.info("IP黑白名单缓存已刷新: blacklist={}, whitelist={}", blacklist.size(), whitelist.size());
     }
 
     public boolean isWhitelisted(String ip) {
-        if (ip == null || ip.isEmpty()) {
-            return false;
-        }
-        if (whitelistCache.contains(ip)) {
-            return true;
-        }
-        for (CidrWhitelistRule rule : whitelistCidrRules) {
-            if (rule.matches(ip)) {
-                return true;
-            }
-        }
-        return false;
+        return isWhitelisted(IpAddress.parse(ip));
+    }
+
+    public boolean isWhitelisted(IpAddress address) {
+        return address != null && whitelistTrie.get().match(address) != IpPrefixTrie.NO_MATCH;
     }
 
     public boolean isBlacklisted(String ip) {
-        if (ip == null || ip.isEmpty()) {
+        return isBlacklisted(IpAddress.parse(ip));
+    }
+
+    /**
+     * 覆盖该地址的所有黑名单前缀中取最晚过期时间判定；已过期条目由定时清理统一剔除。
+     */
+    public boolean isBlacklisted(IpAddress address) {
+        if (address == null) {
             return false;
         }
-        Long expireAt = blacklistCache.get(ip);
-        if (expireAt == null) {
+        long expireAt = blacklistTrie.get().match(address);
+        if (expireAt == IpPrefixTrie.NO_MATCH) {
             return false;
         }
-        if (expireAt == Long.MAX_VALUE) {
-            return true;
-        }
-        long now = System.currentTimeMillis();
-        if (expireAt > now) {
-            return true;
-        }
-        blacklistCache.remove(ip, expireAt);
-        return false;
+        return expireAt == Long.MAX_VALUE || expireAt > System.currentTimeMillis();
     }
 
-    public RateCheckResult checkRate(String ip, String endpointKey, boolean endpointMonitoringEnabled) {
-        long now = System.currentTimeMillis();
-
-        int globalCount = increment(globalCounters, "g:" + ip, now, properties.getGlobalWindowMs());
-        if (globalCount > properties.getGlobalWindowLimit() * Math.max(1, properties.getAutoBlockMultiplier())) {
+    /**
+     * baselineSlot 为接口流量基线下标（EndpointThreatRule.getBaselineSlot），只用于统计接口整体流量；
+     * 单来源的接口阈值始终是静态 endpointWindowLimit，接口总量偏离基线由 EndpointTrafficBaselineService 单独上报。
+     */
+    public RateCheckResult checkRate(String ip, long endpointKey, int baselineSlot, boolean endpointMonitoringEnabled) {
+        long ipKey = GcraRateLimiter.ipKey(ip);
+        int multiplier = Math.max(1, properties.getAutoBlockMultiplier());
+
+        int globalLimit = properties.getGlobalWindowLimit();
+        int globalCount = globalLimiter.acquire(ipKey, properties.getGlobalWindowMs(), globalLimit, globalLimit * multiplier + 1);
+        int estimated = heavyHitterTrackerService.record(ipKey, ip);
+        if (globalCount == GcraRateLimiter.SATURATED) {
+            // 限流表探测范围已被活跃键占满（多为伪造来源洪泛）：sketch 估算只高估，且此时碰撞噪声最大，
+            // 扣除噪声下限后仅做限流拦截，不据估算值自动拉黑，避免落入热点计数器的正常IP被误封
+            int denoised = estimated - heavyHitterTrackerService.noiseFloor();
+            if (denoised > globalLimit) {
+                return RateCheckResult.block("RATE_GLOBAL_LIMIT", "IP全局请求频率异常（限流表饱和，按估算值判定）", denoised);
+            }
+        } else if (globalCount > globalLimit * multiplier) {
             return RateCheckResult.autoBlacklist("RATE_GLOBAL_BURST", "IP全局请求频率极端异常", globalCount);
         }
-        if (globalCount > properties.getGlobalWindowLimit()) {
+        if (globalCount > globalLimit) {
             return RateCheckResult.block("RATE_GLOBAL_LIMIT", "IP全局请求频率异常", globalCount);
         }
 
-        if (endpointMonitoringEnabled && endpointKey != null) {
-            int endpointCount = increment(endpointCounters, "e:" + ip + ":" + endpointKey, now, properties.getEndpointWindowMs());
-            if (endpointCount > properties.getEndpointWindowLimit() * Math.max(1, properties.getAutoBlockMultiplier())) {
+        endpointTrafficBaselineService.record(baselineSlot);
+        if (endpointMonitoringEnabled) {
+            int endpointLimit = properties.getEndpointWindowLimit();
+            int endpointCount = endpointLimiter.acquire(GcraRateLimiter.compose(ipKey, endpointKey),
+                    properties.getEndpointWindowMs(), endpointLimit, endpointLimit * multiplier + 1);
+            // 接口维度表饱和时不做接口级判定，来源总量已由全局限流覆盖
+            if (endpointCount == GcraRateLimiter.SATURATED) {
+                return RateCheckResult.allow();
+            }
+            if (endpointCount > endpointLimit * multiplier) {
                 return RateCheckResult.autoBlacklist("RATE_ENDPOINT_BURST", "单接口访问频率极端异常", endpointCount);
             }
-            if (endpointCount > properties.getEndpointWindowLimit()) {
+            if (endpointCount > endpointLimit) {
                 return RateCheckResult.block("RATE_ENDPOINT_LIMIT", "单接口访问频率异常", endpointCount);
             }
         }
@@ -164,17 +189,22 @@ public class IpAccessControlService {
         return RateCheckResult.allow();
     }
 
-    public AuthFeedbackResult recordAuthResultAndCheck(String ip, String endpointKey, int statusCode) {
-        if (ip == null || ip.isEmpty() || endpointKey == null || endpointKey.isEmpty()) {
+    public AuthFeedbackResult recordAuthResultAndCheck(String ip, long endpointKey, int statusCode) {
+        if (ip == null || ip.isEmpty()) {
             return AuthFeedbackResult.noop();
         }
         if (statusCode != 401 && statusCode != 403) {
             return AuthFeedbackResult.noop();
         }
 
-        long now = System.currentTimeMillis();
-        String key = "auth:" + statusCode + ":" + ip + ":" + endpointKey;
-        int count = increment(authFeedbackCounters, key, now, properties.getAuthFeedbackWindowMs());
+        // 计数粒度取最大阈值：发射间隔 = 窗口 / 最大阈值，估算计数即窗口内的失败次数
+        int maxThreshold = Math.max(properties.getAuth401FeedbackThreshold(),
+                Math.max(properties.getAuth403FeedbackThreshold(), properties.getAuth403AutoBlockThreshold()));
+        long key = GcraRateLimiter.compose(GcraRateLimiter.compose(GcraRateLimiter.ipKey(ip), endpointKey), statusCode);
+        int count = authFeedbackLimiter.acquire(key, properties.getAuthFeedbackWindowMs(), maxThreshold, maxThreshold);
+        if (count == GcraRateLimiter.SATURATED) {
+            return AuthFeedbackResult.noop();
+        }
 
         if (statusCode == 403) {
             if (count >= properties.getAuth403AutoBlockThreshold()) {
@@ -229,11 +259,15 @@ public class IpAccessControlService {
                 "MANUAL",
                 "管理员手动拉黑"
         );
-        blacklistCache.merge(ip, toExpireEpochMillis(entity.getExpireTime()), Math::max);
+        if (!IpPrefixTrie.isValidIpOrCidr(ip)) {
+            throw new IllegalArgumentException("IP格式非法: " + ip);
+        }
+        long expireEpochMillis = toExpireEpochMillis(entity.getExpireTime());
+        blacklistTrie.updateAndGet(trie -> trie.put(ip, expireEpochMillis));
         try {
             securityIpBlacklistMapper.upsert(entity);
         } catch (Exception e) {
-            blacklistCache.remove(ip);
+            blacklistTrie.updateAndGet(trie -> trie.remove(ip));
             throw new IllegalStateException("手动拉黑持久化失败: " + e.getMessage(), e);
         }
     }
@@ -242,7 +276,7 @@ public class IpAccessControlService {
         if (ip == null || ip.isEmpty()) {
             return;
         }
-        blacklistCache.remove(ip);
+        blacklistTrie.updateAndGet(trie -> trie.remove(ip));
         try {
             securityIpBlacklistMapper.disableByIp(ip);
         } catch (Exception e) {
@@ -282,7 +316,11 @@ public class IpAccessControlService {
         }
         SecurityIpBlacklistEntity entity = buildBlacklistEntity(ip, attackType, reason, expireSeconds, source, remark);
         long expireEpochMillis = toExpireEpochMillis(entity.getExpireTime());
-        blacklistCache.merge(ip, expireEpochMillis, Math::max);
+        if (!IpPrefixTrie.isValidIpOrCidr(ip)) {
+            log.warn("忽略非法IP的自动拉黑 ip={}, reason={}", ip, reason);
+            return;
+        }
+        blacklistTrie.updateAndGet(trie -> trie.put(ip, expireEpochMillis));
 
         blacklistPersistenceExecutor.execute(() -> {
             try {
@@ -322,12 +360,7 @@ public class IpAccessControlService {
     public void cleanupLocalAndDbState() {
         long now = System.currentTimeMillis();
 
-        blacklistCache.entrySet().removeIf(entry -> entry.getValue() != Long.MAX_VALUE && entry.getValue() <= now);
-
-        long globalTtl = Math.max(properties.getGlobalWindowMs(), properties.getEndpointWindowMs()) * 3;
-        globalCounters.entrySet().removeIf(entry -> entry.getValue().isIdle(now, globalTtl));
-        endpointCounters.entrySet().removeIf(entry -> entry.getValue().isIdle(now, globalTtl));
-        authFeedbackCounters.entrySet().removeIf(entry -> entry.getValue().isIdle(now, Math.max(globalTtl, properties.getAuthFeedbackWindowMs() * 3)));
+        blacklistTrie.updateAndGet(trie -> removeExpired(trie, now));
 
         try {
             securityIpBlacklistMapper.disableExpired(LocalDateTime.now());
@@ -337,16 +370,39 @@ public class IpAccessControlService {
     }
 
     public int blacklistSize() {
-        return blacklistCache.size();
+        return blacklistTrie.get().size();
     }
 
     public int whitelistSize() {
-        return whitelistCache.size() + whitelistCidrRules.size();
+        return whitelistTrie.get().size();
+    }
+
+    /**
+     * 限流表占用与溢出情况。溢出表示探测范围内槽位全部被活跃键占满、新键无法被跟踪（SATURATED）的次数：
+     * 全局维度改按 heavy hitter 估算值扣除噪声下限后做限流判定（不自动拉黑），接口维度与认证反馈维度跳过本维度判定。
+     */
+    public Map<String, Object> rateLimiterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", globalLimiter.capacity());
+        stats.put("globalActiveKeys", globalLimiter.activeKeys());
+        stats.put("endpointActiveKeys", endpointLimiter.activeKeys());
+        stats.put("authFeedbackActiveKeys", authFeedbackLimiter.activeKeys());
+        stats.put("overflowCount", globalLimiter.overflowCount() + endpointLimiter.overflowCount()
+                + authFeedbackLimiter.overflowCount());
+        return stats;
     }
 
-    private int increment(Map<String, FixedWindowCounter> counters, String key, long now, long windowMs) {
-        FixedWindowCounter counter = counters.computeIfAbsent(key, k -> new FixedWindowCounter());
-        return counter.increment(now, windowMs);
+    private IpPrefixTrie removeExpired(IpPrefixTrie trie, long now) {
+        IpPrefixTrie[] result = {IpPrefixTrie.empty()};
+        boolean[] changed = {false};
+        trie.forEach((prefix, prefixLength, expireAt) -> {
+            if (expireAt != Long.MAX_VALUE && expireAt <= now) {
+                changed[0] = true;
+                return;
+            }
+            result[0] = result[0].put(prefix.getHigh(), prefix.getLow(), prefixLength, expireAt);
+        });
+        return changed[0] ? result[0] : trie;
     }
 
     private long toExpireEpochMillis(LocalDateTime expireTime) {
@@ -379,26 +435,6 @@ public class IpAccessControlService {
         blacklistPersistenceExecutor.shutdown();
     }
 
-    private static class FixedWindowCounter {
-        private long windowStart;
-        private int count;
-        private long lastSeen;
-
-        synchronized int increment(long now, long windowMs) {
-            if (windowStart == 0 || now - windowStart >= windowMs) {
-                windowStart = now;
-                count = 0;
-            }
-            count++;
-            lastSeen = now;
-            return count;
-        }
-
-        synchronized boolean isIdle(long now, long idleMs) {
-            return lastSeen > 0 && (now - lastSeen) > idleMs;
-        }
-    }
-
     public static class RateCheckResult {
         private final boolean allow;
         private final boolean shouldBlacklist;
@@ -504,68 +540,4 @@ public class IpAccessControlService {
             return observedCount;
         }
     }
-
-    private static class CidrWhitelistRule {
-        private final int network;
-        private final int mask;
-
-        private CidrWhitelistRule(int network, int mask) {
-            this.network = network;
-            this.mask = mask;
-        }
-
-        static CidrWhitelistRule parse(String cidr) {
-            try {
-                String[] parts = cidr.split("/");
-                if (parts.length != 2) {
-                    return null;
-                }
-                int prefix = Integer.parseInt(parts[1]);
-                if (prefix < 0 || prefix > 32) {
-                    return null;
-                }
-                Integer ipInt = ipv4ToInt(parts[0]);
-                if (ipInt == null) {
-                    return null;
-                }
-                int mask = prefix == 0 ? 0 : (int) (0xFFFFFFFFL << (32 - prefix));
-                int network = ipInt & mask;
-                return new CidrWhitelistRule(network, mask);
-            } catch (Exception e) {
-                return null;
-            }
-        }
-
-        boolean matches(String ip) {
-            Integer ipInt = ipv4ToInt(ip);
-            if (ipInt == null) {
-                return false;
-            }
-            return (ipInt & mask) == network;
-        }
-
-        private static Integer ipv4ToInt(String ip) {
-            if (ip == null) {
-                return null;
-            }
-            String[] arr = ip.trim().split("\\.");
-            if (arr.length != 4) {
-                return null;
-            }
-            int value = 0;
-            for (String part : arr) {
-                int octet;
-                try {
-                    octet = Integer.parseInt(part);
-                } catch (NumberFormatException e) {
-                    return null;
-                }
-                if (octet < 0 || octet > 255) {
-                    return null;
-                }
-                value = (value << 8) | octet;
-            }
-            return value;
-        }
-    }
 }
@@ -0,0 +1,64 @@
+package com.ssy.service.impl;
+
+import com.ssy.utils.PermissionMask;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 全局权限字典：perm_code 驻留为稠密整数下标，供 {@link PermissionMask} 按位表示。
+ *
+ * 下标首次出现时分配、进程内永不回收或复用，因此不同时间构建的用户位图与接口位图始终可以直接按位比较；
+ * 权限改名只会多占一个下标。
+ */
+@Service
+public class PermissionDictionaryService {
+
+    private final ConcurrentHashMap<String, Integer> indexByCode = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * 取权限编码的下标，未登记时分配新下标；空编码返回 -1。
+     */
+    public int intern(String permCode) {
+        if (permCode == null) {
+            return -1;
+        }
+        String code = permCode.trim();
+        if (code.isEmpty()) {
+            return -1;
+        }
+        Integer index = indexByCode.get(code);
+        return index != null ? index : indexByCode.computeIfAbsent(code, k -> nextIndex.getAndIncrement());
+    }
+
+    /**
+     * 把一组权限编码编译为位图（构建用户快照、接口规则时调用，不在请求热路径上）。
+     */
+    public PermissionMask maskOf(Collection<String> permCodes) {
+        if (permCodes == null || permCodes.isEmpty()) {
+            return PermissionMask.EMPTY;
+        }
+        int[] bits = new int[permCodes.size()];
+        int count = 0;
+        for (String permCode : permCodes) {
+            bits[count++] = intern(permCode);
+        }
+        return PermissionMask.of(bits, count);
+    }
+
+    public int size() {
+        return indexByCode.size();
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("codes", indexByCode.size());
+        stats.put("words", (nextIndex.get() + 63) >>> 6);
+        return stats;
+    }
+}
@@ -357,7 +357,7 @@ public class RbacIdentityService {
         entity.setCreateTime(now);
         entity.setUpdateTime(now);
         rbacPermissionMapper.insert(entity);
-        endpointRbacCacheService.refresh();
+        endpointRbacCacheService.refreshEndpoints(Collections.emptyList());
         RbacPermissionEntity created = rbacPermissionMapper.selectById(entity.getId());
         auditFieldDiffRecorderService.recordBusinessDiff(
                 "IAM",
@@ -384,7 +384,8 @@ public class RbacIdentityService {
         exists.setUpdateTime(LocalDateTime.now());
         rbacPermissionMapper.update(exists);
         userPermissionCacheService.invalidateAll();
-        endpointRbacCacheService.refresh();
+        // 权限 update_time 已更新，绑定该权限的接口由增量刷新按水位线找出
+        endpointRbacCacheService.refreshEndpoints(Collections.emptyList());
         RbacPermissionEntity after = rbacPermissionMapper.selectById(permissionId);
         auditFieldDiffRecorderService.recordBusinessDiff(
                 "IAM",
@@ -468,7 +469,7 @@ public class RbacIdentityService {
                     LocalDateTime.now()
             );
         }
-        endpointRbacCacheService.refresh();
+        endpointRbacCacheService.refreshEndpoints(Collections.singletonList(endpointId));
         return rbacPermissionEndpointRelMapper.selectEnabledPermissionsByEndpointId(endpointId);
     }
 
@@ -529,8 +530,12 @@ public class RbacIdentityService {
                 }
             }
         }
+        // 绑定为物理删除，增量刷新前先记下原先绑定的接口
+        Set<Long> touchedEndpointIds = new LinkedHashSet<>(
+                rbacPermissionEndpointRelMapper.selectEndpointIdsByPermissionId(permissionId));
         rbacPermissionEndpointRelMapper.deleteByPermissionId(permissionId);
         if (endpointIds != null && !endpointIds.isEmpty()) {
+            touchedEndpointIds.addAll(endpointIds);
             rbacPermissionEndpointRelMapper.insertPermissionEndpoints(
                     permissionId,
                     endpointIds,
@@ -538,7 +543,7 @@ public class RbacIdentityService {
                     LocalDateTime.now()
             );
         }
-        endpointRbacCacheService.refresh();
+        endpointRbacCacheService.refreshEndpoints(touchedEndpointIds);
         return rbacPermissionEndpointRelMapper.selectEndpointsByPermissionId(permissionId);
     }
 
@@ -578,7 +583,7 @@ public class RbacIdentityService {
             endpointIds.add(endpoint.getId());
         }
 
-        endpointRbacCacheService.refresh();
+        endpointRbacCacheService.refreshEndpoints(endpointIds);
         return new ModuleEndpointPermissionBindResult(
                 moduleGroup.trim(),
                 enabledOnly,
@@ -0,0 +1,94 @@
+package com.ssy.service.impl;
+
+import com.ssy.filter.support.CachedBodyHttpServletRequest;
+import com.ssy.filter.support.RequestBodyBufferPool;
+import com.ssy.properties.ThreatDetectionProperties;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求体统一捕获：每个请求最多读取一次，写入池化的定长缓冲块，
+ * 异常识别、审计、报文指纹校验共用同一份只读视图（文本前缀、字节副本、SHA-256）。
+ *
+ * 捕获上限取 bodyCaptureMaxBytes、maxInspectBodyBytes 与报文指纹签名长度三者的最大值，
+ * 超出部分不缓存，由下游直接从原始流续读。
+ */
+@Service
+public class RequestBodyCaptureService {
+
+    /**
+     * 报文指纹签名覆盖的请求体前缀长度（字节），捕获上限不能低于该值
+     */
+    public static final int FINGERPRINT_BODY_BYTES = 8192;
+
+    private final ThreatDetectionProperties properties;
+    private final SlowClientGuardService slowClientGuardService;
+    private final RequestBodyBufferPool bufferPool;
+
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+
+    public RequestBodyCaptureService(ThreatDetectionProperties properties,
+                                     SlowClientGuardService slowClientGuardService) {
+        this.properties = properties;
+        this.slowClientGuardService = slowClientGuardService;
+        this.bufferPool = new RequestBodyBufferPool(properties.getBodyCaptureChunkBytes(), properties.getBodyCapturePoolChunks());
+    }
+
+    /**
+     * 读取并捕获请求体，调用方须把返回的包装传给下游，并在请求结束时调用 release()。
+     * 读取过慢或超过大小上限时抛出 {@link com.ssy.filter.support.SlowClientException}。
+     */
+    public CachedBodyHttpServletRequest capture(HttpServletRequest request) throws IOException {
+        CachedBodyHttpServletRequest body = new CachedBodyHttpServletRequest(request, bufferPool, captureLimit(),
+                slowClientGuardService.bodyReadGuard(request));
+        captured.increment();
+        if (!body.isComplete()) {
+            truncated.increment();
+        }
+        return body;
+    }
+
+    /**
+     * 是否为值得留样的文本请求体（审计用；二进制与文件上传不捕获）。
+     */
+    public boolean isTextualBody(HttpServletRequest request) {
+        String method = request.getMethod();
+        if ("GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method)
+                || "DELETE".equalsIgnoreCase(method) || "OPTIONS".equalsIgnoreCase(method)) {
+            return false;
+        }
+        if (request.getContentLengthLong() == 0) {
+            return false;
+        }
+        String contentType = request.getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        contentType = contentType.toLowerCase(Locale.ROOT);
+        return contentType.contains("json")
+                || contentType.contains("xml")
+                || contentType.startsWith("text/")
+                || contentType.contains("application/x-www-form-urlencoded");
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("captureLimit", captureLimit());
+        stats.put("captured", captured.sum());
+        stats.put("truncated", truncated.sum());
+        stats.putAll(bufferPool.snapshotStats());
+        return stats;
+    }
+
+    private int captureLimit() {
+        return Math.max(FINGERPRINT_BODY_BYTES,
+                Math.max(properties.getMaxInspectBodyBytes(), properties.getBodyCaptureMaxBytes()));
+    }
+}
@@ -0,0 +1,104 @@
+package com.ssy.service.impl;
+
+import com.ssy.context.RequestSecurityEnvelope;
+import com.ssy.properties.ThreatDetectionProperties;
+import com.ssy.utils.IpAddress;
+import com.ssy.utils.RequestPathCanonicalizer;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Locale;
+
+/**
+ * 请求级安全信封的计算与复用。
+ * 过滤器统一通过 {@link #resolve(HttpServletRequest)} 获取，首次调用计算并缓存到 request attribute。
+ */
+@Service
+public class RequestSecurityEnvelopeService {
+
+    private static final String[] STATIC_RESOURCE_PREFIXES = {
+            "/css/", "/js/", "/webjars/", "/swagger", "/v2/api-docs", "/v3/api-docs", "/favicon", "/doc.html"
+    };
+
+    private final ThreatDetectionProperties properties;
+    private final EndpointRegistryService endpointRegistryService;
+    private final AuthorizationPolicyService authorizationPolicyService;
+
+    public RequestSecurityEnvelopeService(ThreatDetectionProperties properties,
+                                          EndpointRegistryService endpointRegistryService,
+                                          AuthorizationPolicyService authorizationPolicyService) {
+        this.properties = properties;
+        this.endpointRegistryService = endpointRegistryService;
+        this.authorizationPolicyService = authorizationPolicyService;
+    }
+
+    public RequestSecurityEnvelope resolve(HttpServletRequest request) {
+        RequestSecurityEnvelope envelope = RequestSecurityEnvelope.from(request);
+        if (envelope != null) {
+            return envelope;
+        }
+        envelope = build(request);
+        request.setAttribute(RequestSecurityEnvelope.REQUEST_ATTR, envelope);
+        return envelope;
+    }
+
+    public String resolveClientIp(HttpServletRequest request) {
+        return resolve(request).getClientIp();
+    }
+
+    private RequestSecurityEnvelope build(HttpServletRequest request) {
+        String method = request.getMethod() == null ? "GET" : request.getMethod().toUpperCase(Locale.ROOT);
+        String requestUri = request.getRequestURI();
+        RequestPathCanonicalizer canonicalizer = RequestPathCanonicalizer.current();
+        String canonicalPath = canonicalizer.canonicalize(requestUri);
+        int pathFlags = canonicalizer.getFlags();
+        RequestSecurityEnvelope.BypassType bypassType = classify(method, canonicalPath);
+        String clientIp = extractClientIp(request);
+        // 一次匹配同时取出 RBAC、授权决策与异常识别规则，三者来自同一版本的接口注册表
+        EndpointRegistry.Entry endpoint = endpointRegistryService.current().match(method, canonicalPath);
+        return new RequestSecurityEnvelope(
+                clientIp,
+                IpAddress.parse(clientIp),
+                method,
+                requestUri,
+                canonicalPath,
+                pathFlags,
+                bypassType,
+                endpoint == null ? null : endpoint.getThreatRule(),
+                endpoint == null ? null : endpoint.getAccessRule(),
+                authorizationPolicyService.resolve(endpoint, canonicalPath)
+        );
+    }
+
+    private RequestSecurityEnvelope.BypassType classify(String method, String canonicalPath) {
+        if ("OPTIONS".equals(method)) {
+            return RequestSecurityEnvelope.BypassType.PREFLIGHT;
+        }
+        for (String prefix : STATIC_RESOURCE_PREFIXES) {
+            if (canonicalPath.startsWith(prefix)) {
+                return RequestSecurityEnvelope.BypassType.STATIC_RESOURCE;
+            }
+        }
+        return RequestSecurityEnvelope.BypassType.NONE;
+    }
+
+    private String extractClientIp(HttpServletRequest request) {
+        if (properties.isTrustForwardHeaders()) {
+            String xff = request.getHeader("X-Forwarded-For");
+            if (StringUtils.hasText(xff)) {
+                int comma = xff.indexOf(',');
+                String ip = (comma > 0 ? xff.substring(0, comma) : xff).trim();
+                // 非法格式的转发头不可信（多为伪造），回退到下一来源
+                if (IpAddress.parse(ip) != null) {
+                    return ip;
+                }
+            }
+            String realIp = request.getHeader("X-Real-IP");
+            if (StringUtils.hasText(realIp) && IpAddress.parse(realIp) != null) {
+                return realIp.trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,103 @@
+package com.ssy.service.impl;
+
+import com.ssy.filter.support.LeakScanningHttpServletResponse;
+import com.ssy.filter.support.ResponseLeakDetector;
+import com.ssy.properties.ThreatDetectionProperties;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 响应体泄露扫描（按接口开启）：全局开关 responseLeakScanEnabled 与 api_endpoints.response_leak_scan_enabled 同时开启才扫描。
+ * 识别引擎全局共享，每个响应只分配一个固定大小的扫描状态。
+ */
+@Service
+public class ResponseLeakScanService {
+
+    public static final String ATTACK_TYPE = "RESPONSE_DATA_LEAK";
+
+    private static final ResponseLeakDetector DETECTOR = ResponseLeakDetector.compile();
+
+    private final ThreatDetectionProperties properties;
+
+    private final LongAdder scannedResponses = new LongAdder();
+    private final LongAdder scannedBytes = new LongAdder();
+    private final LongAdder leakResponses = new LongAdder();
+    private final LongAdder budgetExceeded = new LongAdder();
+    private final LongAdder[] hitsByKind = new LongAdder[ResponseLeakDetector.LeakKind.values().length];
+
+    public ResponseLeakScanService(ThreatDetectionProperties properties) {
+        this.properties = properties;
+        for (int i = 0; i < hitsByKind.length; i++) {
+            hitsByKind[i] = new LongAdder();
+        }
+    }
+
+    public boolean shouldScan(EndpointThreatCacheService.EndpointThreatRule endpointRule) {
+        return properties.isResponseLeakScanEnabled()
+                && endpointRule != null
+                && endpointRule.getResponseLeakScanEnabled() != 0;
+    }
+
+    public LeakScanningHttpServletResponse wrap(HttpServletResponse response) {
+        return new LeakScanningHttpServletResponse(response,
+                DETECTOR.newScan(properties.getResponseLeakScanMaxBytes(), properties.getResponseLeakScanMaxConfirms()));
+    }
+
+    /**
+     * 结束扫描并计入统计，返回脱敏后的命中列表（按风险分降序）。
+     */
+    public List<ResponseLeakDetector.Finding> complete(LeakScanningHttpServletResponse response) {
+        List<ResponseLeakDetector.Finding> findings = response.finishScan();
+        ResponseLeakDetector.Scan scan = response.getScan();
+        scannedResponses.increment();
+        scannedBytes.add(scan.getScannedBytes());
+        if (scan.isBudgetExceeded()) {
+            budgetExceeded.increment();
+        }
+        if (!findings.isEmpty()) {
+            leakResponses.increment();
+            for (ResponseLeakDetector.Finding finding : findings) {
+                hitsByKind[finding.getKind().ordinal()].increment();
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * 事件原因：列出命中类型与脱敏样本，不落库原始敏感内容。
+     */
+    public String describe(List<ResponseLeakDetector.Finding> findings) {
+        StringBuilder reason = new StringBuilder("响应体疑似泄露敏感数据：");
+        for (int i = 0; i < findings.size(); i++) {
+            ResponseLeakDetector.Finding finding = findings.get(i);
+            if (i > 0) {
+                reason.append("，");
+            }
+            reason.append(finding.getKind().getLabel());
+            if (finding.getMaskedSample() != null) {
+                reason.append("(").append(finding.getMaskedSample()).append(")");
+            }
+        }
+        return reason.toString();
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isResponseLeakScanEnabled());
+        stats.put("scannedResponses", scannedResponses.sum());
+        stats.put("scannedBytes", scannedBytes.sum());
+        stats.put("leakResponses", leakResponses.sum());
+        stats.put("budgetExceeded", budgetExceeded.sum());
+        Map<String, Long> hits = new LinkedHashMap<>();
+        for (ResponseLeakDetector.LeakKind kind : ResponseLeakDetector.LeakKind.values()) {
+            hits.put(kind.name(), hitsByKind[kind.ordinal()].sum());
+        }
+        stats.put("hitsByKind", hits);
+        return stats;
+    }
+}
@@ -0,0 +1,191 @@
+package com.ssy.service.impl;
+
+import com.ssy.context.RequestSecurityEnvelope;
+import com.ssy.properties.SecurityMetricsProperties;
+import com.ssy.utils.LatencyHistogram;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 安全过滤链分阶段耗时统计。
+ *
+ * - 每个过滤器一个阶段直方图，记录该过滤器自身耗时（不含下游过滤器与业务处理）；
+ * - 每个已登记接口（请求方法 + 注册表中的路径模板）一个直方图，记录一次请求在整条安全链上的自身耗时合计；
+ *   未登记路径（扫描器噪声、静态资源等）统一计入 _unregistered，分组数只随接口注册表增长，不随请求路径增长；
+ * - 按 sampleRate 抽样，未抽中的请求只多一次随机数判断，热路径无共享写。
+ */
+@Service
+public class SecurityLatencyMetricsService {
+
+    public static final String OTHER_GROUP = "_other";
+    public static final String UNREGISTERED_GROUP = "_unregistered";
+
+    private static final double[] PERCENTILES = {50.0D, 99.0D, 99.9D};
+    private static final String[] PERCENTILE_LABELS = {"p50", "p99", "p999"};
+    private static final String[] PROMETHEUS_QUANTILES = {"0.5", "0.99", "0.999"};
+
+    private final SecurityMetricsProperties properties;
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> endpointGroups = new ConcurrentHashMap<>();
+    private volatile long resetAt = System.currentTimeMillis();
+
+    public SecurityLatencyMetricsService(SecurityMetricsProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 登记过滤阶段，返回阶段编号；同名阶段重复登记返回同一编号。
+     */
+    public synchronized int registerStage(String name) {
+        for (int i = 0; i < stages.size(); i++) {
+            if (stages.get(i).name.equals(name)) {
+                return i;
+            }
+        }
+        stages.add(new Stage(name));
+        return stages.size() - 1;
+    }
+
+    public boolean shouldSample() {
+        int rate = properties.getSampleRate();
+        return rate <= 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+    }
+
+    public void recordStage(int stageIndex, long nanos) {
+        stages.get(stageIndex).histogram.record(nanos);
+    }
+
+    public void recordChain(HttpServletRequest request, long nanos) {
+        String group = resolveGroup(request);
+        LatencyHistogram histogram = endpointGroups.get(group);
+        if (histogram == null) {
+            if (endpointGroups.size() >= Math.max(1, properties.getMaxEndpointGroups())) {
+                group = OTHER_GROUP;
+            }
+            histogram = endpointGroups.computeIfAbsent(group, key -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        result.put("sampleRate", Math.max(1, properties.getSampleRate()));
+        result.put("since", resetAt);
+        result.put("unit", "us");
+        List<Map<String, Object>> stageStats = new ArrayList<>();
+        for (Stage stage : stages) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("stage", stage.name);
+            putSummary(item, stage.histogram.snapshot());
+            stageStats.add(item);
+        }
+        result.put("stages", stageStats);
+
+        List<Map<String, Object>> groupStats = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> entry : endpointGroups.entrySet()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("group", entry.getKey());
+            putSummary(item, entry.getValue().snapshot());
+            groupStats.add(item);
+        }
+        groupStats.sort((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")));
+        result.put("endpointGroups", groupStats);
+        return result;
+    }
+
+    /**
+     * Prometheus 文本格式（summary，单位秒），count/sum 为抽样值。
+     */
+    public String renderPrometheus() {
+        StringBuilder builder = new StringBuilder(4096);
+        builder.append("# HELP security_filter_stage_seconds Sampled self time of each security filter\n");
+        builder.append("# TYPE security_filter_stage_seconds summary\n");
+        for (Stage stage : stages) {
+            appendSummary(builder, "security_filter_stage_seconds", "stage", stage.name, stage.histogram.snapshot());
+        }
+        builder.append("# HELP security_filter_chain_seconds Sampled total self time of the security filter chain per endpoint group\n");
+        builder.append("# TYPE security_filter_chain_seconds summary\n");
+        for (Map.Entry<String, LatencyHistogram> entry : endpointGroups.entrySet()) {
+            appendSummary(builder, "security_filter_chain_seconds", "group", entry.getKey(), entry.getValue().snapshot());
+        }
+        builder.append("# HELP security_filter_sample_rate One of every N requests is timed\n");
+        builder.append("# TYPE security_filter_sample_rate gauge\n");
+        builder.append("security_filter_sample_rate ").append(Math.max(1, properties.getSampleRate())).append('\n');
+        return builder.toString();
+    }
+
+    public void reset() {
+        for (Stage stage : stages) {
+            stage.histogram.reset();
+        }
+        endpointGroups.clear();
+        resetAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 取请求安全信封上已匹配的接口注册表条目作为分组（方法 + 路径模板），未登记路径归入固定分组。
+     */
+    private String resolveGroup(HttpServletRequest request) {
+        RequestSecurityEnvelope envelope = RequestSecurityEnvelope.from(request);
+        EndpointThreatCacheService.EndpointThreatRule rule = envelope == null ? null : envelope.getThreatRule();
+        if (rule == null || rule.getPath() == null) {
+            return UNREGISTERED_GROUP;
+        }
+        return rule.getMethod() == null ? rule.getPath() : rule.getMethod() + " " + rule.getPath();
+    }
+
+    private static void putSummary(Map<String, Object> item, LatencyHistogram.Snapshot snapshot) {
+        item.put("count", snapshot.getCount());
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            item.put(PERCENTILE_LABELS[i], toMicros(snapshot.valueAtPercentile(PERCENTILES[i])));
+        }
+        item.put("mean", toMicros(snapshot.getMeanNanos()));
+        item.put("max", toMicros(snapshot.getMaxNanos()));
+    }
+
+    private static void appendSummary(StringBuilder builder, String metric, String labelName, String labelValue,
+                                      LatencyHistogram.Snapshot snapshot) {
+        String label = labelName + "=\"" + escapeLabel(labelValue) + "\"";
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            builder.append(metric).append('{').append(label).append(",quantile=\"").append(PROMETHEUS_QUANTILES[i]).append("\"} ")
+                    .append(toSeconds(snapshot.valueAtPercentile(PERCENTILES[i]))).append('\n');
+        }
+        builder.append(metric).append("_sum{").append(label).append("} ").append(toSeconds(snapshot.getSumNanos())).append('\n');
+        builder.append(metric).append("_count{").append(label).append("} ").append(snapshot.getCount()).append('\n');
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static double toMicros(long nanos) {
+        return Math.round(nanos / 100.0D) / 10.0D;
+    }
+
+    private static String toSeconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1_000_000_000.0D);
+    }
+
+    private static final class Stage {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Stage(String name) {
+            this.name = name;
+        }
+    }
+}
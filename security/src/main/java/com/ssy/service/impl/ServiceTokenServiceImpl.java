@@ -1,7 +1,9 @@
 package com.ssy.service.impl;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.ssy.entity.ServiceAppEntity;
 import com.ssy.entity.ServiceTokenEntity;
 import com.ssy.mapper.ServiceTokenMapper;
@@ -36,6 +38,9 @@ public class ServiceTokenServiceImpl implements ServiceTokenService {
     // 用于签发永久token的密钥
     private static final String TOKEN_SECRET = "service_token_secret_key_2025_zxy_hospital_admin";
 
+    // 只做签名校验的共用验证器（isIssuedTo 使用）
+    private static final JWTVerifier TOKEN_VERIFIER = JWT.require(Algorithm.HMAC256(TOKEN_SECRET)).build();
+
     /**
      * Token缓存：token -> ServiceTokenEntity
      * 只缓存验证通过的token，避免每次都查数据库
@@ -154,6 +159,22 @@ public class ServiceTokenServiceImpl implements ServiceTokenService {
         return null;
     }
 
+    @Override
+    public boolean isIssuedTo(String token, String appId) {
+        if (token == null || token.isEmpty() || appId == null || appId.isEmpty()) {
+            return false;
+        }
+        CachedTokenInfo cachedInfo = tokenCache.get(token);
+        if (cachedInfo != null) {
+            return appId.equals(cachedInfo.getTokenEntity().getAppId());
+        }
+        try {
+            return appId.equals(TOKEN_VERIFIER.verify(token).getClaim("appId").asString());
+        } catch (JWTVerificationException e) {
+            return false;
+        }
+    }
+
     @Override
     public ServiceTokenEntity getTokenByAppId(String appId) {
         return serviceTokenMapper.selectByAppId(appId);
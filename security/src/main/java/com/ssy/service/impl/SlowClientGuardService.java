@@ -0,0 +1,204 @@
+package com.ssy.service.impl;
+
+import com.ssy.filter.support.BodyReadGuard;
+import com.ssy.properties.ThreatDetectionProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 慢速客户端/超大请求防护：
+ * - 按IP统计在途请求数，超过 maxInflightPerIp 直接拒绝，少数IP无法占满容器工作线程；
+ * - 为每个请求生成 {@link BodyReadGuard}，请求体读取受总时长、最低速率与大小上限约束；
+ * - 违规在窗口内累计达到阈值时由过滤器自动拉黑。
+ *
+ * 跟踪的IP数有上限，空闲且无在途请求的条目定时清除；表满时新IP放行不计数（fail-open）。
+ */
+@Service
+public class SlowClientGuardService {
+
+    public static final String ATTACK_TYPE = "SLOW_CLIENT";
+
+    private final ThreatDetectionProperties properties;
+    private final ConcurrentHashMap<String, IpState> states = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private final LongAdder inflightRejected = new LongAdder();
+    private final LongAdder readViolations = new LongAdder();
+    private final LongAdder oversizedRejected = new LongAdder();
+    private final LongAdder escalated = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    public SlowClientGuardService(ThreatDetectionProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isSlowClientGuardEnabled();
+    }
+
+    /**
+     * 进入请求：在途数未超限返回 true，调用方须在请求结束时调用 {@link #exit(String)}；
+     * 超限返回 false 且不占用名额。
+     */
+    public boolean tryEnter(String ip) {
+        IpState state = state(ip, System.currentTimeMillis());
+        if (state == null) {
+            return true;
+        }
+        int limit = Math.max(1, properties.getMaxInflightPerIp());
+        if (state.inflight.incrementAndGet() > limit) {
+            state.inflight.decrementAndGet();
+            inflightRejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void exit(String ip) {
+        if (ip == null) {
+            return;
+        }
+        IpState state = states.get(ip);
+        if (state != null) {
+            state.lastSeen = System.currentTimeMillis();
+            if (state.inflight.decrementAndGet() < 0) {
+                state.inflight.set(0);
+            }
+        }
+    }
+
+    /**
+     * Content-Length 是否超过请求体大小上限。
+     */
+    public boolean isOversized(HttpServletRequest request) {
+        long limit = properties.getMaxRequestBodyBytes();
+        return limit > 0 && request.getContentLengthLong() > limit;
+    }
+
+    /**
+     * 当前请求的读取守卫，同一请求内所有包装共用一个（登记在请求属性中）。
+     */
+    public BodyReadGuard bodyReadGuard(HttpServletRequest request) {
+        if (!properties.isSlowClientGuardEnabled()) {
+            return null;
+        }
+        Object existing = request.getAttribute(BodyReadGuard.ATTRIBUTE);
+        if (existing instanceof BodyReadGuard) {
+            return (BodyReadGuard) existing;
+        }
+        BodyReadGuard guard = new BodyReadGuard(
+                properties.getBodyReadDeadlineMs(),
+                properties.getBodyReadGraceMs(),
+                properties.getMinBodyBytesPerSecond(),
+                properties.getMaxRequestBodyBytes());
+        request.setAttribute(BodyReadGuard.ATTRIBUTE, guard);
+        return guard;
+    }
+
+    /**
+     * 记录一次违规，返回窗口内违规次数是否达到拉黑阈值（达到阈值后计数清零，避免重复拉黑）。
+     */
+    public boolean recordViolation(String ip, boolean oversized) {
+        if (oversized) {
+            oversizedRejected.increment();
+        } else {
+            readViolations.increment();
+        }
+        long now = System.currentTimeMillis();
+        IpState state = state(ip, now);
+        if (state == null) {
+            return false;
+        }
+        boolean reached = state.recordViolation(now,
+                Math.max(1_000L, properties.getSlowClientViolationWindowMs()),
+                Math.max(1, properties.getSlowClientViolationThreshold()));
+        if (reached) {
+            escalated.increment();
+        }
+        return reached;
+    }
+
+    @Scheduled(fixedDelay = 30_000)
+    public void evictIdle() {
+        sweep(System.currentTimeMillis());
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isSlowClientGuardEnabled());
+        stats.put("trackedIps", states.size());
+        stats.put("maxInflightPerIp", properties.getMaxInflightPerIp());
+        stats.put("inflightRejected", inflightRejected.sum());
+        stats.put("readViolations", readViolations.sum());
+        stats.put("oversizedRejected", oversizedRejected.sum());
+        stats.put("escalated", escalated.sum());
+        stats.put("untracked", untracked.sum());
+        return stats;
+    }
+
+    private IpState state(String ip, long now) {
+        if (ip == null) {
+            return null;
+        }
+        IpState state = states.get(ip);
+        if (state == null) {
+            int maxIps = Math.max(1024, properties.getSlowClientMaxTrackedIps());
+            if (states.size() >= maxIps) {
+                sweep(now);
+                if (states.size() >= maxIps) {
+                    untracked.increment();
+                    return null;
+                }
+            }
+            state = states.computeIfAbsent(ip, ignored -> new IpState());
+        }
+        state.lastSeen = now;
+        return state;
+    }
+
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long idleMs = Math.max(1_000L, properties.getSlowClientViolationWindowMs());
+            Iterator<IpState> iterator = states.values().iterator();
+            while (iterator.hasNext()) {
+                IpState state = iterator.next();
+                if (state.inflight.get() <= 0 && now - state.lastSeen > idleMs) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static final class IpState {
+        private final AtomicInteger inflight = new AtomicInteger();
+        private volatile long lastSeen;
+        private long windowStart;
+        private int violations;
+
+        synchronized boolean recordViolation(long now, long windowMs, int threshold) {
+            if (now - windowStart > windowMs) {
+                windowStart = now;
+                violations = 0;
+            }
+            if (++violations >= threshold) {
+                violations = 0;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.ssy.service.impl;
+
+import com.ssy.filter.support.SignatureEvaluation;
+import com.ssy.filter.support.StreamInspectingHttpServletRequest;
+import com.ssy.filter.support.ThreatRuleMode;
+import com.ssy.filter.support.ThreatSignatureEngine;
+import com.ssy.properties.ThreatDetectionProperties;
+import com.ssy.utils.AttackTypeLabelUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 威胁检测规则注册表：每条规则的运行模式（ENFORCE / SHADOW / OFF）与无锁性能计数。
+ *
+ * 规则以攻击类型为 ID；特征引擎中的规则按特征编号映射为模式数组快照，模式变更或引擎重建时重新生成，
+ * 请求期只读数组。计数使用 LongAdder，统计评估次数、命中次数、影子命中次数、实际拦截次数与累计纳秒耗时。
+ * 路径穿越同时包含规范化标记判定与特征匹配两部分，计数合并到同一条规则下。
+ */
+@Service
+public class ThreatRuleRegistryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThreatRuleRegistryService.class);
+
+    public static final String RULE_PATH_TRAVERSAL = "PATH_TRAVERSAL";
+    public static final String RULE_ENCODING_EVASION = "ENCODING_EVASION";
+    public static final String RULE_PRIVILEGE_PROBE = "PRIVILEGE_PROBE";
+
+    /**
+     * 内置规则（展示顺序），特征引擎中的其余规则在首次编译后自动登记
+     */
+    private static final List<String> BUILTIN_RULES = Arrays.asList(
+            RULE_PATH_TRAVERSAL, "SCANNER_PROBE", "DEPENDENCY_PROBE", "SQL_INJECTION", "XSS_ATTACK",
+            "JS_INJECTION", "AUTOMATION_TOOL", RULE_PRIVILEGE_PROBE, RULE_ENCODING_EVASION
+    );
+
+    private final ConcurrentHashMap<String, RuleState> rules = new ConcurrentHashMap<>();
+    private final LongAdder engineScanCount = new LongAdder();
+    private final LongAdder engineScanNanos = new LongAdder();
+
+    private final AtomicInteger modeVersion = new AtomicInteger();
+    private volatile ModeSnapshot modeSnapshot;
+
+    public ThreatRuleRegistryService(ThreatDetectionProperties properties) {
+        for (String ruleId : BUILTIN_RULES) {
+            rules.put(ruleId, new RuleState(ThreatRuleMode.ENFORCE));
+        }
+        Map<String, String> configured = properties.getRuleModes();
+        if (configured != null) {
+            for (Map.Entry<String, String> entry : configured.entrySet()) {
+                ThreatRuleMode mode = ThreatRuleMode.parse(entry.getValue());
+                if (entry.getKey() == null || mode == null) {
+                    log.warn("忽略非法规则模式配置: {}={}", entry.getKey(), entry.getValue());
+                    continue;
+                }
+                state(entry.getKey()).mode = mode;
+            }
+        }
+    }
+
+    public ThreatRuleMode mode(String ruleId) {
+        RuleState state = rules.get(ruleId);
+        return state == null ? ThreatRuleMode.ENFORCE : state.mode;
+    }
+
+    public boolean isKnownRule(String ruleId) {
+        return ruleId != null && rules.containsKey(ruleId);
+    }
+
+    public boolean isBuiltinRule(String ruleId) {
+        return BUILTIN_RULES.contains(ruleId);
+    }
+
+    public void setMode(String ruleId, ThreatRuleMode mode) {
+        state(ruleId).mode = mode;
+        modeVersion.incrementAndGet();
+        log.info("威胁检测规则模式已变更: {} -> {}", ruleId, mode);
+    }
+
+    /**
+     * 按特征编号排列的模式数组，引擎实例或模式变化时重建。
+     */
+    public ThreatRuleMode[] modesFor(ThreatSignatureEngine engine) {
+        int version = modeVersion.get();
+        ModeSnapshot snapshot = modeSnapshot;
+        if (snapshot != null && snapshot.engine == engine && snapshot.version == version) {
+            return snapshot.modes;
+        }
+        ThreatRuleMode[] modes = new ThreatRuleMode[engine.signatureCount()];
+        for (int i = 0; i < modes.length; i++) {
+            modes[i] = state(engine.signatureAt(i).getAttackType()).mode;
+        }
+        modeSnapshot = new ModeSnapshot(engine, version, modes);
+        return modes;
+    }
+
+    public SignatureEvaluation newEvaluation(ThreatSignatureEngine engine) {
+        return new SignatureEvaluation(engine.signatureCount(), modesFor(engine));
+    }
+
+    /**
+     * 记录一次特征引擎评估：自动机扫描耗时记入引擎整体，正则确认耗时记入对应规则。
+     */
+    public void recordEvaluation(ThreatSignatureEngine engine, SignatureEvaluation evaluation, long scanNanos) {
+        engineScanCount.increment();
+        engineScanNanos.add(scanNanos);
+        for (int id = 0; id < engine.signatureCount(); id++) {
+            ThreatRuleMode mode = evaluation.mode(id);
+            if (mode == ThreatRuleMode.OFF) {
+                continue;
+            }
+            RuleState state = state(engine.signatureAt(id).getAttackType());
+            state.evaluations.increment();
+            long nanos = evaluation.getConfirmNanos(id);
+            if (nanos > 0) {
+                state.nanos.add(nanos);
+            }
+            if (evaluation.isHit(id)) {
+                state.hits.increment();
+                if (mode == ThreatRuleMode.SHADOW) {
+                    state.shadowHits.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录流式请求体检测中的影子命中（拦截类命中由 {@link #recordBlocked} 记录）。
+     */
+    public void recordStreamShadowHits(StreamInspectingHttpServletRequest request) {
+        ThreatSignatureEngine engine = request.getEngine();
+        for (int id = 0; id < engine.signatureCount(); id++) {
+            if (request.isShadowHit(id)) {
+                RuleState state = state(engine.signatureAt(id).getAttackType());
+                state.hits.increment();
+                state.shadowHits.increment();
+            }
+        }
+    }
+
+    /**
+     * 记录引擎外的单条规则判定，返回是否应当拦截（命中且处于 ENFORCE 模式）。
+     */
+    public boolean recordCheck(String ruleId, boolean hit, long nanos) {
+        RuleState state = state(ruleId);
+        state.evaluations.increment();
+        state.nanos.add(nanos);
+        if (!hit) {
+            return false;
+        }
+        state.hits.increment();
+        if (state.mode == ThreatRuleMode.SHADOW) {
+            state.shadowHits.increment();
+            return false;
+        }
+        return state.mode == ThreatRuleMode.ENFORCE;
+    }
+
+    public void recordBlocked(String ruleId) {
+        RuleState state = rules.get(ruleId);
+        if (state != null) {
+            state.blocked.increment();
+        }
+    }
+
+    public List<Map<String, Object>> snapshotStats() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        List<String> order = new ArrayList<>(BUILTIN_RULES);
+        for (String ruleId : rules.keySet()) {
+            if (!order.contains(ruleId)) {
+                order.add(ruleId);
+            }
+        }
+        for (String ruleId : order) {
+            RuleState state = rules.get(ruleId);
+            if (state == null) {
+                continue;
+            }
+            long evaluations = state.evaluations.sum();
+            long nanos = state.nanos.sum();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("ruleId", ruleId);
+            item.put("label", AttackTypeLabelUtils.resolve(ruleId));
+            item.put("mode", state.mode.name());
+            item.put("evaluations", evaluations);
+            item.put("hits", state.hits.sum());
+            item.put("shadowHits", state.shadowHits.sum());
+            item.put("blocked", state.blocked.sum());
+            item.put("totalNanos", nanos);
+            item.put("avgNanos", evaluations == 0 ? 0 : nanos / evaluations);
+            result.add(item);
+        }
+        return result;
+    }
+
+    public Map<String, Object> engineScanStats() {
+        long count = engineScanCount.sum();
+        long nanos = engineScanNanos.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("evaluations", count);
+        stats.put("totalNanos", nanos);
+        stats.put("avgNanos", count == 0 ? 0 : nanos / count);
+        return stats;
+    }
+
+    public void resetCounters() {
+        for (RuleState state : rules.values()) {
+            state.evaluations.reset();
+            state.hits.reset();
+            state.shadowHits.reset();
+            state.blocked.reset();
+            state.nanos.reset();
+        }
+        engineScanCount.reset();
+        engineScanNanos.reset();
+    }
+
+    private RuleState state(String ruleId) {
+        RuleState state = rules.get(ruleId);
+        return state != null ? state : rules.computeIfAbsent(ruleId, id -> new RuleState(ThreatRuleMode.ENFORCE));
+    }
+
+    private static final class RuleState {
+        private volatile ThreatRuleMode mode;
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder shadowHits = new LongAdder();
+        private final LongAdder blocked = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private RuleState(ThreatRuleMode mode) {
+            this.mode = mode;
+        }
+    }
+
+    private static final class ModeSnapshot {
+        private final ThreatSignatureEngine engine;
+        private final int version;
+        private final ThreatRuleMode[] modes;
+
+        private ModeSnapshot(ThreatSignatureEngine engine, int version, ThreatRuleMode[] modes) {
+            this.engine = engine;
+            this.version = version;
+            this.modes = modes;
+        }
+    }
+}
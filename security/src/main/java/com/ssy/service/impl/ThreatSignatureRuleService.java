@@ -0,0 +1,310 @@
+package com.ssy.service.impl;
+
+import com.ssy.entity.SecurityThreatRuleEntity;
+import com.ssy.filter.support.ThreatRuleMode;
+import com.ssy.filter.support.ThreatSignatureEngine;
+import com.ssy.mapper.SecurityThreatRuleMapper;
+import com.ssy.properties.ThreatDetectionProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 威胁特征引擎的持有者：内置特征 + security_threat_rule 表中的自定义特征编译为不可变引擎快照。
+ *
+ * 规则变更或扫描关键字配置变化时整体重新编译，再通过 AtomicReference 原子替换（与 EndpointThreatCacheService 一致），
+ * 请求期只读取当前快照，不做任何解析。规则表解析失败的单条规则跳过并告警，不影响其余规则生效。
+ */
+@Service
+public class ThreatSignatureRuleService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThreatSignatureRuleService.class);
+
+    public static final String MATCHER_LITERAL = "LITERAL";
+    public static final String MATCHER_REGEX = "REGEX";
+    public static final String ACTION_BLOCK = "BLOCK";
+    public static final String ACTION_BLACKLIST = "BLACKLIST";
+
+    private static final Pattern RULE_CODE_PATTERN = Pattern.compile("[A-Z][A-Z0-9_]{1,63}");
+    private static final int MAX_EXPRESSION_LENGTH = 2000;
+
+    private final SecurityThreatRuleMapper securityThreatRuleMapper;
+    private final ThreatDetectionProperties properties;
+    private final ThreatRuleRegistryService threatRuleRegistryService;
+
+    private final AtomicReference<Snapshot> snapshotRef = new AtomicReference<>();
+
+    public ThreatSignatureRuleService(SecurityThreatRuleMapper securityThreatRuleMapper,
+                                      ThreatDetectionProperties properties,
+                                      ThreatRuleRegistryService threatRuleRegistryService) {
+        this.securityThreatRuleMapper = securityThreatRuleMapper;
+        this.properties = properties;
+        this.threatRuleRegistryService = threatRuleRegistryService;
+    }
+
+    /**
+     * 重新加载规则表并编译发布新的引擎快照。
+     */
+    public synchronized void refresh() {
+        long start = System.currentTimeMillis();
+        List<SecurityThreatRuleEntity> entities = securityThreatRuleMapper.selectEnabledList();
+        List<ThreatSignatureEngine.RuleDefinition> definitions = new ArrayList<>();
+        List<String> customCodes = new ArrayList<>();
+        for (SecurityThreatRuleEntity entity : entities) {
+            try {
+                ThreatSignatureEngine.RuleDefinition definition = toDefinition(entity);
+                definitions.add(definition);
+                customCodes.add(definition.getAttackType());
+                ThreatRuleMode mode = ThreatRuleMode.parse(entity.getMode());
+                if (mode != null && !threatRuleRegistryService.isBuiltinRule(definition.getAttackType())
+                        && threatRuleRegistryService.mode(definition.getAttackType()) != mode) {
+                    threatRuleRegistryService.setMode(definition.getAttackType(), mode);
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("跳过非法威胁特征规则: code={}, reason={}", entity.getRuleCode(), e.getMessage());
+            }
+        }
+        publish(properties.getScannerPathKeywords(), definitions, customCodes);
+        log.info("威胁特征规则已刷新: custom={}, signatures={}, cost={}ms",
+                definitions.size(), snapshotRef.get().engine.signatureCount(), (System.currentTimeMillis() - start));
+    }
+
+    /**
+     * 当前特征引擎；扫描关键字配置（运行时覆盖）变化时沿用已加载的自定义规则重新编译。
+     */
+    public ThreatSignatureEngine currentEngine() {
+        List<String> keywords = properties.getScannerPathKeywords();
+        Snapshot snapshot = snapshotRef.get();
+        if (snapshot != null && snapshot.engine.isCompiledFrom(keywords)) {
+            return snapshot.engine;
+        }
+        synchronized (this) {
+            snapshot = snapshotRef.get();
+            if (snapshot != null && snapshot.engine.isCompiledFrom(keywords)) {
+                return snapshot.engine;
+            }
+            return snapshot == null
+                    ? publish(keywords, Collections.<ThreatSignatureEngine.RuleDefinition>emptyList(), Collections.<String>emptyList())
+                    : publish(keywords, snapshot.definitions, snapshot.customCodes);
+        }
+    }
+
+    public List<SecurityThreatRuleEntity> listRules() {
+        return securityThreatRuleMapper.selectAll();
+    }
+
+    public SecurityThreatRuleEntity findRule(String ruleCode) {
+        return securityThreatRuleMapper.selectByCode(ruleCode);
+    }
+
+    public boolean isCustomRule(String ruleCode) {
+        Snapshot snapshot = snapshotRef.get();
+        return snapshot != null && snapshot.customCodes.contains(ruleCode);
+    }
+
+    /**
+     * 校验并保存（按 rule_code 新增或覆盖），成功后立即重新编译生效；规则非法时抛出 IllegalArgumentException。
+     */
+    public SecurityThreatRuleEntity saveRule(SecurityThreatRuleEntity rule) {
+        normalize(rule);
+        toDefinition(rule);
+        securityThreatRuleMapper.upsert(rule);
+        refresh();
+        return securityThreatRuleMapper.selectByCode(rule.getRuleCode());
+    }
+
+    public boolean disableRule(String ruleCode) {
+        boolean changed = securityThreatRuleMapper.disableByCode(ruleCode) > 0;
+        if (changed) {
+            refresh();
+        }
+        return changed;
+    }
+
+    /**
+     * 自定义规则的运行模式持久化到规则表，重启后保持。
+     */
+    public void persistMode(String ruleCode, ThreatRuleMode mode) {
+        if (isCustomRule(ruleCode) && !threatRuleRegistryService.isBuiltinRule(ruleCode)) {
+            securityThreatRuleMapper.updateMode(ruleCode, mode.name());
+        }
+    }
+
+    public int customRuleCount() {
+        Snapshot snapshot = snapshotRef.get();
+        return snapshot == null ? 0 : snapshot.definitions.size();
+    }
+
+    private ThreatSignatureEngine publish(List<String> keywords,
+                                          List<ThreatSignatureEngine.RuleDefinition> definitions,
+                                          List<String> customCodes) {
+        ThreatSignatureEngine engine = ThreatSignatureEngine.compile(keywords, definitions);
+        snapshotRef.set(new Snapshot(engine, Collections.unmodifiableList(new ArrayList<>(definitions)),
+                Collections.unmodifiableList(new ArrayList<>(customCodes))));
+        return engine;
+    }
+
+    private void normalize(SecurityThreatRuleEntity rule) {
+        if (rule.getRuleCode() != null) {
+            rule.setRuleCode(rule.getRuleCode().trim().toUpperCase(Locale.ROOT));
+        }
+        rule.setTarget(rule.getTarget() == null || rule.getTarget().trim().isEmpty()
+                ? "PATH,QUERY,BODY" : rule.getTarget().trim().toUpperCase(Locale.ROOT));
+        rule.setMatcherType(rule.getMatcherType() == null || rule.getMatcherType().trim().isEmpty()
+                ? MATCHER_LITERAL : rule.getMatcherType().trim().toUpperCase(Locale.ROOT));
+        rule.setAction(rule.getAction() == null || rule.getAction().trim().isEmpty()
+                ? ACTION_BLOCK : rule.getAction().trim().toUpperCase(Locale.ROOT));
+        ThreatRuleMode mode = ThreatRuleMode.parse(rule.getMode());
+        rule.setMode(mode == null ? ThreatRuleMode.ENFORCE.name() : mode.name());
+        if (rule.getRiskScore() == null) {
+            rule.setRiskScore(80);
+        }
+        if (rule.getHttpStatus() == null) {
+            rule.setHttpStatus(403);
+        }
+        if (rule.getReason() == null || rule.getReason().trim().isEmpty()) {
+            rule.setReason("命中自定义威胁特征规则: " + rule.getRuleCode());
+        }
+        if (rule.getSuggestedAction() == null || rule.getSuggestedAction().trim().isEmpty()) {
+            rule.setSuggestedAction("建议核查该IP请求样本并评估规则误报情况");
+        }
+    }
+
+    /**
+     * 规则表记录 -> 引擎特征定义。正则规则必须提供字面量锚点，保证自动机单遍扫描后才触发正则确认。
+     */
+    private ThreatSignatureEngine.RuleDefinition toDefinition(SecurityThreatRuleEntity rule) {
+        String code = rule.getRuleCode() == null ? null : rule.getRuleCode().trim();
+        if (code == null || !RULE_CODE_PATTERN.matcher(code).matches()) {
+            throw new IllegalArgumentException("规则编码只能由大写字母、数字、下划线组成（2~64位，字母开头）");
+        }
+        String expression = rule.getExpression();
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new IllegalArgumentException("规则表达式不能为空");
+        }
+        if (expression.length() > MAX_EXPRESSION_LENGTH) {
+            throw new IllegalArgumentException("规则表达式过长");
+        }
+        int targetMask = parseTargets(rule.getTarget());
+        int riskScore = rule.getRiskScore() == null ? 80 : rule.getRiskScore();
+        if (riskScore < 1 || riskScore > 100) {
+            throw new IllegalArgumentException("风险分必须在 1~100 之间");
+        }
+        int httpStatus = rule.getHttpStatus() == null ? 403 : rule.getHttpStatus();
+        if (httpStatus < 400 || httpStatus > 599) {
+            throw new IllegalArgumentException("拦截响应码必须是 4xx 或 5xx");
+        }
+        String action = rule.getAction() == null ? ACTION_BLOCK : rule.getAction().trim().toUpperCase(Locale.ROOT);
+        if (!ACTION_BLOCK.equals(action) && !ACTION_BLACKLIST.equals(action)) {
+            throw new IllegalArgumentException("处置动作只能是 BLOCK 或 BLACKLIST");
+        }
+
+        String matcherType = rule.getMatcherType() == null ? MATCHER_LITERAL : rule.getMatcherType().trim().toUpperCase(Locale.ROOT);
+        List<String> literals;
+        Pattern confirmPattern = null;
+        if (MATCHER_LITERAL.equals(matcherType)) {
+            literals = splitLiterals(expression);
+        } else if (MATCHER_REGEX.equals(matcherType)) {
+            literals = splitLiterals(rule.getAnchors());
+            if (literals.isEmpty()) {
+                throw new IllegalArgumentException("正则规则必须配置字面量锚点（正则的任意匹配都必然包含其中之一）");
+            }
+            try {
+                // 与自动机一致按大小写不敏感确认
+                confirmPattern = Pattern.compile(expression.trim(), Pattern.CASE_INSENSITIVE);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("正则表达式非法: " + e.getDescription());
+            }
+        } else {
+            throw new IllegalArgumentException("匹配方式只能是 LITERAL 或 REGEX");
+        }
+        if (literals.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个字面量");
+        }
+        for (String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (literal.charAt(i) >= 128) {
+                    throw new IllegalArgumentException("字面量仅支持 ASCII 字符: " + literal);
+                }
+            }
+        }
+        return new ThreatSignatureEngine.RuleDefinition(code,
+                rule.getReason() == null ? "命中自定义威胁特征规则: " + code : rule.getReason(),
+                rule.getSuggestedAction() == null ? "建议核查该IP请求样本并评估规则误报情况" : rule.getSuggestedAction(),
+                httpStatus,
+                ACTION_BLACKLIST.equals(action),
+                riskScore,
+                targetMask,
+                literals,
+                confirmPattern);
+    }
+
+    private static int parseTargets(String target) {
+        if (target == null || target.trim().isEmpty()) {
+            return ThreatSignatureEngine.TARGET_PATH | ThreatSignatureEngine.TARGET_QUERY | ThreatSignatureEngine.TARGET_BODY;
+        }
+        int mask = 0;
+        for (String item : target.split(",")) {
+            String value = item.trim().toUpperCase(Locale.ROOT);
+            if (value.isEmpty()) {
+                continue;
+            }
+            switch (value) {
+                case "PATH":
+                    mask |= ThreatSignatureEngine.TARGET_PATH;
+                    break;
+                case "QUERY":
+                    mask |= ThreatSignatureEngine.TARGET_QUERY;
+                    break;
+                case "BODY":
+                    mask |= ThreatSignatureEngine.TARGET_BODY;
+                    break;
+                case "USER_AGENT":
+                    mask |= ThreatSignatureEngine.TARGET_USER_AGENT;
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的检测面: " + value);
+            }
+        }
+        if (mask == 0) {
+            throw new IllegalArgumentException("检测面不能为空");
+        }
+        return mask;
+    }
+
+    private static List<String> splitLiterals(String text) {
+        List<String> literals = new ArrayList<>();
+        if (text == null) {
+            return literals;
+        }
+        for (String item : text.split("[,\\r\\n]")) {
+            String literal = item.trim();
+            if (!literal.isEmpty() && !literals.contains(literal)) {
+                literals.add(literal);
+            }
+        }
+        return literals;
+    }
+
+    private static final class Snapshot {
+        private final ThreatSignatureEngine engine;
+        private final List<ThreatSignatureEngine.RuleDefinition> definitions;
+        private final List<String> customCodes;
+
+        private Snapshot(ThreatSignatureEngine engine,
+                         List<ThreatSignatureEngine.RuleDefinition> definitions,
+                         List<String> customCodes) {
+            this.engine = engine;
+            this.definitions = definitions;
+            this.customCodes = customCodes;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.ssy.service.impl;
+
+import com.ssy.properties.ThreatDetectionProperties;
+import com.ssy.utils.TinyLfuCache;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * User-Agent 统一解析：一次解析出工具标识、浏览器家族、是否类浏览器、是否自动化工具，
+ * 结果按原始 UA 字符串记忆化（W-TinyLFU 有界缓存），异常识别、登录认证、设备风险评估共用。
+ *
+ * 真实流量中不同 UA 的种类很少，绝大多数请求直接命中缓存，不再重复 toLowerCase 与逐个 contains。
+ */
+@Service
+public class UserAgentClassifierService {
+
+    public static final String TOOL_UNKNOWN = "UNKNOWN";
+    public static final String TOOL_BROWSER = "BROWSER";
+
+    private static final UserAgentProfile EMPTY = new UserAgentProfile(TOOL_UNKNOWN, "", false, false);
+
+    /**
+     * 工具识别顺序即优先级：扫描器 > 命令行/脚本 > 浏览器
+     */
+    private static final String[][] TOOL_MARKERS = {
+            {"sqlmap", "SQLMAP"},
+            {"nikto", "NIKTO"},
+            {"gobuster", "GOBUSTER"},
+            {"dirbuster", "DIRBUSTER"},
+            {"curl", "CURL"},
+            {"python-requests", "PYTHON_REQUESTS"},
+            {"postmanruntime", "POSTMAN"}
+    };
+
+    private static final String[] AUTOMATION_MARKERS = {
+            "sqlmap", "nikto", "nmap", "masscan", "zgrab", "curl", "python-requests",
+            "gobuster", "dirbuster", "whatweb", "httpx", "postmanruntime"
+    };
+
+    private final ThreatDetectionProperties properties;
+    private final TinyLfuCache<String, UserAgentProfile> cache;
+
+    public UserAgentClassifierService(ThreatDetectionProperties properties) {
+        this.properties = properties;
+        this.cache = new TinyLfuCache<>(properties.getUserAgentCacheSize());
+    }
+
+    public UserAgentProfile classify(String userAgent) {
+        if (userAgent == null || userAgent.trim().isEmpty()) {
+            return EMPTY;
+        }
+        if (userAgent.length() > Math.max(64, properties.getUserAgentMaxCacheLength())) {
+            return parse(userAgent);
+        }
+        return cache.get(userAgent, UserAgentClassifierService::parse);
+    }
+
+    public Map<String, Object> snapshotStats() {
+        return cache.snapshotStats();
+    }
+
+    private static UserAgentProfile parse(String userAgent) {
+        String normalized = userAgent.toLowerCase(Locale.ROOT);
+        boolean mozilla = normalized.contains("mozilla");
+
+        String tool = mozilla ? TOOL_BROWSER : TOOL_UNKNOWN;
+        for (String[] marker : TOOL_MARKERS) {
+            if (normalized.contains(marker[0])) {
+                tool = marker[1];
+                break;
+            }
+        }
+
+        boolean automation = false;
+        for (String marker : AUTOMATION_MARKERS) {
+            if (normalized.contains(marker)) {
+                automation = true;
+                break;
+            }
+        }
+
+        String family;
+        if (normalized.contains("edg/")) {
+            family = "EDGE";
+        } else if (normalized.contains("chrome")) {
+            family = "CHROME";
+        } else if (normalized.contains("firefox")) {
+            family = "FIREFOX";
+        } else if (normalized.contains("safari")) {
+            family = "SAFARI";
+        } else if (normalized.contains("curl")) {
+            family = "CURL";
+        } else if (normalized.contains("python-requests")) {
+            family = "PYTHON_REQUESTS";
+        } else {
+            family = "UNKNOWN";
+        }
+
+        boolean browserLike = !automation && (mozilla
+                || normalized.contains("chrome")
+                || normalized.contains("safari")
+                || normalized.contains("firefox")
+                || normalized.contains("edg/"));
+        return new UserAgentProfile(tool, family, browserLike, automation);
+    }
+
+    /**
+     * UA 解析结果（不可变，可安全共享）。
+     */
+    public static class UserAgentProfile {
+        private final String tool;
+        private final String family;
+        private final boolean browserLike;
+        private final boolean automation;
+
+        private UserAgentProfile(String tool, String family, boolean browserLike, boolean automation) {
+            this.tool = tool;
+            this.family = family;
+            this.browserLike = browserLike;
+            this.automation = automation;
+        }
+
+        /**
+         * 客户端工具：SQLMAP / NIKTO / GOBUSTER / DIRBUSTER / CURL / PYTHON_REQUESTS / POSTMAN / BROWSER / UNKNOWN
+         */
+        public String getTool() {
+            return tool;
+        }
+
+        /**
+         * 浏览器家族：EDGE / CHROME / FIREFOX / SAFARI / CURL / PYTHON_REQUESTS / UNKNOWN，UA 为空时为空串
+         */
+        public String getFamily() {
+            return family;
+        }
+
+        /**
+         * 是否为浏览器发起（自动化工具伪装的 Mozilla 前缀不算）
+         */
+        public boolean isBrowserLike() {
+            return browserLike;
+        }
+
+        /**
+         * 是否命中已知扫描器/脚本工具特征
+         */
+        public boolean isAutomation() {
+            return automation;
+        }
+    }
+}
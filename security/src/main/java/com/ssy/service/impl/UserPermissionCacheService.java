@@ -1,23 +1,35 @@
 package com.ssy.service.impl;
 
+import com.ssy.details.CustomUserDetails;
 import com.ssy.dto.UserEntity;
 import com.ssy.entity.RbacPermissionEntity;
 import com.ssy.entity.RbacRoleEntity;
 import com.ssy.mapper.RbacPermissionMapper;
 import com.ssy.mapper.RbacRoleMapper;
 import com.ssy.mapper.UserMapper;
+import com.ssy.utils.PermissionMask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
  * 用户权限本地缓存（单体版）
  * 目标：请求时只做本地读取，角色/权限变更后通过失效接口刷新。
+ * 快照加载时一并生成权限位图（{@link PermissionDictionaryService}）与 Spring Security 权限列表，请求期直接复用。
+ *
+ * 失效不再直接删除快照，而是推进权限版本号（epoch）：全局计数器单调递增，单用户失效记录该用户的版本号，
+ * 全量失效记录全局下限。读取时快照版本低于用户当前版本才重新加载一次：同一用户的并发请求共用一个进行中的加载，
+ * 只有一个会访问数据库，数据库查询不在 ConcurrentHashMap 的 compute 内执行，不会阻塞同一桶内的其他用户。
+ * 登录签发的 Token 只携带 userId 与签发时的权限版本，不再内嵌完整的角色/权限编码。
  */
 @Service
 public class UserPermissionCacheService {
@@ -27,57 +39,172 @@ public class UserPermissionCacheService {
     private final UserMapper userMapper;
     private final RbacRoleMapper rbacRoleMapper;
     private final RbacPermissionMapper rbacPermissionMapper;
+    private final PermissionDictionaryService permissionDictionaryService;
 
     private final ConcurrentHashMap<Long, UserAuthSnapshot> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<UserAuthSnapshot>> loading = new ConcurrentHashMap<>();
     private final AtomicLong cacheVersion = new AtomicLong(0);
 
+    /**
+     * 权限版本号：全局单调计数器、单用户失效时的版本、全量失效时的版本下限。
+     * 版本以微秒时间戳为单位，计数器与全局下限都以启动时刻为起点，每次分配取 max(上次 + 1, 当前时刻)：
+     * 计数器只有在每微秒失效超过一次时才会领先时钟，且随后被时钟追上，因此重启后的当前版本（含未失效过的用户）
+     * 总是大于重启前签发 Token 中的 permEpoch，旧 Token 会被标记为权限已变更。
+     */
+    private final long startEpoch = nowMicros();
+    private final AtomicLong epochCounter = new AtomicLong(startEpoch);
+    private final ConcurrentHashMap<Long, Long> userEpochs = new ConcurrentHashMap<>();
+    private volatile long allUsersEpoch = startEpoch;
+    private final AtomicLong reloadCount = new AtomicLong(0);
+
     public UserPermissionCacheService(UserMapper userMapper,
                                       RbacRoleMapper rbacRoleMapper,
-                                      RbacPermissionMapper rbacPermissionMapper) {
+                                      RbacPermissionMapper rbacPermissionMapper,
+                                      PermissionDictionaryService permissionDictionaryService) {
         this.userMapper = userMapper;
         this.rbacRoleMapper = rbacRoleMapper;
         this.rbacPermissionMapper = rbacPermissionMapper;
+        this.permissionDictionaryService = permissionDictionaryService;
     }
 
+    /**
+     * 取用户权限快照：快照版本不低于用户当前权限版本时直接返回内存快照，否则重新加载一次。
+     */
     public UserAuthSnapshot getUserSnapshot(Long userId) {
         if (userId == null) {
             return null;
         }
-        return cache.computeIfAbsent(userId, this::loadSnapshot);
+        while (true) {
+            UserAuthSnapshot snapshot = cache.get(userId);
+            if (snapshot != null && snapshot.getEpoch() >= currentEpoch(userId)) {
+                return snapshot;
+            }
+            CompletableFuture<UserAuthSnapshot> created = new CompletableFuture<>();
+            CompletableFuture<UserAuthSnapshot> inFlight = loading.putIfAbsent(userId, created);
+            if (inFlight == null) {
+                return reload(userId, created);
+            }
+            // 等待进行中的加载；它若早于本次失效开始，版本仍然偏低，回到循环开头再判断一次
+            snapshot = await(inFlight);
+            if (snapshot.getEpoch() >= currentEpoch(userId)) {
+                return snapshot;
+            }
+        }
+    }
+
+    /**
+     * 用户当前权限版本，登录签发 Token 时写入 permEpoch 声明
+     */
+    public long currentEpoch(Long userId) {
+        long global = allUsersEpoch;
+        if (userId == null) {
+            return global;
+        }
+        Long userEpoch = userEpochs.get(userId);
+        return userEpoch == null ? global : Math.max(global, userEpoch);
     }
 
     public void invalidateUser(Long userId) {
         if (userId == null) {
             return;
         }
-        cache.remove(userId);
+        userEpochs.put(userId, nextEpoch());
     }
 
     public void invalidateUsers(Collection<Long> userIds) {
         if (userIds == null || userIds.isEmpty()) {
             return;
         }
+        long epoch = nextEpoch();
         for (Long userId : userIds) {
             if (userId != null) {
-                cache.remove(userId);
+                userEpochs.put(userId, epoch);
             }
         }
     }
 
+    /**
+     * 全量失效：只推进全局版本下限，各用户快照在下次请求时按需重新加载
+     */
     public void invalidateAll() {
-        cache.clear();
+        long floor = nextEpoch();
+        allUsersEpoch = floor;
+        // 不高于全局下限的单用户版本已无意义，顺带清理；失效期间并发写入的更高版本会保留
+        userEpochs.values().removeIf(epoch -> epoch <= floor);
         long version = cacheVersion.incrementAndGet();
-        log.info("用户权限缓存已清空，version={}", version);
+        log.info("用户权限缓存已全部失效，version={}, epoch={}", version, floor);
     }
 
     public int size() {
         return cache.size();
     }
 
-    private UserAuthSnapshot loadSnapshot(Long userId) {
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("epoch", epochCounter.get());
+        stats.put("allUsersEpoch", allUsersEpoch);
+        stats.put("userEpochs", userEpochs.size());
+        stats.put("reloads", reloadCount.get());
+        return stats;
+    }
+
+    /**
+     * 由持有进行中加载的线程执行：先读版本再查库，加载期间发生的失效会让快照版本偏低，下次读取时再加载
+     */
+    private UserAuthSnapshot reload(Long userId, CompletableFuture<UserAuthSnapshot> future) {
+        try {
+            UserAuthSnapshot current = cache.get(userId);
+            long epoch = currentEpoch(userId);
+            UserAuthSnapshot snapshot;
+            if (current != null && current.getEpoch() >= epoch) {
+                snapshot = current;
+            } else {
+                if (current != null) {
+                    reloadCount.incrementAndGet();
+                }
+                UserAuthSnapshot loaded = loadSnapshot(userId, epoch);
+                snapshot = cache.merge(userId, loaded,
+                        (existing, fresh) -> existing.getEpoch() >= fresh.getEpoch() ? existing : fresh);
+            }
+            future.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(userId, future);
+        }
+    }
+
+    private static UserAuthSnapshot await(CompletableFuture<UserAuthSnapshot> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private long nextEpoch() {
+        long now = nowMicros();
+        return epochCounter.updateAndGet(previous -> Math.max(previous + 1, now));
+    }
+
+    private static long nowMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+    private UserAuthSnapshot loadSnapshot(Long userId, long epoch) {
         UserEntity user = userMapper.selectByUserId(userId);
         if (user == null) {
-            return UserAuthSnapshot.notFound(userId);
+            return UserAuthSnapshot.notFound(userId, epoch);
         }
 
         List<RbacRoleEntity> roles = rbacRoleMapper.selectEnabledByUserId(userId);
@@ -97,7 +224,8 @@ public class UserPermissionCacheService {
                 .distinct()
                 .collect(Collectors.toList());
 
-        return UserAuthSnapshot.of(userId, user.getUsername(), user.getStatus(), roleCodes, permissionCodes);
+        return UserAuthSnapshot.of(userId, user.getUsername(), user.getStatus(), roleCodes, permissionCodes,
+                permissionDictionaryService.maskOf(permissionCodes), epoch);
     }
 
     public static class UserAuthSnapshot {
@@ -106,32 +234,43 @@ public class UserPermissionCacheService {
         private final Integer status;
         private final Set<String> roles;
         private final Set<String> permissions;
+        private final PermissionMask permissionMask;
+        private final List<GrantedAuthority> authorities;
         private final boolean exists;
+        private final long epoch;
 
         private UserAuthSnapshot(Long userId, String username, Integer status,
-                                 Set<String> roles, Set<String> permissions, boolean exists) {
+                                 Set<String> roles, Set<String> permissions, PermissionMask permissionMask,
+                                 boolean exists, long epoch) {
             this.userId = userId;
             this.username = username;
             this.status = status;
             this.roles = roles;
             this.permissions = permissions;
+            this.permissionMask = permissionMask;
+            this.authorities = CustomUserDetails.buildAuthorities(roles, permissions, null);
             this.exists = exists;
+            this.epoch = epoch;
         }
 
         public static UserAuthSnapshot of(Long userId, String username, Integer status,
-                                          Collection<String> roles, Collection<String> permissions) {
+                                          Collection<String> roles, Collection<String> permissions,
+                                          PermissionMask permissionMask, long epoch) {
             return new UserAuthSnapshot(
                     userId,
                     username,
                     status,
                     roles == null ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(roles)),
                     permissions == null ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(permissions)),
-                    true
+                    permissionMask == null ? PermissionMask.EMPTY : permissionMask,
+                    true,
+                    epoch
             );
         }
 
-        public static UserAuthSnapshot notFound(Long userId) {
-            return new UserAuthSnapshot(userId, null, null, Collections.emptySet(), Collections.emptySet(), false);
+        public static UserAuthSnapshot notFound(Long userId, long epoch) {
+            return new UserAuthSnapshot(userId, null, null, Collections.emptySet(), Collections.emptySet(),
+                    PermissionMask.EMPTY, false, epoch);
         }
 
         public Long getUserId() {
@@ -154,6 +293,24 @@ public class UserPermissionCacheService {
             return permissions;
         }
 
+        /**
+         * 快照加载时用户的权限版本
+         */
+        public long getEpoch() {
+            return epoch;
+        }
+
+        public PermissionMask getPermissionMask() {
+            return permissionMask;
+        }
+
+        /**
+         * 角色（ROLE_ 前缀）与权限编码合并后的权限列表，与 {@link CustomUserDetails#getAuthorities()} 一致
+         */
+        public List<GrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+
         public boolean exists() {
             return exists;
         }
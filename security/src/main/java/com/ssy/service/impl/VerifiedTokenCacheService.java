@@ -0,0 +1,218 @@
+package com.ssy.service.impl;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.ssy.properties.JwtProperties;
+import com.ssy.utils.TinyLfuCache;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户 Token 校验：进程内共用一个 JWTVerifier，校验通过的 Token 按 SHA-256 摘要缓存其解析结果（W-TinyLFU 有界缓存）。
+ *
+ * 同一 Token 的后续请求只做一次摘要计算与缓存读取，不再重复 Base64 解码、JSON 解析、HMAC 验签与拆分角色/权限声明；
+ * 缓存条目到达 exp 后不再直接使用，交回验证器按原逻辑抛出 TokenExpiredException。
+ * 用户被禁用、删除或角色权限变更仍由 {@link UserPermissionCacheService} 的快照在每个请求上判定，不受本缓存影响。
+ */
+@Service
+public class VerifiedTokenCacheService {
+
+    private final JWTVerifier verifier;
+    private final TinyLfuCache<TokenDigest, VerifiedToken> cache;
+    private final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(VerifiedTokenCacheService::newSha256);
+    private final LongAdder expiredHits = new LongAdder();
+
+    public VerifiedTokenCacheService(JwtProperties jwtProperties) {
+        this.verifier = JWT.require(Algorithm.HMAC256(jwtProperties.getSecretKey().getBytes())).build();
+        this.cache = new TinyLfuCache<>(jwtProperties.getVerifiedCacheSize());
+    }
+
+    /**
+     * 校验 Token 并返回解析后的声明；校验失败抛出与 JWTVerifier 相同的异常，失败结果不缓存。
+     */
+    public VerifiedToken verify(String token) throws JWTVerificationException {
+        VerifiedToken verified = cache.get(digest(token), key -> VerifiedToken.of(verifier.verify(token)));
+        if (verified.isExpired(System.currentTimeMillis())) {
+            expiredHits.increment();
+            return VerifiedToken.of(verifier.verify(token));
+        }
+        return verified;
+    }
+
+    public Map<String, Object> snapshotStats() {
+        Map<String, Object> stats = cache.snapshotStats();
+        stats.put("expiredHits", expiredHits.sum());
+        return stats;
+    }
+
+    private TokenDigest digest(String token) {
+        MessageDigest digest = sha256.get();
+        byte[] bytes = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+        return new TokenDigest(readLong(bytes, 0), readLong(bytes, 8), readLong(bytes, 16), readLong(bytes, 24));
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFFL);
+        }
+        return value;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * Token 的 SHA-256 摘要（4 个 long），作为缓存键，不在内存中保留 Token 原文
+     */
+    private static final class TokenDigest {
+        private final long w0;
+        private final long w1;
+        private final long w2;
+        private final long w3;
+
+        private TokenDigest(long w0, long w1, long w2, long w3) {
+            this.w0 = w0;
+            this.w1 = w1;
+            this.w2 = w2;
+            this.w3 = w3;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TokenDigest)) {
+                return false;
+            }
+            TokenDigest other = (TokenDigest) o;
+            return w0 == other.w0 && w1 == other.w1 && w2 == other.w2 && w3 == other.w3;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (w0 ^ (w0 >>> 32));
+        }
+    }
+
+    /**
+     * 校验通过的 Token 声明（不可变），roles/permissions/authorities 已拆分为列表；
+     * 新格式 Token 只带 permEpoch，不再携带 roles/permissions
+     */
+    public static final class VerifiedToken {
+        private final String subject;
+        private final Long userId;
+        private final Integer status;
+        private final String loginType;
+        private final Long permEpoch;
+        private final List<String> roles;
+        private final List<String> permissions;
+        private final List<String> authorities;
+        private final long expiresAtMillis;
+
+        private VerifiedToken(String subject, Long userId, Integer status, String loginType, Long permEpoch,
+                              List<String> roles, List<String> permissions, List<String> authorities,
+                              long expiresAtMillis) {
+            this.subject = subject;
+            this.userId = userId;
+            this.status = status;
+            this.loginType = loginType;
+            this.permEpoch = permEpoch;
+            this.roles = roles;
+            this.permissions = permissions;
+            this.authorities = authorities;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        static VerifiedToken of(DecodedJWT decodedJWT) {
+            Date expiresAt = decodedJWT.getExpiresAt();
+            return new VerifiedToken(
+                    decodedJWT.getSubject(),
+                    decodedJWT.getClaim("userId").asLong(),
+                    decodedJWT.getClaim("status").asInt(),
+                    decodedJWT.getClaim("loginType").asString(),
+                    decodedJWT.getClaim("permEpoch").asLong(),
+                    splitClaim(decodedJWT.getClaim("roles").asString()),
+                    splitClaim(decodedJWT.getClaim("permissions").asString()),
+                    // 兼容极少数旧token（可逐步移除）
+                    splitClaim(decodedJWT.getClaim("authorities").asString()),
+                    expiresAt == null ? Long.MAX_VALUE : expiresAt.getTime()
+            );
+        }
+
+        private static List<String> splitClaim(String claim) {
+            if (claim == null || claim.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<String> values = new ArrayList<>();
+            for (String value : claim.split(",")) {
+                String trimmed = value.trim();
+                if (!trimmed.isEmpty()) {
+                    values.add(trimmed);
+                }
+            }
+            return Collections.unmodifiableList(values);
+        }
+
+        boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public Integer getStatus() {
+            return status;
+        }
+
+        public String getLoginType() {
+            return loginType;
+        }
+
+        /**
+         * 签发时的用户权限版本，旧格式 Token 为 null
+         */
+        public Long getPermEpoch() {
+            return permEpoch;
+        }
+
+        public List<String> getRoles() {
+            return roles;
+        }
+
+        public List<String> getPermissions() {
+            return permissions;
+        }
+
+        public List<String> getAuthorities() {
+            return authorities;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+}
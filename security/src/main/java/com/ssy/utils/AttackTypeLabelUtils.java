@@ -19,6 +19,7 @@ public final class AttackTypeLabelUtils {
         LABELS.put("XSS_ATTACK", "XSS跨站脚本攻击");
         LABELS.put("JS_INJECTION", "前端脚本注入");
         LABELS.put("PATH_TRAVERSAL", "路径穿越攻击");
+        LABELS.put("ENCODING_EVASION", "编码绕过探测");
         LABELS.put("SCANNER_PROBE", "接口扫描探测");
         LABELS.put("DEPENDENCY_PROBE", "依赖组件探测");
         LABELS.put("AUTOMATION_TOOL", "自动化工具攻击");
@@ -26,6 +27,8 @@ public final class AttackTypeLabelUtils {
         LABELS.put("LOGIN_FAILURE", "登录失败异常");
         LABELS.put("WEAK_PASSWORD_ATTACK", "弱口令攻击");
         LABELS.put("HIGH_RISK_DEVICE_LOGIN", "高风险设备登录");
+        LABELS.put("RESPONSE_DATA_LEAK", "响应数据泄露");
+        LABELS.put("SLOW_CLIENT", "慢速客户端攻击");
     }
 
     private AttackTypeLabelUtils() {
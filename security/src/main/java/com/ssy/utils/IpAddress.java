@@ -0,0 +1,257 @@
+package com.ssy.utils;
+
+/**
+ * 128 位统一 IP 地址（不可变）：IPv6 按原值存放，IPv4 映射为 ::ffff:a.b.c.d，
+ * 因此 "1.2.3.4" 与 "::ffff:1.2.3.4" 得到同一个地址，IPv4 CIDR 前缀长度 = 96 + n。
+ * 每个请求只解析一次，后续黑白名单匹配直接按位比较，不再拆分字符串。
+ */
+public final class IpAddress {
+
+    public static final int IPV4_MAPPED_PREFIX = 96;
+
+    private static final long IPV4_MAPPED_MARKER = 0x0000FFFFL << 32;
+
+    private final long high;
+    private final long low;
+
+    private IpAddress(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static IpAddress of(long high, long low) {
+        return new IpAddress(high, low);
+    }
+
+    /**
+     * 解析 IPv4 / IPv6（允许 [..] 包裹与 %zone 后缀）；非法格式返回 null。
+     */
+    public static IpAddress parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        int begin = 0;
+        int end = text.length();
+        while (begin < end && text.charAt(begin) <= ' ') {
+            begin++;
+        }
+        while (end > begin && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (begin >= end) {
+            return null;
+        }
+        if (text.indexOf(':', begin) < 0) {
+            long v4 = parseIpv4(text, begin, end);
+            return v4 < 0 ? null : new IpAddress(0L, IPV4_MAPPED_MARKER | v4);
+        }
+        if (text.charAt(begin) == '[') {
+            if (text.charAt(end - 1) != ']') {
+                return null;
+            }
+            begin++;
+            end--;
+        }
+        int zone = text.indexOf('%', begin);
+        if (zone >= 0 && zone < end) {
+            end = zone;
+        }
+        return parseIpv6(text, begin, end);
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    public boolean isIpv4() {
+        return high == 0L && (low & 0xFFFFFFFF00000000L) == IPV4_MAPPED_MARKER;
+    }
+
+    /**
+     * 第 index 位（0 为最高位）。
+     */
+    public static int bit(long high, long low, int index) {
+        return index < 64 ? (int) (high >>> (63 - index)) & 1 : (int) (low >>> (127 - index)) & 1;
+    }
+
+    /**
+     * 两个地址从最高位起的公共前缀长度，最多 limit 位。
+     */
+    public static int commonPrefix(long high1, long low1, long high2, long low2, int limit) {
+        long diff = high1 ^ high2;
+        int common = diff != 0 ? Long.numberOfLeadingZeros(diff) : 64 + Long.numberOfLeadingZeros(low1 ^ low2);
+        return Math.min(common, limit);
+    }
+
+    public static long maskHigh(long high, int prefixLength) {
+        if (prefixLength >= 64) {
+            return high;
+        }
+        return prefixLength <= 0 ? 0L : high & (-1L << (64 - prefixLength));
+    }
+
+    public static long maskLow(long low, int prefixLength) {
+        if (prefixLength <= 64) {
+            return 0L;
+        }
+        return prefixLength >= 128 ? low : low & (-1L << (128 - prefixLength));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IpAddress)) {
+            return false;
+        }
+        IpAddress other = (IpAddress) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high) * 31 + Long.hashCode(low);
+    }
+
+    @Override
+    public String toString() {
+        if (isIpv4()) {
+            return ((low >>> 24) & 0xFF) + "." + ((low >>> 16) & 0xFF) + "." + ((low >>> 8) & 0xFF) + "." + (low & 0xFF);
+        }
+        StringBuilder builder = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            long word = i < 4 ? high : low;
+            int group = (int) (word >>> (48 - (i % 4) * 16)) & 0xFFFF;
+            if (i > 0) {
+                builder.append(':');
+            }
+            builder.append(Integer.toHexString(group));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 点分十进制 IPv4，返回 32 位无符号值；非法返回 -1。
+     */
+    static long parseIpv4(String text, int begin, int end) {
+        long value = 0L;
+        int octet = -1;
+        int digits = 0;
+        int dots = 0;
+        for (int i = begin; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (++digits > 3 || octet > 255) {
+                    return -1L;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                value = (value << 8) | octet;
+                octet = -1;
+                digits = 0;
+                dots++;
+            } else {
+                return -1L;
+            }
+        }
+        if (dots != 3 || octet < 0) {
+            return -1L;
+        }
+        return (value << 8) | octet;
+    }
+
+    private static IpAddress parseIpv6(String text, int begin, int end) {
+        int[] head = new int[8];
+        int[] tail = new int[8];
+        int headCount = 0;
+        int tailCount = 0;
+        boolean compressed = false;
+        int i = begin;
+        if (end - begin >= 2 && text.charAt(i) == ':' && text.charAt(i + 1) == ':') {
+            compressed = true;
+            i += 2;
+        } else if (i < end && text.charAt(i) == ':') {
+            return null;
+        }
+        while (i < end) {
+            int j = i;
+            int value = 0;
+            while (j < end && j - i < 5 && Character.digit(text.charAt(j), 16) >= 0) {
+                value = (value << 4) | Character.digit(text.charAt(j), 16);
+                j++;
+            }
+            if (j < end && text.charAt(j) == '.') {
+                // 结尾内嵌 IPv4，如 ::ffff:1.2.3.4
+                long v4 = parseIpv4(text, i, end);
+                if (v4 < 0 || headCount + tailCount + 2 > 8) {
+                    return null;
+                }
+                int[] target = compressed ? tail : head;
+                int count = compressed ? tailCount : headCount;
+                target[count] = (int) (v4 >>> 16);
+                target[count + 1] = (int) (v4 & 0xFFFF);
+                if (compressed) {
+                    tailCount += 2;
+                } else {
+                    headCount += 2;
+                }
+                i = end;
+                break;
+            }
+            int digits = j - i;
+            if (digits == 0 || digits > 4 || headCount + tailCount >= 8) {
+                return null;
+            }
+            if (compressed) {
+                tail[tailCount++] = value;
+            } else {
+                head[headCount++] = value;
+            }
+            if (j == end) {
+                i = j;
+                break;
+            }
+            if (text.charAt(j) != ':') {
+                return null;
+            }
+            j++;
+            if (j < end && text.charAt(j) == ':') {
+                if (compressed) {
+                    return null;
+                }
+                compressed = true;
+                j++;
+            } else if (j == end) {
+                return null;
+            }
+            i = j;
+        }
+        int total = headCount + tailCount;
+        if (compressed ? total > 7 : total != 8) {
+            return null;
+        }
+        long high = 0L;
+        long low = 0L;
+        for (int g = 0; g < 8; g++) {
+            int group;
+            if (g < headCount) {
+                group = head[g];
+            } else if (g >= 8 - tailCount) {
+                group = tail[g - (8 - tailCount)];
+            } else {
+                group = 0;
+            }
+            if (g < 4) {
+                high = (high << 16) | group;
+            } else {
+                low = (low << 16) | group;
+            }
+        }
+        return new IpAddress(high, low);
+    }
+}
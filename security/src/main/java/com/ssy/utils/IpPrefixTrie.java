@@ -0,0 +1,269 @@
+package com.ssy.utils;
+
+/**
+ * 不可变二进制基数树（Patricia，路径压缩），统一索引 IPv4/IPv6 精确地址与 CIDR 网段。
+ *
+ * 每个前缀挂一个 long 值（黑名单为过期毫秒时间戳，白名单为 1）；同一前缀重复写入取较大值。
+ * 写操作通过路径复制返回新树，旧树保持不变，调用方用 AtomicReference 原子发布即可做到无锁读、无清空窗口；
+ * 查询沿地址比特下行，最多 32（IPv4）或 128（IPv6）步，与规则数量无关。
+ */
+public final class IpPrefixTrie {
+
+    /**
+     * 无匹配时 {@link #match} 的返回值
+     */
+    public static final long NO_MATCH = Long.MIN_VALUE;
+
+    private static final IpPrefixTrie EMPTY = new IpPrefixTrie(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private IpPrefixTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static IpPrefixTrie empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 校验是否为合法的 IP 或 CIDR（IPv4/IPv6）。
+     */
+    public static boolean isValidIpOrCidr(String ipOrCidr) {
+        return parsePrefix(ipOrCidr) != null;
+    }
+
+    /**
+     * 写入 IP 或 CIDR；格式非法返回 null。
+     */
+    public IpPrefixTrie put(String ipOrCidr, long value) {
+        Prefix prefix = parsePrefix(ipOrCidr);
+        return prefix == null ? null : put(prefix.high, prefix.low, prefix.length, value);
+    }
+
+    public IpPrefixTrie put(long high, long low, int prefixLength, long value) {
+        int length = Math.max(0, Math.min(prefixLength, 128));
+        long maskedHigh = IpAddress.maskHigh(high, length);
+        long maskedLow = IpAddress.maskLow(low, length);
+        boolean[] added = new boolean[1];
+        Node newRoot = insert(root, maskedHigh, maskedLow, length, value, added);
+        return new IpPrefixTrie(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * 删除 IP 或 CIDR 精确前缀（不影响覆盖它的更短网段）；不存在或格式非法时返回原树。
+     */
+    public IpPrefixTrie remove(String ipOrCidr) {
+        Prefix prefix = parsePrefix(ipOrCidr);
+        if (prefix == null || root == null) {
+            return this;
+        }
+        boolean[] removed = new boolean[1];
+        Node newRoot = delete(root, prefix.high, prefix.low, prefix.length, removed);
+        return removed[0] ? new IpPrefixTrie(newRoot, size - 1) : this;
+    }
+
+    /**
+     * 返回所有覆盖该地址的前缀中最大的值；无匹配返回 {@link #NO_MATCH}。
+     */
+    public long match(IpAddress address) {
+        if (address == null) {
+            return NO_MATCH;
+        }
+        long high = address.getHigh();
+        long low = address.getLow();
+        long best = NO_MATCH;
+        Node node = root;
+        while (node != null) {
+            if (IpAddress.commonPrefix(node.high, node.low, high, low, node.length) < node.length) {
+                break;
+            }
+            if (node.hasValue && node.value > best) {
+                best = node.value;
+            }
+            if (node.length >= 128) {
+                break;
+            }
+            node = IpAddress.bit(high, low, node.length) == 0 ? node.left : node.right;
+        }
+        return best;
+    }
+
+    public void forEach(EntryVisitor visitor) {
+        visit(root, visitor);
+    }
+
+    /**
+     * 前缀条目遍历回调，prefixLength 为 128 位统一表示下的长度（IPv4 为 96 + n）。
+     */
+    public interface EntryVisitor {
+        void visit(IpAddress prefix, int prefixLength, long value);
+    }
+
+    private static void visit(Node node, EntryVisitor visitor) {
+        if (node == null) {
+            return;
+        }
+        if (node.hasValue) {
+            visitor.visit(IpAddress.of(node.high, node.low), node.length, node.value);
+        }
+        visit(node.left, visitor);
+        visit(node.right, visitor);
+    }
+
+    private static Node insert(Node node, long high, long low, int length, long value, boolean[] added) {
+        if (node == null) {
+            added[0] = true;
+            return new Node(high, low, length, true, value, null, null);
+        }
+        int common = IpAddress.commonPrefix(node.high, node.low, high, low, Math.min(node.length, length));
+        if (common == node.length && common == length) {
+            if (!node.hasValue) {
+                added[0] = true;
+                return new Node(node.high, node.low, node.length, true, value, node.left, node.right);
+            }
+            return value > node.value
+                    ? new Node(node.high, node.low, node.length, true, value, node.left, node.right)
+                    : node;
+        }
+        if (common == node.length) {
+            // 新前缀更长，落在当前节点子树中
+            if (IpAddress.bit(high, low, node.length) == 0) {
+                Node child = insert(node.left, high, low, length, value, added);
+                return child == node.left ? node : new Node(node.high, node.low, node.length, node.hasValue, node.value, child, node.right);
+            }
+            Node child = insert(node.right, high, low, length, value, added);
+            return child == node.right ? node : new Node(node.high, node.low, node.length, node.hasValue, node.value, node.left, child);
+        }
+        added[0] = true;
+        if (common == length) {
+            // 新前缀是当前节点的祖先
+            return IpAddress.bit(node.high, node.low, length) == 0
+                    ? new Node(high, low, length, true, value, node, null)
+                    : new Node(high, low, length, true, value, null, node);
+        }
+        // 在公共前缀处分叉
+        Node leaf = new Node(high, low, length, true, value, null, null);
+        long splitHigh = IpAddress.maskHigh(high, common);
+        long splitLow = IpAddress.maskLow(low, common);
+        return IpAddress.bit(high, low, common) == 0
+                ? new Node(splitHigh, splitLow, common, false, 0L, leaf, node)
+                : new Node(splitHigh, splitLow, common, false, 0L, node, leaf);
+    }
+
+    private static Node delete(Node node, long high, long low, int length, boolean[] removed) {
+        if (node == null || node.length > length
+                || IpAddress.commonPrefix(node.high, node.low, high, low, node.length) < node.length) {
+            return node;
+        }
+        if (node.length == length) {
+            if (!node.hasValue) {
+                return node;
+            }
+            removed[0] = true;
+            return collapse(node.high, node.low, node.length, node.left, node.right);
+        }
+        if (IpAddress.bit(high, low, node.length) == 0) {
+            Node child = delete(node.left, high, low, length, removed);
+            if (child == node.left) {
+                return node;
+            }
+            return node.hasValue
+                    ? new Node(node.high, node.low, node.length, true, node.value, child, node.right)
+                    : collapse(node.high, node.low, node.length, child, node.right);
+        }
+        Node child = delete(node.right, high, low, length, removed);
+        if (child == node.right) {
+            return node;
+        }
+        return node.hasValue
+                ? new Node(node.high, node.low, node.length, true, node.value, node.left, child)
+                : collapse(node.high, node.low, node.length, node.left, child);
+    }
+
+    /**
+     * 无值节点只剩一个子节点时直接由子节点顶替，保持路径压缩。
+     */
+    private static Node collapse(long high, long low, int length, Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return new Node(high, low, length, false, 0L, left, right);
+    }
+
+    private static Prefix parsePrefix(String ipOrCidr) {
+        if (ipOrCidr == null) {
+            return null;
+        }
+        String value = ipOrCidr.trim();
+        int slash = value.indexOf('/');
+        IpAddress address = IpAddress.parse(slash < 0 ? value : value.substring(0, slash));
+        if (address == null) {
+            return null;
+        }
+        int maxLength = address.isIpv4() && value.indexOf(':') < 0 ? 32 : 128;
+        int length = maxLength;
+        if (slash >= 0) {
+            String bits = value.substring(slash + 1).trim();
+            if (bits.isEmpty() || bits.length() > 3) {
+                return null;
+            }
+            length = 0;
+            for (int i = 0; i < bits.length(); i++) {
+                char c = bits.charAt(i);
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+                length = length * 10 + (c - '0');
+            }
+            if (length > maxLength) {
+                return null;
+            }
+        }
+        if (maxLength == 32) {
+            length += IpAddress.IPV4_MAPPED_PREFIX;
+        }
+        return new Prefix(IpAddress.maskHigh(address.getHigh(), length), IpAddress.maskLow(address.getLow(), length), length);
+    }
+
+    private static final class Prefix {
+        private final long high;
+        private final long low;
+        private final int length;
+
+        private Prefix(long high, long low, int length) {
+            this.high = high;
+            this.low = low;
+            this.length = length;
+        }
+    }
+
+    private static final class Node {
+        private final long high;
+        private final long low;
+        private final int length;
+        private final boolean hasValue;
+        private final long value;
+        private final Node left;
+        private final Node right;
+
+        private Node(long high, long low, int length, boolean hasValue, long value, Node left, Node right) {
+            this.high = high;
+            this.low = low;
+            this.length = length;
+            this.hasValue = hasValue;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.ssy.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数-线性分桶的并发耗时直方图（HdrHistogram 思路，固定内存、无锁记录）。
+ *
+ * 值域按 2 的幂划分数量级，每个数量级再等分 32 个子桶，相对误差不超过 1/32（约 3%）；
+ * 小于 32ns 的值精确记录，超过 2^40ns（约 18 分钟）的值计入最后一个桶。
+ * 一个直方图固定约 10KB，记录为一次 AtomicLongArray 自增，分位数查询时遍历桶累加。
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40;
+    private static final long MAX_TRACKABLE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0L : Math.min(nanos, MAX_TRACKABLE);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalNanos.sum(), maxNanos.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    public long count() {
+        return totalCount.sum();
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + sub;
+    }
+
+    /**
+     * 桶内最大可能值，分位数按上界报告（偏保守，与 HdrHistogram 的 highestEquivalentValue 一致）。
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int sub = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long lower = (long) (SUB_BUCKET_COUNT + sub) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * 某一时刻的只读副本，多个分位数基于同一份数据计算，彼此一致。
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSumNanos() {
+            return sumNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0L : sumNanos / count;
+        }
+
+        /**
+         * @param percentile 0~100，例如 99.9
+         */
+        public long valueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0L;
+            }
+            long rank = (long) Math.ceil(Math.min(100.0D, Math.max(0.0D, percentile)) / 100.0D * count);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.ssy.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 接口路由模式的路径段前缀树（构建后不可变），替代逐条正则匹配。
+ *
+ * 模式按 / 切段，每段归为四类之一：
+ * - 精确段（list）：开放寻址表按路径区间直接比较，不截取子串；
+ * - 段内通配（*.png、{id}.json、v?）：仅对该段做正则匹配，极少出现；
+ * - 单段变量（{id}、*）：匹配任意一个非空段；
+ * - 多段通配（**）：匹配零个或多个段，位于末尾时直接命中。
+ *
+ * 单条模式的命中范围与 AntPathMatcher 相同；多条模式同时命中时按以下优先级取第一条：
+ * - 不含 ** 的规则优先于含 ** 的规则：先在不展开 ** 的情况下查找，未命中再允许 ** 重新查找一遍；
+ * - 同一轮内自左向右逐段比较，按 精确段 > 段内通配 > 单段变量 的顺序回溯，即最左侧更具体的段胜出。
+ * 这与 AntPathMatcher 按通配总数排序的结果不总是一致：/x/{b}/{c} 与 /{a}/b/c 同时命中 /x/b/c 时，
+ * 本树取 /x/{b}/{c}（首段为精确段），AntPathMatcher 取 /{a}/b/c（通配更少）。
+ * 未命中的路径（扫描器噪声）通常在前一两段就终止，耗时与规则数量无关。
+ * 需要其他取舍规则（如按注册顺序首个命中）时使用 {@link #matchFirst(String, Comparator)}，遍历全部命中分支取排序最前的值。
+ * 同一模式重复写入时保留先写入的值。
+ */
+public final class PathPatternTrie<T> {
+
+    private final Node<T> root;
+    private final int size;
+    private final boolean hasDoubleWildcard;
+
+    private PathPatternTrie(Node<T> root, int size, boolean hasDoubleWildcard) {
+        this.root = root;
+        this.size = size;
+        this.hasDoubleWildcard = hasDoubleWildcard;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 匹配已规范化的请求路径，返回最具体的规则；未命中返回 null。
+     */
+    public T match(String path) {
+        if (path == null || size == 0) {
+            return null;
+        }
+        int start = !path.isEmpty() && path.charAt(0) == '/' ? 1 : 0;
+        T found = find(root, path, start, false);
+        return found != null || !hasDoubleWildcard ? found : find(root, path, start, true);
+    }
+
+    /**
+     * 匹配已规范化的请求路径，返回所有命中模式中按 order 排序最前的值；未命中返回 null。
+     * 会遍历全部可能命中的分支，适用于规则较少的场景，查询过程不分配对象。
+     */
+    public T matchFirst(String path, Comparator<? super T> order) {
+        if (path == null || size == 0) {
+            return null;
+        }
+        int start = !path.isEmpty() && path.charAt(0) == '/' ? 1 : 0;
+        return collect(root, path, start, order, null);
+    }
+
+    private static <T> T collect(Node<T> node, String path, int pos, Comparator<? super T> order, T best) {
+        int length = path.length();
+        if (pos >= length) {
+            best = better(node.value, best, order);
+            return node.doubleWildcard == null ? best : collect(node.doubleWildcard, path, length, order, best);
+        }
+        int end = path.indexOf('/', pos);
+        if (end < 0) {
+            end = length;
+        }
+        int next = end < length ? end + 1 : length;
+
+        Node<T> literal = node.literal(path, pos, end);
+        if (literal != null) {
+            best = collect(literal, path, next, order, best);
+        }
+        for (SegmentPattern<T> segmentPattern : node.segmentPatterns) {
+            Matcher matcher = segmentPattern.pattern.matcher(path);
+            matcher.region(pos, end);
+            if (matcher.matches()) {
+                best = collect(segmentPattern.child, path, next, order, best);
+            }
+        }
+        if (node.variable != null && end > pos) {
+            best = collect(node.variable, path, next, order, best);
+        }
+        Node<T> doubleWildcard = node.doubleWildcard;
+        if (doubleWildcard != null) {
+            if (doubleWildcard.isLeaf()) {
+                return better(doubleWildcard.value, best, order);
+            }
+            int p = pos;
+            while (true) {
+                best = collect(doubleWildcard, path, p, order, best);
+                if (p >= length) {
+                    return best;
+                }
+                int slash = path.indexOf('/', p);
+                p = slash < 0 ? length : slash + 1;
+            }
+        }
+        return best;
+    }
+
+    private static <T> T better(T candidate, T best, Comparator<? super T> order) {
+        if (candidate == null) {
+            return best;
+        }
+        return best == null || order.compare(candidate, best) < 0 ? candidate : best;
+    }
+
+    private static <T> T find(Node<T> node, String path, int pos, boolean expandDoubleWildcard) {
+        int length = path.length();
+        if (pos >= length) {
+            if (node.value != null) {
+                return node.value;
+            }
+            return node.doubleWildcard == null || !expandDoubleWildcard
+                    ? null : find(node.doubleWildcard, path, length, true);
+        }
+        int end = path.indexOf('/', pos);
+        if (end < 0) {
+            end = length;
+        }
+        int next = end < length ? end + 1 : length;
+
+        Node<T> literal = node.literal(path, pos, end);
+        if (literal != null) {
+            T found = find(literal, path, next, expandDoubleWildcard);
+            if (found != null) {
+                return found;
+            }
+        }
+        for (SegmentPattern<T> segmentPattern : node.segmentPatterns) {
+            Matcher matcher = segmentPattern.pattern.matcher(path);
+            matcher.region(pos, end);
+            if (matcher.matches()) {
+                T found = find(segmentPattern.child, path, next, expandDoubleWildcard);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        if (node.variable != null && end > pos) {
+            T found = find(node.variable, path, next, expandDoubleWildcard);
+            if (found != null) {
+                return found;
+            }
+        }
+        Node<T> doubleWildcard = node.doubleWildcard;
+        if (doubleWildcard != null && expandDoubleWildcard) {
+            if (doubleWildcard.isLeaf()) {
+                return doubleWildcard.value;
+            }
+            // 中间的 **：依次尝试吞掉 0..n 个段
+            int p = pos;
+            while (true) {
+                T found = find(doubleWildcard, path, p, true);
+                if (found != null) {
+                    return found;
+                }
+                if (p >= length) {
+                    return null;
+                }
+                int slash = path.indexOf('/', p);
+                p = slash < 0 ? length : slash + 1;
+            }
+        }
+        return null;
+    }
+
+    public static final class Builder<T> {
+
+        private final Node<T> root = new Node<>();
+        private int size;
+        private boolean hasDoubleWildcard;
+
+        private Builder() {
+        }
+
+        /**
+         * 写入已规范化的路由模式（以 / 开头，可含 {var}、*、**）。
+         */
+        public Builder<T> add(String pattern, T value) {
+            if (pattern == null || value == null) {
+                return this;
+            }
+            Node<T> node = root;
+            int length = pattern.length();
+            int pos = !pattern.isEmpty() && pattern.charAt(0) == '/' ? 1 : 0;
+            while (pos < length) {
+                int end = pattern.indexOf('/', pos);
+                if (end < 0) {
+                    end = length;
+                }
+                String segment = pattern.substring(pos, end);
+                hasDoubleWildcard |= "**".equals(segment);
+                node = node.child(segment);
+                pos = end + 1;
+            }
+            if (node.value == null) {
+                node.value = value;
+                size++;
+            }
+            return this;
+        }
+
+        public PathPatternTrie<T> build() {
+            root.freeze();
+            return new PathPatternTrie<>(root, size, hasDoubleWildcard);
+        }
+    }
+
+    private static final class Node<T> {
+        private Map<String, Node<T>> pendingLiterals = new LinkedHashMap<>();
+        private Map<String, SegmentPattern<T>> pendingPatterns = new LinkedHashMap<>();
+
+        private String[] literalKeys;
+        private Node<T>[] literalChildren;
+        private int literalMask;
+        @SuppressWarnings("unchecked")
+        private SegmentPattern<T>[] segmentPatterns = new SegmentPattern[0];
+        private Node<T> variable;
+        private Node<T> doubleWildcard;
+        private T value;
+
+        Node<T> child(String segment) {
+            if ("**".equals(segment)) {
+                if (doubleWildcard == null) {
+                    doubleWildcard = new Node<>();
+                }
+                return doubleWildcard;
+            }
+            if ("*".equals(segment) || isWholeVariable(segment)) {
+                if (variable == null) {
+                    variable = new Node<>();
+                }
+                return variable;
+            }
+            if (segment.indexOf('{') >= 0 || segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0) {
+                return pendingPatterns.computeIfAbsent(segment,
+                        key -> new SegmentPattern<>(compileSegment(key), new Node<>())).child;
+            }
+            return pendingLiterals.computeIfAbsent(segment, key -> new Node<>());
+        }
+
+        boolean isLeaf() {
+            return literalKeys == null && segmentPatterns.length == 0 && variable == null && doubleWildcard == null;
+        }
+
+        Node<T> literal(String path, int start, int end) {
+            String[] keys = literalKeys;
+            if (keys == null) {
+                return null;
+            }
+            int len = end - start;
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + path.charAt(i);
+            }
+            int slot = spread(h) & literalMask;
+            while (true) {
+                String key = keys[slot];
+                if (key == null) {
+                    return null;
+                }
+                if (key.length() == len && path.regionMatches(start, key, 0, len)) {
+                    return literalChildren[slot];
+                }
+                slot = (slot + 1) & literalMask;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void freeze() {
+            if (!pendingLiterals.isEmpty()) {
+                int capacity = Integer.highestOneBit(Math.max(2, pendingLiterals.size() * 2 - 1)) << 1;
+                literalKeys = new String[capacity];
+                literalChildren = new Node[capacity];
+                literalMask = capacity - 1;
+                for (Map.Entry<String, Node<T>> entry : pendingLiterals.entrySet()) {
+                    int slot = spread(entry.getKey().hashCode()) & literalMask;
+                    while (literalKeys[slot] != null) {
+                        slot = (slot + 1) & literalMask;
+                    }
+                    literalKeys[slot] = entry.getKey();
+                    literalChildren[slot] = entry.getValue();
+                    entry.getValue().freeze();
+                }
+            }
+            if (!pendingPatterns.isEmpty()) {
+                List<SegmentPattern<T>> patterns = new ArrayList<>(pendingPatterns.values());
+                segmentPatterns = patterns.toArray(new SegmentPattern[0]);
+                for (SegmentPattern<T> segmentPattern : segmentPatterns) {
+                    segmentPattern.child.freeze();
+                }
+            }
+            if (variable != null) {
+                variable.freeze();
+            }
+            if (doubleWildcard != null) {
+                doubleWildcard.freeze();
+            }
+            pendingLiterals = null;
+            pendingPatterns = null;
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean isWholeVariable(String segment) {
+            return segment.length() > 2
+                    && segment.charAt(0) == '{'
+                    && segment.indexOf('}') == segment.length() - 1;
+        }
+
+        /**
+         * 段内通配转为单段正则：{var} -> [^/]+，* -> [^/]*，? -> [^/]，其余字符按字面匹配。
+         */
+        private static Pattern compileSegment(String segment) {
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if (c == '{') {
+                    int end = segment.indexOf('}', i);
+                    if (end > i) {
+                        regex.append("[^/]+");
+                        i = end;
+                        continue;
+                    }
+                }
+                if (c == '*') {
+                    regex.append("[^/]*");
+                    continue;
+                }
+                if (c == '?') {
+                    regex.append("[^/]");
+                    continue;
+                }
+                if ("\\.[]{}()+-^$|".indexOf(c) >= 0) {
+                    regex.append('\\');
+                }
+                regex.append(c);
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+
+    private static final class SegmentPattern<T> {
+        private final Pattern pattern;
+        private final Node<T> child;
+
+        private SegmentPattern(Pattern pattern, Node<T> child) {
+            this.pattern = pattern;
+            this.child = child;
+        }
+    }
+}
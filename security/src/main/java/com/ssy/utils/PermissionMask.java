@@ -0,0 +1,82 @@
+package com.ssy.utils;
+
+import java.util.Arrays;
+
+/**
+ * 权限位图（不可变）：第 i 位对应权限字典中下标为 i 的 perm_code。
+ * 用户持有的权限与接口要求的权限都编译为位图，"拥有任一所需权限" 即逐字 AND，
+ * 不再逐个 trim/hash 字符串；数千个权限时每个用户也只占几十个 long。
+ */
+public final class PermissionMask {
+
+    public static final PermissionMask EMPTY = new PermissionMask(new long[0]);
+
+    private final long[] words;
+
+    private PermissionMask(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * 由权限下标构建位图，负数下标忽略。
+     */
+    public static PermissionMask of(int[] bits, int count) {
+        int max = -1;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, bits[i]);
+        }
+        if (max < 0) {
+            return EMPTY;
+        }
+        long[] words = new long[(max >>> 6) + 1];
+        for (int i = 0; i < count; i++) {
+            int bit = bits[i];
+            if (bit >= 0) {
+                words[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return new PermissionMask(words);
+    }
+
+    public boolean contains(int bit) {
+        int word = bit >>> 6;
+        return bit >= 0 && word < words.length && (words[word] & (1L << bit)) != 0;
+    }
+
+    /**
+     * 是否与另一位图有公共位（用户是否拥有接口所需的任一权限）。
+     */
+    public boolean intersects(PermissionMask other) {
+        long[] a = words;
+        long[] b = other.words;
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            if ((a[i] & b[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof PermissionMask && Arrays.equals(words, ((PermissionMask) o).words));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+}
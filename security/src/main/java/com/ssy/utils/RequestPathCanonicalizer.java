@@ -0,0 +1,272 @@
+package com.ssy.utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 请求路径规范化器：百分号解码、多重编码识别、点段消除、斜杠合并在一次扫描中完成。
+ * - 输入已是规范形式时直接返回原字符串，不分配任何对象
+ * - 规范化过程中观察到的可疑特征以位标记输出，检测器直接读取标记，无需再次扫描
+ * - 实例持有可复用缓冲区，非线程安全，通过 {@link #current()} 按线程复用
+ */
+public final class RequestPathCanonicalizer {
+
+    /**
+     * 路径中存在百分号编码并已解码
+     */
+    public static final int FLAG_PERCENT_DECODED = 1;
+    /**
+     * 解码后仍是合法的百分号编码（%25xx，多重编码）
+     */
+    public static final int FLAG_DOUBLE_ENCODED = 1 << 1;
+    /**
+     * 存在 "." 段
+     */
+    public static final int FLAG_DOT_SEGMENT = 1 << 2;
+    /**
+     * 存在 ".." 段
+     */
+    public static final int FLAG_DOT_DOT_SEGMENT = 1 << 3;
+    /**
+     * ".." 试图越过根路径
+     */
+    public static final int FLAG_ABOVE_ROOT = 1 << 4;
+    /**
+     * 点段由百分号编码构成（%2e）
+     */
+    public static final int FLAG_ENCODED_DOT_SEGMENT = 1 << 5;
+    /**
+     * 存在编码斜杠（%2f）
+     */
+    public static final int FLAG_ENCODED_SLASH = 1 << 6;
+    /**
+     * 存在反斜杠（含 %5c）
+     */
+    public static final int FLAG_BACKSLASH = 1 << 7;
+    /**
+     * 存在空字节（%00）或其他控制字符
+     */
+    public static final int FLAG_CONTROL_CHAR = 1 << 8;
+    /**
+     * 存在不完整/非法的百分号编码
+     */
+    public static final int FLAG_INVALID_ENCODING = 1 << 9;
+    /**
+     * 合并了连续斜杠或去掉了末尾斜杠
+     */
+    public static final int FLAG_SLASH_COLLAPSED = 1 << 10;
+
+    private static final ThreadLocal<RequestPathCanonicalizer> LOCAL = ThreadLocal.withInitial(RequestPathCanonicalizer::new);
+
+    private byte[] buffer = new byte[256];
+    private int length;
+    private int flags;
+    /**
+     * 当前段是否包含解码得到的字符
+     */
+    private boolean segmentDecoded;
+
+    public static RequestPathCanonicalizer current() {
+        return LOCAL.get();
+    }
+
+    /**
+     * 最近一次 {@link #canonicalize(String)} 的标记位。
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    public static boolean hasFlag(int flags, int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public String canonicalize(String rawPath) {
+        flags = 0;
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        if (isCanonical(rawPath)) {
+            return rawPath;
+        }
+        return rebuild(rawPath);
+    }
+
+    /**
+     * 快速判定：只读扫描，不分配对象。反斜杠只打标记，不影响规范形式。
+     */
+    private boolean isCanonical(String path) {
+        int len = path.length();
+        if (path.charAt(0) != '/' || (len > 1 && path.charAt(len - 1) == '/')) {
+            return false;
+        }
+        int segmentStart = 1;
+        for (int i = 1; i <= len; i++) {
+            char c = i < len ? path.charAt(i) : '/';
+            if (c == '/') {
+                int segmentLen = i - segmentStart;
+                if (segmentLen == 0 && i < len) {
+                    return false;
+                }
+                if (segmentLen > 0 && path.charAt(segmentStart) == '.' && (segmentLen == 1 || (segmentLen == 2 && path.charAt(segmentStart + 1) == '.'))) {
+                    return false;
+                }
+                segmentStart = i + 1;
+                continue;
+            }
+            if (c == '%' || c >= 0x80 || c < 0x20 || c == 0x7F) {
+                return false;
+            }
+            if (c == '\\') {
+                flags |= FLAG_BACKSLASH;
+            }
+        }
+        return true;
+    }
+
+    private String rebuild(String path) {
+        length = 0;
+        segmentDecoded = false;
+        append((byte) '/');
+        int len = path.length();
+        for (int i = path.charAt(0) == '/' ? 1 : 0; i < len; i++) {
+            char c = path.charAt(i);
+            if (c == '%') {
+                int value = i + 2 < len ? hexPair(path.charAt(i + 1), path.charAt(i + 2)) : -1;
+                if (value < 0) {
+                    flags |= FLAG_INVALID_ENCODING;
+                    appendPathByte((byte) '%');
+                    continue;
+                }
+                flags |= FLAG_PERCENT_DECODED;
+                i += 2;
+                if (value == '%' && i + 2 < len && hexPair(path.charAt(i + 1), path.charAt(i + 2)) >= 0) {
+                    // 只解码一轮，保留第二层编码原样，由检测器依据标记判定
+                    flags |= FLAG_DOUBLE_ENCODED;
+                }
+                if (value == '/') {
+                    flags |= FLAG_ENCODED_SLASH;
+                    endSegment();
+                    continue;
+                }
+                segmentDecoded = true;
+                appendPathByte((byte) value);
+                continue;
+            }
+            if (c == '/') {
+                endSegment();
+                continue;
+            }
+            if (c < 0x80) {
+                appendPathByte((byte) c);
+            } else {
+                appendUtf8(path, i, c);
+                if (Character.isHighSurrogate(c) && i + 1 < len) {
+                    i++;
+                }
+            }
+        }
+        finishLastSegment();
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void appendPathByte(byte b) {
+        if (b == '\\') {
+            flags |= FLAG_BACKSLASH;
+        } else if ((b >= 0 && b < 0x20) || b == 0x7F) {
+            flags |= FLAG_CONTROL_CHAR;
+        }
+        append(b);
+    }
+
+    /**
+     * 遇到分隔符：处理刚结束的段（点段消除/空段合并），然后补一个 '/'。
+     */
+    private void endSegment() {
+        if (buffer[length - 1] == '/') {
+            flags |= FLAG_SLASH_COLLAPSED;
+            segmentDecoded = false;
+            return;
+        }
+        if (!resolveDotSegment()) {
+            append((byte) '/');
+        }
+        segmentDecoded = false;
+    }
+
+    private void finishLastSegment() {
+        if (length > 1 && buffer[length - 1] == '/') {
+            flags |= FLAG_SLASH_COLLAPSED;
+            length--;
+            return;
+        }
+        if (resolveDotSegment() && length > 1) {
+            // 点段被消除后末尾残留 '/'
+            length--;
+        }
+    }
+
+    /**
+     * 当前段为 "." 或 ".." 时就地消除，返回 true；此时缓冲区以 '/' 结尾。
+     */
+    private boolean resolveDotSegment() {
+        int slash = lastSlash(length - 1);
+        int segmentLen = length - slash - 1;
+        if (segmentLen == 1 && buffer[slash + 1] == '.') {
+            flags |= FLAG_DOT_SEGMENT | (segmentDecoded ? FLAG_ENCODED_DOT_SEGMENT : 0);
+            length = slash + 1;
+            return true;
+        }
+        if (segmentLen == 2 && buffer[slash + 1] == '.' && buffer[slash + 2] == '.') {
+            flags |= FLAG_DOT_DOT_SEGMENT | (segmentDecoded ? FLAG_ENCODED_DOT_SEGMENT : 0);
+            if (slash == 0) {
+                flags |= FLAG_ABOVE_ROOT;
+                length = 1;
+            } else {
+                length = lastSlash(slash - 1) + 1;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private int lastSlash(int from) {
+        for (int i = from; i >= 0; i--) {
+            if (buffer[i] == '/') {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private void appendUtf8(String path, int index, char c) {
+        int codePoint = Character.isHighSurrogate(c) && index + 1 < path.length() ? path.codePointAt(index) : c;
+        if (codePoint < 0x800) {
+            append((byte) (0xC0 | (codePoint >> 6)));
+            append((byte) (0x80 | (codePoint & 0x3F)));
+        } else if (codePoint < 0x10000) {
+            append((byte) (0xE0 | (codePoint >> 12)));
+            append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            append((byte) (0x80 | (codePoint & 0x3F)));
+        } else {
+            append((byte) (0xF0 | (codePoint >> 18)));
+            append((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            append((byte) (0x80 | (codePoint & 0x3F)));
+        }
+    }
+
+    private void append(byte b) {
+        if (length == buffer.length) {
+            byte[] expanded = new byte[buffer.length << 1];
+            System.arraycopy(buffer, 0, expanded, 0, length);
+            buffer = expanded;
+        }
+        buffer[length++] = b;
+    }
+
+    private static int hexPair(char high, char low) {
+        int h = Character.digit(high, 16);
+        int l = Character.digit(low, 16);
+        return h < 0 || l < 0 ? -1 : (h << 4) | l;
+    }
+}
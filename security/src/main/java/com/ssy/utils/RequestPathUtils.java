@@ -0,0 +1,16 @@
+package com.ssy.utils;
+
+/**
+ * 请求路径规范化工具（过滤器与接口缓存共用同一实现，底层为 {@link RequestPathCanonicalizer}）。
+ * - 百分号解码一轮，消除 "." / ".." 段，合并连续 /，去掉末尾 /
+ * - 已是规范形式时直接返回原字符串，不产生新对象
+ */
+public final class RequestPathUtils {
+
+    private RequestPathUtils() {
+    }
+
+    public static String normalizePath(String path) {
+        return RequestPathCanonicalizer.current().canonicalize(path);
+    }
+}
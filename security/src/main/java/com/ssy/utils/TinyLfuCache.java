@@ -0,0 +1,212 @@
+package com.ssy.utils;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 有界记忆化缓存（W-TinyLFU 简化版），适合“键的种类不多但重复出现”的热路径计算结果。
+ *
+ * - 新键先进入容量约 1% 的窗口区（FIFO），窗口溢出时与主区的 CLOCK 淘汰候选比较访问频率，
+ *   频率更高者留在主区，另一个被淘汰；一次性的随机键（伪造的 UA、Token 等）只会在窗口区里短暂停留，
+ *   不会把主区里真正高频的条目挤出去；
+ * - 访问频率由 4 位计数的 Count-Min Sketch 估算，累计记录数达到容量 10 倍时全部减半，使频率随时间衰减；
+ * - 命中路径只有一次 ConcurrentHashMap 读取与 sketch 计数的 CAS 自增，不加锁；未命中时计算结果，入缓存与淘汰在锁内完成。
+ */
+public final class TinyLfuCache<K, V> {
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final ArrayDeque<Node<K, V>> window = new ArrayDeque<>();
+    private final ArrayDeque<Node<K, V>> main = new ArrayDeque<>();
+
+    private final AtomicLongArray sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private final AtomicInteger sampleCount = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder admissionRejects = new LongAdder();
+
+    public TinyLfuCache(int maximumSize) {
+        this.maximumSize = Math.max(16, maximumSize);
+        this.windowMaximum = Math.max(1, this.maximumSize / 100);
+        this.data = new ConcurrentHashMap<>(this.maximumSize * 4 / 3 + 1);
+        int sketchSize = Integer.highestOneBit(this.maximumSize - 1) << 1;
+        this.sketch = new AtomicLongArray(sketchSize);
+        this.sketchMask = sketchSize - 1;
+        this.sampleSize = this.maximumSize * 10;
+    }
+
+    /**
+     * 命中直接返回缓存值，未命中用 loader 计算并尝试放入缓存；loader 返回 null 时不缓存。
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        int hash = spread(key.hashCode());
+        recordAccess(hash);
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            node.referenced = true;
+            hits.increment();
+            return node.value;
+        }
+        misses.increment();
+        V value = loader.apply(key);
+        if (value != null) {
+            admit(key, hash, value);
+        }
+        return value;
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public void clear() {
+        synchronized (this) {
+            data.clear();
+            window.clear();
+            main.clear();
+        }
+    }
+
+    public Map<String, Object> snapshotStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", data.size());
+        stats.put("maximumSize", maximumSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0L ? 0.0D : Math.round(hitCount * 10_000.0D / total) / 10_000.0D);
+        stats.put("evictions", evictions.sum());
+        stats.put("admissionRejects", admissionRejects.sum());
+        return stats;
+    }
+
+    private synchronized void admit(K key, int hash, V value) {
+        if (data.containsKey(key)) {
+            return;
+        }
+        Node<K, V> node = new Node<>(key, hash, value);
+        data.put(key, node);
+        window.addLast(node);
+        if (window.size() <= windowMaximum) {
+            return;
+        }
+        Node<K, V> candidate = window.pollFirst();
+        if (main.size() < maximumSize - windowMaximum) {
+            main.addLast(candidate);
+            return;
+        }
+        Node<K, V> victim = selectVictim();
+        evictions.increment();
+        if (victim != null && frequency(candidate.hash) > frequency(victim.hash)) {
+            main.pollFirst();
+            data.remove(victim.key, victim);
+            main.addLast(candidate);
+        } else {
+            data.remove(candidate.key, candidate);
+            admissionRejects.increment();
+        }
+    }
+
+    /**
+     * CLOCK：跳过并清除最近被访问过的条目，返回第一个未被访问的条目（仍留在队首）
+     */
+    private Node<K, V> selectVictim() {
+        for (int i = main.size() * 2; i > 0; i--) {
+            Node<K, V> head = main.peekFirst();
+            if (head == null) {
+                return null;
+            }
+            if (!head.referenced) {
+                return head;
+            }
+            head.referenced = false;
+            main.addLast(main.pollFirst());
+        }
+        return main.peekFirst();
+    }
+
+    private void recordAccess(int hash) {
+        boolean added = false;
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            long h = indexHash(hash, depth);
+            int index = (int) h & sketchMask;
+            int shift = (int) ((h >>> 32) & 15L) << 2;
+            long mask = 0xFL << shift;
+            while (true) {
+                long current = sketch.get(index);
+                if ((current & mask) == mask) {
+                    break;
+                }
+                if (sketch.compareAndSet(index, current, current + (1L << shift))) {
+                    added = true;
+                    break;
+                }
+            }
+        }
+        if (added && sampleCount.incrementAndGet() == sampleSize) {
+            reset();
+        }
+    }
+
+    private int frequency(int hash) {
+        int frequency = Integer.MAX_VALUE;
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            long h = indexHash(hash, depth);
+            int shift = (int) ((h >>> 32) & 15L) << 2;
+            int count = (int) ((sketch.get((int) h & sketchMask) >>> shift) & 15L);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 老化：所有计数减半。与并发自增之间的竞争只会让个别计数略有偏差，不影响准入判断。
+     */
+    private void reset() {
+        for (int i = 0; i < sketch.length(); i++) {
+            sketch.set(i, (sketch.get(i) >>> 1) & RESET_MASK);
+        }
+        sampleCount.set(0);
+    }
+
+    private static long indexHash(int hash, int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        return h ^ (h >>> 29);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final int hash;
+        private final V value;
+        private volatile boolean referenced;
+
+        private Node(K key, int hash, V value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.ssy.filter.support;
+
+import com.ssy.filter.support.ThreatSignatureEngine.BodyStreamScanner;
+import com.ssy.filter.support.ThreatSignatureEngine.Signature;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 请求体流式扫描：特征跨分片、跨尾部窗口环绕边界时仍能命中，结果与整段 inspect 一致。
+ */
+class BodyStreamScannerTest {
+
+    private static final int WINDOW = 256;
+
+    private final ThreatSignatureEngine engine = ThreatSignatureEngine.compile(Collections.<String>emptyList());
+
+    @Test
+    void literalSplitAcrossChunksIsMatched() {
+        BodyStreamScanner scanner = engine.newBodyStreamScanner(WINDOW);
+
+        feed(scanner, "{\"name\":\"<scr");
+        feed(scanner, "ipt>alert(1)</script>\"}");
+
+        Signature hit = scanner.finish();
+        assertNotNull(hit);
+        assertEquals("XSS_ATTACK", hit.getAttackType());
+    }
+
+    @Test
+    void regexConfirmedAcrossWindowWrap() {
+        // 载荷正好跨过环形窗口的回绕位置，且锚点与正则上下文分属两个分片
+        String body = repeat('x', WINDOW - 6) + " union " + repeat(' ', 3) + "select id from users";
+        for (int prefix = 0; prefix < 3; prefix++) {
+            String shifted = repeat('y', prefix * WINDOW) + body;
+            BodyStreamScanner scanner = engine.newBodyStreamScanner(WINDOW);
+            int split = shifted.length() - 14;
+
+            feed(scanner, shifted.substring(0, split));
+            feed(scanner, shifted.substring(split));
+
+            Signature hit = scanner.finish();
+            assertNotNull(hit, "prefix windows: " + prefix);
+            assertEquals("SQL_INJECTION", hit.getAttackType());
+            assertEquals(engine.inspect(null, null, shifted, null).getAttackType(), hit.getAttackType());
+            assertEquals(shifted.length(), scanner.getScannedBytes());
+        }
+    }
+
+    @Test
+    void candidateIsConfirmedBeforeStreamEndsOnceContextIsInWindow() {
+        BodyStreamScanner scanner = engine.newBodyStreamScanner(WINDOW);
+
+        feed(scanner, "a=1 or 1=1");
+        assertNull(scanner.getBest());
+        feed(scanner, repeat(' ', WINDOW / 2));
+
+        assertNotNull(scanner.getBest());
+        assertEquals("SQL_INJECTION", scanner.getBest().getAttackType());
+    }
+
+    @Test
+    void anchorWithoutRegexMatchIsNotReported() {
+        BodyStreamScanner scanner = engine.newBodyStreamScanner(WINDOW);
+
+        feed(scanner, "{\"selection\":\"onion\",\"scripture\":true}");
+
+        assertNull(scanner.finish());
+        assertNull(engine.inspect(null, null, "{\"selection\":\"onion\",\"scripture\":true}", null));
+    }
+
+    @Test
+    void pathOnlySignatureDoesNotFireOnBody() {
+        BodyStreamScanner scanner = engine.newBodyStreamScanner(WINDOW);
+
+        feed(scanner, "../../etc/passwd");
+
+        assertNull(scanner.finish());
+    }
+
+    @Test
+    void shadowSignatureIsRecordedButNotReturned() {
+        ThreatRuleMode[] modes = new ThreatRuleMode[engine.signatureCount()];
+        int sqlInjection = -1;
+        for (int id = 0; id < engine.signatureCount(); id++) {
+            if ("SQL_INJECTION".equals(engine.signatureAt(id).getAttackType())) {
+                sqlInjection = id;
+            }
+        }
+        Arrays.fill(modes, ThreatRuleMode.ENFORCE);
+        modes[sqlInjection] = ThreatRuleMode.SHADOW;
+        BodyStreamScanner scanner = engine.newBodyStreamScanner(WINDOW, modes);
+
+        feed(scanner, "q=1 union select password from users");
+
+        assertNull(scanner.finish());
+        assertTrue(scanner.isShadowHit(sqlInjection));
+        assertFalse(scanner.isShadowHit(sqlInjection + 1));
+    }
+
+    @Test
+    void windowSampleKeepsOnlyTheTail() {
+        BodyStreamScanner scanner = engine.newBodyStreamScanner(WINDOW);
+
+        feed(scanner, repeat('a', WINDOW) + "tail");
+
+        String sample = scanner.windowSample(StandardCharsets.UTF_8);
+        assertEquals(WINDOW, sample.length());
+        assertTrue(sample.endsWith("tail"));
+    }
+
+    private static void feed(BodyStreamScanner scanner, String chunk) {
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        scanner.update(bytes, 0, bytes.length);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
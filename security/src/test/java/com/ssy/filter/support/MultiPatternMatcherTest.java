@@ -0,0 +1,86 @@
+package com.ssy.filter.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MultiPatternMatcher：重叠模式、大小写不敏感、扫描状态跨分片延续。
+ */
+class MultiPatternMatcherTest {
+
+    @Test
+    void reportsOverlappingPatternsAtTheirEndPositions() {
+        MultiPatternMatcher.Builder builder = MultiPatternMatcher.builder();
+        int he = builder.add("he");
+        int she = builder.add("she");
+        int hers = builder.add("hers");
+        MultiPatternMatcher matcher = builder.build();
+
+        List<String> hits = scan(matcher, "ushers");
+
+        assertEquals(3, matcher.patternCount());
+        assertTrue(hits.contains(she + "@3"));
+        assertTrue(hits.contains(he + "@3"));
+        assertTrue(hits.contains(hers + "@5"));
+        assertEquals(3, hits.size());
+    }
+
+    @Test
+    void matchesIgnoringAsciiCase() {
+        MultiPatternMatcher.Builder builder = MultiPatternMatcher.builder();
+        int union = builder.add("UNION");
+        MultiPatternMatcher matcher = builder.build();
+
+        assertEquals(1, scan(matcher, "1 uNiOn 2").size());
+        assertTrue(scan(matcher, "1 uNiOn 2").contains(union + "@6"));
+        assertEquals(5, matcher.patternLength(union));
+    }
+
+    @Test
+    void continuesStateAcrossChunks() {
+        MultiPatternMatcher.Builder builder = MultiPatternMatcher.builder();
+        int id = builder.add("document.cookie");
+        MultiPatternMatcher matcher = builder.build();
+
+        int state = matcher.root();
+        for (String chunk : new String[]{"x=docu", "ment.co", "okie"}) {
+            for (int i = 0; i < chunk.length(); i++) {
+                state = matcher.next(state, chunk.charAt(i));
+            }
+        }
+
+        assertEquals(1, matcher.outputs(state).length);
+        assertEquals(id, matcher.outputs(state)[0]);
+    }
+
+    @Test
+    void nonAsciiCharacterBreaksMatchAndNonAsciiLiteralIsRejected() {
+        MultiPatternMatcher.Builder builder = MultiPatternMatcher.builder();
+        assertEquals(-1, builder.add("脚本"));
+        assertEquals(-1, builder.add(""));
+        assertFalse(MultiPatternMatcher.Builder.isIndexable(null));
+        builder.add("eval(");
+        MultiPatternMatcher matcher = builder.build();
+
+        assertTrue(scan(matcher, "evéal(").isEmpty());
+        assertEquals(1, scan(matcher, "eval(").size());
+    }
+
+    private static List<String> scan(MultiPatternMatcher matcher, String input) {
+        List<String> hits = new ArrayList<>();
+        int state = matcher.root();
+        for (int i = 0; i < input.length(); i++) {
+            state = matcher.next(state, input.charAt(i));
+            for (int id : matcher.outputs(state)) {
+                hits.add(id + "@" + i);
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,115 @@
+package com.ssy.service.impl;
+
+import com.ssy.properties.SecurityProperties;
+import com.ssy.security.AuthorizationDecision.StaticRule;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 静态授权规则：精确表 + 路由前缀树的查询结果与 antMatchers 按注册顺序首个命中一致。
+ */
+class AuthorizationPolicyServiceTest {
+
+    private static final AntPathMatcher ANT = new AntPathMatcher();
+
+    private static final List<String> PERMIT_ALL = Arrays.asList(
+            "/login",
+            "/security-auth/**",
+            "/v2/api-docs",
+            "/v2/api-docs/**",
+            "/api/public/{id}",
+            "/api/v?/status",
+            "/admin/login"
+    );
+
+    private static final List<String> PATHS = Arrays.asList(
+            "/login",
+            "/security-auth",
+            "/security-auth/captcha/image",
+            "/v2/api-docs",
+            "/v2/api-docs/group",
+            "/api/public/7",
+            "/api/v1/status",
+            "/api/v10/status",
+            "/admin/login",
+            "/admin/users/1",
+            "/manager/report",
+            "/manager",
+            "/api/orders",
+            "/wp-admin/setup-config.php"
+    );
+
+    @Test
+    void matchStaticAgreesWithFirstMatchingAntRule() {
+        SecurityProperties properties = properties();
+        AuthorizationPolicyService service = new AuthorizationPolicyService(properties);
+        List<String> patterns = new ArrayList<>(PERMIT_ALL);
+        for (SecurityProperties.RoleMapping mapping : properties.getRoleBased()) {
+            patterns.add(mapping.getPattern());
+        }
+
+        for (String path : PATHS) {
+            StaticRule rule = service.matchStatic(path);
+            assertEquals(antFirst(patterns, path), rule.getPattern(), path);
+        }
+    }
+
+    @Test
+    void earlierRegisteredRuleWinsOverMoreSpecificLaterRule() {
+        AuthorizationPolicyService service = new AuthorizationPolicyService(properties());
+
+        // /admin/** 注册在 /admin/login 之后，但 permit-all 整体先于 role-based
+        StaticRule login = service.matchStatic("/admin/login");
+        assertTrue(login.isPublicPath());
+        assertEquals("/admin/login", login.getPattern());
+
+        StaticRule admin = service.matchStatic("/admin/users/1");
+        assertFalse(admin.isPublicPath());
+        assertEquals("ADMIN", admin.getRole());
+    }
+
+    @Test
+    void unmatchedPathFallsBackToDefaultRule() {
+        AuthorizationPolicyService service = new AuthorizationPolicyService(properties());
+
+        StaticRule rule = service.matchStatic("/api/orders");
+        assertNull(rule.getPattern());
+        assertFalse(rule.isPublicPath());
+        assertEquals(rule.getIndex(), service.matchStatic(null).getIndex());
+    }
+
+    private static SecurityProperties properties() {
+        SecurityProperties properties = new SecurityProperties();
+        properties.setPermitAll(PERMIT_ALL);
+        properties.setRoleBased(Arrays.asList(
+                roleMapping("/admin/**", "ROLE_ADMIN"),
+                roleMapping("/manager/**", "MANAGER"),
+                roleMapping("/login", "ADMIN")));
+        return properties;
+    }
+
+    private static SecurityProperties.RoleMapping roleMapping(String pattern, String role) {
+        SecurityProperties.RoleMapping mapping = new SecurityProperties.RoleMapping();
+        mapping.setPattern(pattern);
+        mapping.setRole(role);
+        return mapping;
+    }
+
+    private static String antFirst(List<String> patterns, String path) {
+        for (String pattern : patterns) {
+            if (ANT.match(pattern, path)) {
+                return pattern;
+            }
+        }
+        return null;
+    }
+}
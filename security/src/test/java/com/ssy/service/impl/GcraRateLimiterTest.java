@@ -0,0 +1,115 @@
+package com.ssy.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GCRA 限流表：突发、回填、计数上限、饱和哨兵值与键构造。
+ */
+class GcraRateLimiterTest {
+
+    private static final long LONG_WINDOW_MS = 60_000L;
+
+    @Test
+    void burstUpToLimitThenRejects() {
+        GcraRateLimiter limiter = new GcraRateLimiter(1024);
+        long key = GcraRateLimiter.ipKey("10.0.0.1");
+
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, limiter.acquire(key, LONG_WINDOW_MS, 10, 31));
+        }
+        assertEquals(11, limiter.acquire(key, LONG_WINDOW_MS, 10, 31));
+        assertEquals(1, limiter.acquire(GcraRateLimiter.ipKey("10.0.0.2"), LONG_WINDOW_MS, 10, 31));
+    }
+
+    @Test
+    void countIsCappedAtMaxCount() {
+        GcraRateLimiter limiter = new GcraRateLimiter(1024);
+        long key = GcraRateLimiter.ipKey("10.0.0.1");
+
+        int count = 0;
+        for (int i = 0; i < 100; i++) {
+            count = limiter.acquire(key, LONG_WINDOW_MS, 10, 31);
+        }
+
+        assertEquals(31, count);
+    }
+
+    @Test
+    void refillsAtOneIntervalPerPeriod() throws InterruptedException {
+        GcraRateLimiter limiter = new GcraRateLimiter(1024);
+        long key = GcraRateLimiter.ipKey("10.0.0.1");
+        // 发射间隔 50ms
+        long windowMs = 200L;
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire(key, windowMs, 4, 13);
+        }
+
+        Thread.sleep(120L);
+        int afterPartialRefill = limiter.acquire(key, windowMs, 4, 13);
+        assertTrue(afterPartialRefill >= 1 && afterPartialRefill <= 3, "count=" + afterPartialRefill);
+
+        Thread.sleep(windowMs + 50L);
+        assertEquals(1, limiter.acquire(key, windowMs, 4, 13));
+    }
+
+    @Test
+    void returnsSaturatedForNewKeysWhenTableIsFullButKeepsTrackedKeysClosed() {
+        GcraRateLimiter limiter = new GcraRateLimiter(1024);
+        long tracked = GcraRateLimiter.ipKey("192.168.0.1");
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire(tracked, LONG_WINDOW_MS, 3, 10);
+        }
+
+        int saturated = 0;
+        for (int i = 0; i < 4 * limiter.capacity(); i++) {
+            if (limiter.acquire(GcraRateLimiter.compose(i, 7L), LONG_WINDOW_MS, 3, 10) == GcraRateLimiter.SATURATED) {
+                saturated++;
+            }
+        }
+
+        assertTrue(saturated > 0);
+        assertEquals(saturated, limiter.overflowCount());
+        assertTrue(limiter.activeKeys() <= limiter.capacity());
+        int trackedCount = limiter.acquire(tracked, LONG_WINDOW_MS, 3, 10);
+        assertNotEquals(GcraRateLimiter.SATURATED, trackedCount);
+        assertTrue(trackedCount > 3);
+    }
+
+    @Test
+    void expiredSlotsAreReused() throws InterruptedException {
+        GcraRateLimiter limiter = new GcraRateLimiter(1024);
+        long windowMs = 20L;
+        for (int i = 0; i < 4 * limiter.capacity(); i++) {
+            limiter.acquire(GcraRateLimiter.compose(i, 1L), windowMs, 1, 1);
+        }
+
+        Thread.sleep(windowMs * 3);
+
+        assertEquals(0, limiter.activeKeys());
+        assertEquals(1, limiter.acquire(GcraRateLimiter.compose(-1L, 1L), windowMs, 1, 1));
+    }
+
+    @Test
+    void ipKeyParsesIpv4WithoutHashingAndTagsEverythingElse() {
+        assertEquals(0x0A000001L, GcraRateLimiter.ipKey("10.0.0.1"));
+        assertEquals(0xFFFFFFFFL, GcraRateLimiter.ipKey("255.255.255.255"));
+        assertTrue(GcraRateLimiter.ipKey("2001:db8::1") < 0);
+        assertTrue(GcraRateLimiter.ipKey("10.0.0.256") < 0);
+        assertTrue(GcraRateLimiter.ipKey("10.0.0") < 0);
+        assertEquals(0L, GcraRateLimiter.ipKey(null));
+    }
+
+    @Test
+    void endpointKeyPrefersIdAndIgnoresMethodCase() {
+        assertEquals(42L, GcraRateLimiter.endpointKey(42L, "GET", "/api/user"));
+        assertEquals(GcraRateLimiter.endpointKey(null, "get", "/api/user"),
+                GcraRateLimiter.endpointKey(null, "GET", "/api/user"));
+        assertNotEquals(GcraRateLimiter.endpointKey(null, "GET", "/api/user"),
+                GcraRateLimiter.endpointKey(null, "POST", "/api/user"));
+        assertNotEquals(GcraRateLimiter.compose(1L, 2L), GcraRateLimiter.compose(2L, 1L));
+    }
+}
@@ -0,0 +1,91 @@
+package com.ssy.service.impl;
+
+import com.ssy.context.RequestUserContext;
+import com.ssy.utils.PermissionMask;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 权限字典：编码去空白后驻留为稳定下标，位图相交结果与按字符串判定的 hasPermission 一致。
+ */
+class PermissionDictionaryServiceTest {
+
+    @Test
+    void internTrimsAndKeepsIndexStable() {
+        PermissionDictionaryService dictionary = new PermissionDictionaryService();
+
+        int index = dictionary.intern("user:read");
+        assertEquals(index, dictionary.intern("  user:read\t"));
+        assertEquals(index, dictionary.intern("user:read"));
+        assertNotEquals(index, dictionary.intern("user:write"));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void blankCodesAreNotInterned() {
+        PermissionDictionaryService dictionary = new PermissionDictionaryService();
+
+        assertEquals(-1, dictionary.intern(null));
+        assertEquals(-1, dictionary.intern(""));
+        assertEquals(-1, dictionary.intern("   "));
+        assertEquals(0, dictionary.size());
+        assertSame(PermissionMask.EMPTY, dictionary.maskOf(Arrays.asList(" ", null)));
+        assertSame(PermissionMask.EMPTY, dictionary.maskOf(null));
+        assertSame(PermissionMask.EMPTY, dictionary.maskOf(Collections.emptyList()));
+    }
+
+    @Test
+    void maskIntersectionMatchesStringHasPermission() {
+        PermissionDictionaryService dictionary = new PermissionDictionaryService();
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            codes.add("perm:" + i);
+        }
+        // 先驻留一部分编码，使后续编码落在不同的字上
+        for (int i = 0; i < 150; i += 3) {
+            dictionary.intern(codes.get(i));
+        }
+        Random random = new Random(42);
+
+        for (int round = 0; round < 500; round++) {
+            List<String> granted = randomCodes(random, codes);
+            List<String> required = randomCodes(random, codes);
+            RequestUserContext context = RequestUserContext.builder().permissions(granted).build();
+
+            boolean expected = false;
+            for (String code : required) {
+                expected |= context.hasPermission(code);
+            }
+            assertEquals(expected, dictionary.maskOf(granted).intersects(dictionary.maskOf(required)),
+                    granted + " ~ " + required);
+        }
+    }
+
+    private static List<String> randomCodes(Random random, List<String> codes) {
+        int size = random.nextInt(6);
+        List<String> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String code = codes.get(random.nextInt(codes.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                    result.add(" " + code + " ");
+                    break;
+                case 1:
+                    result.add(random.nextBoolean() ? "" : "  ");
+                    break;
+                default:
+                    result.add(code);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,271 @@
+package com.ssy.service.impl;
+
+import com.ssy.dto.UserEntity;
+import com.ssy.entity.RbacPermissionEntity;
+import com.ssy.entity.RbacRoleEntity;
+import com.ssy.mapper.RbacPermissionMapper;
+import com.ssy.mapper.RbacRoleMapper;
+import com.ssy.mapper.UserMapper;
+import com.ssy.service.impl.UserPermissionCacheService.UserAuthSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用户权限快照的版本号（epoch）失效：单用户/批量/全量失效、按需重新加载一次、版本记录清理与重启后的单调性。
+ */
+class UserPermissionCacheServiceTest {
+
+    private final Map<Long, List<String>> permissionsByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger userLoads = new AtomicInteger();
+    private UserPermissionCacheService service;
+
+    @BeforeEach
+    void setUp() {
+        permissionsByUser.put(1L, Collections.singletonList("user:read"));
+        permissionsByUser.put(2L, Collections.singletonList("order:read"));
+        service = newService();
+    }
+
+    @Test
+    void snapshotIsLoadedOnceAndReused() {
+        UserAuthSnapshot first = service.getUserSnapshot(1L);
+        UserAuthSnapshot second = service.getUserSnapshot(1L);
+
+        assertSame(first, second);
+        assertEquals(1, userLoads.get());
+        assertTrue(first.getPermissions().contains("user:read"));
+        assertTrue(first.isEnabled());
+        assertEquals(service.currentEpoch(1L), first.getEpoch());
+    }
+
+    @Test
+    void invalidateUserReloadsOnlyThatUser() {
+        UserAuthSnapshot user1 = service.getUserSnapshot(1L);
+        UserAuthSnapshot user2 = service.getUserSnapshot(2L);
+        long tokenEpoch = service.currentEpoch(1L);
+        permissionsByUser.put(1L, Arrays.asList("user:read", "user:write"));
+
+        service.invalidateUser(1L);
+
+        assertTrue(service.currentEpoch(1L) > tokenEpoch);
+        assertEquals(tokenEpoch, service.currentEpoch(2L));
+        UserAuthSnapshot reloaded = service.getUserSnapshot(1L);
+        assertTrue(reloaded.getPermissions().contains("user:write"));
+        assertTrue(reloaded.getEpoch() > user1.getEpoch());
+        assertSame(user2, service.getUserSnapshot(2L));
+        assertEquals(3, userLoads.get());
+        assertEquals(1L, service.snapshotStats().get("reloads"));
+    }
+
+    @Test
+    void invalidateUsersSharesOneEpoch() {
+        service.invalidateUsers(Arrays.asList(1L, 2L, null));
+
+        assertEquals(service.currentEpoch(1L), service.currentEpoch(2L));
+        assertTrue(service.currentEpoch(1L) > service.currentEpoch(3L));
+    }
+
+    @Test
+    void invalidateAllRaisesFloorAndPrunesUserEpochs() {
+        service.getUserSnapshot(1L);
+        service.getUserSnapshot(2L);
+        service.invalidateUser(1L);
+        long userEpoch = service.currentEpoch(1L);
+        assertEquals(1, service.snapshotStats().get("userEpochs"));
+
+        service.invalidateAll();
+
+        long floor = service.currentEpoch(null);
+        assertTrue(floor > userEpoch);
+        assertEquals(floor, service.currentEpoch(1L));
+        assertEquals(floor, service.currentEpoch(2L));
+        assertEquals(0, service.snapshotStats().get("userEpochs"));
+        assertEquals(floor, service.getUserSnapshot(1L).getEpoch());
+        assertEquals(floor, service.getUserSnapshot(2L).getEpoch());
+        assertEquals(4, userLoads.get());
+    }
+
+    @Test
+    void userInvalidatedAfterInvalidateAllStaysAboveFloor() {
+        service.invalidateAll();
+        service.invalidateUser(1L);
+
+        assertTrue(service.currentEpoch(1L) > service.currentEpoch(2L));
+        assertEquals(1, service.snapshotStats().get("userEpochs"));
+    }
+
+    @Test
+    void epochsAfterRestartAreNewerThanTokensIssuedBeforeRestart() throws InterruptedException {
+        // 重启前的一批失效让计数器短暂领先时钟
+        for (int i = 0; i < 500; i++) {
+            service.invalidateUser(1L);
+        }
+        long tokenEpoch = service.currentEpoch(1L);
+        long untouchedTokenEpoch = service.currentEpoch(2L);
+        // 真实重启远长于此
+        Thread.sleep(5L);
+
+        UserPermissionCacheService restarted = newService();
+
+        // 未发生任何失效时，当前版本与新快照版本也已高于重启前签发的 Token
+        assertTrue(restarted.currentEpoch(1L) > tokenEpoch);
+        assertTrue(restarted.currentEpoch(2L) > untouchedTokenEpoch);
+        UserAuthSnapshot snapshot = restarted.getUserSnapshot(1L);
+        assertEquals(restarted.currentEpoch(1L), snapshot.getEpoch());
+        assertTrue(snapshot.getEpoch() > tokenEpoch);
+
+        long issuedAfterRestart = restarted.currentEpoch(1L);
+        restarted.invalidateUser(1L);
+        assertTrue(restarted.currentEpoch(1L) > issuedAfterRestart);
+        assertTrue(restarted.getUserSnapshot(1L).getEpoch() > issuedAfterRestart);
+    }
+
+    @Test
+    void waitersDoNotReturnSnapshotOlderThanTheirEpoch() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        UserPermissionCacheService blocking = newService(userId -> {
+            if (userId != 1L) {
+                return;
+            }
+            loadStarted.countDown();
+            try {
+                releaseLoad.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<UserAuthSnapshot> first = executor.submit(() -> blocking.getUserSnapshot(1L));
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+            // 加载进行中时失效，后到的请求不应拿到失效前的版本
+            blocking.invalidateUser(1L);
+            long epoch = blocking.currentEpoch(1L);
+            Future<UserAuthSnapshot> second = executor.submit(() -> blocking.getUserSnapshot(1L));
+            // 其他用户的加载不等待进行中的加载
+            assertTrue(blocking.getUserSnapshot(2L).exists());
+            releaseLoad.countDown();
+
+            assertTrue(first.get(5, TimeUnit.SECONDS).getEpoch() < epoch);
+            assertTrue(second.get(5, TimeUnit.SECONDS).getEpoch() >= epoch);
+            assertTrue(blocking.getUserSnapshot(1L).getEpoch() >= epoch);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentRequestsAfterInvalidationReloadOnce() throws Exception {
+        service.getUserSnapshot(1L);
+        service.invalidateUser(1L);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<UserAuthSnapshot>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return service.getUserSnapshot(1L);
+                }));
+            }
+            start.countDown();
+            UserAuthSnapshot expected = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<UserAuthSnapshot> future : futures) {
+                assertSame(expected, future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, userLoads.get());
+    }
+
+    @Test
+    void unknownUserIsCachedAsNotFound() {
+        UserAuthSnapshot snapshot = service.getUserSnapshot(404L);
+
+        assertFalse(snapshot.exists());
+        assertFalse(snapshot.isEnabled());
+        assertSame(snapshot, service.getUserSnapshot(404L));
+        assertNull(service.getUserSnapshot(null));
+    }
+
+    private UserPermissionCacheService newService() {
+        return newService(userId -> {
+        });
+    }
+
+    private UserPermissionCacheService newService(Consumer<Long> onUserLoad) {
+        UserMapper userMapper = fake(UserMapper.class, (method, args) -> {
+            if (!"selectByUserId".equals(method)) {
+                return null;
+            }
+            userLoads.incrementAndGet();
+            Long userId = (Long) args[0];
+            onUserLoad.accept(userId);
+            if (!permissionsByUser.containsKey(userId)) {
+                return null;
+            }
+            UserEntity user = new UserEntity();
+            user.setUserId(userId);
+            user.setUsername("user" + userId);
+            // 父类 com.pojo.entity.UserEntity 另有 setStatus(int) 重载，写的是父类字段；装箱后才会调用本类的 setter
+            user.setStatus(Integer.valueOf(0));
+            return user;
+        });
+        RbacRoleMapper roleMapper = fake(RbacRoleMapper.class, (method, args) -> {
+            RbacRoleEntity role = new RbacRoleEntity();
+            role.setRoleCode("USER");
+            return Collections.singletonList(role);
+        });
+        RbacPermissionMapper permissionMapper = fake(RbacPermissionMapper.class, (method, args) -> {
+            List<RbacPermissionEntity> permissions = new ArrayList<>();
+            if ("selectEnabledByUserId".equals(method)) {
+                for (String code : permissionsByUser.getOrDefault((Long) args[0], Collections.<String>emptyList())) {
+                    RbacPermissionEntity permission = new RbacPermissionEntity();
+                    permission.setPermCode(code);
+                    permissions.add(permission);
+                }
+            }
+            return permissions;
+        });
+        return new UserPermissionCacheService(userMapper, roleMapper, permissionMapper, new PermissionDictionaryService());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> type, MapperCall call) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return "toString".equals(method.getName()) ? type.getSimpleName() : null;
+            }
+            return call.invoke(method.getName(), args);
+        });
+    }
+
+    private interface MapperCall {
+        Object invoke(String method, Object[] args);
+    }
+}
@@ -0,0 +1,83 @@
+package com.ssy.service.impl;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.ssy.properties.JwtProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Token 校验缓存：命中复用解析结果，过期条目交回验证器重新校验，校验失败不缓存。
+ */
+class VerifiedTokenCacheServiceTest {
+
+    private static final String SECRET = "verified-token-cache-test-secret";
+
+    @Test
+    void verifiedTokenIsCachedAndReused() {
+        VerifiedTokenCacheService service = new VerifiedTokenCacheService(properties());
+        String token = sign(SECRET, new Date(System.currentTimeMillis() + 60_000L));
+
+        VerifiedTokenCacheService.VerifiedToken first = service.verify(token);
+        VerifiedTokenCacheService.VerifiedToken second = service.verify(token);
+
+        assertSame(first, second);
+        assertEquals("alice", first.getSubject());
+        assertEquals(Long.valueOf(7L), first.getUserId());
+        assertEquals(Long.valueOf(3L), first.getPermEpoch());
+        assertEquals(1, service.snapshotStats().get("size"));
+    }
+
+    @Test
+    void expiredEntryIsReverifiedAndRejected() throws InterruptedException {
+        VerifiedTokenCacheService service = new VerifiedTokenCacheService(properties());
+        // exp 精度为秒，签发时已向下取整，最多 1 秒后过期
+        Date expiresAt = new Date(System.currentTimeMillis() + 1_000L);
+        String token = sign(SECRET, expiresAt);
+        service.verify(token);
+
+        long waitMillis = (expiresAt.getTime() / 1_000L + 1L) * 1_000L - System.currentTimeMillis() + 50L;
+        Thread.sleep(Math.max(0L, waitMillis));
+
+        assertThrows(TokenExpiredException.class, () -> service.verify(token));
+        assertThrows(TokenExpiredException.class, () -> service.verify(token));
+        assertEquals(2L, service.snapshotStats().get("expiredHits"));
+    }
+
+    @Test
+    void failedVerificationIsNotCached() {
+        VerifiedTokenCacheService service = new VerifiedTokenCacheService(properties());
+        String forged = sign("another-secret", new Date(System.currentTimeMillis() + 60_000L));
+
+        assertThrows(SignatureVerificationException.class, () -> service.verify(forged));
+        assertThrows(SignatureVerificationException.class, () -> service.verify(forged));
+
+        Map<String, Object> stats = service.snapshotStats();
+        assertEquals(0, stats.get("size"));
+        assertEquals(0L, stats.get("expiredHits"));
+    }
+
+    private static JwtProperties properties() {
+        JwtProperties properties = new JwtProperties();
+        properties.setSecretKey(SECRET);
+        properties.setVerifiedCacheSize(64);
+        return properties;
+    }
+
+    private static String sign(String secret, Date expiresAt) {
+        return JWT.create()
+                .withSubject("alice")
+                .withClaim("userId", 7L)
+                .withClaim("permEpoch", 3L)
+                .withExpiresAt(expiresAt)
+                .sign(Algorithm.HMAC256(secret.getBytes()));
+    }
+}
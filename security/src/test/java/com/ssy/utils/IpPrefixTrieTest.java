@@ -0,0 +1,145 @@
+package com.ssy.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * IP 前缀树：IPv4/IPv6 网段匹配、嵌套前缀取最晚过期时间、路径复制不影响旧树。
+ */
+class IpPrefixTrieTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void matchesIpv4ExactAddressAndCidr() {
+        IpPrefixTrie trie = IpPrefixTrie.empty()
+                .put("10.0.0.0/8", 1L)
+                .put("192.168.1.10", 2L);
+
+        assertEquals(1L, match(trie, "10.200.3.4"));
+        assertEquals(2L, match(trie, "192.168.1.10"));
+        assertEquals(IpPrefixTrie.NO_MATCH, match(trie, "192.168.1.11"));
+        assertEquals(IpPrefixTrie.NO_MATCH, match(trie, "11.0.0.1"));
+        assertEquals(2, trie.size());
+    }
+
+    @Test
+    void matchesIpv6CidrAndMappedIpv4() {
+        IpPrefixTrie trie = IpPrefixTrie.empty()
+                .put("2001:db8::/32", 1L)
+                .put("2001:db8:abcd::1", 2L)
+                .put("172.16.0.0/12", 3L);
+
+        assertEquals(1L, match(trie, "2001:db8:1::5"));
+        assertEquals(2L, match(trie, "[2001:db8:abcd::1]"));
+        assertEquals(IpPrefixTrie.NO_MATCH, match(trie, "2001:db9::1"));
+        assertEquals(3L, match(trie, "::ffff:172.20.1.1"));
+        assertEquals(IpPrefixTrie.NO_MATCH, match(trie, "fe80::1%eth0"));
+    }
+
+    @Test
+    void nestedPrefixesAllCoverTheAddress() {
+        IpPrefixTrie trie = IpPrefixTrie.empty()
+                .put("10.1.2.0/24", NOW + 1_000L)
+                .put("10.0.0.0/8", NOW + 60_000L)
+                .put("10.1.0.0/16", NOW + 5_000L);
+
+        // 覆盖该地址的前缀中取最晚过期时间，更长的前缀不会遮蔽更短网段上更晚的封禁
+        assertEquals(NOW + 60_000L, match(trie, "10.1.2.3"));
+        assertEquals(NOW + 60_000L, match(trie, "10.9.9.9"));
+    }
+
+    @Test
+    void expiredNarrowEntryDoesNotHideLiveBroaderEntry() {
+        IpPrefixTrie trie = IpPrefixTrie.empty()
+                .put("203.0.113.7", NOW - 1_000L)
+                .put("203.0.113.0/24", Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, match(trie, "203.0.113.7"));
+
+        IpPrefixTrie withoutNetwork = trie.remove("203.0.113.0/24");
+        long expireAt = match(withoutNetwork, "203.0.113.7");
+        assertEquals(NOW - 1_000L, expireAt);
+        assertTrue(expireAt <= NOW);
+        assertEquals(IpPrefixTrie.NO_MATCH, match(withoutNetwork, "203.0.113.8"));
+    }
+
+    @Test
+    void repeatedPutKeepsLaterExpiry() {
+        IpPrefixTrie trie = IpPrefixTrie.empty()
+                .put("198.51.100.1", NOW + 10_000L)
+                .put("198.51.100.1", NOW + 1_000L);
+
+        assertEquals(NOW + 10_000L, match(trie, "198.51.100.1"));
+        assertEquals(1, trie.size());
+
+        trie = trie.put("198.51.100.1", NOW + 20_000L);
+        assertEquals(NOW + 20_000L, match(trie, "198.51.100.1"));
+    }
+
+    @Test
+    void putAndRemoveReturnNewTreesAndLeaveOldOnesIntact() {
+        IpPrefixTrie base = IpPrefixTrie.empty().put("10.0.0.1", 1L);
+        IpPrefixTrie extended = base.put("10.0.0.2", 2L);
+        IpPrefixTrie removed = extended.remove("10.0.0.1");
+
+        assertEquals(IpPrefixTrie.NO_MATCH, match(base, "10.0.0.2"));
+        assertEquals(1L, match(extended, "10.0.0.1"));
+        assertEquals(IpPrefixTrie.NO_MATCH, match(removed, "10.0.0.1"));
+        assertEquals(2L, match(removed, "10.0.0.2"));
+        assertEquals(1, removed.size());
+        assertSame(removed, removed.remove("10.0.0.99"));
+    }
+
+    @Test
+    void removeOnlyDropsTheExactPrefix() {
+        IpPrefixTrie trie = IpPrefixTrie.empty()
+                .put("10.0.0.0/8", 1L)
+                .put("10.0.0.0/16", 2L);
+
+        IpPrefixTrie removed = trie.remove("10.0.0.0/16");
+
+        assertEquals(1L, match(removed, "10.0.5.5"));
+        assertSame(removed, removed.remove("10.0.0.0/24"));
+    }
+
+    @Test
+    void forEachVisitsEveryPrefix() {
+        IpPrefixTrie trie = IpPrefixTrie.empty()
+                .put("10.0.0.0/8", 1L)
+                .put("10.1.0.0/16", 2L)
+                .put("2001:db8::/32", 3L);
+        List<String> visited = new ArrayList<>();
+
+        trie.forEach((prefix, prefixLength, value) -> visited.add(prefixLength + "=" + value));
+
+        assertEquals(3, visited.size());
+        assertTrue(visited.contains("104=1"));
+        assertTrue(visited.contains("112=2"));
+        assertTrue(visited.contains("32=3"));
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertFalse(IpPrefixTrie.isValidIpOrCidr("10.0.0.256"));
+        assertFalse(IpPrefixTrie.isValidIpOrCidr("10.0.0.0/33"));
+        assertFalse(IpPrefixTrie.isValidIpOrCidr("10.0.0.0/"));
+        assertFalse(IpPrefixTrie.isValidIpOrCidr("2001:db8::/129"));
+        assertFalse(IpPrefixTrie.isValidIpOrCidr("localhost"));
+        assertTrue(IpPrefixTrie.isValidIpOrCidr(" 10.0.0.0/8 "));
+        assertNull(IpPrefixTrie.empty().put("bad", 1L));
+        assertEquals(IpPrefixTrie.NO_MATCH, IpPrefixTrie.empty().match(null));
+    }
+
+    private static long match(IpPrefixTrie trie, String ip) {
+        return trie.match(IpAddress.parse(ip));
+    }
+}
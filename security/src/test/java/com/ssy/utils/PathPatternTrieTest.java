@@ -0,0 +1,162 @@
+package com.ssy.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 路由前缀树：单条模式的命中范围与 AntPathMatcher 一致；多条模式按“不含 ** 优先、最左侧更具体的段优先”取舍，
+ * 与 AntPathMatcher 按通配总数排序的结果可能不同。
+ */
+class PathPatternTrieTest {
+
+    private static final AntPathMatcher ANT = new AntPathMatcher();
+
+    private static final List<String> PATTERNS = Arrays.asList(
+            "/api/users",
+            "/api/users/me",
+            "/api/users/{id}",
+            "/api/users/{id}/orders",
+            "/api/users/{id}/orders/{orderId}",
+            "/api/users/**",
+            "/api/files/*.png",
+            "/api/files/{name}",
+            "/api/files/report-{year}.pdf",
+            "/api/files/**",
+            "/api/*/health",
+            "/api/v?/status",
+            "/static/**",
+            "/api/docs/**/index.html"
+    );
+
+    private static final List<String> PATHS = Arrays.asList(
+            "/api/users",
+            "/api/users/me",
+            "/api/users/42",
+            "/api/users/42/orders",
+            "/api/users/42/orders/7",
+            "/api/users/42/orders/7/items",
+            "/api/files/logo.png",
+            "/api/files/readme",
+            "/api/files/report-2024.pdf",
+            "/api/files/a/b/c",
+            "/api/orders/health",
+            "/api/v1/status",
+            "/api/v10/status",
+            "/static",
+            "/static/js/app.js",
+            "/api/docs/index.html",
+            "/api/docs/v1/guide/index.html",
+            "/api/docs/v1/guide/intro.html",
+            "/api",
+            "/wp-admin/setup-config.php"
+    );
+
+    @Test
+    void singlePatternMatchesSamePathsAsAntPathMatcher() {
+        for (String pattern : PATTERNS) {
+            PathPatternTrie<String> trie = PathPatternTrie.<String>builder().add(pattern, pattern).build();
+            for (String path : PATHS) {
+                String expected = ANT.match(pattern, path) ? pattern : null;
+                assertEquals(expected, trie.match(path), pattern + " ~ " + path);
+            }
+        }
+    }
+
+    @Test
+    void leftmostSpecificSegmentWinsOnSampleRoutes() {
+        PathPatternTrie<String> trie = build(PATTERNS);
+
+        // 样例路由中最左侧更具体的规则同时也是通配最少的规则，此时与 AntPathMatcher 结果相同
+        for (String path : PATHS) {
+            assertEquals(antBest(PATTERNS, path), trie.match(path), path);
+        }
+    }
+
+    @Test
+    void leftmostLiteralBeatsFewerWildcardsUnlikeAntPathMatcher() {
+        List<String> patterns = Arrays.asList("/{a}/b/c", "/x/{b}/{c}");
+        PathPatternTrie<String> trie = build(patterns);
+
+        assertEquals("/x/{b}/{c}", trie.match("/x/b/c"));
+        assertEquals("/{a}/b/c", antBest(patterns, "/x/b/c"));
+        assertEquals("/{a}/b/c", trie.match("/y/b/c"));
+    }
+
+    @Test
+    void precedenceDoesNotDependOnRegistrationOrder() {
+        List<String> reversed = new ArrayList<>(PATTERNS);
+        Collections.reverse(reversed);
+        PathPatternTrie<String> forward = build(PATTERNS);
+        PathPatternTrie<String> backward = build(reversed);
+
+        for (String path : PATHS) {
+            assertEquals(forward.match(path), backward.match(path), path);
+        }
+    }
+
+    @Test
+    void patternWithoutDoubleWildcardBeatsEarlierLiteralPrefixPattern() {
+        List<String> patterns = Arrays.asList("/api/y/**", "/api/{a}/x", "/a/b/**", "/a/*/c");
+        PathPatternTrie<String> trie = build(patterns);
+
+        assertEquals("/api/{a}/x", trie.match("/api/y/x"));
+        assertEquals(antBest(patterns, "/api/y/x"), trie.match("/api/y/x"));
+        assertEquals("/a/*/c", trie.match("/a/b/c"));
+        assertEquals(antBest(patterns, "/a/b/c"), trie.match("/a/b/c"));
+        assertEquals("/api/y/**", trie.match("/api/y/z"));
+    }
+
+    @Test
+    void backtracksWhenLiteralBranchDeadEnds() {
+        PathPatternTrie<String> trie = build(Arrays.asList("/api/users/me/profile", "/api/users/{id}/orders"));
+
+        assertEquals("/api/users/{id}/orders", trie.match("/api/users/me/orders"));
+        assertEquals(antBest(Arrays.asList("/api/users/me/profile", "/api/users/{id}/orders"), "/api/users/me/orders"),
+                trie.match("/api/users/me/orders"));
+    }
+
+    @Test
+    void duplicatePatternKeepsFirstValue() {
+        PathPatternTrie<String> trie = PathPatternTrie.<String>builder()
+                .add("/api/users/{id}", "first")
+                .add("/api/users/{userId}", "second")
+                .build();
+
+        assertEquals("first", trie.match("/api/users/1"));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    void unknownPathAndEmptyTrieReturnNull() {
+        assertNull(build(PATTERNS).match("/wp-admin/setup-config.php"));
+        assertNull(build(PATTERNS).match(null));
+        assertNull(PathPatternTrie.<String>builder().build().match("/api/users"));
+    }
+
+    private static PathPatternTrie<String> build(List<String> patterns) {
+        PathPatternTrie.Builder<String> builder = PathPatternTrie.builder();
+        for (String pattern : patterns) {
+            builder.add(pattern, pattern);
+        }
+        return builder.build();
+    }
+
+    private static String antBest(List<String> patterns, String path) {
+        List<String> matched = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (ANT.match(pattern, path)) {
+                matched.add(pattern);
+            }
+        }
+        matched.sort(ANT.getPatternComparator(path));
+        return matched.isEmpty() ? null : matched.get(0);
+    }
+}
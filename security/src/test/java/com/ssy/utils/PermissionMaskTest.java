@@ -0,0 +1,71 @@
+package com.ssy.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 权限位图：跨字长的相交判定、负数下标与空位图。
+ */
+class PermissionMaskTest {
+
+    @Test
+    void intersectsAcrossDifferentWordLengths() {
+        PermissionMask shortMask = mask(3, 63);
+        PermissionMask longMask = mask(63, 200);
+        PermissionMask farMask = mask(64, 200);
+
+        assertTrue(shortMask.intersects(longMask));
+        assertTrue(longMask.intersects(shortMask));
+        assertFalse(shortMask.intersects(farMask));
+        assertFalse(farMask.intersects(shortMask));
+        assertTrue(longMask.intersects(farMask));
+    }
+
+    @Test
+    void containsChecksWordBoundaries() {
+        PermissionMask mask = mask(0, 63, 64, 127);
+
+        assertTrue(mask.contains(0));
+        assertTrue(mask.contains(63));
+        assertTrue(mask.contains(64));
+        assertTrue(mask.contains(127));
+        assertFalse(mask.contains(1));
+        assertFalse(mask.contains(128));
+        assertFalse(mask.contains(1_000));
+        assertFalse(mask.contains(-1));
+        assertEquals(4, mask.cardinality());
+    }
+
+    @Test
+    void negativeBitsAreIgnored() {
+        assertSame(PermissionMask.EMPTY, mask(-1, -1));
+        assertEquals(mask(5), mask(-1, 5, -1));
+        assertEquals(1, mask(-1, 5).cardinality());
+    }
+
+    @Test
+    void emptyMaskNeverIntersects() {
+        PermissionMask mask = mask(1, 70);
+
+        assertTrue(PermissionMask.EMPTY.isEmpty());
+        assertFalse(PermissionMask.EMPTY.intersects(mask));
+        assertFalse(mask.intersects(PermissionMask.EMPTY));
+        assertFalse(PermissionMask.EMPTY.intersects(PermissionMask.EMPTY));
+    }
+
+    @Test
+    void equalityDependsOnBitsOnly() {
+        assertEquals(mask(1, 70), mask(70, 1, 1));
+        assertEquals(mask(1, 70).hashCode(), mask(70, 1).hashCode());
+        assertNotEquals(mask(1, 70), mask(1, 71));
+    }
+
+    private static PermissionMask mask(int... bits) {
+        return PermissionMask.of(bits, bits.length);
+    }
+}
@@ -0,0 +1,151 @@
+package com.ssy.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_ABOVE_ROOT;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_BACKSLASH;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_CONTROL_CHAR;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_DOT_DOT_SEGMENT;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_DOT_SEGMENT;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_DOUBLE_ENCODED;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_ENCODED_DOT_SEGMENT;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_ENCODED_SLASH;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_INVALID_ENCODING;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_PERCENT_DECODED;
+import static com.ssy.utils.RequestPathCanonicalizer.FLAG_SLASH_COLLAPSED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路径规范化：解码结果与规避特征标记。
+ */
+class RequestPathCanonicalizerTest {
+
+    private final RequestPathCanonicalizer canonicalizer = new RequestPathCanonicalizer();
+
+    @Test
+    void canonicalPathIsReturnedAsIs() {
+        String path = "/api/user/list";
+
+        assertSame(path, canonicalizer.canonicalize(path));
+        assertEquals(0, canonicalizer.getFlags());
+    }
+
+    @Test
+    void emptyPathBecomesRoot() {
+        assertEquals("/", canonicalizer.canonicalize(null));
+        assertEquals("/", canonicalizer.canonicalize(""));
+        assertEquals(0, canonicalizer.getFlags());
+    }
+
+    @Test
+    void decodesPercentEncodingIncludingUtf8() {
+        assertEquals("/api/用户/a b", canonicalizer.canonicalize("/api/%E7%94%A8%E6%88%B7/a%20b"));
+        assertEquals(FLAG_PERCENT_DECODED, canonicalizer.getFlags());
+
+        assertEquals("/api/用户", canonicalizer.canonicalize("/api/用户"));
+        assertEquals(0, canonicalizer.getFlags());
+    }
+
+    @Test
+    void collapsesSlashesAndTrailingSlash() {
+        assertEquals("/api/user", canonicalizer.canonicalize("//api///user/"));
+        assertEquals(FLAG_SLASH_COLLAPSED, canonicalizer.getFlags());
+
+        assertEquals("/api", canonicalizer.canonicalize("api"));
+        assertEquals(0, canonicalizer.getFlags());
+    }
+
+    @Test
+    void removesDotSegments() {
+        assertEquals("/api/user", canonicalizer.canonicalize("/api/./user"));
+        assertEquals(FLAG_DOT_SEGMENT, canonicalizer.getFlags());
+
+        assertEquals("/api/user", canonicalizer.canonicalize("/api/admin/../user"));
+        assertEquals(FLAG_DOT_DOT_SEGMENT, canonicalizer.getFlags());
+
+        assertEquals("/api", canonicalizer.canonicalize("/api/admin/.."));
+        assertEquals(FLAG_DOT_DOT_SEGMENT, canonicalizer.getFlags());
+    }
+
+    @Test
+    void flagsTraversalAboveRoot() {
+        assertEquals("/etc/passwd", canonicalizer.canonicalize("/../../etc/passwd"));
+        int flags = canonicalizer.getFlags();
+
+        assertTrue(RequestPathCanonicalizer.hasFlag(flags, FLAG_DOT_DOT_SEGMENT));
+        assertTrue(RequestPathCanonicalizer.hasFlag(flags, FLAG_ABOVE_ROOT));
+        assertFalse(RequestPathCanonicalizer.hasFlag(flags, FLAG_ENCODED_DOT_SEGMENT));
+    }
+
+    @Test
+    void flagsEncodedDotSegments() {
+        assertEquals("/admin", canonicalizer.canonicalize("/api/%2e%2e/admin"));
+        int flags = canonicalizer.getFlags();
+
+        assertTrue(RequestPathCanonicalizer.hasFlag(flags, FLAG_PERCENT_DECODED));
+        assertTrue(RequestPathCanonicalizer.hasFlag(flags, FLAG_DOT_DOT_SEGMENT));
+        assertTrue(RequestPathCanonicalizer.hasFlag(flags, FLAG_ENCODED_DOT_SEGMENT));
+    }
+
+    @Test
+    void decodesOnlyOneLayerAndFlagsDoubleEncoding() {
+        assertEquals("/api/%2e%2e/admin", canonicalizer.canonicalize("/api/%252e%252e/admin"));
+        int flags = canonicalizer.getFlags();
+
+        assertTrue(RequestPathCanonicalizer.hasFlag(flags, FLAG_DOUBLE_ENCODED));
+        assertFalse(RequestPathCanonicalizer.hasFlag(flags, FLAG_DOT_DOT_SEGMENT));
+    }
+
+    @Test
+    void encodedSlashSplitsSegments() {
+        assertEquals("/a/b", canonicalizer.canonicalize("/a%2fb"));
+        assertTrue(RequestPathCanonicalizer.hasFlag(canonicalizer.getFlags(), FLAG_ENCODED_SLASH));
+
+        assertEquals("/b", canonicalizer.canonicalize("/a%2F..%2Fb"));
+        int flags = canonicalizer.getFlags();
+        assertTrue(RequestPathCanonicalizer.hasFlag(flags, FLAG_ENCODED_SLASH));
+        assertTrue(RequestPathCanonicalizer.hasFlag(flags, FLAG_DOT_DOT_SEGMENT));
+    }
+
+    @Test
+    void flagsBackslashWithoutRewritingIt() {
+        assertEquals("/a\\..\\b", canonicalizer.canonicalize("/a\\..\\b"));
+        assertEquals(FLAG_BACKSLASH, canonicalizer.getFlags());
+
+        assertEquals("/a\\b", canonicalizer.canonicalize("/a%5cb"));
+        assertTrue(RequestPathCanonicalizer.hasFlag(canonicalizer.getFlags(), FLAG_BACKSLASH));
+    }
+
+    @Test
+    void flagsControlCharactersAndInvalidEncoding() {
+        canonicalizer.canonicalize("/file.jsp%00.png");
+        assertTrue(RequestPathCanonicalizer.hasFlag(canonicalizer.getFlags(), FLAG_CONTROL_CHAR));
+
+        assertEquals("/a%zz/b%", canonicalizer.canonicalize("/a%zz/b%"));
+        assertEquals(FLAG_INVALID_ENCODING, canonicalizer.getFlags());
+    }
+
+    @Test
+    void flagsAreResetBetweenCalls() {
+        canonicalizer.canonicalize("/../x");
+        assertTrue(canonicalizer.getFlags() != 0);
+
+        canonicalizer.canonicalize("/x");
+        assertEquals(0, canonicalizer.getFlags());
+    }
+
+    @Test
+    void growsBufferForLongPaths() {
+        StringBuilder raw = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            raw.append("/seg%41").append(i);
+            expected.append("/segA").append(i);
+        }
+
+        assertEquals(expected.toString(), canonicalizer.canonicalize(raw.toString()));
+    }
+}
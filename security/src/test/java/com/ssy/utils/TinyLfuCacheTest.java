@@ -0,0 +1,111 @@
+package com.ssy.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * W-TinyLFU 缓存：命中不重复计算、容量有界、一次性键不能挤掉高频条目、高频新键可以准入。
+ */
+class TinyLfuCacheTest {
+
+    private static final int MAXIMUM = 100;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, String> loader = key -> {
+        loads.incrementAndGet();
+        return "v:" + key;
+    };
+
+    @Test
+    void hitDoesNotInvokeLoaderAgain() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(MAXIMUM);
+
+        assertEquals("v:a", cache.get("a", loader));
+        assertEquals("v:a", cache.get("a", loader));
+
+        assertEquals(1, loads.get());
+        Map<String, Object> stats = cache.snapshotStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void nullIsNotCached() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(MAXIMUM);
+
+        assertNull(cache.get("missing", key -> null));
+        assertNull(cache.get("missing", key -> null));
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void sizeStaysBounded() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(MAXIMUM);
+
+        for (int i = 0; i < MAXIMUM * 20; i++) {
+            cache.get("k" + i, loader);
+            assertTrue(cache.size() <= MAXIMUM);
+        }
+    }
+
+    @Test
+    void oneOffKeysDoNotEvictFrequentEntries() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(MAXIMUM);
+        int hotCount = MAXIMUM - 2;
+        for (int round = 0; round < 6; round++) {
+            for (int i = 0; i < hotCount; i++) {
+                cache.get("hot" + i, loader);
+            }
+        }
+
+        // 扫描式的一次性键（伪造 UA/Token），总访问量不足容量 10 倍，sketch 不会老化
+        for (int i = 0; i < MAXIMUM * 3; i++) {
+            cache.get("scan" + i, loader);
+        }
+
+        loads.set(0);
+        for (int i = 0; i < hotCount; i++) {
+            cache.get("hot" + i, loader);
+        }
+        assertEquals(0, loads.get());
+        assertTrue((Long) cache.snapshotStats().get("admissionRejects") > 0L);
+    }
+
+    @Test
+    void frequentNewKeyIsAdmittedOverColdEntry() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(MAXIMUM);
+        for (int i = 0; i < MAXIMUM; i++) {
+            cache.get("cold" + i, loader);
+        }
+        for (int i = 0; i < 8; i++) {
+            cache.get("rising", loader);
+        }
+        // 新键挤出窗口区，“rising”与主区淘汰候选比较频率
+        cache.get("next", loader);
+
+        loads.set(0);
+        cache.get("rising", loader);
+        assertEquals(0, loads.get());
+        assertTrue(cache.size() <= MAXIMUM);
+    }
+
+    @Test
+    void clearDropsAllEntries() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(MAXIMUM);
+        cache.get("a", loader);
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        cache.get("a", loader);
+        assertEquals(2, loads.get());
+    }
+}